@@ -26,26 +26,32 @@ import galois.objects.MethodFlag;
 import galois.runtime.AbstractForeachContext;
 import galois.runtime.ForeachContext;
 import galois.runtime.GaloisRuntime;
-import galois.runtime.wl.ChunkedFIFO;
+import galois.runtime.wl.ApproxOrderedByIntegerMetric;
 import galois.runtime.wl.FIFO;
+import galois.runtime.wl.HierarchicalChunkedFIFO;
 import galois.runtime.wl.Priority;
 import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.map.hash.TIntIntHashMap;
-import util.MutableBoolean;
 import util.MutableInteger;
 import util.MutableReference;
 import util.ThreadTimer;
 import util.concurrent.ConcurrentGrowingList;
+import util.fn.IntIntLambdaVoid;
+import util.fn.IntLambdaVoid;
+import util.fn.Lambda;
+import util.fn.Lambda0Void;
 import util.fn.Lambda2Void;
-import util.fn.Lambda3Void;
-import util.fn.Lambda4Void;
 import util.fn.LambdaVoid;
+import util.ints.DiffIntSet;
 import util.ints.IntSet;
 import util.ints.IntSparseBitVector;
 import util.ints.LongSparseBitVector;
+import util.ints.SharedSparseBitVector;
 import util.ints.bdd.*;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import static galois.objects.MethodFlag.NONE;
@@ -54,14 +60,19 @@ final class Andersen implements Lambda2Void<OnlineNode, ForeachContext<OnlineNod
     public static final Logger LOGGER = Logger.getLogger("test.hardekopfPointsTo");
     private static final byte FLAG = MethodFlag.NONE;
 
-    private static final int SCC_ROOT_MASK = 1 << 31;
-    private int currentDfs;
     private int repNodes;
 
     private final MultiGraph<OnlineNode> onlineGraph;
     private BddNode[] geps;
     private BddPair gep2pts;
+    private ShiftCache shiftCache;
     private final TIntIntHashMap hcdTable;
+    // null unless solving incrementally
+    private Incremental incremental;
+    // set when a garbage collection or reordering of the BDD node table has been scheduled but not run yet
+    private final AtomicBoolean gcScheduled = new AtomicBoolean(false);
+    // number of visits that found a non-empty delta, which timestamps the nodes in the LRF order
+    private final AtomicInteger fireClock = new AtomicInteger();
 
     public Andersen(MultiGraph<OnlineNode> onlineGraph, TIntIntHashMap hcdTable) throws Exception {
         this.onlineGraph = onlineGraph;
@@ -79,6 +90,28 @@ final class Andersen implements Lambda2Void<OnlineNode, ForeachContext<OnlineNod
         // TODO: take into account the number of threads in the regression model
         initNodeTableSize += 1;
         //System.err.println("Log of the initial node table size: " + initNodeTableSize);
+        if (Configuration.USE_INT_BDD) {
+            IntBddDomain.setup(1 << initNodeTableSize, Configuration.CONCURRENCY_LEVEL);
+            IntBddDomain.extDomain(new long[]{numNodes});
+            IntBddSet.setDomain(IntBddDomain.getDomain(0));
+        } else if (Configuration.PTS.usesBddNodes()) {
+            bddNodesInit(numNodes, (int) initNodeTableSize);
+            if (Configuration.SHIFT_CACHE_SIZE > 0) {
+                shiftCache = new ShiftCache(Configuration.SHIFT_CACHE_SIZE);
+            }
+        } else if (Configuration.PTS == PointsToSetKind.SHARED) {
+            // the intern table and the memo are a fraction of the size the BDD node table would have
+            SharedSparseBitVector.setup(1 << (initNodeTableSize - 2));
+        }
+        ThreadTimer.Tick end = ThreadTimer.tick();
+        long appTime = start.elapsedTime(true, end);
+        long totalTime = start.elapsedTime(false, end);
+        Statistics.addTime(Statistics.Phase.ONLINE_SEQ, appTime);
+        LOGGER.fine("runtime for pts_init: " + appTime + " ms (including GC: " + totalTime + " ms)");
+        return appTime;
+    }
+
+    private void bddNodesInit(int numNodes, int initNodeTableSize) {
         // the # of entries for the iterator cache is a function of the initial node table
         BddDomain.setup(1 << initNodeTableSize, Configuration.CONCURRENCY_LEVEL, 1 << (initNodeTableSize / 2));
         if (Configuration.USE_BDD_ADDER) {
@@ -88,6 +121,14 @@ final class Andersen implements Lambda2Void<OnlineNode, ForeachContext<OnlineNod
         }
         BddDomain ptsDomain = BddDomain.getDomain(0);
         BddSet.setDomain(ptsDomain);
+        HybridIntSet.setDomain(ptsDomain);
+        if (Configuration.USE_BDD_GC) {
+            // do not collect before the table outgrows its initial capacity
+            Bdd.setGcThreshold(1 << initNodeTableSize);
+        }
+        if (Configuration.USE_BDD_REORDER) {
+            Bdd.setReorderThreshold(1 << initNodeTableSize);
+        }
         if (Configuration.USE_BDD_ADDER) {
             BddDomain gepDomain = BddDomain.getDomain(1);
             gep2pts = new BddPair();
@@ -99,8 +140,9 @@ final class Andersen implements Lambda2Void<OnlineNode, ForeachContext<OnlineNod
                     return int2 - int1;
                 }
             });
+            // the loads and stores with offset shift the points-to like the geps
             for (Constraint constraint : Constraint.constraints) {
-                if (constraint != null && constraint.type == Constraint.GEP) {
+                if (constraint != null && constraint.type != Constraint.ADDR_OF) {
                     validOffsets.add(constraint.offset);
                 }
             }
@@ -109,12 +151,6 @@ final class Andersen implements Lambda2Void<OnlineNode, ForeachContext<OnlineNod
             int maxSize = createOffsetNodes(validOffsets, offNodes);
             geps = createAdder(validOffsets, offNodes, maxSize);
         }
-        ThreadTimer.Tick end = ThreadTimer.tick();
-        long appTime = start.elapsedTime(true, end);
-        long totalTime = start.elapsedTime(false, end);
-        Statistics.addTime(Statistics.Phase.ONLINE_SEQ, appTime);
-        LOGGER.fine("runtime for pts_init: " + appTime + " ms (including GC: " + totalTime + " ms)");
-        return appTime;
     }
 
     private int createOffsetNodes(final TreeSet<Integer> validOffsets, final ArrayList<BddSet> offNodes) {
@@ -152,6 +188,10 @@ final class Andersen implements Lambda2Void<OnlineNode, ForeachContext<OnlineNod
         BitVector vgep = BitVector.varfdd(gepDomain);
         BddNode om = Bdd.ZERO;
         for (int offset : validOffsets) {
+            if (offset >= maxSize) {
+                // no object has that many fields
+                continue;
+            }
             BddSet nodesWithThisSize = offNodes.get(offset);
             om = Bdd.or(om, nodesWithThisSize.getRoot());
             BitVector add = BitVector.add(vpts, BitVector.con(numBitsVpts, offset));
@@ -166,15 +206,49 @@ final class Andersen implements Lambda2Void<OnlineNode, ForeachContext<OnlineNod
     }
 
     void analyze() throws Exception {
+        analyze((Incremental) null);
+    }
+
+    /**
+     * @param incremental the previous solution and the changes to its constraints, or null to solve from scratch
+     */
+    void analyze(Incremental incremental) throws Exception {
         ThreadTimer.Tick start = ThreadTimer.tick();
-        repNodes = Statistics.repNodes;
         pts_init();
+        this.incremental = incremental;
+        if (incremental != null) {
+            incremental.restore();
+        }
+        repNodes = Statistics.repNodes;
         List<OnlineNode> initialWorklist = loadContraints();
+        if (incremental != null) {
+            initialWorklist = incremental.seed(initialWorklist);
+        }
+        solve(initialWorklist);
+        logRuntime(start);
+    }
+
+    /**
+     * Computes the points-to of the query variables of <code>demand</code>. The points-to of the rest of variables
+     * might be incomplete.
+     */
+    void analyze(Demand demand) throws Exception {
+        ThreadTimer.Tick start = ThreadTimer.tick();
+        pts_init();
+        repNodes = Statistics.repNodes;
+        demand.solve(this);
+        logRuntime(start);
+    }
+
+    void solve(List<OnlineNode> worklist) throws Exception {
         if (Configuration.BEN_ANALYSIS) {
-            hardekopfAnalysis(initialWorklist);
+            hardekopfAnalysis(worklist);
         } else {
-            waveAnalysis(initialWorklist);
+            waveAnalysis(worklist);
         }
+    }
+
+    private void logRuntime(ThreadTimer.Tick start) {
         ThreadTimer.Tick end = ThreadTimer.tick();
         long appTime = start.elapsedTime(true, end);
         long totalTime = start.elapsedTime(false, end);
@@ -191,26 +265,34 @@ final class Andersen implements Lambda2Void<OnlineNode, ForeachContext<OnlineNod
     }
 
     private List<OnlineNode> loadContraints() throws Exception {
+        return loadContraints(null);
+    }
+
+    /**
+     * Adds the given constraints (all if null) to the constraint graph, and removes them from the constraint list.
+     *
+     * @return the nodes whose points-to changed
+     */
+    List<OnlineNode> loadContraints(final TIntArrayList ids) throws Exception {
         long startTime = milliTime();
         final ConcurrentGrowingList<OnlineNode> initialWorklist = new ConcurrentGrowingList<OnlineNode>(repNodes);
         final Constraint[] constraints = Constraint.constraints;
-        int numConstraints = constraints.length;
+        int numConstraints = ids == null ? constraints.length : ids.size();
         GaloisRuntime.forall(Mappables.range(0, numConstraints, Configuration.getChunkSize(numConstraints)), new LambdaVoid<Integer>() {
             @Override
             public void call(Integer index) {
-                int i = index;
+                int i = ids == null ? index : ids.getQuick(index);
                 Constraint constraint = constraints[i];
                 if (constraint == null) {
                     return;
                 }
-                assert onlineGraph.getNode(constraint.src, NONE).isRep();
+                assert constraint.type == Constraint.ADDR_OF || onlineGraph.getNode(constraint.src, NONE).isRep();
                 assert onlineGraph.getNode(constraint.dst, NONE).isRep();
                 OnlineNode node = null;
                 if (constraint.type == Constraint.ADDR_OF) {
                     // DEST = &SRC
                     node = onlineGraph.getNode(constraint.dst, NONE);
-                    node.pointsTo.add(constraint.src);
-                    if (node.addToWorklist()) {
+                    if (node.addPointsTo(constraint.src) && node.addToWorklist()) {
                         initialWorklist.add(node);
                     }
                 } else if (constraint.type == Constraint.COPY) {
@@ -218,21 +300,27 @@ final class Andersen implements Lambda2Void<OnlineNode, ForeachContext<OnlineNod
                     node = onlineGraph.getNode(constraint.src, NONE);
                     onlineGraph.addNeighbor(constraint.src, constraint.dst, Constraint.COPY, NONE);
                 } else if (constraint.type == Constraint.LOAD) {
-                    // DEST = *SRC
+                    // DEST = *(SRC + OFFSET)
+                    node = onlineGraph.getNode(constraint.src, NONE);
                     if (constraint.offset > 0) {
-                        // TODO: loads and stores with offset
-                        return;
+                        if (!Configuration.USE_OFFSETS) {
+                            return;
+                        }
+                        onlineGraph.addNeighbor(constraint.src, constraint.dst, constraint.offset, Constraint.LOAD, NONE);
+                    } else {
+                        onlineGraph.addNeighbor(constraint.src, constraint.dst, Constraint.LOAD, NONE);
                     }
-                    node = onlineGraph.getNode(constraint.src, NONE);
-                    onlineGraph.addNeighbor(constraint.src, constraint.dst, Constraint.LOAD, NONE);
                 } else if (constraint.type == Constraint.STORE) {
-                    // *DEST = SRC
+                    // *(DEST + OFFSET) = SRC
+                    node = onlineGraph.getNode(constraint.dst, NONE);
                     if (constraint.offset > 0) {
-                        // TODO: loads and stores with offset
-                        return;
+                        if (!Configuration.USE_OFFSETS) {
+                            return;
+                        }
+                        onlineGraph.addNeighbor(constraint.dst, constraint.src, constraint.offset, Constraint.STORE, NONE);
+                    } else {
+                        onlineGraph.addNeighbor(constraint.dst, constraint.src, Constraint.STORE, NONE);
                     }
-                    node = onlineGraph.getNode(constraint.dst, NONE);
-                    onlineGraph.addNeighbor(constraint.dst, constraint.src, Constraint.STORE, NONE);
                 } else if (constraint.type == Constraint.GEP) {
                     node = onlineGraph.getNode(constraint.src, NONE);
                     onlineGraph.addNeighbor(constraint.src, constraint.dst, constraint.offset, Constraint.GEP, NONE);
@@ -248,112 +336,135 @@ final class Andersen implements Lambda2Void<OnlineNode, ForeachContext<OnlineNod
     }
 
     private void hardekopfAnalysis(List<OnlineNode> initialWorklist) throws Exception {
-        Priority.Rule priority = Priority.first(ChunkedFIFO.class, Configuration.getChunk()).then(FIFO.class);
-        GaloisRuntime.foreach(initialWorklist, this, priority);
+        Priority.Rule priority;
+        if (Configuration.ORDER == WorklistOrder.FIFO) {
+            priority = Priority.first(HierarchicalChunkedFIFO.class, Configuration.getChunk()).then(FIFO.class);
+        } else {
+            if (Configuration.ORDER == WorklistOrder.TOPO) {
+                rankTopologically();
+            }
+            Lambda<OnlineNode, Integer> rank = new Lambda<OnlineNode, Integer>() {
+                @Override
+                public Integer call(OnlineNode node) {
+                    return node.priority;
+                }
+            };
+            priority = Priority.first(ApproxOrderedByIntegerMetric.class, Configuration.ORDER_SHIFT, rank).then(FIFO.class);
+        }
+        foreach(initialWorklist, this, priority);
+    }
+
+    /**
+     * The rules only access the graph with {@link MethodFlag#NONE} and never abort, so they can skip the iteration
+     * bookkeeping of the regular executor.
+     */
+    static <T> void foreach(Iterable<T> initial, Lambda2Void<T, ForeachContext<T>> body, Priority.Rule priority)
+            throws Exception {
+        if (Configuration.NO_CONFLICT) {
+            GaloisRuntime.foreachNoConflict(initial, body, priority);
+        } else {
+            GaloisRuntime.foreach(initial, body, priority);
+        }
+    }
+
+    /**
+     * Sets the priority of every representative to its position in a topological order of the components of the copy
+     * edges, so the sources come first. The edges added while solving do not update it.
+     */
+    private void rankTopologically() {
+        final int numNodes = onlineGraph.size();
+        SccFinder<OnlineNode> sccFinder = new SccFinder<OnlineNode>(onlineGraph, Constraint.COPY) {
+            // the components are found in reverse topological order
+            private int rank = numNodes;
+
+            @Override
+            int getRep(int n) {
+                return onlineGraph.getNode(n, NONE).getRep(onlineGraph, NONE).id;
+            }
+
+            @Override
+            void sccFound(TIntArrayList scc) {
+                rank--;
+                for (int i = 0; i < scc.size(); i++) {
+                    onlineGraph.getNode(scc.getQuick(i), NONE).priority = rank;
+                }
+            }
+        };
+        for (int n = 0; n < numNodes; n++) {
+            OnlineNode node = onlineGraph.getNode(n, NONE);
+            if (node != null && node.isRep()) {
+                sccFinder.visit(n);
+            }
+        }
     }
 
     private void waveAnalysis(List<OnlineNode> changedNodes) throws Exception {
         while (!changedNodes.isEmpty()) {
-            Iterable<OnlineNode> sccRoots = waveCollapseScc(changedNodes);
-            List<OnlineNode> changedSccRoots = wavePropagate(sccRoots);
+            if (isBddMaintenanceRequested()) {
+                maintainBdd();
+            }
+            List<OnlineNode> changedSccRoots;
+            if (Configuration.USE_PARALLEL_SCC) {
+                ParallelWave wave = new ParallelWave(onlineGraph, repNodes, incremental);
+                changedSccRoots = wave.run(changedNodes);
+                repNodes -= wave.getMergedNodes();
+            } else {
+                Iterable<OnlineNode> sccRoots = waveCollapseScc(changedNodes);
+                changedSccRoots = wavePropagate(sccRoots);
+            }
             changedNodes = waveSolve(changedSccRoots);
         }
     }
 
     private Iterable<OnlineNode> waveCollapseScc(final List<OnlineNode> changedNodes) {
         ThreadTimer.Tick start = ThreadTimer.tick();
-        currentDfs = 1;
         final int size = changedNodes.size();
         final ArrayDeque<OnlineNode> initialWorklist = new ArrayDeque<OnlineNode>(size);
-        final ArrayList<OnlineNode> dfsStack = new ArrayList<OnlineNode>();
-        final int[] flagsAndDfsId = new int[onlineGraph.size()];
-        for (int i = 0; i < size; i++) {
-            OnlineNode node = changedNodes.get(i);
-            if (node.isRep() && getDfsId(node, flagsAndDfsId) == 0) {
-                dfsRec(node, dfsStack, flagsAndDfsId, initialWorklist);
-                assert dfsStack.size() == 0 : dfsStack.size();
+        SccFinder<OnlineNode> sccFinder = new SccFinder<OnlineNode>(onlineGraph, Constraint.COPY) {
+            @Override
+            int getRep(int n) {
+                return onlineGraph.getNode(n, NONE).getRep(onlineGraph, NONE).id;
             }
-        }
-        ThreadTimer.Tick end = ThreadTimer.tick();
-        long appTime = start.elapsedTime(true, end);
-        Statistics.accTime(Statistics.Phase.ONLINE_SEQ, appTime);
-        return initialWorklist;
-    }
 
-    private void dfsRec(final OnlineNode node, final ArrayList<OnlineNode> dfsStack, final int[] flagsAndDfsId, final ArrayDeque<OnlineNode> initialWorklist) {
-        assert node.isRep();
-        int ourDfs = currentDfs++;
-        setDfsId(node, ourDfs, flagsAndDfsId);
-        onlineGraph.map(node, new LambdaVoid<OnlineNode>() {
             @Override
-            public void call(final OnlineNode d) {
-                OnlineNode dst = d.getRep(onlineGraph, NONE);
-                if (node == dst || isSccRoot(dst, flagsAndDfsId)) {
-                    return;
-                }
-                if (getDfsId(dst, flagsAndDfsId) == 0) {
-                    dfsRec(dst, dfsStack, flagsAndDfsId, initialWorklist);
-                }
-                final int nodeDfsId = getDfsId(node, flagsAndDfsId);
-                final int dstDfsId = getDfsId(dst, flagsAndDfsId);
-                if (dstDfsId < nodeDfsId) {
-                    setDfsId(node, dstDfsId, flagsAndDfsId);
+            void sccFound(TIntArrayList scc) {
+                OnlineNode sccRoot = onlineGraph.getNode(scc.getQuick(0), NONE);
+                for (int i = 1; i < scc.size(); i++) {
+                    OnlineNode node = onlineGraph.getNode(scc.getQuick(i), NONE);
+                    OnlineNode rep = sccRoot.serialMerge(node, true);
+                    if (incremental != null) {
+                        incremental.merged(rep, rep == node ? sccRoot : node);
+                    }
+                    sccRoot = rep;
+                    repNodes--;
                 }
-            }
-        }, Constraint.COPY, NONE);
-        assert node.isRep();
-        if (getDfsId(node, flagsAndDfsId) == ourDfs) {
-            OnlineNode sccRoot = node;
-            while (!dfsStack.isEmpty()) {
-                int last = dfsStack.size() - 1;
-                final OnlineNode nodeOnTop = dfsStack.get(last);
-                if (getDfsId(nodeOnTop, flagsAndDfsId) < ourDfs) {
-                    break;
+                sccRoot.removeFromWorklist();
+                // the components are found in reverse topological order
+                if (!sccRoot.getPointsToDelta().isEmpty()) {
+                    initialWorklist.addFirst(sccRoot);
                 }
-                dfsStack.remove(last);
-                repNodes--;
-                sccRoot = sccRoot.serialMerge(nodeOnTop, true);
             }
-            setSccRoot(sccRoot, true, flagsAndDfsId);
-            sccRoot.removeFromWorklist();
-            if (!sccRoot.serialGetPrevPointsTo().equals(sccRoot.pointsTo)) {
-                initialWorklist.addFirst(sccRoot);
+        };
+        for (int i = 0; i < size; i++) {
+            OnlineNode node = changedNodes.get(i);
+            if (node.isRep()) {
+                sccFinder.visit(node.id);
             }
-        } else {
-            dfsStack.add(node);
         }
-    }
-
-    private static boolean isSccRoot(OnlineNode node, int[] dfsFlagsAndDfsId) {
-        return (dfsFlagsAndDfsId[node.id] & SCC_ROOT_MASK) != 0;
-    }
-
-    private static void setSccRoot(OnlineNode node, boolean sccRoot, int[] dfsFlagsAndDfsId) {
-        int id = node.id;
-        if (sccRoot) {
-            dfsFlagsAndDfsId[id] |= SCC_ROOT_MASK;
-        } else {
-            dfsFlagsAndDfsId[id] &= (~SCC_ROOT_MASK);
-        }
-    }
-
-    private static int getDfsId(OnlineNode node, int[] dfsFlagsAndDfsId) {
-        return dfsFlagsAndDfsId[node.id] & (~SCC_ROOT_MASK);
-    }
-
-    private static void setDfsId(OnlineNode node, int dfsId, int[] dfsFlagsAndDfsId) {
-        int mask = dfsFlagsAndDfsId[node.id] & SCC_ROOT_MASK;
-        dfsFlagsAndDfsId[node.id] = dfsId | mask;
+        ThreadTimer.Tick end = ThreadTimer.tick();
+        long appTime = start.elapsedTime(true, end);
+        Statistics.accTime(Statistics.Phase.ONLINE_SEQ, appTime);
+        return initialWorklist;
     }
 
     private List<OnlineNode> wavePropagate(final Iterable<OnlineNode> nodesWhosePointsToChanged) throws Exception {
         final ConcurrentGrowingList<OnlineNode> ret = new ConcurrentGrowingList<OnlineNode>(repNodes);
-        GaloisRuntime.foreach(nodesWhosePointsToChanged, new Lambda2Void<OnlineNode, ForeachContext<OnlineNode>>() {
+        foreach(nodesWhosePointsToChanged, new Lambda2Void<OnlineNode, ForeachContext<OnlineNode>>() {
             @Override
             public void call(final OnlineNode node, final ForeachContext<OnlineNode> wl) {
                 assert node.isRep();
-                final BddSet diffPointsTo = node.pointsTo.clone();
-                diffPointsTo.serialDiffTo((BddSet) node.getPrevPointsTo());
+                // the delta stays pending until waveSolve applies the complex rules to it
+                final DiffIntSet diffPointsTo = node.getPointsToDelta().clone();
                 if (diffPointsTo.isEmpty()) {
                     return;
                 }
@@ -365,7 +476,7 @@ final class Andersen implements Lambda2Void<OnlineNode, ForeachContext<OnlineNod
                     @Override
                     public void call(final OnlineNode d) {
                         OnlineNode dst = d.getRep(onlineGraph, NONE);
-                        if (node != dst && seen.add(dst.id) && dst.pointsTo.unionTo(diffPointsTo)) {
+                        if (node != dst && seen.add(dst.id) && dst.unionToPointsTo(diffPointsTo)) {
                             wl.add(dst, NONE);
                         }
                     }
@@ -387,6 +498,136 @@ final class Andersen implements Lambda2Void<OnlineNode, ForeachContext<OnlineNod
         return adapter.get();
     }
 
+    private static boolean isBddMaintenanceRequested() {
+        return (Configuration.USE_BDD_GC && Bdd.isGcRequested())
+                || (Configuration.USE_BDD_REORDER && Bdd.isReorderRequested());
+    }
+
+    /**
+     * Reorders the BDD variables if the node table outgrew the reordering threshold; otherwise it collects the
+     * garbage. Must be invoked at a point where no rule is being applied.
+     */
+    private void maintainBdd() {
+        if (shiftCache != null) {
+            // the entries might point to nodes that are about to be freed or moved
+            shiftCache.clear();
+        }
+        if (Configuration.USE_BDD_REORDER && Bdd.isReorderRequested()) {
+            // the reordering collects the garbage too
+            reorderVariables();
+        } else {
+            collectGarbage();
+        }
+    }
+
+    /**
+     * Changes the order of the BDD variables to reduce the size of the node table. The roots are the same as in
+     * {@link #collectGarbage()}. Must be invoked at a point where no rule is being applied.
+     */
+    private void reorderVariables() {
+        ThreadTimer.Tick start = ThreadTimer.tick();
+        int before = Bdd.getNodeTableSize();
+        int after = Bdd.reorder(new LambdaVoid<Lambda<BddNode, BddNode>>() {
+            @Override
+            public void call(final Lambda<BddNode, BddNode> translator) {
+                onlineGraph.map(new LambdaVoid<OnlineNode>() {
+                    @Override
+                    public void call(OnlineNode node) {
+                        if (!node.isRep()) {
+                            // merged nodes are never read again
+                            node.clearPointsTo();
+                            return;
+                        }
+                        translateRoot(node.pointsTo, translator);
+                        translateRoot(node.getPointsToDelta(), translator);
+                    }
+                });
+                if (geps != null) {
+                    for (int i = 0; i < geps.length; i++) {
+                        if (geps[i] != null) {
+                            geps[i] = translator.call(geps[i]);
+                        }
+                    }
+                }
+            }
+        });
+        if (gep2pts != null) {
+            // the pair is indexed by level
+            gep2pts = new BddPair();
+            gep2pts.set(BddDomain.getDomain(1), BddDomain.getDomain(0));
+        }
+        ThreadTimer.Tick end = ThreadTimer.tick();
+        long appTime = start.elapsedTime(true, end);
+        Statistics.bddReorderings++;
+        Statistics.bddNodesBeforeReorder += before;
+        Statistics.bddNodesAfterReorder += after;
+        Statistics.bddReorderTime += appTime;
+        Statistics.accTime(Statistics.Phase.ONLINE_SEQ, appTime);
+        LOGGER.fine("bdd reorder: " + before + " -> " + after + " nodes in " + appTime + " ms");
+    }
+
+    /**
+     * Collects the unreachable nodes of the BDD node table. The roots are the points-to sets of the
+     * representatives and the adder relations. Must be invoked at a point where no rule is being applied.
+     */
+    private void collectGarbage() {
+        ThreadTimer.Tick start = ThreadTimer.tick();
+        int before = Bdd.getNodeTableSize();
+        int after = Bdd.gc(new LambdaVoid<LambdaVoid<BddNode>>() {
+            @Override
+            public void call(final LambdaVoid<BddNode> marker) {
+                onlineGraph.map(new LambdaVoid<OnlineNode>() {
+                    @Override
+                    public void call(OnlineNode node) {
+                        if (!node.isRep()) {
+                            // merged nodes are never read again
+                            node.clearPointsTo();
+                            return;
+                        }
+                        markRoot(node.pointsTo, marker);
+                        markRoot(node.getPointsToDelta(), marker);
+                    }
+                });
+                if (geps != null) {
+                    for (BddNode gep : geps) {
+                        if (gep != null) {
+                            marker.call(gep);
+                        }
+                    }
+                }
+            }
+        });
+        ThreadTimer.Tick end = ThreadTimer.tick();
+        long appTime = start.elapsedTime(true, end);
+        Statistics.bddCollections++;
+        Statistics.bddNodesBeforeGc += before;
+        Statistics.bddNodesAfterGc += after;
+        Statistics.bddGcTime += appTime;
+        Statistics.accTime(Statistics.Phase.ONLINE_SEQ, appTime);
+        LOGGER.fine("bdd gc: " + before + " -> " + after + " nodes in " + appTime + " ms");
+    }
+
+    // the points-to sets are either BddSets or HybridIntSets, which might not be stored as a BDD
+    private static void markRoot(DiffIntSet pointsTo, LambdaVoid<BddNode> marker) {
+        BddNode root = pointsTo instanceof BddSet ? ((BddSet) pointsTo).getRoot() : ((HybridIntSet) pointsTo).getRoot();
+        if (root != null) {
+            marker.call(root);
+        }
+    }
+
+    private static void translateRoot(DiffIntSet pointsTo, Lambda<BddNode, BddNode> translator) {
+        if (pointsTo instanceof BddSet) {
+            BddSet bddSet = (BddSet) pointsTo;
+            bddSet.serialSetRoot(translator.call(bddSet.getRoot()));
+            return;
+        }
+        HybridIntSet hybridSet = (HybridIntSet) pointsTo;
+        BddNode root = hybridSet.getRoot();
+        if (root != null) {
+            hybridSet.serialSetRoot(translator.call(root));
+        }
+    }
+
     private long milliTime() {
         return System.nanoTime() / 1000000;
     }
@@ -394,19 +635,30 @@ final class Andersen implements Lambda2Void<OnlineNode, ForeachContext<OnlineNod
     @Override
     public void call(final OnlineNode node, final ForeachContext<OnlineNode> worklist) {
         Statistics.nodeRuns.add(1, MethodFlag.NONE);
+        if (Configuration.BEN_ANALYSIS && isBddMaintenanceRequested() && gcScheduled.compareAndSet(false, true)) {
+            // the collection runs once all the threads have reached the end of their current iteration
+            worklist.suspendWith(new Lambda0Void() {
+                @Override
+                public void call() {
+                    maintainBdd();
+                    gcScheduled.set(false);
+                }
+            });
+        }
         node.removeFromWorklist();
         // UPDATE DIFF PTS RULE
         long startTime = milliTime();
-        final BddSet diffPointsTo = node.pointsTo.clone();
-        final BddSet prevPointsTo = (BddSet) node.getPrevPointsTo();
-        if (diffPointsTo.equals(prevPointsTo)) {
+        // whoever adds elements to the delta after this point also puts 'node' back in the worklist
+        final DiffIntSet diffPointsTo = node.takePointsToDelta();
+        if (diffPointsTo.isEmpty()) {
             return;
         }
-        diffPointsTo.serialDiffTo(prevPointsTo);
-        // note that if some other node has been merge with 'node', the old points-to is a fresh
-        // new Bdd set, so the following union does not prevent the reprocessing of all the points-to
-        // of 'node' (since it updates a different variable)
-        prevPointsTo.unionTo(diffPointsTo);
+        if (Configuration.ORDER == WorklistOrder.LRF) {
+            node.priority = fireClock.incrementAndGet();
+        } else if (Configuration.ORDER == WorklistOrder.TOPO) {
+            // the next visit belongs to the next sweep over the topological order
+            node.priority += onlineGraph.size();
+        }
         long endTime = milliTime();
         Statistics.ruleTimes[Statistics.UPDATE_DIFF_PTS].add((int) (endTime - startTime), MethodFlag.NONE);
 
@@ -419,11 +671,22 @@ final class Andersen implements Lambda2Void<OnlineNode, ForeachContext<OnlineNod
             return;
         }
 
+        if (incremental != null) {
+            // the edges that the old solution derived from the node have to carry its new points-to
+            incremental.restoreCopyEdges(node, worklist);
+        }
+
+        // shared by the rules with offset
+        ShiftedPointsTo shiftedPointsTo = new ShiftedPointsTo(diffPointsTo);
+
         // LOAD RULE
         IntSparseBitVector diffPointsToSet = null;
         if (!node.isNeighborhoodEmpty(Constraint.LOAD)) {
             diffPointsToSet = processLoads(node, hcdRep, diffPointsTo, worklist);
         }
+        if (!node.isOffsetNeighborhoodEmpty(Constraint.LOAD)) {
+            processOffsetLoads(node, shiftedPointsTo, worklist);
+        }
         endTime = milliTime();
         Statistics.ruleTimes[Constraint.LOAD].add((int) (endTime - startTime), MethodFlag.NONE);
 
@@ -431,6 +694,9 @@ final class Andersen implements Lambda2Void<OnlineNode, ForeachContext<OnlineNod
         if (!node.isNeighborhoodEmpty(Constraint.STORE)) {
             processStores(node, hcdRep, diffPointsTo, diffPointsToSet, worklist);
         }
+        if (!node.isOffsetNeighborhoodEmpty(Constraint.STORE)) {
+            processOffsetStores(node, shiftedPointsTo, worklist);
+        }
         startTime = milliTime();
         Statistics.ruleTimes[Constraint.STORE].add((int) (startTime - endTime), MethodFlag.NONE);
         // when a node is merged by another thread, instead of emptying its information
@@ -442,11 +708,7 @@ final class Andersen implements Lambda2Void<OnlineNode, ForeachContext<OnlineNod
 
         // GEP RULE
         if (!node.isNeighborhoodEmpty(Constraint.GEP)) {
-            if (Configuration.USE_BDD_ADDER) {
-                processGep(node, diffPointsTo, worklist);
-            } else {
-                processGepWithoutAdder(node, diffPointsTo, worklist);
-            }
+            processGep(node, shiftedPointsTo, worklist);
         }
         endTime = milliTime();
         Statistics.ruleTimes[Constraint.GEP].add((int) (endTime - startTime), MethodFlag.NONE);
@@ -466,9 +728,9 @@ final class Andersen implements Lambda2Void<OnlineNode, ForeachContext<OnlineNod
             OnlineNode rep = onlineGraph.getNode(hv, FLAG).getRep(onlineGraph, FLAG);
             final MutableReference<OnlineNode> hcdRepRef = new MutableReference<OnlineNode>(rep);
             // if so, merge everything in our pointsTo with hv.
-            diffPointsTo.map(new LambdaVoid<Integer>() {
+            diffPointsTo.mapInt(new IntLambdaVoid() {
                 @Override
-                public void call(Integer index) {
+                public void call(int index) {
                     OnlineNode x = onlineGraph.getNode(index, FLAG).getRep(onlineGraph, FLAG);
                     if (x.id != OnlineNode.I2P) {
                         OnlineNode hcdRep = hcdRepRef.get();
@@ -490,22 +752,11 @@ final class Andersen implements Lambda2Void<OnlineNode, ForeachContext<OnlineNod
     private IntSparseBitVector processLoads(final OnlineNode node, final OnlineNode hcdRep, final IntSet diffPointsTo,
                                             final ForeachContext<OnlineNode> worklist) {
         final IntSparseBitVector seen = new IntSparseBitVector();
-        final MutableReference<IntSparseBitVector> diffPointsToSet = new MutableReference<IntSparseBitVector>(null);
-        final Lambda4Void<Integer, OnlineNode, IntSparseBitVector, MutableBoolean> closure = new Lambda4Void<Integer, OnlineNode, IntSparseBitVector, MutableBoolean>() {
+        final LoadRule rule = new LoadRule();
+        onlineGraph.mapNeighbors(node, new IntLambdaVoid() {
             @Override
-            public void call(Integer index, OnlineNode dst, IntSparseBitVector newDiffPointsToSet, MutableBoolean modified) {
-                OnlineNode elem = onlineGraph.getNode(index, FLAG).getRep(onlineGraph, FLAG);
-                if (newDiffPointsToSet.add(elem.id)) {
-                    // if we already saw the pair (elem, dst), ignore.
-                    boolean curr = elem.addCopyEdgePropagatePoints2(dst, onlineGraph, FLAG) != null || modified.get();
-                    modified.set(curr);
-                }
-            }
-        };
-        onlineGraph.map(node, new LambdaVoid<OnlineNode>() {
-            @Override
-            public void call(OnlineNode s) {
-                final OnlineNode dst = s.getRep(onlineGraph, FLAG);
+            public void call(int s) {
+                final OnlineNode dst = onlineGraph.getNode(s, FLAG).getRep(onlineGraph, FLAG);
                 // the representatives might have changed in between, but let's give it a try
                 if (!seen.add(dst.id)) {
                     return;
@@ -518,41 +769,45 @@ final class Andersen implements Lambda2Void<OnlineNode, ForeachContext<OnlineNod
                     }
                     return;
                 }
-                final MutableBoolean modified = new MutableBoolean(false);
-                final IntSparseBitVector newDiffPointsToSet = new IntSparseBitVector();
-                IntSet intSet = diffPointsToSet.get() == null ? diffPointsTo : diffPointsToSet.get();
-                intSet.map(closure, dst, newDiffPointsToSet, modified);
-                diffPointsToSet.set(newDiffPointsToSet);
-                if (modified.get() && dst.addToWorklist()) {
+                IntSet intSet = rule.newDiffPointsToSet == null ? diffPointsTo : rule.newDiffPointsToSet;
+                rule.dst = dst;
+                rule.newDiffPointsToSet = new IntSparseBitVector();
+                rule.modified = false;
+                intSet.mapInt(rule);
+                if (rule.modified && dst.addToWorklist()) {
                     worklist.add(dst, MethodFlag.NONE);
                 }
             }
         }, Constraint.LOAD, FLAG);
-        return diffPointsToSet.get();
+        return rule.newDiffPointsToSet;
+    }
+
+    // adds ELEM -> DST for every element of the points-to of the loaded node
+    private final class LoadRule implements IntLambdaVoid {
+        OnlineNode dst;
+        // the representatives of the points-to elements, which are reused for the next destinations
+        IntSparseBitVector newDiffPointsToSet;
+        boolean modified;
+
+        @Override
+        public void call(int index) {
+            OnlineNode elem = onlineGraph.getNode(index, FLAG).getRep(onlineGraph, FLAG);
+            if (newDiffPointsToSet.add(elem.id)) {
+                // if we already saw the pair (elem, dst), ignore.
+                modified |= elem.addCopyEdgePropagatePoints2(dst, onlineGraph, FLAG) != null;
+            }
+        }
     }
 
     // *NODE = SRC
     private void processStores(final OnlineNode node, final OnlineNode hcdRep, final IntSet diffPointsTo,
                                final IntSparseBitVector diffPointsToSet, final ForeachContext<OnlineNode> worklist) {
         final IntSparseBitVector seen = new IntSparseBitVector();
-        final Lambda3Void<Integer, OnlineNode, IntSparseBitVector> closure = new Lambda3Void<Integer, OnlineNode, IntSparseBitVector>() {
+        final StoreRule rule = new StoreRule(worklist);
+        onlineGraph.mapNeighbors(node, new IntLambdaVoid() {
             @Override
-            public void call(Integer index, OnlineNode src, IntSparseBitVector dstSeen) {
-                OnlineNode elem = onlineGraph.getNode(index, FLAG).getRep(onlineGraph, FLAG);
-                if (!dstSeen.add(elem.id)) {
-                    return;
-                }
-                OnlineNode elemRep = src.addCopyEdgePropagatePoints2(elem, onlineGraph, FLAG);
-                //Statistics.storeRules.incrementAndGet();
-                if (elemRep != null && elemRep.addToWorklist()) {
-                    worklist.add(elemRep, MethodFlag.NONE);
-                }
-            }
-        };
-        onlineGraph.map(node, new LambdaVoid<OnlineNode>() {
-            @Override
-            public void call(OnlineNode s) {
-                final OnlineNode src = s.getRep(onlineGraph, FLAG);
+            public void call(int s) {
+                final OnlineNode src = onlineGraph.getNode(s, FLAG).getRep(onlineGraph, FLAG);
                 if (!seen.add(src.id)) {
                     return;
                 }
@@ -564,69 +819,95 @@ final class Andersen implements Lambda2Void<OnlineNode, ForeachContext<OnlineNod
                     }
                     return;
                 }
-                final IntSparseBitVector dstSeen = new IntSparseBitVector();
+                rule.src = src;
+                rule.dstSeen = new IntSparseBitVector();
                 IntSet intSet = diffPointsToSet == null ? diffPointsTo : diffPointsToSet;
-                intSet.map(closure, src, dstSeen);
+                intSet.mapInt(rule);
             }
         }, Constraint.STORE, FLAG);
     }
 
-    // DST = SRC + OFFSET
-    private void processGep(final OnlineNode node, final IntSet diffPointsTo, final ForeachContext<OnlineNode> worklist) {
-        BddDomain pointsToDomain = BddDomain.getDomain(0);
-        final BddNode ptsVar = pointsToDomain.set();
+    // adds SRC -> ELEM for every element of the points-to of the stored node
+    private final class StoreRule implements IntLambdaVoid {
+        private final ForeachContext<OnlineNode> worklist;
+        OnlineNode src;
+        IntSparseBitVector dstSeen;
+
+        StoreRule(ForeachContext<OnlineNode> worklist) {
+            this.worklist = worklist;
+        }
+
+        @Override
+        public void call(int index) {
+            OnlineNode elem = onlineGraph.getNode(index, FLAG).getRep(onlineGraph, FLAG);
+            if (!dstSeen.add(elem.id)) {
+                return;
+            }
+            OnlineNode elemRep = src.addCopyEdgePropagatePoints2(elem, onlineGraph, FLAG);
+            //Statistics.storeRules.incrementAndGet();
+            if (elemRep != null && elemRep.addToWorklist()) {
+                worklist.add(elemRep, MethodFlag.NONE);
+            }
+        }
+    }
+
+    //  DST = *(NODE + OFFSET)
+    private void processOffsetLoads(final OnlineNode node, final ShiftedPointsTo shiftedPointsTo,
+                                    final ForeachContext<OnlineNode> worklist) {
         final LongSparseBitVector seen = new LongSparseBitVector();
-        onlineGraph.map(node, new Lambda2Void<Integer, OnlineNode>() {
+        final LoadRule rule = new LoadRule();
+        onlineGraph.mapNeighbors(node, new IntIntLambdaVoid() {
             @Override
-            public void call(Integer offset, OnlineNode d) {
-                OnlineNode dst = d.getRep(onlineGraph, FLAG);
+            public void call(int d, int offset) {
+                OnlineNode dst = onlineGraph.getNode(d, FLAG).getRep(onlineGraph, FLAG);
                 long key = ((long) dst.id << 32) | offset;
                 if (!seen.add(key)) {
                     return;
                 }
-                // for every element x in the points-to of SRC (node), add (x+offset) to the points-to of DST
-                BddNode tmp1 = Bdd.relProd(((BddSet) diffPointsTo).getRoot(), geps[offset], ptsVar);
-                if (Bdd.isEmpty(tmp1)) {
-                    return;
-                }
-                BddSet filtered = new BddSet(Bdd.replace(tmp1, gep2pts));
-                dst = dst.propagatePointsTo(filtered, onlineGraph, FLAG);
-                if (dst != null && dst.addToWorklist()) {
+                rule.dst = dst;
+                rule.newDiffPointsToSet = new IntSparseBitVector();
+                rule.modified = false;
+                shiftedPointsTo.get(offset).mapInt(rule);
+                if (rule.modified && dst.addToWorklist()) {
                     worklist.add(dst, MethodFlag.NONE);
                 }
             }
-        }, Constraint.GEP, FLAG);
+        }, Constraint.LOAD, FLAG);
     }
 
-    void processGepWithoutAdder(final OnlineNode node, final BddSet diffPointsTo, final ForeachContext<OnlineNode> worklist) {
+    // *(NODE + OFFSET) = SRC
+    private void processOffsetStores(final OnlineNode node, final ShiftedPointsTo shiftedPointsTo,
+                                     final ForeachContext<OnlineNode> worklist) {
         final LongSparseBitVector seen = new LongSparseBitVector();
-        final TIntArrayList offsets = new TIntArrayList(4);
-        final ArrayList<BddSet> results = new ArrayList<BddSet>(4);
-        final TIntArrayList elements = diffPointsTo.elements();
-        onlineGraph.map(node, new Lambda2Void<Integer, OnlineNode>() {
+        final StoreRule rule = new StoreRule(worklist);
+        onlineGraph.mapNeighbors(node, new IntIntLambdaVoid() {
             @Override
-            public void call(final Integer offset, OnlineNode d) {
-                OnlineNode dst = d.getRep(onlineGraph, FLAG);
-                long key = ((long) dst.id << 32) | offset;
+            public void call(int s, int offset) {
+                OnlineNode src = onlineGraph.getNode(s, FLAG).getRep(onlineGraph, FLAG);
+                long key = ((long) src.id << 32) | offset;
                 if (!seen.add(key)) {
                     return;
                 }
-                int cacheIndex = offsets.indexOf(offset);
-                BddSet shiftedDiffPointsTo;
-                if (cacheIndex != -1) {
-                    shiftedDiffPointsTo = results.get(cacheIndex);
-                } else {
-                    shiftedDiffPointsTo = new BddSet();
-                    for (int i = 0; i < elements.size(); i++) {
-                        int index = elements.getQuick(i);
-                        final OnlineNode node1 = onlineGraph.getNode(index, FLAG);
-                        if (node1.getObjSize() > offset) {
-                            shiftedDiffPointsTo.add(index + offset);
-                        }
-                    }
-                    offsets.add(offset);
-                    results.add(shiftedDiffPointsTo);
+                rule.src = src;
+                rule.dstSeen = new IntSparseBitVector();
+                shiftedPointsTo.get(offset).mapInt(rule);
+            }
+        }, Constraint.STORE, FLAG);
+    }
+
+    // DST = SRC + OFFSET
+    private void processGep(final OnlineNode node, final ShiftedPointsTo shiftedPointsTo,
+                            final ForeachContext<OnlineNode> worklist) {
+        final LongSparseBitVector seen = new LongSparseBitVector();
+        onlineGraph.mapNeighbors(node, new IntIntLambdaVoid() {
+            @Override
+            public void call(int d, int offset) {
+                OnlineNode dst = onlineGraph.getNode(d, FLAG).getRep(onlineGraph, FLAG);
+                long key = ((long) dst.id << 32) | offset;
+                if (!seen.add(key)) {
+                    return;
                 }
+                DiffIntSet shiftedDiffPointsTo = shiftedPointsTo.get(offset);
                 if (shiftedDiffPointsTo.isEmpty()) {
                     return;
                 }
@@ -638,12 +919,92 @@ final class Andersen implements Lambda2Void<OnlineNode, ForeachContext<OnlineNod
         }, Constraint.GEP, FLAG);
     }
 
-    private void propagatePointsTo(final OnlineNode node, final IntSet diffPointsTo, final ForeachContext<OnlineNode> worklist) {
+    // the points-to delta of a node shifted by the offsets of its geps, loads and stores: x + OFFSET for every element
+    // x whose object has more than OFFSET fields. Every offset is computed once per visit of the node, and looked up
+    // in the shift cache (shared by all the nodes) before that
+    private final class ShiftedPointsTo {
+        private final DiffIntSet diffPointsTo;
+        private TIntArrayList offsets;
+        private ArrayList<DiffIntSet> results;
+        // the elements of the delta
+        private TIntArrayList elements;
+        // the variables of the points-to domain, when using the BDD adder
+        private BddNode ptsVar;
+
+        ShiftedPointsTo(DiffIntSet diffPointsTo) {
+            this.diffPointsTo = diffPointsTo;
+        }
+
+        DiffIntSet get(int offset) {
+            if (offsets == null) {
+                offsets = new TIntArrayList(4);
+                results = new ArrayList<DiffIntSet>(4);
+            }
+            int cacheIndex = offsets.indexOf(offset);
+            if (cacheIndex != -1) {
+                return results.get(cacheIndex);
+            }
+            BddNode root = null;
+            if (shiftCache != null) {
+                root = ((BddSet) diffPointsTo).getRoot();
+                BddNode shifted = shiftCache.get(root, offset);
+                if (shifted != null) {
+                    return cache(offset, new BddSet(shifted));
+                }
+            }
+            DiffIntSet ret;
+            if (Configuration.USE_BDD_ADDER) {
+                ret = shiftWithAdder(offset);
+            } else {
+                if (elements == null) {
+                    elements = new TIntArrayList();
+                    diffPointsTo.mapInt(new IntLambdaVoid() {
+                        @Override
+                        public void call(int index) {
+                            elements.add(index);
+                        }
+                    });
+                }
+                ret = OnlineNode.newPointsToSet();
+                for (int i = 0; i < elements.size(); i++) {
+                    int index = elements.getQuick(i);
+                    if (onlineGraph.getNode(index, FLAG).getObjSize() > offset) {
+                        ret.add(index + offset);
+                    }
+                }
+            }
+            if (root != null) {
+                shiftCache.put(root, offset, ((BddSet) ret).getRoot());
+            }
+            return cache(offset, ret);
+        }
+
+        private DiffIntSet cache(int offset, DiffIntSet shifted) {
+            offsets.add(offset);
+            results.add(shifted);
+            return shifted;
+        }
+
+        private DiffIntSet shiftWithAdder(int offset) {
+            if (offset >= geps.length) {
+                // no object has that many fields
+                return new BddSet();
+            }
+            if (ptsVar == null) {
+                ptsVar = BddDomain.getDomain(0).set();
+            }
+            // x + offset for every element x whose object has more than offset fields, in the gep domain
+            BddNode tmp = Bdd.relProd(((BddSet) diffPointsTo).getRoot(), geps[offset], ptsVar);
+            return Bdd.isEmpty(tmp) ? new BddSet() : new BddSet(Bdd.replace(tmp, gep2pts));
+        }
+    }
+
+    private void propagatePointsTo(final OnlineNode node, final DiffIntSet diffPointsTo, final ForeachContext<OnlineNode> worklist) {
         final IntSparseBitVector seen = new IntSparseBitVector();
-        onlineGraph.map(node, new LambdaVoid<OnlineNode>() {
+        onlineGraph.mapNeighbors(node, new IntLambdaVoid() {
             @Override
-            public void call(OnlineNode s) {
-                OnlineNode dst = s.getRep(onlineGraph, FLAG);
+            public void call(int s) {
+                OnlineNode dst = onlineGraph.getNode(s, FLAG).getRep(onlineGraph, FLAG);
                 if (node == dst || !seen.add(dst.id)) {
                     return;
                 }
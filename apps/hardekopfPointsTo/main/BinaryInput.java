@@ -0,0 +1,284 @@
+/*
+ Galois, a framework to exploit amorphous data-parallelism in irregular
+ programs.
+
+ Copyright (C) 2010, The University of Texas at Austin. All rights reserved.
+ UNIVERSITY EXPRESSLY DISCLAIMS ANY AND ALL WARRANTIES CONCERNING THIS SOFTWARE
+ AND DOCUMENTATION, INCLUDING ANY WARRANTIES OF MERCHANTABILITY, FITNESS FOR ANY
+ PARTICULAR PURPOSE, NON-INFRINGEMENT AND WARRANTIES OF PERFORMANCE, AND ANY
+ WARRANTY THAT MIGHT OTHERWISE ARISE FROM COURSE OF DEALING OR USAGE OF TRADE.
+ NO WARRANTY IS EITHER EXPRESS OR IMPLIED WITH RESPECT TO THE USE OF THE
+ SOFTWARE OR DOCUMENTATION. Under no circumstances shall University be liable
+ for incidental, special, indirect, direct or consequential damages or loss of
+ profits, interruption of business, or related expenses which may arise from use
+ of Software or Documentation, including but not limited to those resulting from
+ defects in Software and/or Documentation, or loss or inaccuracy of data of any
+ kind.
+
+ File: BinaryInput.java
+ */
+
+package hardekopfPointsTo.main;
+
+import galois.objects.Mappables;
+import galois.objects.MethodFlag;
+import galois.runtime.GaloisRuntime;
+import util.fn.LambdaVoid;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Binary versions of the node and constraint files, which are read by mapping them in memory instead of parsing
+ * text. All the values are little endian. Layout of the node file:
+ * <pre>
+ * uint64_t version // should be 1
+ * uint64_t numNodes
+ * uint64_t lastObjectNode
+ * uint64_t lastFunctionNode
+ * int32_t[numNodes] objSize // -1 if the id does not correspond to any node
+ * int32_t[numNodes] function // 1 if the node is a function object
+ * </pre>
+ * Layout of the constraint file, where the constraint at position i is the constraint with id i:
+ * <pre>
+ * uint64_t version // should be 1
+ * uint64_t numConstraints
+ * uint64_t[5] count // number of constraints of each type
+ * int32_t[numConstraints] src
+ * int32_t[numConstraints] dst
+ * int32_t[numConstraints] offset
+ * int8_t[numConstraints] type // -1 if there is no constraint with that id
+ * </pre>
+ * Running this class converts the text (gzipped) files of a benchmark to the binary format:
+ * <pre>
+ * BinaryInput input/hardekopfPointsTo/gcc_nodes.txt.gz input/hardekopfPointsTo/gcc_constraints.txt.gz
+ * </pre>
+ * creates <code>gcc_nodes.bin</code> and <code>gcc_constraints.bin</code> in the same directory.
+ */
+final class BinaryInput {
+    static final String EXTENSION = ".bin";
+    private static final long VERSION = 1;
+    private static final int NO_NODE = -1;
+    private static final byte NO_CONSTRAINT = -1;
+    private static final int NUM_TYPES = 5;
+
+    private BinaryInput() {
+    }
+
+    static boolean isBinary(String filename) {
+        return filename.endsWith(EXTENSION);
+    }
+
+    static MultiGraph<OnlineNode> readGraph(String filename) throws Exception {
+        ByteBuffer buf = map(filename, VERSION);
+        int numNodes = checkInt(buf.getLong());
+        OnlineNode.lastObjectNode = checkInt(buf.getLong());
+        final int lastFunctionNode = checkInt(buf.getLong());
+        final IntBuffer objSizes = column(buf, numNodes);
+        final IntBuffer functions = column(buf, numNodes);
+        OnlineNode[] nodes = new OnlineNode[numNodes];
+        final MultiGraph<OnlineNode> ret = new MultiGraph<OnlineNode>(nodes);
+        Statistics.numNodes = numNodes;
+        GaloisRuntime.forall(Mappables.range(0, numNodes, Configuration.getChunkSize(numNodes)), new LambdaVoid<Integer>() {
+            @Override
+            public void call(Integer i) {
+                int id = i;
+                int obj_sz = objSizes.get(id);
+                if (obj_sz == NO_NODE) {
+                    return;
+                }
+                if (id >= OnlineNode.FIRST_VAR_NODE && obj_sz > 0) {
+                    Statistics.objectNodes.incrementAndGet();
+                }
+                OnlineNode node = new OnlineNode(id, obj_sz);
+                node.setFunction(functions.get(id) == 1 && id <= lastFunctionNode);
+                ret.setNode(id, node, MethodFlag.NONE);
+            }
+        });
+        return ret;
+    }
+
+    static Constraint[] readConstraints(String filename, final int numNodes) throws Exception {
+        ByteBuffer buf = map(filename, VERSION);
+        int numConstraints = checkInt(buf.getLong());
+        for (int type = 0; type < NUM_TYPES; type++) {
+            Statistics.initialConstraintCount[type].addAndGet(checkInt(buf.getLong()));
+        }
+        final IntBuffer srcs = column(buf, numConstraints);
+        final IntBuffer dsts = column(buf, numConstraints);
+        final IntBuffer offsets = column(buf, numConstraints);
+        final ByteBuffer types = buf.slice();
+        final Constraint[] constraints = new Constraint[numConstraints];
+        Constraint.constraints = constraints;
+        Statistics.numConstraints = numConstraints;
+        GaloisRuntime.forall(Mappables.range(0, numConstraints, Configuration.getChunkSize(numConstraints)), new LambdaVoid<Integer>() {
+            @Override
+            public void call(Integer i) {
+                int id = i;
+                byte type = types.get(id);
+                if (type == NO_CONSTRAINT) {
+                    return;
+                }
+                int srcId = srcs.get(id);
+                if (srcId >= numNodes || srcId < 0) {
+                    throw new RuntimeException("Invalid src id for the constraint : " + srcId);
+                }
+                int dstId = dsts.get(id);
+                if (dstId >= numNodes || dstId < 0) {
+                    throw new RuntimeException("Invalid dst id for the constraint: " + dstId);
+                }
+                constraints[id] = new Constraint(srcId, dstId, offsets.get(id), type);
+            }
+        });
+        return constraints;
+    }
+
+    static ByteBuffer map(String filename, long expectedVersion) throws IOException {
+        File in = new File(filename);
+        FileInputStream stream = new FileInputStream(in);
+        MappedByteBuffer buf;
+        try {
+            // the mapping remains valid once the channel is closed
+            buf = stream.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, in.length());
+        } finally {
+            stream.close();
+        }
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        long version = buf.getLong();
+        if (version != expectedVersion) {
+            throw new IOException("Unknown version " + version + " of " + filename);
+        }
+        return buf;
+    }
+
+    // returns the next numElements ints of the buffer, and moves past them
+    static IntBuffer column(ByteBuffer buf, int numElements) {
+        IntBuffer ret = buf.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        ret.limit(numElements);
+        buf.position(buf.position() + numElements * 4);
+        return ret;
+    }
+
+    static int checkInt(long x) {
+        assert x <= Integer.MAX_VALUE;
+        assert x >= 0;
+        return (int) x;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: <node_file> <constraint_file>");
+            System.exit(1);
+        }
+        convertNodes(args[0]);
+        convertConstraints(args[1]);
+    }
+
+    private static void convertNodes(String filename) throws IOException {
+        BufferedReader br = open(filename);
+        int numNodes = Integer.parseInt(br.readLine());
+        int lastObjectNode = Integer.parseInt(br.readLine());
+        int lastFunctionNode = Integer.parseInt(br.readLine());
+        int[] objSizes = new int[numNodes];
+        int[] functions = new int[numNodes];
+        Arrays.fill(objSizes, NO_NODE);
+        String line;
+        while ((line = br.readLine()) != null) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] info = line.split(",");
+            int id = Integer.parseInt(info[0]);
+            objSizes[id] = Integer.parseInt(info[1]);
+            functions[id] = Integer.parseInt(info[2]);
+        }
+        br.close();
+        DataOutputStream out = create(filename);
+        writeLong(out, VERSION);
+        writeLong(out, numNodes);
+        writeLong(out, lastObjectNode);
+        writeLong(out, lastFunctionNode);
+        writeInts(out, objSizes);
+        writeInts(out, functions);
+        out.close();
+    }
+
+    private static void convertConstraints(String filename) throws IOException {
+        BufferedReader br = open(filename);
+        String line = br.readLine();
+        int numConstraints = 0;
+        if (line.startsWith("#")) {
+            // second line: number of constraints of each type, separated by comma
+            for (String i : br.readLine().split(",")) {
+                numConstraints += Integer.parseInt(i);
+            }
+        } else {
+            numConstraints = Integer.parseInt(line);
+        }
+        int[] srcs = new int[numConstraints];
+        int[] dsts = new int[numConstraints];
+        int[] offsets = new int[numConstraints];
+        byte[] types = new byte[numConstraints];
+        long[] count = new long[NUM_TYPES];
+        Arrays.fill(types, NO_CONSTRAINT);
+        while ((line = br.readLine()) != null) {
+            if (line.startsWith("#") || line.isEmpty()) {
+                continue;
+            }
+            String[] info = line.split(",");
+            int id = Integer.parseInt(info[0]);
+            srcs[id] = Integer.parseInt(info[1]);
+            dsts[id] = Integer.parseInt(info[2]);
+            types[id] = Byte.parseByte(info[3]);
+            offsets[id] = Integer.parseInt(info[4]);
+            count[types[id]]++;
+        }
+        br.close();
+        DataOutputStream out = create(filename);
+        writeLong(out, VERSION);
+        writeLong(out, numConstraints);
+        for (long c : count) {
+            writeLong(out, c);
+        }
+        writeInts(out, srcs);
+        writeInts(out, dsts);
+        writeInts(out, offsets);
+        out.write(types);
+        out.close();
+    }
+
+    private static BufferedReader open(String filename) throws IOException {
+        return new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(filename))));
+    }
+
+    // X_nodes.txt.gz => X_nodes.bin
+    private static DataOutputStream create(String filename) throws IOException {
+        String outName = filename.substring(0, filename.indexOf('.', filename.lastIndexOf(File.separatorChar) + 1)) + EXTENSION;
+        System.err.println("writing " + outName);
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outName)));
+    }
+
+    // DataOutputStream is big endian
+    static void writeLong(DataOutputStream out, long x) throws IOException {
+        out.writeLong(Long.reverseBytes(x));
+    }
+
+    static void writeInts(DataOutputStream out, int[] xs) throws IOException {
+        for (int x : xs) {
+            out.writeInt(Integer.reverseBytes(x));
+        }
+    }
+}
@@ -22,6 +22,7 @@ package hardekopfPointsTo.main;
 
 import galois.runtime.GaloisRuntime;
 import util.SystemProperties;
+import util.ints.bdd.HybridIntSet;
 
 public final class Configuration {
 
@@ -50,11 +51,61 @@ public final class Configuration {
 
     static final boolean USE_BDD_ADDER;
 
+    // apply the loads and stores with offset. The solutions used for verification were computed without them, so with
+    // offsets the verification only checks that the solution contains them
+    static final boolean USE_OFFSETS;
+
+    // entries of the cache of shifted BDD points-to sets (0 = no cache)
+    static final int SHIFT_CACHE_SIZE;
+
+    // representation of the points-to sets
+    static final PointsToSetKind PTS;
+
+    // store the BDD nodes in primitive arrays (IntBdd) instead of BddNode objects
+    static final boolean USE_INT_BDD;
+
+    // collect the unreachable nodes of the BDD node table once it outgrows its initial size
+    static final boolean USE_BDD_GC;
+
+    // reorder the BDD variables (sifting) every time the node table doubles its size
+    static final boolean USE_BDD_REORDER;
+
     // use Ben's analysis (true) or Wave Analysis (false)
     static final boolean BEN_ANALYSIS = SystemProperties.getBooleanProperty("galois.hardekopfPointsTo.ben", true);
 
+    // wave analysis: detect the cycles and propagate in parallel (true) or with a sequential DFS (false).
+    // The parallel version does more work, so it only pays off with several threads
+    static final boolean USE_PARALLEL_SCC;
+
+    // order of the worklist of the Hardekopf solver
+    static final WorklistOrder ORDER;
+
+    // ranks that only differ in these low bits are not ordered with respect to each other
+    static final int ORDER_SHIFT;
+
+    // run the parallel loops without conflict detection or iteration objects (GaloisRuntime.foreachNoConflict). Off by
+    // default: the gain measured so far is within the noise
+    static final boolean NO_CONFLICT;
+
     static final int NUM_VIRTUAL_THREADS;
 
+    // write the solution to this file (a SolutionSnapshot), to query it or reuse it in later runs
+    static final String SAVE_SNAPSHOT;
+
+    // incremental mode: start from the solution in this snapshot and apply the changes in the delta file
+    static final String LOAD_SNAPSHOT;
+
+    static final String DELTA;
+
+    // accept an incremental result that can differ from that of a full run (HCD enabled in either run)
+    static final boolean INEXACT_INCREMENTAL;
+
+    // demand-driven mode: only compute the points-to of the variables in this file
+    static final String QUERIES;
+
+    // fraction of the representatives that can be needed by the queries before solving exhaustively
+    static final float DEMAND_THRESHOLD;
+
     static final int CHUNK_SIZE = 32;
 
     static final float CAPACITY = 0.75f;
@@ -68,14 +119,35 @@ public final class Configuration {
         PRINT_SOLUTION = false;
         PRINT_SOLUTION_GRAPH = false;
         VERIFY_RESULT = SystemProperties.getIntProperty("galois.hardekopfPointsTo.verify", 2);
-        USE_BDD_ADDER = SystemProperties.getBooleanProperty("galois.hardekopfPointsTo.adder", false);
+        PTS = SystemProperties.getEnumProperty("galois.hardekopfPointsTo.pts", PointsToSetKind.class,
+                SystemProperties.getBooleanProperty("galois.hardekopfPointsTo.intBdd", false) ? PointsToSetKind.INT_BDD : PointsToSetKind.BDD);
+        USE_INT_BDD = PTS == PointsToSetKind.INT_BDD;
+        HybridIntSet.setThreshold(SystemProperties.getIntProperty("galois.hardekopfPointsTo.hybridThreshold", 64));
+        // the adder relations require every points-to set to be a BddSet
+        USE_BDD_ADDER = PTS == PointsToSetKind.BDD && SystemProperties.getBooleanProperty("galois.hardekopfPointsTo.adder", false);
+        // the garbage collector and the reordering are only implemented for BddNode objects
+        USE_BDD_GC = PTS.usesBddNodes() && SystemProperties.getBooleanProperty("galois.hardekopfPointsTo.bddGc", true);
+        USE_BDD_REORDER = PTS.usesBddNodes() && SystemProperties.getBooleanProperty("galois.hardekopfPointsTo.bddReorder", false);
+        USE_PARALLEL_SCC = SystemProperties.getBooleanProperty("galois.hardekopfPointsTo.parallelScc", getNumThreads() > 1);
         USE_HVN = SystemProperties.getBooleanProperty("galois.hardekopfPointsTo.hvn", false);
         USE_HRU = SystemProperties.getBooleanProperty("galois.hardekopfPointsTo.hru", false);
         USE_HCD = SystemProperties.getBooleanProperty("galois.hardekopfPointsTo.hcd", true);
+        USE_OFFSETS = SystemProperties.getBooleanProperty("galois.hardekopfPointsTo.offsets", false);
+        // the cache is keyed by the roots of BddSets
+        SHIFT_CACHE_SIZE = PTS == PointsToSetKind.BDD ? SystemProperties.getIntProperty("galois.hardekopfPointsTo.shiftCache", 1 << 16) : 0;
         // disable unless HVN=HRU=HCD=true
         VERIFY_OFFLINE = (USE_HVN && USE_HRU && USE_HCD) ? VERIFY_RESULT : 0;
+        ORDER = SystemProperties.getEnumProperty("galois.hardekopfPointsTo.order", WorklistOrder.class, WorklistOrder.LRF);
+        ORDER_SHIFT = SystemProperties.getIntProperty("galois.hardekopfPointsTo.orderShift", ORDER.shift);
+        NO_CONFLICT = SystemProperties.getBooleanProperty("galois.hardekopfPointsTo.noConflict", false);
         //  a relatively high decomposition factor works better in practice
         NUM_VIRTUAL_THREADS = getNumThreads() * SystemProperties.getIntProperty("galois.hardekopfPointsTo.od", 8);
+        SAVE_SNAPSHOT = System.getProperty("galois.hardekopfPointsTo.saveSnapshot");
+        LOAD_SNAPSHOT = System.getProperty("galois.hardekopfPointsTo.loadSnapshot");
+        DELTA = System.getProperty("galois.hardekopfPointsTo.delta");
+        INEXACT_INCREMENTAL = SystemProperties.getBooleanProperty("galois.hardekopfPointsTo.inexactIncremental", false);
+        QUERIES = System.getProperty("galois.hardekopfPointsTo.queries");
+        DEMAND_THRESHOLD = (float) SystemProperties.getDoubleProperty("galois.hardekopfPointsTo.demandThreshold", 0.25);
     }
 
     public static String printConfiguration() {
@@ -83,12 +155,36 @@ public final class Configuration {
         res += "hvn= " + USE_HVN;
         res += ", hru= " + USE_HRU;
         res += ", hcd= " + USE_HCD;
+        res += ", pts= " + PTS;
         res += ", bddAdd= " + USE_BDD_ADDER;
+        res += ", offsets= " + USE_OFFSETS;
+        res += ", shiftCache= " + SHIFT_CACHE_SIZE;
+        res += ", bddGc= " + USE_BDD_GC;
+        res += ", bddReorder= " + USE_BDD_REORDER;
+        res += ", noConflict= " + NO_CONFLICT;
         res += ", alg= " + (BEN_ANALYSIS ? "hardekopf" : "wave prop.");
+        if (BEN_ANALYSIS) {
+            res += ", order= " + ORDER;
+            if (ORDER != WorklistOrder.FIFO) {
+                res += ", orderShift= " + ORDER_SHIFT;
+            }
+        } else {
+            res += ", parallelScc= " + USE_PARALLEL_SCC;
+        }
+        if (isIncremental()) {
+            res += ", snapshot= " + LOAD_SNAPSHOT + ", delta= " + DELTA + ", inexactIncremental= " + INEXACT_INCREMENTAL;
+        }
+        if (QUERIES != null) {
+            res += ", queries= " + QUERIES + ", demandThreshold= " + DEMAND_THRESHOLD;
+        }
         res += "}";
         return res;
     }
 
+    static boolean isIncremental() {
+        return LOAD_SNAPSHOT != null;
+    }
+
     static int getChunkSize(final int size) {
         return Math.max(size / NUM_VIRTUAL_THREADS, 1);
     }
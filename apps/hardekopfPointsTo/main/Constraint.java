@@ -20,15 +20,12 @@
 
 package hardekopfPointsTo.main;
 
+import galois.objects.LineCursor;
 import galois.objects.Mappables;
+import galois.objects.StreamLineMapper;
 import galois.runtime.GaloisRuntime;
 import util.fn.LambdaVoid;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
-import java.io.InputStreamReader;
-import java.util.zip.GZIPInputStream;
-
 /**
  * There are 5 types of constraints in Andersen's analysis:
  * Address-of (Base): D = &S
@@ -87,13 +84,16 @@ public class Constraint {
     }
 
     public static Constraint[] readConstraints(String filename, final int numNodes) throws Exception {
-        BufferedReader br = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(filename))));
-        String strLine = br.readLine();
+        if (BinaryInput.isBinary(filename)) {
+            return BinaryInput.readConstraints(filename, numNodes);
+        }
+        StreamLineMapper lines = Mappables.fromStream(Main.openGzip(filename));
+        String strLine = lines.readLine();
         boolean newFormat = strLine.startsWith("#");
         int numConstraints = 0;
         if (newFormat) {
             // second line: number of constraints of each type, separated by comma
-            strLine = br.readLine();
+            strLine = lines.readLine();
             String[] info = strLine.split(",");
             for (String i : info) {
                 numConstraints += Integer.parseInt(i);
@@ -103,26 +103,25 @@ public class Constraint {
         }
         constraints = new Constraint[numConstraints];
         Statistics.numConstraints = numConstraints;
-        GaloisRuntime.forall(Mappables.fromReader(br), new LambdaVoid<String>() {
+        GaloisRuntime.forall(lines, new LambdaVoid<LineCursor>() {
             @Override
-            public void call(String line) {
-                if (line.startsWith("#") || line.isEmpty()) {
+            public void call(LineCursor line) {
+                if (line.startsWith('#') || line.isEmpty()) {
                     // ignore comments and blank lines
                     return;
                 }
-                String[] info = line.split(",");
-                int id = Integer.parseInt(info[0]);
-                int srcId = Integer.parseInt(info[1]);
+                int id = line.nextInt();
+                int srcId = line.nextInt();
                 if (srcId >= numNodes || srcId < 0) {
                     throw new RuntimeException("Invalid src id for the constraint : " + srcId);
                 }
-                int dstId = Integer.parseInt(info[2]);
+                int dstId = line.nextInt();
                 if (dstId >= numNodes || dstId < 0) {
                     throw new RuntimeException("Invalid dst id for the constraint: " + dstId);
                 }
-                byte type = Byte.parseByte(info[3]);
+                byte type = (byte) line.nextInt();
                 Statistics.initialConstraintCount[type].incrementAndGet();
-                int offset = Integer.parseInt(info[4]);
+                int offset = line.nextInt();
                 Constraint cons = new Constraint(srcId, dstId, offset, type);
                 constraints[id] = cons;
             }
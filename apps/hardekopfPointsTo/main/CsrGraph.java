@@ -0,0 +1,189 @@
+/*
+ Galois, a framework to exploit amorphous data-parallelism in irregular
+ programs.
+
+ Copyright (C) 2010, The University of Texas at Austin. All rights reserved.
+ UNIVERSITY EXPRESSLY DISCLAIMS ANY AND ALL WARRANTIES CONCERNING THIS SOFTWARE
+ AND DOCUMENTATION, INCLUDING ANY WARRANTIES OF MERCHANTABILITY, FITNESS FOR ANY
+ PARTICULAR PURPOSE, NON-INFRINGEMENT AND WARRANTIES OF PERFORMANCE, AND ANY
+ WARRANTY THAT MIGHT OTHERWISE ARISE FROM COURSE OF DEALING OR USAGE OF TRADE.
+ NO WARRANTY IS EITHER EXPRESS OR IMPLIED WITH RESPECT TO THE USE OF THE
+ SOFTWARE OR DOCUMENTATION. Under no circumstances shall University be liable
+ for incidental, special, indirect, direct or consequential damages or loss of
+ profits, interruption of business, or related expenses which may arise from use
+ of Software or Documentation, including but not limited to those resulting from
+ defects in Software and/or Documentation, or loss or inaccuracy of data of any
+ kind.
+
+ File: CsrGraph.java
+ */
+
+package hardekopfPointsTo.main;
+
+import galois.objects.Mappables;
+import galois.runtime.GaloisRuntime;
+import util.fn.LambdaVoid;
+import util.ints.IntSetIterator;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Edges of the offline graph in compressed sparse row format: for every domain, the neighbors of node n are
+ * <code>targets[offsets[n]] .. targets[offsets[n + 1] - 1]</code>, sorted. The edges of a domain are built at once
+ * (with a parallel counting sort) and never change afterwards.
+ * <p/>
+ * Nodes can still be merged: every node belongs to a circular list of the nodes it has been merged with, and the
+ * neighbors of any of them are those of the whole list. No neighbor is returned twice for the same node, but it can be
+ * returned once per node of the list.
+ */
+final class CsrGraph {
+    private final int numNodes;
+    private final int[][] offsets;
+    private final int[][] targets;
+    // next node in the list of merged nodes
+    private final int[] nextMember;
+    // offsets of a domain without edges
+    private final int[] noOffsets;
+
+    CsrGraph(int numNodes, int numDomains) {
+        this.numNodes = numNodes;
+        offsets = new int[numDomains][];
+        targets = new int[numDomains][];
+        nextMember = new int[numNodes];
+        noOffsets = new int[numNodes + 1];
+        for (int i = 0; i < numNodes; i++) {
+            nextMember[i] = i;
+        }
+    }
+
+    /**
+     * Creates the edges of a domain. Entry i represents the edge from <code>nodes[i]</code> to
+     * <code>neighbors[i]</code>, and is ignored if <code>nodes[i]</code> is negative. Duplicated edges are allowed.
+     */
+    void build(byte domain, final int[] nodes, final int[] neighbors) throws ExecutionException {
+        assert offsets[domain] == null;
+        final int numEntries = nodes.length;
+        final AtomicIntegerArray degree = new AtomicIntegerArray(numNodes);
+        GaloisRuntime.forall(Mappables.range(0, numEntries, Configuration.getChunkSize(numEntries)), new LambdaVoid<Integer>() {
+            @Override
+            public void call(Integer i) {
+                int n = nodes[i];
+                if (n >= 0) {
+                    degree.incrementAndGet(n);
+                }
+            }
+        });
+        final int[] domainOffsets = new int[numNodes + 1];
+        for (int n = 0; n < numNodes; n++) {
+            domainOffsets[n + 1] = domainOffsets[n] + degree.get(n);
+        }
+        // degree now holds the next free position of every node
+        for (int n = 0; n < numNodes; n++) {
+            degree.set(n, domainOffsets[n]);
+        }
+        final int[] domainTargets = new int[domainOffsets[numNodes]];
+        GaloisRuntime.forall(Mappables.range(0, numEntries, Configuration.getChunkSize(numEntries)), new LambdaVoid<Integer>() {
+            @Override
+            public void call(Integer i) {
+                int n = nodes[i];
+                if (n >= 0) {
+                    domainTargets[degree.getAndIncrement(n)] = neighbors[i];
+                }
+            }
+        });
+        GaloisRuntime.forall(Mappables.range(0, numNodes, Configuration.getChunkSize(numNodes)), new LambdaVoid<Integer>() {
+            @Override
+            public void call(Integer n) {
+                int from = domainOffsets[n];
+                int to = domainOffsets[n + 1];
+                if (to - from > 1) {
+                    Arrays.sort(domainTargets, from, to);
+                }
+            }
+        });
+        offsets[domain] = domainOffsets;
+        targets[domain] = domainTargets;
+    }
+
+    /**
+     * Joins the lists of merged nodes of both nodes, which have not been merged yet.
+     */
+    void merge(int n1, int n2) {
+        int next1 = nextMember[n1];
+        nextMember[n1] = nextMember[n2];
+        nextMember[n2] = next1;
+    }
+
+    /**
+     * @return the neighbors in the given domain of the node and the nodes merged with it. If the domain was not built,
+     *         there are no neighbors.
+     */
+    IntSetIterator neighbors(int n, byte domain) {
+        if (offsets[domain] == null) {
+            return new NeighborIterator(n, noOffsets, null);
+        }
+        return new NeighborIterator(n, offsets[domain], targets[domain]);
+    }
+
+    private final class NeighborIterator implements IntSetIterator {
+        private final int first;
+        private final int[] domainOffsets;
+        private final int[] domainTargets;
+        private int member;
+        private int pos;
+        private int end;
+        private boolean done;
+
+        NeighborIterator(int first, int[] domainOffsets, int[] domainTargets) {
+            this.first = first;
+            this.domainOffsets = domainOffsets;
+            this.domainTargets = domainTargets;
+            member = first;
+            pos = domainOffsets[first];
+            end = domainOffsets[first + 1];
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (pos == end) {
+                if (done) {
+                    return false;
+                }
+                member = nextMember[member];
+                if (member == first) {
+                    done = true;
+                    return false;
+                }
+                pos = domainOffsets[member];
+                end = domainOffsets[member + 1];
+            }
+            return true;
+        }
+
+        @Override
+        public Integer next() {
+            return nextInt();
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int ret = domainTargets[pos++];
+            // skip the duplicates, which are contiguous
+            while (pos < end && domainTargets[pos] == ret) {
+                pos++;
+            }
+            return ret;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ Galois, a framework to exploit amorphous data-parallelism in irregular
+ programs.
+
+ Copyright (C) 2010, The University of Texas at Austin. All rights reserved.
+ UNIVERSITY EXPRESSLY DISCLAIMS ANY AND ALL WARRANTIES CONCERNING THIS SOFTWARE
+ AND DOCUMENTATION, INCLUDING ANY WARRANTIES OF MERCHANTABILITY, FITNESS FOR ANY
+ PARTICULAR PURPOSE, NON-INFRINGEMENT AND WARRANTIES OF PERFORMANCE, AND ANY
+ WARRANTY THAT MIGHT OTHERWISE ARISE FROM COURSE OF DEALING OR USAGE OF TRADE.
+ NO WARRANTY IS EITHER EXPRESS OR IMPLIED WITH RESPECT TO THE USE OF THE
+ SOFTWARE OR DOCUMENTATION. Under no circumstances shall University be liable
+ for incidental, special, indirect, direct or consequential damages or loss of
+ profits, interruption of business, or related expenses which may arise from use
+ of Software or Documentation, including but not limited to those resulting from
+ defects in Software and/or Documentation, or loss or inaccuracy of data of any
+ kind.
+
+ File: Demand.java
+ */
+
+package hardekopfPointsTo.main;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntIntHashMap;
+import util.MutableBoolean;
+import util.fn.IntLambdaVoid;
+import util.ints.IntSetIterator;
+import util.ints.IntSparseBitVector;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Logger;
+
+import static galois.objects.MethodFlag.NONE;
+
+/**
+ * Demand-driven analysis: computes the points-to of a few query variables by solving only the constraints they depend
+ * on. A node is needed if it is a query, or its points-to flows into a needed node:
+ * <ul>
+ * <li>the source of a copy, load or gep whose destination is needed</li>
+ * <li>the pointees (or their fields, if the load has an offset) of the source of a needed load</li>
+ * <li>the source of a store whose pointer points to a needed node. To know that, the pointer has to be needed too,
+ * but only if it might point to the node according to a (much cheaper) {@link Unification} analysis</li>
+ * <li>the target of the HCD table entry of a needed node, and the nodes merged with a needed node</li>
+ * </ul>
+ * Some of these depend on the points-to of the needed nodes, so the constraints are loaded in rounds: after solving
+ * the constraint graph, the needed nodes found with the new points-to contribute the constraints of the next round.
+ * The solution of the previous rounds is kept, since the analysis is monotone.
+ * <p/>
+ * If the number of needed nodes exceeds a fraction of the representatives, every constraint is loaded and the rest of
+ * the analysis is exhaustive.
+ */
+final class Demand {
+    public static final Logger LOGGER = Logger.getLogger("test.hardekopfPointsTo");
+    private static final byte DEFINITIONS = 0;
+    private static final byte STORES = 1;
+
+    private final MultiGraph<OnlineNode> onlineGraph;
+    private final TIntIntHashMap hcdTable;
+    private final int[] queries;
+    private final boolean[] isQuery;
+    private final int numNodes;
+    private final int maxNeeded;
+    private final Unification unification;
+    // constraints that write the points-to of every node (all but the stores), by destination, and stores by the
+    // unification class of the nodes they might write to
+    private final CsrGraph index;
+    private final boolean[] needed;
+    private int numNeeded;
+    private final TIntArrayList pending;
+    // unification classes containing a needed node
+    private final boolean[] neededClasses;
+    // stores whose pointer is needed
+    private final TIntArrayList neededStores;
+    // loads already in the constraint graph
+    private final List<Constraint> loads;
+    // constraints for the next round
+    private final TIntArrayList toLoad;
+    private final boolean[] queued;
+    private boolean exhaustive;
+
+    Demand(MultiGraph<OnlineNode> onlineGraph, TIntIntHashMap hcdTable, int[] queries) throws ExecutionException {
+        this.onlineGraph = onlineGraph;
+        this.hcdTable = hcdTable;
+        this.queries = queries;
+        numNodes = onlineGraph.size();
+        isQuery = new boolean[numNodes];
+        for (int query : queries) {
+            if (query < 0 || query >= numNodes || onlineGraph.getNode(query, NONE) == null) {
+                throw new IllegalArgumentException("Invalid query variable: " + query);
+            }
+            isQuery[query] = true;
+        }
+        maxNeeded = (int) (Configuration.DEMAND_THRESHOLD * Statistics.repNodes);
+        Constraint[] constraints = Constraint.constraints;
+        unification = new Unification(onlineGraph, constraints);
+        int[] definitionNodes = new int[constraints.length];
+        int[] storeNodes = new int[constraints.length];
+        int[] ids = new int[constraints.length];
+        for (int i = 0; i < constraints.length; i++) {
+            Constraint constraint = constraints[i];
+            definitionNodes[i] = -1;
+            storeNodes[i] = -1;
+            ids[i] = i;
+            if (constraint == null) {
+                continue;
+            }
+            if (constraint.type == Constraint.STORE) {
+                // -1 if the pointer does not point to anything
+                storeNodes[i] = unification.findPointee(constraint.dst);
+            } else {
+                definitionNodes[i] = constraint.dst;
+            }
+        }
+        index = new CsrGraph(Math.max(numNodes, unification.size()), STORES + 1);
+        index.build(DEFINITIONS, definitionNodes, ids);
+        index.build(STORES, storeNodes, ids);
+        needed = new boolean[numNodes];
+        pending = new TIntArrayList();
+        neededClasses = new boolean[unification.size()];
+        neededStores = new TIntArrayList();
+        loads = new ArrayList<Constraint>();
+        toLoad = new TIntArrayList();
+        queued = new boolean[constraints.length];
+    }
+
+    /**
+     * Reads the ids of the query variables, separated by commas or white space. Lines starting with <code>#</code> are
+     * ignored.
+     */
+    static int[] readQueries(String filename) throws IOException {
+        BufferedReader br = new BufferedReader(new FileReader(filename));
+        TIntArrayList ret = new TIntArrayList();
+        String line;
+        while ((line = br.readLine()) != null) {
+            if (line.startsWith("#")) {
+                continue;
+            }
+            for (String id : line.split("[,\\s]+")) {
+                if (!id.isEmpty()) {
+                    ret.add(Integer.parseInt(id));
+                }
+            }
+        }
+        br.close();
+        return ret.toArray();
+    }
+
+    boolean isQuery(int n) {
+        return isQuery[n];
+    }
+
+    /**
+     * Prints the points-to of every query, in the format of the solution files.
+     */
+    void printResults(PrintStream out) {
+        for (int query : queries) {
+            out.println("[" + query + "] => " + onlineGraph.getNode(getRep(query), NONE).pointsTo);
+        }
+    }
+
+    void solve(Andersen andersen) throws Exception {
+        for (int query : queries) {
+            need(getRep(query));
+        }
+        computeNeeded();
+        int rounds = 0;
+        while (!toLoad.isEmpty()) {
+            rounds++;
+            List<OnlineNode> worklist = load(andersen);
+            if (!worklist.isEmpty()) {
+                andersen.solve(worklist);
+            }
+            if (exhaustive) {
+                break;
+            }
+            expand();
+        }
+        LOGGER.info("demand: " + queries.length + " queries, " + rounds + " rounds, " + numNeeded + " nodes needed"
+                + (exhaustive ? " (threshold exceeded, solved exhaustively)" : ""));
+    }
+
+    private int getRep(int n) {
+        return onlineGraph.getNode(n, NONE).getRep(onlineGraph, NONE).id;
+    }
+
+    private void need(int n) {
+        if (!needed[n]) {
+            needed[n] = true;
+            numNeeded++;
+            pending.add(n);
+        }
+    }
+
+    // finds the constraints of the new needed nodes, and the nodes needed to solve them
+    private void computeNeeded() {
+        Constraint[] constraints = Constraint.constraints;
+        while (!pending.isEmpty()) {
+            int n = pending.removeAt(pending.size() - 1);
+            IntSetIterator ids = index.neighbors(n, DEFINITIONS);
+            while (ids.hasNext()) {
+                int id = ids.nextInt();
+                Constraint constraint = constraints[id];
+                if (constraint == null) {
+                    continue;
+                }
+                queue(id);
+                if (constraint.type != Constraint.ADDR_OF) {
+                    need(constraint.src);
+                }
+            }
+            int hv = hcdTable.get(n);
+            if (hv > 0) {
+                need(hv);
+            }
+            int nodeClass = unification.find(n);
+            if (n <= OnlineNode.lastObjectNode && !neededClasses[nodeClass]) {
+                neededClasses[nodeClass] = true;
+                ids = index.neighbors(nodeClass, STORES);
+                while (ids.hasNext()) {
+                    int id = ids.nextInt();
+                    Constraint store = constraints[id];
+                    if (store != null) {
+                        neededStores.add(id);
+                        need(store.dst);
+                    }
+                }
+            }
+        }
+        if (numNeeded > maxNeeded && !exhaustive) {
+            exhaustive = true;
+            for (int i = 0; i < constraints.length; i++) {
+                if (constraints[i] != null) {
+                    queue(i);
+                }
+            }
+        }
+    }
+
+    // finds the nodes needed because of the points-to computed in the last round
+    private void expand() {
+        Constraint[] constraints = Constraint.constraints;
+        int lastNumNeeded;
+        do {
+            lastNumNeeded = numNeeded;
+            for (final Constraint load : loads) {
+                onlineGraph.getNode(load.src, NONE).getRep(onlineGraph, NONE).pointsTo.mapInt(new IntLambdaVoid() {
+                    @Override
+                    public void call(int pointee) {
+                        int field = getField(pointee, load.offset);
+                        if (field != -1 && field != OnlineNode.I2P) {
+                            need(field);
+                        }
+                    }
+                });
+            }
+            for (int i = 0; i < neededStores.size(); i++) {
+                int id = neededStores.getQuick(i);
+                Constraint store = constraints[id];
+                if (store != null && !queued[id] && mayWriteToNeeded(store.dst, store.offset)) {
+                    queue(id);
+                    need(store.src);
+                }
+            }
+            // the members of a merged node share its points-to
+            for (int n = 0; n < numNodes; n++) {
+                if (needed[n] && onlineGraph.getNode(n, NONE) != null) {
+                    need(getRep(n));
+                }
+            }
+            for (int n = 0; n < numNodes; n++) {
+                if (!needed[n] && onlineGraph.getNode(n, NONE) != null && needed[getRep(n)]) {
+                    need(n);
+                }
+            }
+            computeNeeded();
+        } while (numNeeded != lastNumNeeded && !exhaustive);
+    }
+
+    private void queue(int id) {
+        if (!queued[id]) {
+            queued[id] = true;
+            toLoad.add(id);
+        }
+    }
+
+    private boolean mayWriteToNeeded(int pointer, final int offset) {
+        final MutableBoolean ret = new MutableBoolean(false);
+        onlineGraph.getNode(pointer, NONE).getRep(onlineGraph, NONE).pointsTo.mapInt(new IntLambdaVoid() {
+            @Override
+            public void call(int pointee) {
+                int field = getField(pointee, offset);
+                if (field != -1 && needed[field]) {
+                    ret.set(true);
+                }
+            }
+        });
+        return ret.get();
+    }
+
+    // the representative of the field at the given offset of the object, or -1 if the object is not that big
+    private int getField(int obj, int offset) {
+        if (offset > 0 && onlineGraph.getNode(obj, NONE).getObjSize() <= offset) {
+            return -1;
+        }
+        return getRep(obj + offset);
+    }
+
+    // adds the constraints of the round to the graph, and reapplies the rules of the nodes that were already solved
+    private List<OnlineNode> load(Andersen andersen) throws Exception {
+        Constraint[] constraints = Constraint.constraints;
+        TIntArrayList ids = new TIntArrayList(toLoad.size());
+        List<Constraint> loaded = new ArrayList<Constraint>(toLoad.size());
+        for (int i = 0; i < toLoad.size(); i++) {
+            int id = toLoad.getQuick(i);
+            Constraint constraint = constraints[id];
+            // the nodes might have been merged since the offline phase
+            constraint.dst = getRep(constraint.dst);
+            if (constraint.type != Constraint.ADDR_OF) {
+                constraint.src = getRep(constraint.src);
+            }
+            if (constraint.type == Constraint.COPY && constraint.src == constraint.dst) {
+                constraints[id] = null;
+                continue;
+            }
+            if (constraint.type == Constraint.LOAD) {
+                loads.add(constraint);
+            }
+            ids.add(id);
+            loaded.add(constraint);
+        }
+        toLoad.resetQuick();
+        List<OnlineNode> ret = andersen.loadContraints(ids);
+        IntSparseBitVector seen = new IntSparseBitVector();
+        for (Constraint constraint : loaded) {
+            if (constraint.type == Constraint.ADDR_OF) {
+                continue;
+            }
+            int owner = constraint.type == Constraint.STORE ? constraint.dst : constraint.src;
+            if (seen.add(owner)) {
+                OnlineNode node = onlineGraph.getNode(owner, NONE);
+                if (node.reprocessPointsTo() && node.addToWorklist()) {
+                    ret.add(node);
+                }
+            }
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,678 @@
+/*
+ Galois, a framework to exploit amorphous data-parallelism in irregular
+ programs.
+
+ Copyright (C) 2010, The University of Texas at Austin. All rights reserved.
+ UNIVERSITY EXPRESSLY DISCLAIMS ANY AND ALL WARRANTIES CONCERNING THIS SOFTWARE
+ AND DOCUMENTATION, INCLUDING ANY WARRANTIES OF MERCHANTABILITY, FITNESS FOR ANY
+ PARTICULAR PURPOSE, NON-INFRINGEMENT AND WARRANTIES OF PERFORMANCE, AND ANY
+ WARRANTY THAT MIGHT OTHERWISE ARISE FROM COURSE OF DEALING OR USAGE OF TRADE.
+ NO WARRANTY IS EITHER EXPRESS OR IMPLIED WITH RESPECT TO THE USE OF THE
+ SOFTWARE OR DOCUMENTATION. Under no circumstances shall University be liable
+ for incidental, special, indirect, direct or consequential damages or loss of
+ profits, interruption of business, or related expenses which may arise from use
+ of Software or Documentation, including but not limited to those resulting from
+ defects in Software and/or Documentation, or loss or inaccuracy of data of any
+ kind.
+
+ File: Incremental.java
+ */
+
+package hardekopfPointsTo.main;
+
+import galois.objects.Mappables;
+import galois.runtime.ForeachContext;
+import galois.runtime.GaloisRuntime;
+import gnu.trove.list.array.TIntArrayList;
+import util.ThreadTimer;
+import util.concurrent.ConcurrentGrowingList;
+import util.fn.IntLambdaVoid;
+import util.fn.LambdaVoid;
+import util.ints.DiffIntSet;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Logger;
+
+import static galois.objects.MethodFlag.NONE;
+
+/**
+ * Incremental re-solve: instead of analyzing the program from scratch, start from the solution of a previous run (the
+ * {@link SolutionSnapshot}) and apply a delta of added and removed constraints.
+ * <p/>
+ * The delta is a text file (gzipped if its name ends in <code>.gz</code>) with one constraint per line in the
+ * <code>src,dst,type,offset</code> format of the constraint files, preceded by <code>+</code> if the constraint is
+ * added or <code>-</code> if it is removed. Lines starting with <code>#</code> are ignored.
+ * <p/>
+ * The analysis is monotone, so the old points-to of a node is still part of the new one unless it was derived from a
+ * removed constraint. The nodes whose points-to might have been derived from one (the cone of the removed
+ * constraints) start from scratch. The rest keep their points-to and, if they were merged because they were part of a
+ * cycle, their representative. Only the nodes that feed the new constraints or the cone are put in the worklist.
+ * <p/>
+ * The copy edges that the old solution derived from the loads and stores are not rebuilt upfront. As long as the
+ * points-to of their source does not change, the old points-to of their destination already contains what they carry,
+ * so the edges out of a node are restored when the solver first finds its points-to growing. They are looked up
+ * through the snapshot: the sets that contain an object, the loads that dereference every set, and the stores of
+ * every source. Only the edges into the cone are restored before solving.
+ * <p/>
+ * There is no offline phase. HCD merges offline cycles that can go through the dereference of an empty pointer, so
+ * the result of a full run with HCD can be less precise than the incremental one, and an old solution computed with
+ * HCD carries that imprecision into the new one. Unless told otherwise, the incremental mode refuses to run if HCD is
+ * enabled or the snapshot was computed with it.
+ */
+final class Incremental {
+    public static final Logger LOGGER = Logger.getLogger("test.hardekopfPointsTo");
+
+    private final MultiGraph<OnlineNode> onlineGraph;
+    private final int numNodes;
+    private final SolutionSnapshot snapshot;
+    // constraints of the previous run that are still there, and the new ones
+    private final List<Constraint> kept, added;
+    private final int numRemoved;
+    // constraints of the previous run, null if removed. The indexes below refer to them
+    private final Constraint[] oldConstraints;
+    // the sets of the snapshot that contain every object
+    private final Index objSets;
+    // loads indexed by the set of SRC, and stores indexed by SRC
+    private final Index loadsBySet, storesBySrc;
+    // distinct offsets of the loads
+    private final TIntArrayList loadOffsets;
+    // nodes whose points-to might shrink because of the removed constraints
+    private final boolean[] cone;
+    private int coneSize;
+    // nodes whose derived copy edges have been restored
+    private final AtomicIntegerArray restored;
+    // nodes merged into a representative whose derived copy edges might not have been restored yet
+    private final AtomicReferenceArray<TIntArrayList> members;
+
+    Incremental(String snapshotFile, String deltaFile, MultiGraph<OnlineNode> onlineGraph) throws IOException {
+        this.onlineGraph = onlineGraph;
+        snapshot = new SolutionSnapshot(snapshotFile);
+        numNodes = snapshot.size();
+        if (numNodes != onlineGraph.size()) {
+            throw new IllegalStateException("The snapshot contains a number of variables different to the one in the input: "
+                    + numNodes + " != " + onlineGraph.size());
+        }
+        if ((Configuration.USE_HCD || !snapshot.getHcdTable().isEmpty()) && !Configuration.INEXACT_INCREMENTAL) {
+            throw new IllegalArgumentException("The incremental result can differ from that of a full run when HCD is"
+                    + " enabled: solve both runs with galois.hardekopfPointsTo.hcd=false, or set"
+                    + " galois.hardekopfPointsTo.inexactIncremental=true to accept the difference");
+        }
+        added = new ArrayList<Constraint>();
+        List<Constraint> removed = new ArrayList<Constraint>();
+        readDelta(deltaFile, added, removed);
+        numRemoved = removed.size();
+        Constraint[] constraints = Constraint.constraints;
+        int[] removedIds = findConstraints(constraints, removed);
+        oldConstraints = constraints;
+        objSets = new Index(numNodes);
+        indexSets();
+        int numSets = snapshot.numSets();
+        loadsBySet = new Index(numSets);
+        storesBySrc = new Index(numNodes);
+        loadOffsets = new TIntArrayList();
+        indexConstraints();
+        // the cone depends on how the old solution was derived, so it is computed before removing anything
+        cone = new boolean[numNodes];
+        computeCone(removed);
+        for (int id : removedIds) {
+            constraints[id] = null;
+        }
+        kept = new ArrayList<Constraint>(constraints.length);
+        for (Constraint constraint : constraints) {
+            if (constraint != null) {
+                kept.add(constraint);
+            }
+        }
+        Constraint[] newConstraints = Arrays.copyOf(constraints, constraints.length + added.size());
+        for (int i = 0; i < added.size(); i++) {
+            newConstraints[constraints.length + i] = added.get(i);
+        }
+        Constraint.constraints = newConstraints;
+        Statistics.numConstraints = newConstraints.length;
+        // there is no offline phase, so these statistics have to be filled here (they size the BDD node table)
+        for (Constraint constraint : newConstraints) {
+            if (constraint != null) {
+                Statistics.reducedConstraintCount[constraint.type]++;
+                Statistics.reducedConstraintCount[5]++;
+            }
+        }
+        Statistics.repValNodes = numNodes;
+        Statistics.repNodes = numNodes;
+        restored = new AtomicIntegerArray(numNodes);
+        members = new AtomicReferenceArray<TIntArrayList>(numNodes);
+    }
+
+    private void readDelta(String filename, List<Constraint> added, List<Constraint> removed) throws IOException {
+        if (filename == null) {
+            return;
+        }
+        InputStream in = filename.endsWith(".gz") ? Main.openGzip(filename) : new FileInputStream(filename);
+        BufferedReader br = new BufferedReader(new InputStreamReader(in));
+        String line;
+        while ((line = br.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            char op = line.charAt(0);
+            if (op != '+' && op != '-') {
+                throw new IOException("Invalid line in " + filename + ": " + line);
+            }
+            String[] info = line.substring(1).trim().split(",");
+            int srcId = Integer.parseInt(info[0].trim());
+            int dstId = Integer.parseInt(info[1].trim());
+            if (srcId >= numNodes || srcId < 0 || dstId >= numNodes || dstId < 0) {
+                throw new IOException("Invalid node id in " + filename + ": " + line);
+            }
+            byte type = Byte.parseByte(info[2].trim());
+            int offset = Integer.parseInt(info[3].trim());
+            Constraint constraint = new Constraint(srcId, dstId, offset, type);
+            if (op == '+') {
+                added.add(constraint);
+            } else {
+                removed.add(constraint);
+            }
+        }
+        br.close();
+    }
+
+    private static int[] findConstraints(Constraint[] constraints, List<Constraint> removed) {
+        // the input can contain the same constraint several times, and each removal takes one of them
+        HashMap<Constraint, TIntArrayList> ids = new HashMap<Constraint, TIntArrayList>(constraints.length);
+        for (int i = 0; i < constraints.length; i++) {
+            if (constraints[i] != null) {
+                TIntArrayList sameIds = ids.get(constraints[i]);
+                ids.put(constraints[i], add(sameIds, i));
+            }
+        }
+        int[] ret = new int[removed.size()];
+        for (int i = 0; i < ret.length; i++) {
+            TIntArrayList sameIds = ids.get(removed.get(i));
+            if (sameIds == null || sameIds.isEmpty()) {
+                throw new IllegalArgumentException("The constraint to remove does not exist: " + removed.get(i));
+            }
+            ret[i] = sameIds.removeAt(sameIds.size() - 1);
+        }
+        return ret;
+    }
+
+    // inverts the sets of the snapshot
+    private void indexSets() {
+        int numSets = snapshot.numSets();
+        for (int i = 0; i < numSets; i++) {
+            snapshot.mapSet(i, new IntLambdaVoid() {
+                @Override
+                public void call(int obj) {
+                    objSets.count(obj);
+                }
+            });
+        }
+        objSets.allocate();
+        for (int i = 0; i < numSets; i++) {
+            final int set = i;
+            snapshot.mapSet(set, new IntLambdaVoid() {
+                @Override
+                public void call(int obj) {
+                    objSets.add(obj, set);
+                }
+            });
+        }
+    }
+
+    private void indexConstraints() {
+        // the first pass counts the entries of every key, and the second one fills them
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < oldConstraints.length; i++) {
+                Constraint constraint = oldConstraints[i];
+                if (constraint == null || isIgnored(constraint)) {
+                    continue;
+                }
+                if (constraint.type == Constraint.LOAD) {
+                    loadsBySet.put(pass, snapshot.getSet(constraint.src), i);
+                    if (pass == 0 && !loadOffsets.contains(constraint.offset)) {
+                        loadOffsets.add(constraint.offset);
+                    }
+                } else if (constraint.type == Constraint.STORE) {
+                    storesBySrc.put(pass, constraint.src, i);
+                }
+            }
+            if (pass == 0) {
+                loadsBySet.allocate();
+                storesBySrc.allocate();
+            }
+        }
+    }
+
+    /**
+     * Applies the function to the id of every load DST = *(SRC + off) that read the given field in the old solution:
+     * the old points-to of SRC contains an object OBJ such that OBJ + off is the field.
+     */
+    private void mapLoads(int field, IntLambdaVoid fn) {
+        for (int i = 0; i < loadOffsets.size(); i++) {
+            int offset = loadOffsets.getQuick(i);
+            int obj = field - offset;
+            if (obj < 0 || objSets.isEmpty(obj)
+                    || (offset > 0 && onlineGraph.getNode(obj, NONE).getObjSize() <= offset)) {
+                continue;
+            }
+            for (int j = objSets.start[obj]; j < objSets.start[obj + 1]; j++) {
+                int set = objSets.values[j];
+                for (int k = loadsBySet.start[set]; k < loadsBySet.start[set + 1]; k++) {
+                    int id = loadsBySet.values[k];
+                    Constraint constraint = oldConstraints[id];
+                    if (constraint != null && constraint.offset == offset) {
+                        fn.call(id);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks the nodes whose old points-to might have been derived from a removed constraint: the nodes reachable from
+     * the removed constraints in the graph where n -> m if the points-to of m was computed using that of n.
+     */
+    private void computeCone(List<Constraint> removed) {
+        if (removed.isEmpty()) {
+            return;
+        }
+        // DST = SRC, DST = SRC + off, DST = *(SRC + off)
+        TIntArrayList[] succs = new TIntArrayList[numNodes];
+        // *(DST + off) = SRC: DST -> OBJ + off for every OBJ in the points-to of DST. The offsets are indexed by DST
+        TIntArrayList[] dstOffsets = new TIntArrayList[numNodes];
+        for (Constraint constraint : oldConstraints) {
+            if (constraint == null || isIgnored(constraint)) {
+                continue;
+            }
+            int dst = constraint.dst;
+            if (constraint.type == Constraint.COPY || constraint.type == Constraint.GEP
+                    || constraint.type == Constraint.LOAD) {
+                succs[constraint.src] = add(succs[constraint.src], dst);
+            } else if (constraint.type == Constraint.STORE) {
+                if (dstOffsets[dst] == null || !dstOffsets[dst].contains(constraint.offset)) {
+                    dstOffsets[dst] = add(dstOffsets[dst], constraint.offset);
+                }
+            }
+        }
+        final TIntArrayList stack = new TIntArrayList();
+        for (Constraint constraint : removed) {
+            if (isIgnored(constraint)) {
+                continue;
+            }
+            if (constraint.type == Constraint.STORE) {
+                addPointeesToCone(constraint.dst, constraint.offset, stack);
+            } else {
+                addToCone(constraint.dst, stack);
+            }
+        }
+        while (!stack.isEmpty()) {
+            int n = stack.removeAt(stack.size() - 1);
+            addAllToCone(succs[n], stack);
+            // DST = *(SRC + off) => OBJ + off -> DST
+            mapLoads(n, new IntLambdaVoid() {
+                @Override
+                public void call(int id) {
+                    addToCone(oldConstraints[id].dst, stack);
+                }
+            });
+            if (dstOffsets[n] != null) {
+                for (int i = 0; i < dstOffsets[n].size(); i++) {
+                    addPointeesToCone(n, dstOffsets[n].getQuick(i), stack);
+                }
+            }
+            // *(DST + off) = SRC => SRC -> OBJ + off
+            for (int i = storesBySrc.start[n]; i < storesBySrc.start[n + 1]; i++) {
+                Constraint constraint = oldConstraints[storesBySrc.values[i]];
+                addPointeesToCone(constraint.dst, constraint.offset, stack);
+            }
+        }
+    }
+
+    // the solver skips the loads and stores with offset unless told otherwise
+    private static boolean isIgnored(Constraint constraint) {
+        return !Configuration.USE_OFFSETS && constraint.offset > 0
+                && (constraint.type == Constraint.LOAD || constraint.type == Constraint.STORE);
+    }
+
+    private static TIntArrayList add(TIntArrayList list, int n) {
+        if (list == null) {
+            list = new TIntArrayList(2);
+        }
+        list.add(n);
+        return list;
+    }
+
+    private void addToCone(int n, TIntArrayList stack) {
+        if (!cone[n]) {
+            cone[n] = true;
+            coneSize++;
+            stack.add(n);
+        }
+    }
+
+    private void addAllToCone(TIntArrayList nodes, TIntArrayList stack) {
+        if (nodes != null) {
+            for (int i = 0; i < nodes.size(); i++) {
+                addToCone(nodes.getQuick(i), stack);
+            }
+        }
+    }
+
+    private void addPointeesToCone(int n, int offset, final TIntArrayList stack) {
+        mapPointsTo(n, offset, new IntLambdaVoid() {
+            @Override
+            public void call(int field) {
+                addToCone(field, stack);
+            }
+        });
+    }
+
+    // applies the function to the points-to of the node in the snapshot
+    private void mapPointsTo(int n, IntLambdaVoid fn) {
+        snapshot.mapSet(snapshot.getSet(n), fn);
+    }
+
+    // applies the function to the field at the given offset of every object in the points-to of the node
+    private void mapPointsTo(int n, final int offset, final IntLambdaVoid fn) {
+        if (offset == 0) {
+            mapPointsTo(n, fn);
+            return;
+        }
+        mapPointsTo(n, new IntLambdaVoid() {
+            @Override
+            public void call(int obj) {
+                if (onlineGraph.getNode(obj, NONE).getObjSize() > offset) {
+                    fn.call(obj + offset);
+                }
+            }
+        });
+    }
+
+    /**
+     * Restores the representatives and points-to of the snapshot that are still valid, and expresses the constraints
+     * in terms of the representatives. Must be invoked once the points-to sets can be created, and before loading the
+     * constraints.
+     */
+    void restore() throws ExecutionException {
+        ThreadTimer.Tick start = ThreadTimer.tick();
+        if (snapshot.isCyclesOnly()) {
+            // the cycles that go through the cone might be broken now
+            boolean[] broken = new boolean[numNodes];
+            for (int n = 0; n < numNodes; n++) {
+                if (cone[n]) {
+                    broken[snapshot.getRep(n)] = true;
+                }
+            }
+            for (int n = 0; n < numNodes; n++) {
+                int rep = snapshot.getRep(n);
+                if (rep != n && !broken[rep]) {
+                    OnlineNode root = onlineGraph.getNode(rep, NONE).getRep(onlineGraph, NONE);
+                    root.serialMerge(onlineGraph.getNode(n, NONE), false);
+                    members.set(root.id, add(members.get(root.id), n));
+                    Statistics.repNodes--;
+                }
+            }
+        }
+        final int numSets = snapshot.numSets();
+        final DiffIntSet[] sets = new DiffIntSet[numSets];
+        GaloisRuntime.forall(Mappables.range(0, numSets, Configuration.getChunkSize(numSets)), new LambdaVoid<Integer>() {
+            @Override
+            public void call(Integer i) {
+                final DiffIntSet set = OnlineNode.newPointsToSet();
+                snapshot.mapSet(i, new IntLambdaVoid() {
+                    @Override
+                    public void call(int obj) {
+                        set.add(obj);
+                    }
+                });
+                sets[i] = set;
+            }
+        });
+        GaloisRuntime.forall(Mappables.range(0, numNodes, Configuration.getChunkSize(numNodes)), new LambdaVoid<Integer>() {
+            @Override
+            public void call(Integer i) {
+                OnlineNode node = onlineGraph.getNode(i, NONE);
+                if (node == null || cone[i] || !node.isRep()) {
+                    return;
+                }
+                node.pointsTo.unionTo(sets[snapshot.getSet(i)]);
+            }
+        });
+        Constraint[] constraints = Constraint.constraints;
+        for (int i = 0; i < constraints.length; i++) {
+            Constraint constraint = constraints[i];
+            if (constraint == null) {
+                continue;
+            }
+            constraint.dst = onlineGraph.getNode(constraint.dst, NONE).getRep(onlineGraph, NONE).id;
+            if (constraint.type != Constraint.ADDR_OF) {
+                constraint.src = onlineGraph.getNode(constraint.src, NONE).getRep(onlineGraph, NONE).id;
+            }
+            if (constraint.type == Constraint.COPY && constraint.src == constraint.dst) {
+                constraints[i] = null;
+            }
+        }
+        ThreadTimer.Tick end = ThreadTimer.tick();
+        LOGGER.fine("runtime for restore: " + start.elapsedTime(true, end) + " ms (including GC: "
+                + start.elapsedTime(false, end) + " ms)");
+    }
+
+    /**
+     * Restores the copy edges that the old solution added for the loads and stores into the cone, and finds the nodes
+     * that have to be processed: those that feed the cone or a new constraint. Must be invoked once the constraints
+     * are loaded.
+     *
+     * @param loaded nodes whose points-to changed when loading the constraints
+     * @return the initial worklist
+     */
+    List<OnlineNode> seed(List<OnlineNode> loaded) throws ExecutionException {
+        ThreadTimer.Tick start = ThreadTimer.tick();
+        final ConcurrentGrowingList<OnlineNode> ret = new ConcurrentGrowingList<OnlineNode>(numNodes);
+        for (OnlineNode node : loaded) {
+            ret.add(node);
+        }
+        final LambdaVoid<OnlineNode> push = new LambdaVoid<OnlineNode>() {
+            @Override
+            public void call(OnlineNode node) {
+                ret.add(node);
+            }
+        };
+        if (coneSize > 0) {
+            GaloisRuntime.forall(Mappables.fromList(kept, Configuration.getChunkSize(kept.size())), new LambdaVoid<Constraint>() {
+                @Override
+                public void call(final Constraint constraint) {
+                    if (isIgnored(constraint)) {
+                        return;
+                    }
+                    if (constraint.type == Constraint.LOAD) {
+                        // DST = *(SRC + off) => OBJ + off -> DST
+                        if (cone[constraint.dst] && !cone[constraint.src]) {
+                            mapPointsTo(constraint.src, constraint.offset, new IntLambdaVoid() {
+                                @Override
+                                public void call(int field) {
+                                    addCopyEdge(field, constraint.dst, push);
+                                }
+                            });
+                        }
+                    } else if (constraint.type == Constraint.STORE) {
+                        // *(DST + off) = SRC => SRC -> OBJ + off
+                        if (!cone[constraint.dst]) {
+                            mapPointsTo(constraint.dst, constraint.offset, new IntLambdaVoid() {
+                                @Override
+                                public void call(int field) {
+                                    if (cone[field]) {
+                                        addCopyEdge(constraint.src, field, push);
+                                    }
+                                }
+                            });
+                        }
+                    } else if (constraint.type == Constraint.COPY || constraint.type == Constraint.GEP) {
+                        if (cone[constraint.dst] && !cone[constraint.src]) {
+                            reprocess(constraint.src, ret);
+                        }
+                    }
+                }
+            });
+        }
+        for (Constraint constraint : added) {
+            if (constraint.type == Constraint.ADDR_OF || isIgnored(constraint)) {
+                continue;
+            }
+            reprocess(constraint.type == Constraint.STORE ? constraint.dst : constraint.src, ret);
+        }
+        LOGGER.info("incremental: " + added.size() + " constraints added, " + numRemoved + " removed, " + coneSize
+                + " nodes in the cone, " + ret.size() + " nodes in the initial worklist");
+        ThreadTimer.Tick end = ThreadTimer.tick();
+        LOGGER.fine("runtime for seed: " + start.elapsedTime(true, end) + " ms (including GC: "
+                + start.elapsedTime(false, end) + " ms)");
+        return ret;
+    }
+
+    /**
+     * Restores the copy edges that the old solution derived from the node, and from the nodes merged into it, the
+     * first time it is processed. Must be invoked by the solver before applying the rules to a delta.
+     */
+    void restoreCopyEdges(OnlineNode node, final ForeachContext<OnlineNode> worklist) {
+        // if nothing was added, the points-to out of the cone is final and the edges into the cone are already there
+        if (added.isEmpty() || (restored.get(node.id) != 0 && members.get(node.id) == null)) {
+            return;
+        }
+        LambdaVoid<OnlineNode> push = new LambdaVoid<OnlineNode>() {
+            @Override
+            public void call(OnlineNode dst) {
+                worklist.add(dst, NONE);
+            }
+        };
+        if (restored.compareAndSet(node.id, 0, 1)) {
+            restoreCopyEdges(node.id, push);
+        }
+        TIntArrayList ids = members.getAndSet(node.id, null);
+        if (ids != null) {
+            for (int i = 0; i < ids.size(); i++) {
+                int id = ids.getQuick(i);
+                if (restored.compareAndSet(id, 0, 1)) {
+                    restoreCopyEdges(id, push);
+                }
+            }
+        }
+    }
+
+    // the edges into the cone were restored by seed()
+    private void restoreCopyEdges(final int n, final LambdaVoid<OnlineNode> push) {
+        // DST = *(SRC + off) => OBJ + off -> DST
+        mapLoads(n, new IntLambdaVoid() {
+            @Override
+            public void call(int id) {
+                Constraint constraint = oldConstraints[id];
+                if (!cone[constraint.src] && !cone[constraint.dst]) {
+                    addCopyEdge(n, constraint.dst, push);
+                }
+            }
+        });
+        // *(DST + off) = SRC => SRC -> OBJ + off
+        for (int i = storesBySrc.start[n]; i < storesBySrc.start[n + 1]; i++) {
+            Constraint constraint = oldConstraints[storesBySrc.values[i]];
+            if (constraint != null && !cone[constraint.dst]) {
+                mapPointsTo(constraint.dst, constraint.offset, new IntLambdaVoid() {
+                    @Override
+                    public void call(int field) {
+                        if (!cone[field]) {
+                            addCopyEdge(n, field, push);
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Must be invoked when two representatives are merged while solving. The merged node might still have derived
+     * copy edges to restore, which from now on carry the points-to of the representative.
+     */
+    void merged(OnlineNode rep, OnlineNode node) {
+        TIntArrayList ids = members.getAndSet(node.id, null);
+        if (restored.get(node.id) == 0) {
+            ids = add(ids, node.id);
+        }
+        if (ids == null) {
+            return;
+        }
+        TIntArrayList repIds = members.get(rep.id);
+        if (repIds == null) {
+            members.set(rep.id, ids);
+        } else {
+            repIds.addAll(ids);
+        }
+    }
+
+    private void addCopyEdge(int src, int dst, LambdaVoid<OnlineNode> push) {
+        OnlineNode srcRep = onlineGraph.getNode(src, NONE).getRep(onlineGraph, NONE);
+        OnlineNode dstRep = onlineGraph.getNode(dst, NONE).getRep(onlineGraph, NONE);
+        dstRep = srcRep.addCopyEdgePropagatePoints2(dstRep, onlineGraph, NONE);
+        if (dstRep != null && dstRep.addToWorklist()) {
+            push.call(dstRep);
+        }
+    }
+
+    private void reprocess(int n, List<OnlineNode> worklist) {
+        OnlineNode node = onlineGraph.getNode(n, NONE).getRep(onlineGraph, NONE);
+        if (node.reprocessPointsTo() && node.addToWorklist()) {
+            worklist.add(node);
+        }
+    }
+
+    /**
+     * Values grouped by an int key: those of key k are values[start[k]] .. values[start[k + 1] - 1]. It is filled in
+     * two passes, counting the values of every key and then adding them.
+     */
+    private static final class Index {
+        final int[] start;
+        int[] values;
+        private int[] next;
+
+        Index(int numKeys) {
+            start = new int[numKeys + 1];
+        }
+
+        void count(int key) {
+            start[key + 1]++;
+        }
+
+        void allocate() {
+            int numKeys = start.length - 1;
+            for (int k = 0; k < numKeys; k++) {
+                start[k + 1] += start[k];
+            }
+            values = new int[start[numKeys]];
+            next = Arrays.copyOf(start, numKeys);
+        }
+
+        void add(int key, int value) {
+            values[next[key]++] = value;
+        }
+
+        // counts the value in the first pass, and adds it in the second one
+        void put(int pass, int key, int value) {
+            if (pass == 0) {
+                count(key);
+            } else {
+                add(key, value);
+            }
+        }
+
+        boolean isEmpty(int key) {
+            return start[key] == start[key + 1];
+        }
+    }
+}
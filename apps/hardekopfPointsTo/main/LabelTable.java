@@ -0,0 +1,83 @@
+/*
+ Galois, a framework to exploit amorphous data-parallelism in irregular
+ programs.
+
+ Copyright (C) 2010, The University of Texas at Austin. All rights reserved.
+ UNIVERSITY EXPRESSLY DISCLAIMS ANY AND ALL WARRANTIES CONCERNING THIS SOFTWARE
+ AND DOCUMENTATION, INCLUDING ANY WARRANTIES OF MERCHANTABILITY, FITNESS FOR ANY
+ PARTICULAR PURPOSE, NON-INFRINGEMENT AND WARRANTIES OF PERFORMANCE, AND ANY
+ WARRANTY THAT MIGHT OTHERWISE ARISE FROM COURSE OF DEALING OR USAGE OF TRADE.
+ NO WARRANTY IS EITHER EXPRESS OR IMPLIED WITH RESPECT TO THE USE OF THE
+ SOFTWARE OR DOCUMENTATION. Under no circumstances shall University be liable
+ for incidental, special, indirect, direct or consequential damages or loss of
+ profits, interruption of business, or related expenses which may arise from use
+ of Software or Documentation, including but not limited to those resulting from
+ defects in Software and/or Documentation, or loss or inaccuracy of data of any
+ kind.
+
+ File: LabelTable.java
+ */
+
+package hardekopfPointsTo.main;
+
+import util.ints.IntSparseBitVector;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free table that assigns the same HVN label to equal label sets. Open addressing with linear probing: the slots
+ * are only written once (from null to an entry), so a lookup never sees a slot change under it. Sets are located by
+ * their 64-bit fingerprint and only compared element by element when the fingerprints match.
+ * <p/>
+ * The table does not grow: the capacity must exceed the number of sets ever interned. The sets must not be modified
+ * once interned.
+ */
+final class LabelTable {
+    private final AtomicReferenceArray<Entry> slots;
+    private final int mask;
+
+    LabelTable(int maxSets) {
+        int capacity = Integer.highestOneBit(Math.max(maxSets, 8)) << 2;
+        slots = new AtomicReferenceArray<Entry>(capacity);
+        mask = capacity - 1;
+    }
+
+    /**
+     * @return the label of a set equal to the given one, or <code>label</code> if there was none (and the set is then
+     *         interned with that label)
+     */
+    int intern(IntSparseBitVector set, int label) {
+        long fingerprint = set.fingerprint();
+        Entry entry = null;
+        int i = (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+        for (int probes = 0; probes <= mask; probes++, i = (i + 1) & mask) {
+            Entry curr = slots.get(i);
+            if (curr == null) {
+                if (entry == null) {
+                    entry = new Entry(fingerprint, set, label);
+                }
+                if (slots.compareAndSet(i, null, entry)) {
+                    return label;
+                }
+                // somebody else took the slot, which might hold our set
+                curr = slots.get(i);
+            }
+            if (curr.fingerprint == fingerprint && curr.set.equals(set)) {
+                return curr.label;
+            }
+        }
+        throw new IllegalStateException("label table is full");
+    }
+
+    private static final class Entry {
+        final long fingerprint;
+        final IntSparseBitVector set;
+        final int label;
+
+        Entry(long fingerprint, IntSparseBitVector set, int label) {
+            this.fingerprint = fingerprint;
+            this.set = set;
+            this.label = label;
+        }
+    }
+}
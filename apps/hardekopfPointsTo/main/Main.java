@@ -21,21 +21,26 @@
 package hardekopfPointsTo.main;
 
 import com.google.common.collect.ArrayListMultimap;
+import galois.objects.LineCursor;
 import galois.objects.Mappables;
 import galois.objects.MethodFlag;
+import galois.objects.StreamLineMapper;
 import galois.runtime.GaloisRuntime;
+import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.map.hash.TIntIntHashMap;
 import gnu.trove.procedure.TIntIntProcedure;
 import gnu.trove.set.hash.TIntHashSet;
 import util.InputOutput;
 import util.Launcher;
+import util.MutableBoolean;
 import util.MutableInteger;
 import util.ThreadTimer;
+import util.fn.IntLambdaVoid;
 import util.fn.LambdaVoid;
 import util.ints.IntPair;
 import util.ints.IntSet;
 import util.ints.bdd.BddDomain;
-import util.ints.bdd.BddSet;
+import util.ints.bdd.IntBddDomain;
 
 import java.io.*;
 import java.util.*;
@@ -44,6 +49,7 @@ import java.util.zip.GZIPInputStream;
 
 public class Main {
     public static final Logger LOGGER = Logger.getLogger("test.hardekopfPointsTo");
+    private static final int GZIP_BUFFER_SIZE = 1 << 16;
 
     public static void main(String[] args) throws Exception {
         run(args);
@@ -52,6 +58,7 @@ public class Main {
     public static void run(String[] args) throws Exception {
         Launcher launcher = Launcher.getLauncher();
         BddDomain.reset();
+        IntBddDomain.reset();
         Statistics.reset();
         final String benchmarkName = args[0].substring(args[0].lastIndexOf('/') + 1, args[0].indexOf('.'));
         System.err.println();
@@ -63,6 +70,10 @@ public class Main {
         if (args.length < 2) {
             System.err.println("Usage: <node_file> <contraint_file>");
         }
+        if (Configuration.QUERIES != null && (Configuration.isIncremental() || Configuration.SAVE_SNAPSHOT != null)) {
+            // the solution of the rest of variables is incomplete
+            throw new IllegalArgumentException("The queries cannot be combined with the snapshots");
+        }
         if (launcher.isFirstRun()) {
             LOGGER.info("analysis started with config: " + Configuration.printConfiguration());
         }
@@ -79,43 +90,64 @@ public class Main {
         // phase 1 : offline constraint optimization
         launcher.startTiming();
         TIntIntHashMap hcdTable = new TIntIntHashMap();
-        OfflineOptimizer offlineOptimizer = new OfflineOptimizer(onlineGraph, hcdTable);
-        offlineOptimizer.constraintOptimization();
-        verifyOfflinePhase(hcdTable);
-        printHcdInfo(benchmarkName, onlineGraph, hcdTable);
+        Incremental incremental = null;
+        if (Configuration.isIncremental()) {
+            // the merges of the previous run replace the offline phase
+            incremental = new Incremental(Configuration.LOAD_SNAPSHOT, Configuration.DELTA, onlineGraph);
+        } else {
+            OfflineOptimizer offlineOptimizer = new OfflineOptimizer(onlineGraph, hcdTable);
+            offlineOptimizer.constraintOptimization();
+            verifyOfflinePhase(hcdTable);
+            printHcdInfo(benchmarkName, onlineGraph, hcdTable);
+        }
         // phase 2: Bdd initialization and (depending on which version) Gep preprocessing
         Andersen andersen = new Andersen(onlineGraph, hcdTable);
         // phase 3: solve
-        andersen.analyze();
+        Demand demand = null;
+        if (Configuration.QUERIES != null) {
+            demand = new Demand(onlineGraph, hcdTable, Demand.readQueries(Configuration.QUERIES));
+            andersen.analyze(demand);
+        } else {
+            andersen.analyze(incremental);
+        }
         launcher.stopTiming();
         //printFinalStats(onlineGraph);
+        if (demand != null) {
+            demand.printResults(System.out);
+        }
         printSolution(benchmarkName, onlineGraph);
+        if (Configuration.SAVE_SNAPSHOT != null) {
+            // HVN and HRU merge nodes that are not part of a cycle
+            boolean cyclesOnly = Configuration.isIncremental() || !(Configuration.USE_HVN || Configuration.USE_HRU);
+            SolutionSnapshot.write(Configuration.SAVE_SNAPSHOT, onlineGraph, hcdTable, cyclesOnly);
+        }
         if (launcher.isFirstRun()) {
             Statistics.printStats(LOGGER, onlineGraph);
         }
         // verification
-        verify(onlineGraph, inputDir, benchmarkName);
+        verify(onlineGraph, inputDir, benchmarkName, demand);
         if (launcher.isLastRun()) {
             Statistics.printSummary(LOGGER);
         }
     }
 
     public static MultiGraph<OnlineNode> readGraph(String filename) throws Exception {
-        BufferedReader br = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(filename))));
-        String strLine = br.readLine();
-        int numNodes = Integer.parseInt(strLine);
+        if (BinaryInput.isBinary(filename)) {
+            return BinaryInput.readGraph(filename);
+        }
+        StreamLineMapper lines = Mappables.fromStream(openGzip(filename));
+        int numNodes = Integer.parseInt(lines.readLine());
         OnlineNode[] nodes = new OnlineNode[numNodes];
         final MultiGraph<OnlineNode> ret = new MultiGraph<OnlineNode>(nodes);
         Statistics.numNodes = numNodes;
-        OnlineNode.lastObjectNode = Integer.parseInt(br.readLine());
-        final int lastFunctionNode = Integer.parseInt(br.readLine());
-        GaloisRuntime.forall(Mappables.fromReader(br), new LambdaVoid<String>() {
+        OnlineNode.lastObjectNode = Integer.parseInt(lines.readLine());
+        final int lastFunctionNode = Integer.parseInt(lines.readLine());
+        GaloisRuntime.forall(lines, new LambdaVoid<LineCursor>() {
             @Override
-            public void call(String line) {
-                String[] info = line.split(",");
-                int id = Integer.parseInt(info[0]);
-                int obj_sz = Integer.parseInt(info[1]);
-                boolean functionObject = Integer.parseInt(info[2]) == 1;
+            public void call(LineCursor line) {
+                int id = line.nextInt();
+                int obj_sz = line.nextInt();
+                boolean functionObject = line.nextInt() == 1;
                 if (id >= OnlineNode.FIRST_VAR_NODE && obj_sz > 0) {
                     Statistics.objectNodes.incrementAndGet();
                 }
@@ -130,6 +162,10 @@ public class Main {
         return ret;
     }
 
+    static InputStream openGzip(String filename) throws IOException {
+        return new GZIPInputStream(new FileInputStream(filename), GZIP_BUFFER_SIZE);
+    }
+
     private static void printFinalStats(final MultiGraph<OnlineNode> onlineGraph) {
         final MutableInteger copyEdges = new MutableInteger(0);
         final MutableInteger ptsEdges = new MutableInteger(0);
@@ -377,12 +413,15 @@ public class Main {
         }
     }
 
-    public static void verify(MultiGraph<OnlineNode> onlineGraph, String inputDir, String benchmarkName) throws Exception {
+    /**
+     * @param demand if not null, only its query variables are verified
+     */
+    public static void verify(MultiGraph<OnlineNode> onlineGraph, String inputDir, String benchmarkName, Demand demand) throws Exception {
         if (!verify()) {
             return;
         }
         ThreadTimer.Tick start = ThreadTimer.tick();
-        verify_(onlineGraph, inputDir, benchmarkName);
+        verify_(onlineGraph, inputDir, benchmarkName, demand);
         ThreadTimer.Tick end = ThreadTimer.tick();
         long verifyTime = start.elapsedTime(true, end);
         Statistics.addTime(Statistics.Phase.VERIFY, verifyTime);
@@ -393,36 +432,34 @@ public class Main {
         return !Configuration.PRINT_SOLUTION && (Configuration.VERIFY_RESULT > 1 || (Launcher.getLauncher().isFirstRun() && Configuration.VERIFY_RESULT == 1));
     }
 
-    public static void verify_(final MultiGraph<OnlineNode> onlineGraph, final String inputDir, final String benchmarkName) throws Exception {
+    public static void verify_(final MultiGraph<OnlineNode> onlineGraph, final String inputDir, final String benchmarkName,
+                               final Demand demand) throws Exception {
         String correctOutputFileName = inputDir + util.InputOutput.FILE_SEPARATOR +
                 (benchmarkName.substring(0, benchmarkName.indexOf("_"))) + "_correct_soln";
         correctOutputFileName += getFileSuffix();
         correctOutputFileName += ".txt.gz";
         System.err.print("Verifying solution against " + correctOutputFileName + "...");
-        InputStream in = new GZIPInputStream(new FileInputStream(correctOutputFileName));
-        BufferedReader br = new BufferedReader(new InputStreamReader(in));
-        String strLine = br.readLine();
-        int numNodes = Integer.parseInt(strLine);
+        StreamLineMapper lines = Mappables.fromStream(openGzip(correctOutputFileName));
+        int numNodes = Integer.parseInt(lines.readLine());
         if (numNodes != onlineGraph.size()) {
             throw new IllegalStateException(
                     "The result contains a number of variables different to the one in the correct version: "
                             + numNodes + " != " + onlineGraph.size());
         }
-        try {
-            GaloisRuntime.forall(Mappables.fromReader(br), new LambdaVoid<String>() {
-                @Override
-                public void call(String strLine) {
-                    int arrowIndex = strLine.indexOf("=>");
-                    String lhs = strLine.substring(0, arrowIndex - 1);
-                    String rhs = strLine.substring(arrowIndex + 3);
-                    IntSet pointsTo = readPointsTo(rhs);
-                    verifySrc(onlineGraph, lhs, pointsTo);
+        GaloisRuntime.forall(lines, new LambdaVoid<LineCursor>() {
+            @Override
+            public void call(LineCursor line) {
+                // [src1, src2, ...] => [dst1, dst2, ...]
+                TIntArrayList src = new TIntArrayList();
+                while (line.hasNextIntBefore(']')) {
+                    src.add(line.nextInt());
                 }
-            });
-            System.err.println("OK");
-        } finally {
-            br.close();
-        }
+                line.skipPast(']');
+                IntSet pointsTo = readPointsTo(line);
+                verifySrc(onlineGraph, src, pointsTo, demand);
+            }
+        });
+        System.err.println("OK");
     }
 
     private static String getFileSuffix() {
@@ -436,30 +473,24 @@ public class Main {
     /**
      * read the points-to from the file, and express it in terms of representatives
      */
-    private static IntSet readPointsTo(String line) {
-        IntSet result = new BddSet();
-        // remove [ and ]
-        line = line.substring(1, line.length() - 1);
-        if (line.isEmpty()) {
-            return result;
-        }
-        String[] ids = line.split(", ");
-        for (String id1 : ids) {
-            int id = Integer.parseInt(id1);
-            result.add(id);
+    private static IntSet readPointsTo(LineCursor line) {
+        IntSet result = OnlineNode.newPointsToSet();
+        while (line.hasNextInt()) {
+            result.add(line.nextInt());
         }
         return result;
     }
 
-    private static void verifySrc(final MultiGraph<OnlineNode> onlineGraph, String src, IntSet desired) {
-        src = src.substring(1, src.length() - 1);
-        if (src.isEmpty()) {
+    private static void verifySrc(final MultiGraph<OnlineNode> onlineGraph, TIntArrayList ids, IntSet desired, Demand demand) {
+        if (ids.isEmpty()) {
             throw new RuntimeException();
         }
-        String[] ids = src.split(", ");
         TIntHashSet seen = new TIntHashSet();
-        for (String id1 : ids) {
-            int id = Integer.parseInt(id1);
+        for (int i = 0; i < ids.size(); i++) {
+            int id = ids.getQuick(i);
+            if (demand != null && !demand.isQuery(id)) {
+                continue;
+            }
             final OnlineNode node = onlineGraph.getNode(id, MethodFlag.NONE);
             OnlineNode nodeRep = node.getRep(onlineGraph, MethodFlag.NONE);
             if (!seen.add(nodeRep.id)) {
@@ -468,16 +499,24 @@ public class Main {
             // Something was left unprocessed. The condition is stronger than just checking the final points-to of the node:
             // the unprocessed state does not result on a wrong solution if the node has not outgoing copy/gep neighbors,
             // or the processing of diffPointsTo does not affect the state of the constraint graph
-            if (!nodeRep.getPrevPointsTo().equals(nodeRep.pointsTo)) {
+            if (!nodeRep.getPointsToDelta().isEmpty()) {
                 final String errorMsg = "Error at node " + id +
-                        ". The current points-to (1st line) is different from the previous points-to(2nd line):  " +
-                        InputOutput.LINE_SEPARATOR + nodeRep.pointsTo + InputOutput.LINE_SEPARATOR + nodeRep.getPrevPointsTo();
+                        ". The current points-to (1st line) has unprocessed elements (2nd line):  " +
+                        InputOutput.LINE_SEPARATOR + nodeRep.pointsTo + InputOutput.LINE_SEPARATOR + nodeRep.getPointsToDelta();
                 //System.err.println(errorMsg);
                 //printNeighbors(onlineGraph, nodeRep);
                 throw new IllegalStateException(errorMsg);
             }
             IntSet obtained = nodeRep.pointsTo;
-            if (!obtained.equals(desired)) {
+            if (Configuration.USE_OFFSETS) {
+                // the loads and stores with offset can only add elements to the correct version
+                if (!containsAll(obtained, desired)) {
+                    final String errorMsg = "Error at node " + id +
+                            ". The computed points-to (1st line) does not contain the correct version (2nd line):  " +
+                            InputOutput.LINE_SEPARATOR + obtained + InputOutput.LINE_SEPARATOR + desired;
+                    throw new IllegalStateException(errorMsg);
+                }
+            } else if (!obtained.equals(desired)) {
                 final String errorMsg = "Error at node " + id +
                         ". The computed points-to (1st line) differs from the correct version (2nd line):  " +
                         InputOutput.LINE_SEPARATOR + obtained + InputOutput.LINE_SEPARATOR + desired;
@@ -487,4 +526,17 @@ public class Main {
             }
         }
     }
+
+    private static boolean containsAll(final IntSet set, IntSet subset) {
+        final MutableBoolean ret = new MutableBoolean(true);
+        subset.mapInt(new IntLambdaVoid() {
+            @Override
+            public void call(int n) {
+                if (!set.contains(n)) {
+                    ret.set(false);
+                }
+            }
+        });
+        return ret.get();
+    }
 }
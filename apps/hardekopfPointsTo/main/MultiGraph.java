@@ -23,10 +23,13 @@ package hardekopfPointsTo.main;
 import galois.objects.GObject;
 import galois.objects.MethodFlag;
 import galois.runtime.Iteration;
+import util.fn.IntIntLambdaVoid;
+import util.fn.IntLambdaVoid;
 import util.fn.Lambda2Void;
 import util.fn.Lambda3Void;
 import util.fn.Lambda4Void;
 import util.fn.LambdaVoid;
+import util.ints.IntSetIterator;
 
 public class MultiGraph<T1 extends hardekopfPointsTo.main.Node> {
   private final T1[] nodes;
@@ -126,6 +129,33 @@ public class MultiGraph<T1 extends hardekopfPointsTo.main.Node> {
     src.___map(ADAPTER2, fn, domain, flags);
   }
 
+  /**
+   * Applies a function to the id of every neighbor of a node, without boxing it. The ids are not translated to their
+   * representatives, and the neighbors are not locked.
+   */
+  public void mapNeighbors(T1 src, IntLambdaVoid fn, byte domain, byte flags) {
+    acquireAbstractLock(src, flags);
+    src.___map(fn, domain);
+  }
+
+  /**
+   * Applies a function to the id of every neighbor of a node and the value of the edge (like the offset of a GEP edge),
+   * without boxing them. The ids are not translated to their representatives, and the neighbors are not locked.
+   */
+  public void mapNeighbors(T1 src, IntIntLambdaVoid fn, byte domain, byte flags) {
+    acquireAbstractLock(src, flags);
+    src.___map(fn, domain);
+  }
+
+  /**
+   * Iterates over the ids of the neighbors of a node without allocating a closure per edge. The ids are not
+   * translated to their representatives.
+   */
+  public IntSetIterator neighbors(T1 src, byte domain, byte flags) {
+    acquireAbstractLock(src, flags);
+    return src.___neighbors(domain);
+  }
+
   public boolean addNeighbor(int n1, int n2, byte domain) {
     return addNeighbor(n1, n2, domain, MethodFlag.ALL);
   }
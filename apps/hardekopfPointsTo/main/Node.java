@@ -21,10 +21,13 @@
 package hardekopfPointsTo.main;
 
 import galois.objects.GObject;
+import util.fn.IntIntLambdaVoid;
+import util.fn.IntLambdaVoid;
 import util.fn.Lambda2Void;
 import util.fn.Lambda3Void;
 import util.fn.Lambda4Void;
 import util.fn.LambdaVoid;
+import util.ints.IntSetIterator;
 
 public interface Node extends GObject {
 
@@ -38,6 +41,15 @@ public interface Node extends GObject {
   <T1 extends Node> void ___map(Lambda3Void<Long, Lambda2Void<Integer, T1>, Byte> fn1, Lambda2Void<Integer, T1> fn2,
       byte domain, byte flags);
 
+  // used by the multigraph, not to be used directly
+  void ___map(IntLambdaVoid fn, byte domain);
+
+  // used by the multigraph, not to be used directly
+  void ___map(IntIntLambdaVoid fn, byte domain);
+
+  // used by the multigraph, not to be used directly
+  IntSetIterator ___neighbors(byte domain);
+
   // used by the multigraph, not to be used directly
   boolean ___addNeighbor(int n, byte domain);
 
@@ -22,13 +22,13 @@ package hardekopfPointsTo.main;
 
 import galois.runtime.Iteration;
 
-import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
-
-import util.MutableInteger;
+import util.fn.IntIntLambdaVoid;
+import util.fn.IntLambdaVoid;
 import util.fn.Lambda2Void;
 import util.fn.Lambda3Void;
 import util.fn.Lambda4Void;
 import util.fn.LambdaVoid;
+import util.ints.IntSetIterator;
 import util.ints.IntSparseBitVector;
 
 class OfflineNode implements Node {
@@ -40,76 +40,57 @@ class OfflineNode implements Node {
   static final byte IN_EDGES = 1;
   static final byte IMPLICIT_IN_EDGES = 2;
 
-  private static final AtomicIntegerFieldUpdater<OfflineNode> inDegreeUpdater = AtomicIntegerFieldUpdater.newUpdater(
-      OfflineNode.class, "inDegree");
-
   private int representative;
   int id, dfsId;
   IntSparseBitVector label;
-  private final IntSparseBitVector edges, incomingEdges, implicitIncomingEdges;
+  // the edges of the node, stored in the graph of the current pass
+  private CsrGraph edges;
   int flagsAndMainNode;
-  private volatile int inDegree;
+  // longest path from a source of the condensed graph to this SCC
+  int level;
 
   //private final AtomicReference<Iteration> owner;
 
-  OfflineNode(int id, boolean indirect) {
+  OfflineNode(int id, boolean indirect, CsrGraph edges) {
     this.id = id;
     representative = NODE_RANK_MIN;
     label = new IntSparseBitVector();
-    edges = new IntSparseBitVector();
-    incomingEdges = new IntSparseBitVector();
-    implicitIncomingEdges = new IntSparseBitVector();
+    this.edges = edges;
     // set all the flags and main node at once
     flagsAndMainNode = 0;
     setIndirect(indirect);
-    inDegree = -1;
+    level = -1;
     //owner = new AtomicReference<Iteration>();
   }
 
-  void reset(int id, boolean indirect) {
+  void reset(int id, boolean indirect, CsrGraph edges) {
     this.id = id;
     representative = NODE_RANK_MIN;
     label.clear();
-    edges.clear();
-    incomingEdges.clear();
-    implicitIncomingEdges.clear();
+    this.edges = edges;
     dfsId = 0;
     // set all the flags and main node at once
     flagsAndMainNode = 0;
     setIndirect(indirect);
-    inDegree = -1;
+    level = -1;
   }
 
   @Override
   public <T1 extends Node> void ___map(Lambda3Void<Integer, LambdaVoid<T1>, Byte> fn1, LambdaVoid<T1> fn2, byte domain,
       byte flags) {
-    if (domain == OUT_EDGES) {
-      edges.map(fn1, fn2, flags);
-      return;
-    } else if (domain == IN_EDGES) {
-      incomingEdges.map(fn1, fn2, flags);
-      return;
-    } else if (domain == IMPLICIT_IN_EDGES) {
-      implicitIncomingEdges.map(fn1, fn2, flags);
-      return;
+    IntSetIterator iterator = ___neighbors(domain);
+    while (iterator.hasNext()) {
+      fn1.call(iterator.nextInt(), fn2, flags);
     }
-    throw new RuntimeException();
   }
 
   @Override
   public <T1 extends Node, T2> void ___map(Lambda4Void<Integer, Lambda2Void<T1, T2>, T2, Byte> fn1,
       Lambda2Void<T1, T2> fn2, T2 arg2, byte domain, byte flags) {
-    if (domain == OUT_EDGES) {
-      edges.map(fn1, fn2, arg2, flags);
-      return;
-    } else if (domain == IN_EDGES) {
-      incomingEdges.map(fn1, fn2, arg2, flags);
-      return;
-    } else if (domain == IMPLICIT_IN_EDGES) {
-      implicitIncomingEdges.map(fn1, fn2, arg2, flags);
-      return;
+    IntSetIterator iterator = ___neighbors(domain);
+    while (iterator.hasNext()) {
+      fn1.call(iterator.nextInt(), fn2, arg2, flags);
     }
-    throw new RuntimeException();
   }
 
   @Override
@@ -119,15 +100,30 @@ class OfflineNode implements Node {
   }
 
   @Override
-  public boolean ___addNeighbor(int n, byte domain) {
-    if (domain == OUT_EDGES) {
-      return edges.concurrentAdd(n);
-    } else if (domain == IN_EDGES) {
-      return incomingEdges.concurrentAdd(n);
-    } else if (domain == IMPLICIT_IN_EDGES) {
-      return implicitIncomingEdges.concurrentAdd(n);
+  public void ___map(IntLambdaVoid fn, byte domain) {
+    IntSetIterator iterator = ___neighbors(domain);
+    while (iterator.hasNext()) {
+      fn.call(iterator.nextInt());
     }
-    throw new RuntimeException();
+  }
+
+  @Override
+  public void ___map(IntIntLambdaVoid fn, byte domain) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public IntSetIterator ___neighbors(byte domain) {
+    if (domain != OUT_EDGES && domain != IN_EDGES && domain != IMPLICIT_IN_EDGES) {
+      throw new RuntimeException();
+    }
+    return edges.neighbors(id, domain);
+  }
+
+  // the edges are built at once by the CsrGraph
+  @Override
+  public boolean ___addNeighbor(int n, byte domain) {
+    throw new UnsupportedOperationException();
   }
 
   @Override
@@ -166,44 +162,28 @@ class OfflineNode implements Node {
     }
     //System.err.println("    offline merge " + offlineNode1.id  + " <= " +  offlineNode2.id);
     offlineNode2.representative = offlineNode1.id;
-    offlineNode1.edges.unionTo(offlineNode2.edges);
-    offlineNode1.incomingEdges.unionTo(offlineNode2.incomingEdges);
+    // from now on, the edges of each node include those of the other one
+    edges.merge(offlineNode1.id, offlineNode2.id);
     offlineNode1.setIndirect(offlineNode1.isIndirect() || offlineNode2.isIndirect());
     // no need to transfer labels (they are empty)
-    // no need to transfer implicit edges, since the are not used after the HVN DFS
-    offlineNode2.edges.clear();
-    offlineNode2.incomingEdges.clear();
-    offlineNode2.implicitIncomingEdges.clear();
     return offlineNode1;
   }
 
-  int computeIncomingDegree(final MultiGraph<OfflineNode> offlineGraph, final byte flags) {
-    if (incomingEdges.isEmpty()) {
-      inDegree = 0;
-      return 0;
-    }
-    final MutableInteger ret = new MutableInteger(0);
-    final IntSparseBitVector seen = new IntSparseBitVector();
-    incomingEdges.map(new Lambda2Void<Integer, OfflineNode>() {
-      @Override
-      public void call(Integer next, OfflineNode src) {
-        OfflineNode offlineNode = offlineGraph.getNode(next, flags).getRep(offlineGraph, flags);
-        assert offlineNode.dfsId > 0;
-        if (src != offlineNode && seen.add(offlineNode.dfsId)) {
-          ret.add(1);
-        }
+  /**
+   * Computes the level of an SCC root, once the levels of all its predecessors are known.
+   */
+  int computeLevel(final MultiGraph<OfflineNode> offlineGraph, final byte flags) {
+    IntSetIterator iterator = edges.neighbors(id, IN_EDGES);
+    int ret = 0;
+    while (iterator.hasNext()) {
+      OfflineNode offlineNode = offlineGraph.getNode(iterator.nextInt(), flags).getRep(offlineGraph, flags);
+      if (this != offlineNode) {
+        assert offlineNode.level >= 0;
+        ret = Math.max(ret, offlineNode.level + 1);
       }
-    }, this);
-    int in = ret.get();
-    inDegree = in;
-    return in;
-  }
-
-  int decrementIncomingInDegree() {
-    if (inDegree == 1) {
-      return 0;
     }
-    return inDegreeUpdater.decrementAndGet(this);
+    level = ret;
+    return ret;
   }
 
   boolean isIndirect() {
@@ -24,16 +24,13 @@ import galois.objects.IntegerAccumulator;
 import galois.objects.IntegerAccumulatorBuilder;
 import galois.objects.Mappables;
 import galois.objects.MethodFlag;
-import galois.runtime.ForeachContext;
 import galois.runtime.GaloisRuntime;
-import galois.runtime.wl.ChunkedFIFO;
-import galois.runtime.wl.Priority;
 import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.map.hash.TIntIntHashMap;
 import util.MutableInteger;
 import util.ThreadTimer;
 import util.concurrent.BlockingHashSet;
-import util.fn.Lambda2Void;
+import util.fn.IntLambdaVoid;
 import util.fn.LambdaVoid;
 import util.ints.IntSparseBitVector;
 
@@ -60,7 +57,6 @@ public final class OfflineOptimizer {
 
     private final IntAccumulator nextLabel;
     private final TIntIntHashMap hcdTable;
-    private int currentDfs;
     private int numRef, firstRef;
 
     private final int[] main2offline;
@@ -72,6 +68,10 @@ public final class OfflineOptimizer {
 
     private final MultiGraph<OnlineNode> onlineGraph;
     private MultiGraph<OfflineNode> offlineGraph;
+    // edges of the offline graph, rebuilt on every pass
+    private CsrGraph offlineEdges;
+    // explicit and implicit edges contributed by every constraint: nodes[i] -> neighbors[i], or -1 if none
+    private int[] edgeNodes, edgeNeighbors, implicitEdgeNodes, implicitEdgeNeighbors;
 
     public OfflineOptimizer(MultiGraph<OnlineNode> onlineGraph, TIntIntHashMap hcdTable) {
         this.onlineGraph = onlineGraph;
@@ -134,20 +134,25 @@ public final class OfflineOptimizer {
         nextLabel.set(onlineGraph.size());
         createOfflineEdges(false);
         ThreadTimer.Tick start = ThreadTimer.tick();
-        currentDfs = 1;
-        ArrayList<OfflineNode> initialWorklist = new ArrayList<OfflineNode>(currOfflineNodes);
-        ArrayList<OfflineNode> dfsStack = new ArrayList<OfflineNode>();
-        assert dfsStack.size() == 0 : dfsStack.size();
-        for (int i = FIRST_AFP; i < firstRef + numRef; i++) {
-            final OfflineNode offlineNode = offlineGraph.getNode(i, NONE);
-            if (offlineNode.dfsId == 0) {
-                hvnDfs(offlineNode, dfsStack, initialWorklist);
-                assert dfsStack.size() == 0 : dfsStack.size();
+        // the SCCs are found in topological order, so they can be split in levels as we go
+        final ArrayList<ArrayList<OfflineNode>> levels = new ArrayList<ArrayList<OfflineNode>>();
+        SccFinder<OfflineNode> sccFinder = new SccFinder<OfflineNode>(offlineGraph, IN_EDGES, IMPLICIT_IN_EDGES) {
+            @Override
+            int getRep(int n) {
+                return offlineGraph.getNode(n, NONE).getRep(offlineGraph, NONE).id;
+            }
+
+            @Override
+            void sccFound(TIntArrayList scc) {
+                hvnSccFound(scc, getDfsId(scc.getQuick(0)), levels);
             }
+        };
+        for (int i = FIRST_AFP; i < firstRef + numRef; i++) {
+            sccFinder.visit(i);
         }
         ThreadTimer.Tick end = ThreadTimer.tick();
         seqTime += start.elapsedTime(true, end);
-        label(initialWorklist, doUnion);
+        label(levels, doUnion);
         mergeNodesWithSameLabel();
         mergeConstraints();
     }
@@ -204,6 +209,7 @@ public final class OfflineOptimizer {
         } else {
             to = currOfflineNodes;
         }
+        offlineEdges = new CsrGraph(totalOfflineNodes, IMPLICIT_IN_EDGES + 1);
         ThreadTimer.Tick end = ThreadTimer.tick();
         seqTime += start.elapsedTime(true, end);
         GaloisRuntime.forall(Mappables.range(0, totalOfflineNodes, Configuration.getChunkSize(totalOfflineNodes)), new LambdaVoid<Integer>() {
@@ -216,10 +222,10 @@ public final class OfflineOptimizer {
                 boolean indirect = i < firstVal || i >= firstRef;
                 OfflineNode offlineNode = offlineGraph.getNode(i, NONE);
                 if (offlineNode == null) {
-                    offlineGraph.setNode(i, new OfflineNode(i, indirect), NONE);
+                    offlineGraph.setNode(i, new OfflineNode(i, indirect, offlineEdges), NONE);
                 } else {
                     // reuse existing offline nodes => avoids excessive object creation
-                    offlineNode.reset(i, indirect);
+                    offlineNode.reset(i, indirect, offlineEdges);
                 }
             }
         });
@@ -238,9 +244,19 @@ public final class OfflineOptimizer {
         final ConcurrentHashMap<Long, Integer> gep2label = new ConcurrentHashMap<Long, Integer>(initialGep / 4, Configuration.CAPACITY, 64);
         int numConstraints = constraints.length;
         final boolean storeOutgoingEdges = (Configuration.USE_HCD | Configuration.USE_HRU);
+        if (edgeNodes == null) {
+            edgeNodes = new int[numConstraints];
+            edgeNeighbors = new int[numConstraints];
+            implicitEdgeNodes = new int[numConstraints];
+            implicitEdgeNeighbors = new int[numConstraints];
+        }
         GaloisRuntime.forall(Mappables.range(0, numConstraints, Configuration.getChunkSize(numConstraints)), new LambdaVoid<Integer>() {
             @Override
             public void call(Integer i) {
+                edgeNodes[i] = -1;
+                edgeNeighbors[i] = -1;
+                implicitEdgeNodes[i] = -1;
+                implicitEdgeNeighbors[i] = -1;
                 Constraint constraint = constraints[i];
                 if (constraint == null) {
                     return;
@@ -263,18 +279,15 @@ public final class OfflineOptimizer {
                         offlineGraph.getNode(offlineDest, NONE).label.concurrentAdd(src);
                         if (offlineSrc > 0) {
                             // D = &S => S -> *D
-                            offlineGraph.addNeighbor(refOfflineDest, offlineSrc, IMPLICIT_IN_EDGES, NONE);
+                            addImplicitEdge(i, refOfflineDest, offlineSrc);
                         }
                     }
                 } else if (constraint.type == COPY) {
                     //D = S  => edge S -> D => *S -> *D.
                     if (offlineSrc > 0) {
-                        if (storeOutgoingEdges) {
-                            offlineGraph.addNeighbor(offlineSrc, offlineDest, OUT_EDGES, NONE);
-                        }
-                        offlineGraph.addNeighbor(offlineDest, offlineSrc, IN_EDGES, NONE);
+                        addEdge(i, offlineDest, offlineSrc);
                         if (!hcd) {
-                            offlineGraph.addNeighbor(refOfflineDest, refOfflineSrc, IMPLICIT_IN_EDGES, NONE);
+                            addImplicitEdge(i, refOfflineDest, refOfflineSrc);
                         }
                     } else {
                         if (!hcd) {
@@ -290,18 +303,14 @@ public final class OfflineOptimizer {
                     } else {
                         //D = *S => edge *S -> *D
                         assert offlineSrc > 0;
-                        if (storeOutgoingEdges)
-                            offlineGraph.addNeighbor(refOfflineSrc, offlineDest, OUT_EDGES, NONE);
-                        offlineGraph.addNeighbor(offlineDest, refOfflineSrc, IN_EDGES, NONE);
+                        addEdge(i, offlineDest, refOfflineSrc);
                     }
                 } else if (constraint.type == STORE) {
                     //*D + k = *S is ignored
                     if (constraint.offset == 0) {
                         //*D = S => edge S -> *D
                         assert offlineSrc > 0;
-                        if (storeOutgoingEdges)
-                            offlineGraph.addNeighbor(offlineSrc, refOfflineDest, OUT_EDGES, NONE);
-                        offlineGraph.addNeighbor(refOfflineDest, offlineSrc, IN_EDGES, NONE);
+                        addEdge(i, refOfflineDest, offlineSrc);
                     }
                 } else if (constraint.type == GEP) {
                     //D = gep S k
@@ -317,78 +326,61 @@ public final class OfflineOptimizer {
                 }
             }
         });
+        // counting sort of the edges by node. The outgoing edges are the reverse of the incoming ones
+        offlineEdges.build(IN_EDGES, edgeNodes, edgeNeighbors);
+        if (storeOutgoingEdges) {
+            offlineEdges.build(OUT_EDGES, edgeNeighbors, edgeNodes);
+        }
+        if (!hcd) {
+            offlineEdges.build(IMPLICIT_IN_EDGES, implicitEdgeNodes, implicitEdgeNeighbors);
+        }
     }
 
-    private void hvnDfs(final OfflineNode offlineNode, final ArrayList<OfflineNode> dfsStack, final ArrayList<OfflineNode> initialWorklist) {
-        assert !offlineNode.isSccRoot() && offlineNode.isRep();
-        int ourDfs = currentDfs;
-        currentDfs++;
-        offlineNode.dfsId = ourDfs;
-        LambdaVoid<OfflineNode> fn = new LambdaVoid<OfflineNode>() {
-            @Override
-            public void call(OfflineNode d) {
-                // no self-edges
-                assert d != offlineNode;
-                assert offlineNode.isRep();
-                OfflineNode dst = d.getRep(offlineGraph, NONE);
-                if (offlineNode == dst || dst.isSccRoot()) {
-                    return;
-                }
-                if (dst.dfsId == 0) {
-                    hvnDfs(dst, dfsStack, initialWorklist);
-                }
-                offlineNode.dfsId = Math.min(offlineNode.dfsId, dst.dfsId);
-                assert offlineNode.isRep();
-            }
-        };
-        offlineGraph.map(offlineNode, fn, IN_EDGES, NONE);
-        offlineGraph.map(offlineNode, fn, IMPLICIT_IN_EDGES, NONE);
-        assert offlineNode.isRep();
-        if (offlineNode.dfsId == ourDfs) {
-            OfflineNode sccRoot = offlineNode;
-            while (!dfsStack.isEmpty()) {
-                int last = dfsStack.size() - 1;
-                final OfflineNode offlineNodeTop = dfsStack.get(last);
-                if (offlineNodeTop.dfsId < ourDfs) {
-                    break;
-                }
-                dfsStack.remove(last);
-                sccRoot = sccRoot.merge(offlineNodeTop);
-            }
-            sccRoot.setSccRoot(true);
-            if (sccRoot.computeIncomingDegree(offlineGraph, NONE) == 0) {
-                initialWorklist.add(sccRoot);
-            }
-        } else {
-            dfsStack.add(offlineNode);
+    // edge src -> dst contributed by the i-th constraint
+    private void addEdge(int i, int dst, int src) {
+        edgeNodes[i] = dst;
+        edgeNeighbors[i] = src;
+    }
+
+    private void addImplicitEdge(int i, int dst, int src) {
+        implicitEdgeNodes[i] = dst;
+        implicitEdgeNeighbors[i] = src;
+    }
+
+    private void hvnSccFound(TIntArrayList scc, int dfsId, ArrayList<ArrayList<OfflineNode>> levels) {
+        // the DFS id identifies the component during the labeling
+        OfflineNode sccRoot = offlineGraph.getNode(scc.getQuick(0), NONE);
+        sccRoot.dfsId = dfsId;
+        for (int i = 1; i < scc.size(); i++) {
+            OfflineNode offlineNode = offlineGraph.getNode(scc.getQuick(i), NONE);
+            offlineNode.dfsId = dfsId;
+            sccRoot = sccRoot.merge(offlineNode);
+        }
+        sccRoot.setSccRoot(true);
+        int level = sccRoot.computeLevel(offlineGraph, NONE);
+        if (level == levels.size()) {
+            levels.add(new ArrayList<OfflineNode>());
         }
+        levels.get(level).add(sccRoot);
     }
 
-    private void label(final ArrayList<OfflineNode> initialWorklist, final boolean doUnion) throws Exception {
-        final ConcurrentHashMap<IntSparseBitVector, Integer> hvnTable = doUnion ? null : new ConcurrentHashMap<IntSparseBitVector, Integer>(1024, Configuration.CAPACITY, Configuration.CONCURRENCY_LEVEL);
-        GaloisRuntime.foreach(initialWorklist, new Lambda2Void<OfflineNode, ForeachContext<OfflineNode>>() {
+    /**
+     * Labels the SCCs one level at a time: the labels of a level only depend on those of the previous levels.
+     */
+    private void label(ArrayList<ArrayList<OfflineNode>> levels, final boolean doUnion) throws Exception {
+        final LabelTable hvnTable = doUnion ? null : new LabelTable(currOfflineNodes);
+        LambdaVoid<OfflineNode> labeler = new LambdaVoid<OfflineNode>() {
             @Override
-            public void call(final OfflineNode src, final ForeachContext<OfflineNode> ctx) {
+            public void call(OfflineNode src) {
                 assert src.isRep();
-                // label this node
                 if (doUnion) {
                     huLabel(src);
                 } else {
                     hvnLabel(src, hvnTable);
                 }
-                final IntSparseBitVector seen = new IntSparseBitVector();
-                offlineGraph.map(src, new LambdaVoid<OfflineNode>() {
-                    @Override
-                    public void call(OfflineNode d) {
-                        OfflineNode dst = d.getRep(offlineGraph, NONE);
-                        if (src != dst && seen.add(dst.dfsId) && dst.decrementIncomingInDegree() == 0) {
-                            ctx.add(dst, MethodFlag.NONE);
-                        }
-                    }
-                }, OUT_EDGES, NONE);
             }
 
-            private void hvnLabel(OfflineNode offlineNode, final ConcurrentHashMap<IntSparseBitVector, Integer> hvnTable) {
+            private void hvnLabel(OfflineNode offlineNode, LabelTable hvnTable) {
                 IntSparseBitVector label = offlineNode.label;
                 assert offlineNode.isRep() && offlineNode.isSccRoot();
                 if (offlineNode.isIndirect()) {
@@ -398,11 +390,7 @@ public final class OfflineOptimizer {
                 }
                 addIncomingLabels(offlineNode);
                 if (!label.isSingleton()) {
-                    int num = nextLabel.add(1, NONE);
-                    Integer prevLabel = hvnTable.putIfAbsent(label, num);
-                    if (prevLabel != null) {
-                        num = prevLabel;
-                    }
+                    int num = hvnTable.intern(label, nextLabel.add(1, NONE));
                     offlineNode.label = new IntSparseBitVector();
                     offlineNode.label.add(num);
                 }
@@ -421,10 +409,10 @@ public final class OfflineOptimizer {
             private void addIncomingLabels(final OfflineNode offlineNode1) {
                 final IntSparseBitVector seen = new IntSparseBitVector();
                 final IntSparseBitVector label1 = offlineNode1.label;
-                offlineGraph.map(offlineNode1, new LambdaVoid<OfflineNode>() {
+                offlineGraph.mapNeighbors(offlineNode1, new IntLambdaVoid() {
                     @Override
-                    public void call(OfflineNode n) {
-                        OfflineNode offlineNode2 = n.getRep(offlineGraph, NONE);
+                    public void call(int n) {
+                        OfflineNode offlineNode2 = offlineGraph.getNode(n, NONE).getRep(offlineGraph, NONE);
                         assert offlineNode2.isRep();
                         if (offlineNode2 == offlineNode1 || !seen.add(offlineNode2.id)) {
                             return;
@@ -441,7 +429,10 @@ public final class OfflineOptimizer {
                     label1.add(0);
                 }
             }
-        }, Priority.first(ChunkedFIFO.class, Configuration.getChunk()));
+        };
+        for (ArrayList<OfflineNode> level : levels) {
+            GaloisRuntime.forall(Mappables.fromList(level, Configuration.getChunkSize(level.size())), labeler);
+        }
     }
 
     private void mergeNodesWithSameLabel() throws Exception {
@@ -532,67 +523,35 @@ public final class OfflineOptimizer {
                 offlineGraph.getNode(ref(n), NONE).setMainNode(i);
             }
         }
-        ArrayList<OfflineNode> dfsStack = new ArrayList<OfflineNode>();
-        currentDfs = 1;
-        for (int i = FIRST_AFP; i < firstRef + numRef; i++) {
-            if (offlineGraph.getNode(i, NONE).dfsId == 0) {
-                hcdDfs(i, dfsStack);
+        SccFinder<OfflineNode> sccFinder = new SccFinder<OfflineNode>(offlineGraph, IN_EDGES) {
+            @Override
+            void sccFound(TIntArrayList scc) {
+                hcdSccFound(scc, getDfsId(scc.getQuick(0)));
             }
+        };
+        for (int i = FIRST_AFP; i < firstRef + numRef; i++) {
+            sccFinder.visit(i);
         }
         ThreadTimer.Tick end = ThreadTimer.tick();
         seqTime += start.elapsedTime(true, end);
-        assert dfsStack.size() == 0;
         mergeConstraints();
         Statistics.hcdSize = hcdTable.size();
     }
 
-    private void hcdDfs(int n, final ArrayList<OfflineNode> dfsStack) {
-        assert n > 0;
-        final OfflineNode offlineNode = offlineGraph.getNode(n, NONE);
-        assert !offlineNode.isSccRoot() && offlineNode.isRep();
-        int ourDfs = currentDfs;
-        currentDfs++;
-        offlineNode.dfsId = ourDfs;
-        offlineGraph.map(offlineNode, new LambdaVoid<OfflineNode>() {
-            @Override
-            public void call(OfflineNode offlineNode2) {
-                assert offlineNode2.isRep();
-                if (offlineNode2.isSccRoot()) {
-                    return;
-                }
-                if (offlineNode2.dfsId == 0) {
-                    hcdDfs(offlineNode2.id, dfsStack);
-                }
-                offlineNode.dfsId = Math.min(offlineNode.dfsId, offlineNode2.dfsId);
-            }
-        }, IN_EDGES, NONE);
-        assert offlineNode.isRep();
-        if (offlineNode.dfsId != ourDfs) {
-            dfsStack.add(offlineNode);
-            return;
-        }
-        //Record all nodes in our SCC (the root is not on the stack).
-        TIntArrayList scc = new TIntArrayList();
-        scc.add(n);
+    private void hcdSccFound(TIntArrayList scc, int dfsId) {
+        //Record the variables of the SCC (the first one is the root).
         TIntArrayList var = new TIntArrayList();
-        if (n < firstRef) {
-            var.add(n);
-        }
-        while (!dfsStack.isEmpty()) {
-            int last = dfsStack.size() - 1;
-            OfflineNode topNode = dfsStack.get(last);
-            int n2 = topNode.id;
-            assert n2 != n;
-            if (topNode.dfsId < ourDfs) {
-                break;
-            }
-            dfsStack.remove(last);
-            scc.add(n2);
-            if (n2 < firstRef) {
-                var.add(n2);
+        int sccSize = scc.size();
+        for (int i = 0; i < sccSize; i++) {
+            int n = scc.getQuick(i);
+            assert n > 0 && offlineGraph.getNode(n, NONE).isRep();
+            offlineGraph.getNode(n, NONE).dfsId = dfsId;
+            if (n < firstRef) {
+                var.add(n);
             }
         }
-        if (scc.size() == 1) {
+        OfflineNode offlineNode = offlineGraph.getNode(scc.getQuick(0), NONE);
+        if (sccSize == 1) {
             offlineNode.setSccRoot(true);
             return;
         }
@@ -606,7 +565,6 @@ public final class OfflineOptimizer {
             varRep = newRep.id;
             Statistics.varNodesMergedInHcd++;
         }
-        int sccSize = scc.size();
         for (int i = 0; i < sccSize; i++) {
             int sccN = scc.getQuick(i);
             assert sccN > 0;
@@ -25,20 +25,24 @@ import galois.runtime.Iteration;
 import util.concurrent.ConcurrentIntSparseBitVector;
 import util.concurrent.ConcurrentLongSparseBitVector;
 import util.concurrent.NotThreadSafe;
+import util.fn.IntIntLambdaVoid;
+import util.fn.IntLambdaVoid;
 import util.fn.Lambda2Void;
 import util.fn.Lambda3Void;
 import util.fn.Lambda4Void;
 import util.fn.LambdaVoid;
+import util.fn.LongLambdaVoid;
+import util.ints.DiffIntSet;
 import util.ints.IntSet;
-import util.ints.bdd.BddSet;
+import util.ints.IntSetIterator;
 
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 public final class OnlineNode implements Node {
 
-    private static final AtomicReferenceFieldUpdater<OnlineNode, BddSet> prevPointsToUpdater = AtomicReferenceFieldUpdater
-            .newUpdater(OnlineNode.class, BddSet.class, "prevPointsTo");
+    private static final AtomicReferenceFieldUpdater<OnlineNode, DiffIntSet> pointsToDeltaUpdater = AtomicReferenceFieldUpdater
+            .newUpdater(OnlineNode.class, DiffIntSet.class, "pointsToDelta");
 
     private static final AtomicIntegerFieldUpdater<OnlineNode> repUpdater = AtomicIntegerFieldUpdater.newUpdater(
             OnlineNode.class, "representative");
@@ -76,8 +80,17 @@ public final class OnlineNode implements Node {
 
     final ConcurrentLongSparseBitVector gep;
 
-    private volatile BddSet prevPointsTo;
-    final BddSet pointsTo;
+    // loads and stores with offset, encoded like the gep edges
+    final ConcurrentLongSparseBitVector offsetLoad, offsetStore;
+
+    // elements of the points-to that have not been processed yet. Every update of pointsTo adds the new
+    // elements here (possibly along with some old ones), and the rules drain it with takePointsToDelta
+    private volatile DiffIntSet pointsToDelta;
+    final DiffIntSet pointsTo;
+
+    // rank of the node in the worklist order (see WorklistOrder). Written without synchronization, since the order
+    // is approximate anyway
+    int priority;
 
     public OnlineNode(int id, int obj_size) {
         this.id = id;
@@ -90,8 +103,14 @@ public final class OnlineNode implements Node {
         load = new ConcurrentIntSparseBitVector();
         store = new ConcurrentIntSparseBitVector();
         gep = new ConcurrentLongSparseBitVector();
-        prevPointsTo = new BddSet();
-        pointsTo = new BddSet();
+        offsetLoad = new ConcurrentLongSparseBitVector();
+        offsetStore = new ConcurrentLongSparseBitVector();
+        pointsToDelta = newPointsToSet();
+        pointsTo = newPointsToSet();
+    }
+
+    static DiffIntSet newPointsToSet() {
+        return Configuration.PTS.newSet();
     }
 
     @Override
@@ -135,6 +154,44 @@ public final class OnlineNode implements Node {
         gep.map(fn1, fn2, flags);
     }
 
+    @Override
+    public void ___map(IntLambdaVoid fn, byte domain) {
+        if (domain == Constraint.COPY) {
+            copy.mapInt(fn);
+            return;
+        } else if (domain == Constraint.LOAD) {
+            load.mapInt(fn);
+            return;
+        } else if (domain == Constraint.STORE) {
+            store.mapInt(fn);
+            return;
+        }
+        throw new RuntimeException();
+    }
+
+    @Override
+    public void ___map(final IntIntLambdaVoid fn, byte domain) {
+        // the neighbor is in the high half of the edge, the offset in the low one
+        getOffsetEdges(domain).mapLong(new LongLambdaVoid() {
+            @Override
+            public void call(long edge) {
+                fn.call((int) (edge >>> 32), (int) edge);
+            }
+        });
+    }
+
+    @Override
+    public IntSetIterator ___neighbors(byte domain) {
+        if (domain == Constraint.COPY) {
+            return copy.intIterator();
+        } else if (domain == Constraint.LOAD) {
+            return load.intIterator();
+        } else if (domain == Constraint.STORE) {
+            return store.intIterator();
+        }
+        throw new RuntimeException();
+    }
+
     @Override
     public boolean ___addNeighbor(int n, byte domain) {
         if (domain == Constraint.COPY) {
@@ -149,8 +206,17 @@ public final class OnlineNode implements Node {
 
     @Override
     public boolean ___addNeighbor(int n, int edgeData, byte domain) {
+        return getOffsetEdges(domain).add(((long) n << 32) | edgeData);
+    }
+
+    // edges with a value: the geps, and the loads and stores with offset
+    private ConcurrentLongSparseBitVector getOffsetEdges(byte domain) {
         if (domain == Constraint.GEP) {
-            return gep.add(((long) n << 32) | edgeData);
+            return gep;
+        } else if (domain == Constraint.LOAD) {
+            return offsetLoad;
+        } else if (domain == Constraint.STORE) {
+            return offsetStore;
         }
         throw new RuntimeException();
     }
@@ -159,15 +225,18 @@ public final class OnlineNode implements Node {
         if (domain == Constraint.COPY) {
             return copy.size();
         } else if (domain == Constraint.LOAD) {
-            return load.size();
+            return load.size() + offsetLoad.size();
         } else if (domain == Constraint.STORE) {
-            return store.size();
+            return store.size() + offsetStore.size();
         } else if (domain == Constraint.GEP) {
             return gep.size();
         }
         throw new RuntimeException();
     }
 
+    /**
+     * The loads and stores with offset are not part of the neighborhood, see {@link #isOffsetNeighborhoodEmpty}.
+     */
     boolean isNeighborhoodEmpty(byte domain) {
         if (domain == Constraint.COPY) {
             return copy.isEmpty();
@@ -181,6 +250,10 @@ public final class OnlineNode implements Node {
         throw new RuntimeException();
     }
 
+    boolean isOffsetNeighborhoodEmpty(byte domain) {
+        return getOffsetEdges(domain).isEmpty();
+    }
+
     // no path compression
     OnlineNode getRep(MultiGraph<OnlineNode> multiGraph) {
         return getRep(multiGraph, MethodFlag.CHECK_CONFLICT);
@@ -245,14 +318,15 @@ public final class OnlineNode implements Node {
                 constraintsChanged |= node1.load.unionTo(node2.load);
                 constraintsChanged |= node1.store.unionTo(node2.store);
                 constraintsChanged |= node1.gep.unionTo(node2.gep);
-                boolean pointsToChanged = node1.pointsTo.unionTo(node2.pointsTo);
+                constraintsChanged |= node1.offsetLoad.unionTo(node2.offsetLoad);
+                constraintsChanged |= node1.offsetStore.unionTo(node2.offsetStore);
                 if (constraintsChanged) {
-                    prevPointsToUpdater.set(node1, new BddSet());
-                } else {
-                    if (!pointsToChanged) {
-                        // stop propagating information up to the representative
-                        break;
-                    }
+                    // the new constraints have to be applied to the whole points-to
+                    node1.pointsTo.unionTo(node2.pointsTo);
+                    node1.addToPointsToDelta(node1.pointsTo);
+                } else if (!node1.unionToPointsTo(node2.pointsTo)) {
+                    // stop propagating information up to the representative
+                    break;
                 }
             } while (!node1.isRep());
             return node1;
@@ -285,17 +359,23 @@ public final class OnlineNode implements Node {
             //  System.err.println("    merge " + node1.id  + " <= " +  node2.id);
             return node1;
         }
-        node1.pointsTo.serialUnionTo(node2.pointsTo);
+        node1.pointsTo.unionTo(node2.pointsTo);
         node1.copy.serialUnionTo(node2.copy);
         node1.load.serialUnionTo(node2.load);
         node1.store.serialUnionTo(node2.store);
         node1.gep.serialUnionTo(node2.gep);
-        node1.prevPointsTo.clear();
+        node1.offsetLoad.serialUnionTo(node2.offsetLoad);
+        node1.offsetStore.serialUnionTo(node2.offsetStore);
+        // a fresh set instead of clear(): other threads might keep cursors into the old one
+        pointsToDeltaUpdater.set(node1, node1.pointsTo.clone());
         node2.pointsTo.clear();
+        pointsToDeltaUpdater.set(node2, newPointsToSet());
         node2.copy.clear();
         node2.load.clear();
         node2.store.clear();
         node2.gep.clear();
+        node2.offsetLoad.clear();
+        node2.offsetStore.clear();
         return node1;
     }
 
@@ -315,26 +395,97 @@ public final class OnlineNode implements Node {
                 return null;
             }
             if (multiGraph.addNeighbor(src.id, dst.id, Constraint.COPY, flags)) {
-                dst.pointsTo.unionTo(src.pointsTo);
+                dst.unionToPointsTo(src.pointsTo);
             }
         } while (!src.isRep() || !dst.isRep());
         return dst;
     }
 
-    OnlineNode propagatePointsTo(final IntSet diff, MultiGraph<OnlineNode> multiGraph) {
+    OnlineNode propagatePointsTo(final DiffIntSet diff, MultiGraph<OnlineNode> multiGraph) {
         return propagatePointsTo(diff, multiGraph, MethodFlag.ALL);
     }
 
-    OnlineNode propagatePointsTo(final IntSet diff, MultiGraph<OnlineNode> multiGraph, byte flags) {
+    OnlineNode propagatePointsTo(final DiffIntSet diff, MultiGraph<OnlineNode> multiGraph, byte flags) {
         boolean ret;
         OnlineNode srcRep = this;
         do {
             srcRep = srcRep.getRep(multiGraph, flags);
-            ret = srcRep.pointsTo.unionTo(diff);
+            ret = srcRep.unionToPointsTo(diff);
         } while (!srcRep.isRep());
         return ret ? srcRep : null;
     }
 
+    /**
+     * Adds the elements of <code>set</code> to the points-to of this node, and records the ones that were
+     * not already there as pending.
+     *
+     * @return true if the points-to changed
+     */
+    boolean unionToPointsTo(DiffIntSet set) {
+        DiffIntSet newElements = set.clone();
+        newElements.serialDiffTo(pointsTo);
+        if (newElements.isEmpty() || !pointsTo.unionTo(newElements)) {
+            return false;
+        }
+        // a concurrent update might have added some of the elements first, so they can be pending twice
+        addToPointsToDelta(newElements);
+        return true;
+    }
+
+    boolean addPointsTo(int n) {
+        if (!pointsTo.add(n)) {
+            return false;
+        }
+        DiffIntSet delta;
+        do {
+            delta = pointsToDelta;
+            delta.add(n);
+        } while (delta != pointsToDelta);
+        return true;
+    }
+
+    /**
+     * Marks the whole points-to as pending, so the rules are applied again to every element.
+     *
+     * @return false if the points-to is empty
+     */
+    boolean reprocessPointsTo() {
+        if (pointsTo.isEmpty()) {
+            return false;
+        }
+        addToPointsToDelta(pointsTo);
+        return true;
+    }
+
+    private void addToPointsToDelta(IntSet set) {
+        DiffIntSet delta;
+        do {
+            delta = pointsToDelta;
+            delta.unionTo(set);
+            // if the delta was drained in between, the elements might have been missed by the consumer
+        } while (delta != pointsToDelta);
+    }
+
+    /**
+     * Atomically removes the pending elements of the points-to. The caller is responsible for processing them.
+     *
+     * @return the pending elements, or an empty set
+     */
+    DiffIntSet takePointsToDelta() {
+        DiffIntSet delta = pointsToDelta;
+        if (delta.isEmpty()) {
+            return delta;
+        }
+        return pointsToDeltaUpdater.getAndSet(this, newPointsToSet());
+    }
+
+    /**
+     * @return the pending elements of the points-to, which remain pending
+     */
+    DiffIntSet getPointsToDelta() {
+        return pointsToDelta;
+    }
+
     boolean isNonPtr() {
         return (flagsAndSize & NON_POINTER_MASK) != 0;
     }
@@ -383,12 +534,15 @@ public final class OnlineNode implements Node {
         return repUpdater.compareAndSet(this, expected, next);
     }
 
-    IntSet serialGetPrevPointsTo() {
-        return prevPointsTo;
-    }
-
-    IntSet getPrevPointsTo() {
-        return prevPointsToUpdater.get(this);
+    /**
+     * Drops the points-to information of a node that is no longer a representative, so the
+     * BDD nodes it refers to can be collected.
+     */
+    @NotThreadSafe
+    void clearPointsTo() {
+        assert !isRep();
+        pointsTo.clear();
+        pointsToDelta.clear();
     }
 
     boolean addToWorklist() {
@@ -0,0 +1,368 @@
+/*
+ Galois, a framework to exploit amorphous data-parallelism in irregular
+ programs.
+
+ Copyright (C) 2010, The University of Texas at Austin. All rights reserved.
+ UNIVERSITY EXPRESSLY DISCLAIMS ANY AND ALL WARRANTIES CONCERNING THIS SOFTWARE
+ AND DOCUMENTATION, INCLUDING ANY WARRANTIES OF MERCHANTABILITY, FITNESS FOR ANY
+ PARTICULAR PURPOSE, NON-INFRINGEMENT AND WARRANTIES OF PERFORMANCE, AND ANY
+ WARRANTY THAT MIGHT OTHERWISE ARISE FROM COURSE OF DEALING OR USAGE OF TRADE.
+ NO WARRANTY IS EITHER EXPRESS OR IMPLIED WITH RESPECT TO THE USE OF THE
+ SOFTWARE OR DOCUMENTATION. Under no circumstances shall University be liable
+ for incidental, special, indirect, direct or consequential damages or loss of
+ profits, interruption of business, or related expenses which may arise from use
+ of Software or Documentation, including but not limited to those resulting from
+ defects in Software and/or Documentation, or loss or inaccuracy of data of any
+ kind.
+
+ File: ParallelWave.java
+ */
+
+package hardekopfPointsTo.main;
+
+import galois.objects.Mappables;
+import galois.runtime.ForeachContext;
+import galois.runtime.GaloisRuntime;
+import galois.runtime.wl.HierarchicalChunkedFIFO;
+import galois.runtime.wl.Priority;
+import gnu.trove.list.array.TIntArrayList;
+import util.concurrent.ConcurrentGrowingList;
+import util.fn.IntLambdaVoid;
+import util.fn.Lambda2Void;
+import util.fn.LambdaVoid;
+import util.ints.DiffIntSet;
+import util.ints.IntSparseBitVector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static galois.objects.MethodFlag.NONE;
+
+/**
+ * One round of the wave analysis, with every step running in parallel:
+ * <ol>
+ * <li>find the representatives reachable through copy edges from the nodes whose points-to changed</li>
+ * <li>collapse the cycles among them, by trimming the nodes without incoming or outgoing edges and
+ * coloring (forward max-id propagation followed by a backward search from every color root) the rest</li>
+ * <li>propagate the pending points-to of every cycle to its successors, one topological level at a time</li>
+ * </ol>
+ * An instance is only used for one round: all the arrays are indexed by node id and sized to the whole graph.
+ */
+final class ParallelWave {
+    private final MultiGraph<OnlineNode> onlineGraph;
+    private final Priority.Rule priority;
+    // the reachable representatives
+    private final ConcurrentGrowingList<OnlineNode> reached;
+    private final AtomicIntegerArray visited;
+    private final int[][] succs;
+    private final int[][] preds;
+    // number of incoming/outgoing edges from nodes that are still in the graph
+    private final AtomicIntegerArray inDegree;
+    private final AtomicIntegerArray outDegree;
+    private final AtomicIntegerArray color;
+    // 0 while the cycle of the node is unknown, and (id + 1) of the root of the cycle afterwards
+    private final AtomicIntegerArray component;
+    // nodes of every cycle with more than one node, indexed by the id of its root
+    private final int[][] members;
+    private final AtomicInteger mergedNodes;
+    // null unless solving incrementally
+    private final Incremental incremental;
+
+    ParallelWave(MultiGraph<OnlineNode> onlineGraph, int maxNodes, Incremental incremental) {
+        this.onlineGraph = onlineGraph;
+        this.incremental = incremental;
+        priority = Priority.first(HierarchicalChunkedFIFO.class, Configuration.getChunk());
+        int numNodes = onlineGraph.size();
+        reached = new ConcurrentGrowingList<OnlineNode>(maxNodes);
+        visited = new AtomicIntegerArray(numNodes);
+        succs = new int[numNodes][];
+        preds = new int[numNodes][];
+        inDegree = new AtomicIntegerArray(numNodes);
+        outDegree = new AtomicIntegerArray(numNodes);
+        color = new AtomicIntegerArray(numNodes);
+        component = new AtomicIntegerArray(numNodes);
+        members = new int[numNodes][];
+        mergedNodes = new AtomicInteger();
+    }
+
+    /**
+     * @return number of nodes that stopped being representatives during the round
+     */
+    int getMergedNodes() {
+        return mergedNodes.get();
+    }
+
+    /**
+     * @return the representatives whose points-to has pending elements after the propagation
+     */
+    List<OnlineNode> run(List<OnlineNode> changedNodes) throws Exception {
+        reach(changedNodes);
+        buildPredecessors();
+        List<OnlineNode> remaining = reached;
+        while (true) {
+            remaining = trim(remaining);
+            if (remaining.isEmpty()) {
+                break;
+            }
+            remaining = color(remaining);
+        }
+        return propagate();
+    }
+
+    private void reach(List<OnlineNode> changedNodes) throws Exception {
+        List<OnlineNode> initial = new ArrayList<OnlineNode>();
+        for (OnlineNode node : changedNodes) {
+            if (node.isRep() && visited.compareAndSet(node.id, 0, 1)) {
+                initial.add(node);
+            }
+        }
+        Andersen.foreach(initial, new Lambda2Void<OnlineNode, ForeachContext<OnlineNode>>() {
+            @Override
+            public void call(final OnlineNode node, final ForeachContext<OnlineNode> wl) {
+                reached.add(node);
+                final IntSparseBitVector seen = new IntSparseBitVector();
+                final TIntArrayList nodeSuccs = new TIntArrayList();
+                onlineGraph.mapNeighbors(node, new IntLambdaVoid() {
+                    @Override
+                    public void call(int d) {
+                        OnlineNode dst = onlineGraph.getNode(d, NONE).getRep(onlineGraph, NONE);
+                        if (node == dst || !seen.add(dst.id)) {
+                            return;
+                        }
+                        nodeSuccs.add(dst.id);
+                        inDegree.incrementAndGet(dst.id);
+                        if (visited.compareAndSet(dst.id, 0, 1)) {
+                            wl.add(dst, NONE);
+                        }
+                    }
+                }, Constraint.COPY, NONE);
+                succs[node.id] = nodeSuccs.toArray();
+                outDegree.set(node.id, nodeSuccs.size());
+            }
+        }, priority);
+    }
+
+    private void buildPredecessors() throws Exception {
+        final AtomicIntegerArray next = visited;
+        GaloisRuntime.forall(Mappables.fromList(reached, Configuration.getChunkSize(reached.size())), new LambdaVoid<OnlineNode>() {
+            @Override
+            public void call(OnlineNode node) {
+                preds[node.id] = new int[inDegree.get(node.id)];
+                next.set(node.id, 0);
+            }
+        });
+        GaloisRuntime.forall(Mappables.fromList(reached, Configuration.getChunkSize(reached.size())), new LambdaVoid<OnlineNode>() {
+            @Override
+            public void call(OnlineNode node) {
+                for (int dst : succs[node.id]) {
+                    preds[dst][next.getAndIncrement(dst)] = node.id;
+                }
+            }
+        });
+    }
+
+    /**
+     * Removes, one at a time, the nodes that have no incoming or no outgoing edges: every one of them is a
+     * cycle by itself.
+     *
+     * @return the nodes that are still in the graph
+     */
+    private List<OnlineNode> trim(List<OnlineNode> nodes) throws Exception {
+        List<OnlineNode> initial = new ArrayList<OnlineNode>();
+        for (OnlineNode node : nodes) {
+            if (component.get(node.id) == 0 && (inDegree.get(node.id) == 0 || outDegree.get(node.id) == 0)) {
+                initial.add(node);
+            }
+        }
+        Andersen.foreach(initial, new Lambda2Void<OnlineNode, ForeachContext<OnlineNode>>() {
+            @Override
+            public void call(OnlineNode node, ForeachContext<OnlineNode> wl) {
+                // added twice if both degrees reached zero
+                if (component.compareAndSet(node.id, 0, node.id + 1)) {
+                    remove(node.id, wl);
+                }
+            }
+        }, priority);
+        List<OnlineNode> ret = new ArrayList<OnlineNode>();
+        for (OnlineNode node : nodes) {
+            if (component.get(node.id) == 0) {
+                ret.add(node);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Finds the cycles of the nodes whose color is their own id after the propagation. Each of those cycles
+     * is collapsed into a single node.
+     *
+     * @return the nodes that are still in the graph
+     */
+    private List<OnlineNode> color(List<OnlineNode> nodes) throws Exception {
+        for (OnlineNode node : nodes) {
+            color.set(node.id, node.id);
+        }
+        Andersen.foreach(nodes, new Lambda2Void<OnlineNode, ForeachContext<OnlineNode>>() {
+            @Override
+            public void call(OnlineNode node, ForeachContext<OnlineNode> wl) {
+                int nodeColor = color.get(node.id);
+                for (int dst : succs[node.id]) {
+                    if (component.get(dst) != 0) {
+                        continue;
+                    }
+                    int dstColor;
+                    do {
+                        dstColor = color.get(dst);
+                        if (dstColor >= nodeColor) {
+                            break;
+                        }
+                    } while (!color.compareAndSet(dst, dstColor, nodeColor));
+                    if (dstColor < nodeColor) {
+                        wl.add(onlineGraph.getNode(dst, NONE), NONE);
+                    }
+                }
+            }
+        }, priority);
+        final List<OnlineNode> roots = new ArrayList<OnlineNode>();
+        for (OnlineNode node : nodes) {
+            if (color.get(node.id) == node.id) {
+                roots.add(node);
+            }
+        }
+        GaloisRuntime.forall(Mappables.fromList(roots, Configuration.getChunkSize(roots.size())), new LambdaVoid<OnlineNode>() {
+            @Override
+            public void call(OnlineNode root) {
+                collapse(root);
+            }
+        });
+        List<OnlineNode> ret = new ArrayList<OnlineNode>();
+        for (OnlineNode node : nodes) {
+            if (component.get(node.id) == 0) {
+                ret.add(node);
+            }
+        }
+        return ret;
+    }
+
+    // the cycle of root contains the nodes with the same color that reach it. No other thread touches them
+    private void collapse(OnlineNode root) {
+        final int rootColor = root.id;
+        TIntArrayList cycle = new TIntArrayList();
+        component.set(root.id, root.id + 1);
+        cycle.add(root.id);
+        for (int i = 0; i < cycle.size(); i++) {
+            for (int src : preds[cycle.getQuick(i)]) {
+                if (component.get(src) == 0 && color.get(src) == rootColor) {
+                    component.set(src, root.id + 1);
+                    cycle.add(src);
+                }
+            }
+        }
+        OnlineNode rep = root;
+        for (int i = 0; i < cycle.size(); i++) {
+            int id = cycle.getQuick(i);
+            remove(id, null);
+            if (id != root.id) {
+                OnlineNode node = onlineGraph.getNode(id, NONE);
+                OnlineNode newRep = rep.serialMerge(node, true);
+                if (incremental != null) {
+                    incremental.merged(newRep, newRep == node ? rep : node);
+                }
+                rep = newRep;
+            }
+        }
+        if (cycle.size() > 1) {
+            members[root.id] = cycle.toArray();
+            mergedNodes.addAndGet(cycle.size() - 1);
+        }
+    }
+
+    // updates the degrees of the neighbors of a node that leaves the graph
+    private void remove(int id, ForeachContext<OnlineNode> wl) {
+        for (int dst : succs[id]) {
+            if (component.get(dst) == 0 && inDegree.decrementAndGet(dst) == 0 && wl != null) {
+                wl.add(onlineGraph.getNode(dst, NONE), NONE);
+            }
+        }
+        for (int src : preds[id]) {
+            if (component.get(src) == 0 && outDegree.decrementAndGet(src) == 0 && wl != null) {
+                wl.add(onlineGraph.getNode(src, NONE), NONE);
+            }
+        }
+    }
+
+    /**
+     * Pushes the pending points-to of every cycle to its successors. A cycle is processed once all its
+     * predecessors have been, so its pending points-to is complete by then.
+     */
+    private List<OnlineNode> propagate() throws Exception {
+        final List<OnlineNode> roots = new ArrayList<OnlineNode>();
+        for (OnlineNode node : reached) {
+            if (component.get(node.id) == node.id + 1) {
+                roots.add(node);
+            }
+        }
+        final int[][] cycleSuccs = new int[onlineGraph.size()][];
+        GaloisRuntime.forall(Mappables.fromList(roots, Configuration.getChunkSize(roots.size())), new LambdaVoid<OnlineNode>() {
+            @Override
+            public void call(OnlineNode root) {
+                inDegree.set(root.id, 0);
+            }
+        });
+        GaloisRuntime.forall(Mappables.fromList(roots, Configuration.getChunkSize(roots.size())), new LambdaVoid<OnlineNode>() {
+            @Override
+            public void call(OnlineNode root) {
+                int[] cycle = members[root.id] == null ? new int[]{root.id} : members[root.id];
+                IntSparseBitVector seen = new IntSparseBitVector();
+                TIntArrayList rootSuccs = new TIntArrayList();
+                for (int id : cycle) {
+                    for (int dst : succs[id]) {
+                        int dstRoot = component.get(dst) - 1;
+                        if (dstRoot != root.id && seen.add(dstRoot)) {
+                            rootSuccs.add(dstRoot);
+                            inDegree.incrementAndGet(dstRoot);
+                        }
+                    }
+                }
+                cycleSuccs[root.id] = rootSuccs.toArray();
+            }
+        });
+        final ConcurrentGrowingList<OnlineNode> ret = new ConcurrentGrowingList<OnlineNode>(roots.size());
+        List<OnlineNode> level = new ArrayList<OnlineNode>();
+        for (OnlineNode root : roots) {
+            if (inDegree.get(root.id) == 0) {
+                level.add(root);
+            }
+        }
+        while (!level.isEmpty()) {
+            final ConcurrentGrowingList<OnlineNode> nextLevel = new ConcurrentGrowingList<OnlineNode>(roots.size());
+            GaloisRuntime.forall(Mappables.fromList(level, Configuration.getChunkSize(level.size())), new LambdaVoid<OnlineNode>() {
+                @Override
+                public void call(OnlineNode root) {
+                    OnlineNode node = root.getRep(onlineGraph, NONE);
+                    node.removeFromWorklist();
+                    DiffIntSet diffPointsTo = node.getPointsToDelta();
+                    if (!diffPointsTo.isEmpty()) {
+                        // the delta stays pending until waveSolve applies the complex rules to it
+                        diffPointsTo = diffPointsTo.clone();
+                        if (node.addToWorklist()) {
+                            ret.add(node);
+                        }
+                    }
+                    for (int dstRoot : cycleSuccs[root.id]) {
+                        if (!diffPointsTo.isEmpty()) {
+                            onlineGraph.getNode(dstRoot, NONE).getRep(onlineGraph, NONE).unionToPointsTo(diffPointsTo);
+                        }
+                        if (inDegree.decrementAndGet(dstRoot) == 0) {
+                            nextLevel.add(onlineGraph.getNode(dstRoot, NONE));
+                        }
+                    }
+                }
+            });
+            level = nextLevel;
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ Galois, a framework to exploit amorphous data-parallelism in irregular
+ programs.
+
+ Copyright (C) 2010, The University of Texas at Austin. All rights reserved.
+ UNIVERSITY EXPRESSLY DISCLAIMS ANY AND ALL WARRANTIES CONCERNING THIS SOFTWARE
+ AND DOCUMENTATION, INCLUDING ANY WARRANTIES OF MERCHANTABILITY, FITNESS FOR ANY
+ PARTICULAR PURPOSE, NON-INFRINGEMENT AND WARRANTIES OF PERFORMANCE, AND ANY
+ WARRANTY THAT MIGHT OTHERWISE ARISE FROM COURSE OF DEALING OR USAGE OF TRADE.
+ NO WARRANTY IS EITHER EXPRESS OR IMPLIED WITH RESPECT TO THE USE OF THE
+ SOFTWARE OR DOCUMENTATION. Under no circumstances shall University be liable
+ for incidental, special, indirect, direct or consequential damages or loss of
+ profits, interruption of business, or related expenses which may arise from use
+ of Software or Documentation, including but not limited to those resulting from
+ defects in Software and/or Documentation, or loss or inaccuracy of data of any
+ kind.
+
+ File: PointsToSetKind.java
+ */
+
+package hardekopfPointsTo.main;
+
+import util.concurrent.ConcurrentIntSparseBitVector;
+import util.ints.DiffIntSet;
+import util.ints.SharedIntSet;
+import util.ints.bdd.BddSet;
+import util.ints.bdd.HybridIntSet;
+import util.ints.bdd.IntBddSet;
+
+/**
+ * Representations of the points-to sets, selected with the galois.hardekopfPointsTo.pts property.
+ */
+enum PointsToSetKind {
+    // BddNode objects (Bdd)
+    BDD {
+        @Override
+        DiffIntSet newSet() {
+            return new BddSet();
+        }
+    },
+    // nodes stored in primitive arrays (IntBdd)
+    INT_BDD {
+        @Override
+        DiffIntSet newSet() {
+            return new IntBddSet();
+        }
+    },
+    // one concurrent sparse bit vector per set, no sharing
+    SPARSE {
+        @Override
+        DiffIntSet newSet() {
+            return new ConcurrentIntSparseBitVector();
+        }
+    },
+    // sorted array while the set is small, BddNode objects afterwards
+    HYBRID {
+        @Override
+        DiffIntSet newSet() {
+            return new HybridIntSet();
+        }
+    },
+    // hash-consed, immutable sparse bit vectors (SharedSparseBitVector)
+    SHARED {
+        @Override
+        DiffIntSet newSet() {
+            return new SharedIntSet();
+        }
+    };
+
+    abstract DiffIntSet newSet();
+
+    /**
+     * @return true if (some of) the sets are roots of the {@link util.ints.bdd.Bdd} node table
+     */
+    boolean usesBddNodes() {
+        return this == BDD || this == HYBRID;
+    }
+}
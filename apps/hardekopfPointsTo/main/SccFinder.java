@@ -0,0 +1,180 @@
+/*
+ Galois, a framework to exploit amorphous data-parallelism in irregular
+ programs.
+
+ Copyright (C) 2010, The University of Texas at Austin. All rights reserved.
+ UNIVERSITY EXPRESSLY DISCLAIMS ANY AND ALL WARRANTIES CONCERNING THIS SOFTWARE
+ AND DOCUMENTATION, INCLUDING ANY WARRANTIES OF MERCHANTABILITY, FITNESS FOR ANY
+ PARTICULAR PURPOSE, NON-INFRINGEMENT AND WARRANTIES OF PERFORMANCE, AND ANY
+ WARRANTY THAT MIGHT OTHERWISE ARISE FROM COURSE OF DEALING OR USAGE OF TRADE.
+ NO WARRANTY IS EITHER EXPRESS OR IMPLIED WITH RESPECT TO THE USE OF THE
+ SOFTWARE OR DOCUMENTATION. Under no circumstances shall University be liable
+ for incidental, special, indirect, direct or consequential damages or loss of
+ profits, interruption of business, or related expenses which may arise from use
+ of Software or Documentation, including but not limited to those resulting from
+ defects in Software and/or Documentation, or loss or inaccuracy of data of any
+ kind.
+
+ File: SccFinder.java
+ */
+
+package hardekopfPointsTo.main;
+
+import gnu.trove.list.array.TIntArrayList;
+import util.ints.IntSetIterator;
+
+import java.util.Arrays;
+
+import static galois.objects.MethodFlag.NONE;
+
+/**
+ * Tarjan's algorithm (with Nuutila's improvement of pushing only the nodes that are not roots) over the edges of
+ * some domains of a {@link MultiGraph}. The DFS is iterative, and keeps its state in int arrays indexed by node id,
+ * so the depth of the graph does not affect the thread stack.
+ * <p/>
+ * Subclasses decide what to do with every component once it is complete, which can include merging its nodes:
+ * the edges of the component have been completely visited by then.
+ *
+ * @param <T> type of the nodes of the graph
+ */
+abstract class SccFinder<T extends Node> {
+    private static final int NO_SUCCESSOR = -1;
+
+    private final MultiGraph<T> graph;
+    private final byte[] domains;
+    // order in which the nodes were visited, 0 if not visited yet
+    private final int[] dfsId;
+    private final int[] lowLink;
+    // whether the component of the node is complete
+    private final boolean[] done;
+    private int nextDfsId;
+    // visited nodes whose component is not complete yet
+    private final TIntArrayList stack;
+    private final TIntArrayList component;
+    // DFS frames: node, index of the next domain to iterate over, and iterator over the current domain
+    private int[] frameNodes;
+    private int[] frameDomains;
+    private IntSetIterator[] frameIterators;
+
+    SccFinder(MultiGraph<T> graph, byte... domains) {
+        this.graph = graph;
+        this.domains = domains;
+        int numNodes = graph.size();
+        dfsId = new int[numNodes];
+        lowLink = new int[numNodes];
+        done = new boolean[numNodes];
+        nextDfsId = 1;
+        stack = new TIntArrayList();
+        component = new TIntArrayList();
+        frameNodes = new int[64];
+        frameDomains = new int[64];
+        frameIterators = new IntSetIterator[64];
+    }
+
+    /**
+     * Translates the id of a neighbor before visiting it. By default, the ids are used as they are.
+     */
+    int getRep(int n) {
+        return n;
+    }
+
+    /**
+     * Invoked once the component is complete. All its successors have been processed before.
+     *
+     * @param scc the nodes of the component. The first one is the one the DFS reached first
+     */
+    abstract void sccFound(TIntArrayList scc);
+
+    final boolean isVisited(int n) {
+        return dfsId[n] != 0;
+    }
+
+    /**
+     * @return position of the node in the visiting order, starting at 1
+     */
+    final int getDfsId(int n) {
+        return dfsId[n];
+    }
+
+    /**
+     * Finds the components reachable from <code>start</code> that have not been found yet.
+     */
+    final void visit(int start) {
+        if (dfsId[start] != 0) {
+            return;
+        }
+        int depth = push(start, 0);
+        while (depth > 0) {
+            int v = frameNodes[depth - 1];
+            int w = nextSuccessor(depth - 1);
+            if (w != NO_SUCCESSOR) {
+                if (w == v || done[w]) {
+                    continue;
+                }
+                if (dfsId[w] == 0) {
+                    depth = push(w, depth);
+                } else if (lowLink[w] < lowLink[v]) {
+                    lowLink[v] = lowLink[w];
+                }
+                continue;
+            }
+            depth--;
+            frameIterators[depth] = null;
+            if (lowLink[v] == dfsId[v]) {
+                complete(v);
+            } else {
+                stack.add(v);
+            }
+            if (depth > 0) {
+                int u = frameNodes[depth - 1];
+                if (lowLink[v] < lowLink[u]) {
+                    lowLink[u] = lowLink[v];
+                }
+            }
+        }
+    }
+
+    private void complete(int root) {
+        component.resetQuick();
+        component.add(root);
+        done[root] = true;
+        // the nodes visited after the root that are still in the stack belong to its component
+        int rootDfsId = dfsId[root];
+        for (int last = stack.size() - 1; last >= 0 && dfsId[stack.getQuick(last)] > rootDfsId; last--) {
+            int n = stack.removeAt(last);
+            done[n] = true;
+            component.add(n);
+        }
+        sccFound(component);
+    }
+
+    private int nextSuccessor(int frame) {
+        IntSetIterator iterator = frameIterators[frame];
+        while (iterator == null || !iterator.hasNext()) {
+            int domain = frameDomains[frame];
+            if (domain == domains.length) {
+                return NO_SUCCESSOR;
+            }
+            iterator = graph.neighbors(graph.getNode(frameNodes[frame], NONE), domains[domain], NONE);
+            frameIterators[frame] = iterator;
+            frameDomains[frame] = domain + 1;
+        }
+        return getRep(iterator.nextInt());
+    }
+
+    private int push(int n, int depth) {
+        if (depth == frameNodes.length) {
+            int capacity = depth << 1;
+            frameNodes = Arrays.copyOf(frameNodes, capacity);
+            frameDomains = Arrays.copyOf(frameDomains, capacity);
+            frameIterators = Arrays.copyOf(frameIterators, capacity);
+        }
+        frameNodes[depth] = n;
+        frameDomains[depth] = 0;
+        frameIterators[depth] = null;
+        dfsId[n] = nextDfsId;
+        lowLink[n] = nextDfsId;
+        nextDfsId++;
+        return depth + 1;
+    }
+}
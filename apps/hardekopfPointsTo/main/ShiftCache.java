@@ -0,0 +1,117 @@
+/*
+ Galois, a framework to exploit amorphous data-parallelism in irregular
+ programs.
+
+ Copyright (C) 2010, The University of Texas at Austin. All rights reserved.
+ UNIVERSITY EXPRESSLY DISCLAIMS ANY AND ALL WARRANTIES CONCERNING THIS SOFTWARE
+ AND DOCUMENTATION, INCLUDING ANY WARRANTIES OF MERCHANTABILITY, FITNESS FOR ANY
+ PARTICULAR PURPOSE, NON-INFRINGEMENT AND WARRANTIES OF PERFORMANCE, AND ANY
+ WARRANTY THAT MIGHT OTHERWISE ARISE FROM COURSE OF DEALING OR USAGE OF TRADE.
+ NO WARRANTY IS EITHER EXPRESS OR IMPLIED WITH RESPECT TO THE USE OF THE
+ SOFTWARE OR DOCUMENTATION. Under no circumstances shall University be liable
+ for incidental, special, indirect, direct or consequential damages or loss of
+ profits, interruption of business, or related expenses which may arise from use
+ of Software or Documentation, including but not limited to those resulting from
+ defects in Software and/or Documentation, or loss or inaccuracy of data of any
+ kind.
+
+ File: ShiftCache.java
+ */
+
+package hardekopfPointsTo.main;
+
+import galois.objects.MethodFlag;
+import util.ints.bdd.BddNode;
+import util.ints.bdd.HashUtil;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lossy, direct-mapped cache of shifted points-to sets: given the root of a BDD set and an offset, the root of the set
+ * with x + offset for every element x whose object has more than offset fields. The deltas that reach different
+ * nodes are often the same set, which is then shifted once.
+ * <p/>
+ * Like in {@link util.ints.bdd.OperationCache}, every entry is guarded by a sequence number: a writer makes it odd
+ * while it updates the entry, and readers ignore entries whose sequence number is odd or changes during the read. A
+ * new entry evicts the one in its slot. Hits, misses and evictions are counted in {@link Statistics}.
+ * <p/>
+ * The entries point to BDD nodes, so the cache has to be cleared before collecting or reordering the node table.
+ */
+final class ShiftCache {
+    private volatile Table table;
+
+    /**
+     * @param numEntries rounded up to a power of two
+     */
+    ShiftCache(int numEntries) {
+        table = new Table(Integer.highestOneBit(Math.max(numEntries - 1, 1)) << 1);
+    }
+
+    /**
+     * @return the shifted set, or null if it is not in the cache
+     */
+    BddNode get(BddNode root, int offset) {
+        Table t = table;
+        int index = getIndex(root, offset, t.mask);
+        int seqIndex = index << 1;
+        int seq = t.seqAndOffset.get(seqIndex);
+        if ((seq & 1) == 0 && t.seqAndOffset.get(seqIndex + 1) == offset) {
+            int refIndex = index << 1;
+            if (t.refs.get(refIndex) == root) {
+                BddNode value = t.refs.get(refIndex + 1);
+                if (t.seqAndOffset.get(seqIndex) == seq) {
+                    Statistics.shiftCacheHits.add(1, MethodFlag.NONE);
+                    return value;
+                }
+            }
+        }
+        Statistics.shiftCacheMisses.add(1, MethodFlag.NONE);
+        return null;
+    }
+
+    void put(BddNode root, int offset, BddNode value) {
+        Table t = table;
+        int index = getIndex(root, offset, t.mask);
+        int seqIndex = index << 1;
+        int seq = t.seqAndOffset.get(seqIndex);
+        if ((seq & 1) != 0 || !t.seqAndOffset.compareAndSet(seqIndex, seq, seq + 1)) {
+            // another thread is writing this entry
+            return;
+        }
+        int refIndex = index << 1;
+        if (t.refs.get(refIndex) != null) {
+            Statistics.shiftCacheEvictions.add(1, MethodFlag.NONE);
+        }
+        t.seqAndOffset.set(seqIndex + 1, offset);
+        t.refs.set(refIndex, root);
+        t.refs.set(refIndex + 1, value);
+        t.seqAndOffset.set(seqIndex, seq + 2);
+    }
+
+    int capacity() {
+        return table.mask + 1;
+    }
+
+    void clear() {
+        table = new Table(table.mask + 1);
+    }
+
+    private static int getIndex(BddNode root, int offset, int mask) {
+        return HashUtil.hash(root.hashCode() * 31 ^ offset) & mask;
+    }
+
+    private static final class Table {
+        final int mask;
+        // per entry: sequence number and offset
+        final AtomicIntegerArray seqAndOffset;
+        // per entry: root of the set and root of the shifted set
+        final AtomicReferenceArray<BddNode> refs;
+
+        Table(int numEntries) {
+            mask = numEntries - 1;
+            seqAndOffset = new AtomicIntegerArray(numEntries << 1);
+            refs = new AtomicReferenceArray<BddNode>(numEntries << 1);
+        }
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ Galois, a framework to exploit amorphous data-parallelism in irregular
+ programs.
+
+ Copyright (C) 2010, The University of Texas at Austin. All rights reserved.
+ UNIVERSITY EXPRESSLY DISCLAIMS ANY AND ALL WARRANTIES CONCERNING THIS SOFTWARE
+ AND DOCUMENTATION, INCLUDING ANY WARRANTIES OF MERCHANTABILITY, FITNESS FOR ANY
+ PARTICULAR PURPOSE, NON-INFRINGEMENT AND WARRANTIES OF PERFORMANCE, AND ANY
+ WARRANTY THAT MIGHT OTHERWISE ARISE FROM COURSE OF DEALING OR USAGE OF TRADE.
+ NO WARRANTY IS EITHER EXPRESS OR IMPLIED WITH RESPECT TO THE USE OF THE
+ SOFTWARE OR DOCUMENTATION. Under no circumstances shall University be liable
+ for incidental, special, indirect, direct or consequential damages or loss of
+ profits, interruption of business, or related expenses which may arise from use
+ of Software or Documentation, including but not limited to those resulting from
+ defects in Software and/or Documentation, or loss or inaccuracy of data of any
+ kind.
+
+ File: SolutionSnapshot.java
+ */
+
+package hardekopfPointsTo.main;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntIntHashMap;
+import util.fn.IntLambdaVoid;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import static galois.objects.MethodFlag.NONE;
+
+/**
+ * Solution of the analysis in a binary file that is mapped in memory, so the points-to of a variable can be queried
+ * without reading the input or rebuilding the graph. The file is little endian, like the {@link BinaryInput} files:
+ * <pre>
+ * uint64_t version // should be 2
+ * uint64_t numNodes
+ * uint64_t flags // bit 0 set if the representatives only merge nodes of the same cycle
+ * uint64_t numSets
+ * uint64_t numElements
+ * uint64_t hcdSize
+ * int32_t[numNodes] rep // representative of every node
+ * int32_t[numNodes] set // points-to set of every node
+ * int32_t[numSets + 1] start // set i is elements[start[i]] .. elements[start[i + 1] - 1]
+ * int32_t[numElements] elements // the elements of every set, sorted
+ * int32_t[hcdSize] hcdPointer // sorted
+ * int32_t[hcdSize] hcdTarget // *hcdPointer[i] is equivalent to hcdTarget[i]
+ * </pre>
+ * Most representatives share their points-to with many others, so every distinct set is stored once.
+ * <p/>
+ * The queries are thread safe. Running this class prints the points-to of a variable, or whether two variables
+ * may alias:
+ * <pre>
+ * SolutionSnapshot gcc.snap 1234 [5678]
+ * </pre>
+ */
+public final class SolutionSnapshot {
+    private static final long VERSION = 2;
+    private static final long CYCLES_ONLY = 1;
+    public static final int NO_HCD_TARGET = -1;
+
+    private final int numNodes;
+    private final boolean cyclesOnly;
+    private final IntBuffer reps;
+    private final IntBuffer sets;
+    private final IntBuffer starts;
+    private final IntBuffer elements;
+    private final IntBuffer hcdPointers;
+    private final IntBuffer hcdTargets;
+
+    public SolutionSnapshot(String filename) throws IOException {
+        ByteBuffer buf = BinaryInput.map(filename, VERSION);
+        numNodes = BinaryInput.checkInt(buf.getLong());
+        cyclesOnly = (buf.getLong() & CYCLES_ONLY) != 0;
+        int numSets = BinaryInput.checkInt(buf.getLong());
+        int numElements = BinaryInput.checkInt(buf.getLong());
+        int hcdSize = BinaryInput.checkInt(buf.getLong());
+        reps = BinaryInput.column(buf, numNodes);
+        sets = BinaryInput.column(buf, numNodes);
+        starts = BinaryInput.column(buf, numSets + 1);
+        elements = BinaryInput.column(buf, numElements);
+        hcdPointers = BinaryInput.column(buf, hcdSize);
+        hcdTargets = BinaryInput.column(buf, hcdSize);
+    }
+
+    /**
+     * @return the number of variables
+     */
+    public int size() {
+        return numNodes;
+    }
+
+    /**
+     * @return whether the representatives only merge nodes that are part of the same cycle
+     */
+    public boolean isCyclesOnly() {
+        return cyclesOnly;
+    }
+
+    public int getRep(int var) {
+        return reps.get(var);
+    }
+
+    /**
+     * @return the id of the points-to set of the variable. Two variables have the same points-to iff their sets have
+     *         the same id.
+     */
+    public int getSet(int var) {
+        return sets.get(var);
+    }
+
+    public int numSets() {
+        return starts.limit() - 1;
+    }
+
+    /**
+     * @return the sorted points-to of the variable
+     */
+    public int[] pointsTo(int var) {
+        int set = sets.get(var);
+        int start = starts.get(set);
+        int[] ret = new int[starts.get(set + 1) - start];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = elements.get(start + i);
+        }
+        return ret;
+    }
+
+    public int pointsToSize(int var) {
+        int set = sets.get(var);
+        return starts.get(set + 1) - starts.get(set);
+    }
+
+    public boolean mayPointTo(int var, int obj) {
+        int set = sets.get(var);
+        return indexOf(elements, starts.get(set), starts.get(set + 1), obj) >= 0;
+    }
+
+    /**
+     * @return true if the points-to of both variables intersect
+     */
+    public boolean mayAlias(int var1, int var2) {
+        int set1 = sets.get(var1);
+        int set2 = sets.get(var2);
+        int from1 = starts.get(set1), to1 = starts.get(set1 + 1);
+        if (set1 == set2) {
+            return from1 < to1;
+        }
+        int from2 = starts.get(set2), to2 = starts.get(set2 + 1);
+        if (to1 - from1 > to2 - from2) {
+            int tmp = from1;
+            from1 = from2;
+            from2 = tmp;
+            tmp = to1;
+            to1 = to2;
+            to2 = tmp;
+        }
+        // look for the elements of the smaller set in the bigger one, skipping the part already seen
+        for (int i = from1; i < to1 && from2 < to2; i++) {
+            int pos = indexOf(elements, from2, to2, elements.get(i));
+            if (pos >= 0) {
+                return true;
+            }
+            from2 = -pos - 1;
+        }
+        return false;
+    }
+
+    /**
+     * @return the node whose points-to contains that of the pointees of the given node, or {@link #NO_HCD_TARGET}
+     */
+    public int getHcdTarget(int pointer) {
+        int pos = indexOf(hcdPointers, 0, hcdPointers.limit(), pointer);
+        return pos >= 0 ? hcdTargets.get(pos) : NO_HCD_TARGET;
+    }
+
+    public TIntIntHashMap getHcdTable() {
+        int hcdSize = hcdPointers.limit();
+        TIntIntHashMap ret = new TIntIntHashMap(hcdSize);
+        for (int i = 0; i < hcdSize; i++) {
+            ret.put(hcdPointers.get(i), hcdTargets.get(i));
+        }
+        return ret;
+    }
+
+    /**
+     * Applies the function to every element of a points-to set.
+     */
+    void mapSet(int set, IntLambdaVoid fn) {
+        int end = starts.get(set + 1);
+        for (int i = starts.get(set); i < end; i++) {
+            fn.call(elements.get(i));
+        }
+    }
+
+    // binary search in [from, to): the position of the key, or (-(insertion point) - 1)
+    private static int indexOf(IntBuffer buf, int from, int to, int key) {
+        int low = from;
+        int high = to - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int val = buf.get(mid);
+            if (val < key) {
+                low = mid + 1;
+            } else if (val > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Writes the solution in the snapshot format.
+     *
+     * @param cyclesOnly whether the representatives only merge nodes that are part of the same cycle
+     */
+    static void write(String filename, MultiGraph<OnlineNode> onlineGraph, TIntIntHashMap hcdTable, boolean cyclesOnly)
+            throws IOException {
+        System.err.println("Printing snapshot in " + filename);
+        int numNodes = onlineGraph.size();
+        int[] reps = new int[numNodes];
+        int[] setOf = new int[numNodes];
+        // distinct points-to sets, in order of appearance
+        HashMap<TIntArrayList, Integer> ids = new HashMap<TIntArrayList, Integer>();
+        List<TIntArrayList> sets = new ArrayList<TIntArrayList>();
+        long numElements = 0;
+        for (int n = 0; n < numNodes; n++) {
+            OnlineNode node = onlineGraph.getNode(n, NONE);
+            reps[n] = node == null ? n : node.getRep(onlineGraph, NONE).id;
+            if (reps[n] != n) {
+                continue;
+            }
+            final TIntArrayList pointsTo = new TIntArrayList();
+            if (node != null) {
+                node.pointsTo.mapInt(new IntLambdaVoid() {
+                    @Override
+                    public void call(int obj) {
+                        pointsTo.add(obj);
+                    }
+                });
+                pointsTo.sort();
+            }
+            Integer id = ids.get(pointsTo);
+            if (id == null) {
+                id = sets.size();
+                ids.put(pointsTo, id);
+                sets.add(pointsTo);
+                numElements += pointsTo.size();
+            }
+            setOf[n] = id;
+        }
+        // every node has the points-to of its representative
+        for (int n = 0; n < numNodes; n++) {
+            setOf[n] = setOf[reps[n]];
+        }
+        int[] hcdPointers = hcdTable.keys();
+        Arrays.sort(hcdPointers);
+        int[] hcdTargets = new int[hcdPointers.length];
+        for (int i = 0; i < hcdPointers.length; i++) {
+            hcdTargets[i] = hcdTable.get(hcdPointers[i]);
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)));
+        BinaryInput.writeLong(out, VERSION);
+        BinaryInput.writeLong(out, numNodes);
+        BinaryInput.writeLong(out, cyclesOnly ? CYCLES_ONLY : 0);
+        BinaryInput.writeLong(out, sets.size());
+        BinaryInput.writeLong(out, numElements);
+        BinaryInput.writeLong(out, hcdPointers.length);
+        BinaryInput.writeInts(out, reps);
+        BinaryInput.writeInts(out, setOf);
+        int start = 0;
+        for (TIntArrayList pointsTo : sets) {
+            out.writeInt(Integer.reverseBytes(start));
+            start += pointsTo.size();
+        }
+        out.writeInt(Integer.reverseBytes(start));
+        for (TIntArrayList pointsTo : sets) {
+            for (int i = 0; i < pointsTo.size(); i++) {
+                out.writeInt(Integer.reverseBytes(pointsTo.getQuick(i)));
+            }
+        }
+        BinaryInput.writeInts(out, hcdPointers);
+        BinaryInput.writeInts(out, hcdTargets);
+        out.close();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: <snapshot_file> <var> [<var>]");
+            System.exit(1);
+        }
+        SolutionSnapshot snapshot = new SolutionSnapshot(args[0]);
+        int var1 = Integer.parseInt(args[1]);
+        if (args.length == 2) {
+            System.out.println(Arrays.toString(snapshot.pointsTo(var1)));
+        } else {
+            System.out.println(snapshot.mayAlias(var1, Integer.parseInt(args[2])));
+        }
+    }
+}
@@ -28,6 +28,9 @@ import util.MutableInteger;
 import util.fn.FnIterable;
 import util.fn.Lambda;
 import util.fn.LambdaVoid;
+import util.ints.bdd.Bdd;
+import util.ints.bdd.Operation;
+import util.ints.bdd.OperationCache;
 
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -59,8 +62,22 @@ final class Statistics {
     static int hcdOnScc;
     static int hcdOnSccNodes;
     static int passes;
+    // bdd garbage collection
+    static int bddCollections;
+    static long bddNodesBeforeGc;
+    static long bddNodesAfterGc;
+    static long bddGcTime;
+    // bdd variable reordering
+    static int bddReorderings;
+    static long bddNodesBeforeReorder;
+    static long bddNodesAfterReorder;
+    static long bddReorderTime;
 
     static IntegerAccumulator nodeRuns;
+    // shift cache
+    static IntegerAccumulator shiftCacheHits;
+    static IntegerAccumulator shiftCacheMisses;
+    static IntegerAccumulator shiftCacheEvictions;
     static int copyEdgesDeleted;
     static int complexConstraintsDeleted;
 
@@ -107,7 +124,18 @@ final class Statistics {
         Arrays.fill(reducedConstraintCount, 0);
         repValNodes = 0;
         passes = 0;
+        bddCollections = 0;
+        bddNodesBeforeGc = 0;
+        bddNodesAfterGc = 0;
+        bddGcTime = 0;
+        bddReorderings = 0;
+        bddNodesBeforeReorder = 0;
+        bddNodesAfterReorder = 0;
+        bddReorderTime = 0;
         nodeRuns = new IntegerAccumulatorBuilder().create(0);
+        shiftCacheHits = new IntegerAccumulatorBuilder().create(0);
+        shiftCacheMisses = new IntegerAccumulatorBuilder().create(0);
+        shiftCacheEvictions = new IntegerAccumulatorBuilder().create(0);
         complexConstraintsDeleted = 0;
         hcdOnScc = 0;
         hcdOnSccNodes = 0;
@@ -163,10 +191,49 @@ final class Statistics {
         logger.info("Solver passes........................... " + "NA");
         logger.info("- solve_node runs....................... " + nodeRuns.get());
         logger.info("- store rule runs........................" + storeRules.get());
+        logger.info("BDD collections......................... " + bddCollections);
+        logger.info("- nodes before (all collections)........ " + bddNodesBeforeGc);
+        logger.info("- nodes after (all collections)......... " + bddNodesAfterGc);
+        logger.info("- time (ms)............................. " + bddGcTime);
+        logger.info("BDD reorderings......................... " + bddReorderings);
+        logger.info("- nodes before (all reorderings)........ " + bddNodesBeforeReorder);
+        logger.info("- nodes after (all reorderings)......... " + bddNodesAfterReorder);
+        logger.info("- time (ms)............................. " + bddReorderTime);
+        if (Configuration.PTS.usesBddNodes()) {
+            printOperationCacheStats(logger, Bdd.getOperationCache());
+        }
+        printShiftCacheStats(logger);
         //printMemoryUsage(logger, onlineGraph);
         logger.info("");
     }
 
+    private static void printOperationCacheStats(Logger logger, OperationCache cache) {
+        if (cache == null) {
+            return;
+        }
+        logger.info("BDD operation cache entries............. " + cache.capacity());
+        printOperationCacheStats(logger, cache, Operation.AND, "- and (hits/misses/evictions)..........");
+        printOperationCacheStats(logger, cache, Operation.OR, "- or (hits/misses/evictions)...........");
+        printOperationCacheStats(logger, cache, Operation.DIFF, "- diff (hits/misses/evictions).........");
+        printOperationCacheStats(logger, cache, Operation.REPLACE, "- replace (hits/misses/evictions)......");
+    }
+
+    private static void printShiftCacheStats(Logger logger) {
+        int hits = shiftCacheHits.get();
+        int lookups = hits + shiftCacheMisses.get();
+        if (lookups == 0) {
+            return;
+        }
+        logger.info("Shift cache (hits/misses/evictions)..... " + hits + "/" + shiftCacheMisses.get() + "/"
+                + shiftCacheEvictions.get());
+        logger.info("- hit rate (%).......................... " + 100f * (float) hits / (float) lookups);
+    }
+
+    private static void printOperationCacheStats(Logger logger, OperationCache cache, byte op, String label) {
+        logger.info(label + " " + cache.getCount(op, OperationCache.HITS) + "/"
+                + cache.getCount(op, OperationCache.MISSES) + "/" + cache.getCount(op, OperationCache.EVICTIONS));
+    }
+
     private static void printGraphStats(Logger logger, final MultiGraph<OnlineNode> onlineGraph) {
         int size = onlineGraph.size();
         final MutableInteger pts = new MutableInteger(0);
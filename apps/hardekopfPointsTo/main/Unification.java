@@ -0,0 +1,166 @@
+/*
+ Galois, a framework to exploit amorphous data-parallelism in irregular
+ programs.
+
+ Copyright (C) 2010, The University of Texas at Austin. All rights reserved.
+ UNIVERSITY EXPRESSLY DISCLAIMS ANY AND ALL WARRANTIES CONCERNING THIS SOFTWARE
+ AND DOCUMENTATION, INCLUDING ANY WARRANTIES OF MERCHANTABILITY, FITNESS FOR ANY
+ PARTICULAR PURPOSE, NON-INFRINGEMENT AND WARRANTIES OF PERFORMANCE, AND ANY
+ WARRANTY THAT MIGHT OTHERWISE ARISE FROM COURSE OF DEALING OR USAGE OF TRADE.
+ NO WARRANTY IS EITHER EXPRESS OR IMPLIED WITH RESPECT TO THE USE OF THE
+ SOFTWARE OR DOCUMENTATION. Under no circumstances shall University be liable
+ for incidental, special, indirect, direct or consequential damages or loss of
+ profits, interruption of business, or related expenses which may arise from use
+ of Software or Documentation, including but not limited to those resulting from
+ defects in Software and/or Documentation, or loss or inaccuracy of data of any
+ kind.
+
+ File: Unification.java
+ */
+
+package hardekopfPointsTo.main;
+
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.Arrays;
+
+import static galois.objects.MethodFlag.NONE;
+
+/**
+ * Unification-based (Steensgaard) points-to analysis, which is almost linear but much less precise than the inclusion
+ * based one: the nodes are partitioned in classes, and all the nodes of a class point to the nodes of a single class.
+ * The fields of an object are in the class of the object. If a node points to another in the inclusion-based analysis,
+ * the class of the first points to the class of the second.
+ */
+final class Unification {
+    private static final int NONE_CLASS = -1;
+
+    // union-find forest, with the classes created for the pointees that are not nodes at the end
+    private int[] parent;
+    private int[] rank;
+    // class pointed to by every class (meaningful for the roots only)
+    private int[] pointee;
+    private int size;
+    // pairs of classes pending to be joined
+    private final TIntArrayList pending;
+
+    Unification(MultiGraph<OnlineNode> onlineGraph, Constraint[] constraints) {
+        int numNodes = onlineGraph.size();
+        int capacity = numNodes + 16;
+        parent = new int[capacity];
+        rank = new int[capacity];
+        pointee = new int[capacity];
+        for (int n = 0; n < numNodes; n++) {
+            makeClass();
+        }
+        pending = new TIntArrayList();
+        for (int n = 0; n <= OnlineNode.lastObjectNode && n < numNodes; n++) {
+            OnlineNode node = onlineGraph.getNode(n, NONE);
+            if (node == null) {
+                continue;
+            }
+            int objSize = node.getObjSize();
+            for (int offset = 1; offset < objSize && n + offset < numNodes; offset++) {
+                join(n, n + offset);
+            }
+        }
+        for (Constraint constraint : constraints) {
+            if (constraint == null) {
+                continue;
+            }
+            int src = constraint.src, dst = constraint.dst;
+            if (constraint.type == Constraint.ADDR_OF) {
+                // DST = &SRC
+                join(getPointee(dst), src);
+            } else if (constraint.type == Constraint.COPY || constraint.type == Constraint.GEP) {
+                // DST = SRC (+ OFFSET)
+                join(getPointee(dst), getPointee(src));
+            } else if (constraint.type == Constraint.LOAD) {
+                // DST = *(SRC + OFFSET)
+                join(getPointee(dst), getPointee(getPointee(src)));
+            } else if (constraint.type == Constraint.STORE) {
+                // *(DST + OFFSET) = SRC
+                join(getPointee(getPointee(dst)), getPointee(src));
+            }
+        }
+    }
+
+    int find(int n) {
+        int root = n;
+        while (parent[root] != root) {
+            root = parent[root];
+        }
+        while (parent[n] != root) {
+            int next = parent[n];
+            parent[n] = root;
+            n = next;
+        }
+        return root;
+    }
+
+    /**
+     * @return the class pointed to by the class of the node, or -1 if it does not point to anything
+     */
+    int findPointee(int n) {
+        int ret = pointee[find(n)];
+        return ret == NONE_CLASS ? NONE_CLASS : find(ret);
+    }
+
+    /**
+     * @return an upper bound of the ids of the classes
+     */
+    int size() {
+        return size;
+    }
+
+    private int makeClass() {
+        if (size == parent.length) {
+            int capacity = size + (size >> 1);
+            parent = Arrays.copyOf(parent, capacity);
+            rank = Arrays.copyOf(rank, capacity);
+            pointee = Arrays.copyOf(pointee, capacity);
+        }
+        parent[size] = size;
+        pointee[size] = NONE_CLASS;
+        return size++;
+    }
+
+    // returns the class pointed to by the class of the node, creating it if there is none
+    private int getPointee(int n) {
+        int root = find(n);
+        if (pointee[root] == NONE_CLASS) {
+            int ret = makeClass();
+            pointee[root] = ret;
+            return ret;
+        }
+        return find(pointee[root]);
+    }
+
+    private void join(int n1, int n2) {
+        pending.add(n1);
+        pending.add(n2);
+        while (!pending.isEmpty()) {
+            int root1 = find(pending.removeAt(pending.size() - 1));
+            int root2 = find(pending.removeAt(pending.size() - 1));
+            if (root1 == root2) {
+                continue;
+            }
+            if (rank[root1] < rank[root2]) {
+                int tmp = root1;
+                root1 = root2;
+                root2 = tmp;
+            } else if (rank[root1] == rank[root2]) {
+                rank[root1]++;
+            }
+            parent[root2] = root1;
+            // the pointees of both classes are the same class now
+            int pointee1 = pointee[root1], pointee2 = pointee[root2];
+            if (pointee1 == NONE_CLASS) {
+                pointee[root1] = pointee2;
+            } else if (pointee2 != NONE_CLASS) {
+                pending.add(pointee1);
+                pending.add(pointee2);
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ Galois, a framework to exploit amorphous data-parallelism in irregular
+ programs.
+
+ Copyright (C) 2010, The University of Texas at Austin. All rights reserved.
+ UNIVERSITY EXPRESSLY DISCLAIMS ANY AND ALL WARRANTIES CONCERNING THIS SOFTWARE
+ AND DOCUMENTATION, INCLUDING ANY WARRANTIES OF MERCHANTABILITY, FITNESS FOR ANY
+ PARTICULAR PURPOSE, NON-INFRINGEMENT AND WARRANTIES OF PERFORMANCE, AND ANY
+ WARRANTY THAT MIGHT OTHERWISE ARISE FROM COURSE OF DEALING OR USAGE OF TRADE.
+ NO WARRANTY IS EITHER EXPRESS OR IMPLIED WITH RESPECT TO THE USE OF THE
+ SOFTWARE OR DOCUMENTATION. Under no circumstances shall University be liable
+ for incidental, special, indirect, direct or consequential damages or loss of
+ profits, interruption of business, or related expenses which may arise from use
+ of Software or Documentation, including but not limited to those resulting from
+ defects in Software and/or Documentation, or loss or inaccuracy of data of any
+ kind.
+
+ File: WorklistOrder.java
+ */
+
+package hardekopfPointsTo.main;
+
+/**
+ * Order in which the Hardekopf solver visits the nodes whose points-to changed, selected with the
+ * galois.hardekopfPointsTo.order property. The ranks of the ordered variants are kept in {@link OnlineNode#priority}
+ * and only read when the node is added to the worklist, so they are approximate.
+ */
+enum WorklistOrder {
+    // chunks of nodes in the order they were added
+    FIFO(0),
+    // least recently fired first: the rank is the time of the last visit that found a non-empty delta
+    LRF(4),
+    // topological order of the copy edges at the start of the online phase: the rank grows from sources to sinks
+    TOPO(8);
+
+    // ranks that only differ in these low bits are not ordered with respect to each other
+    final int shift;
+
+    WorklistOrder(int shift) {
+        this.shift = shift;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+Galois, a framework to exploit amorphous data-parallelism in irregular
+programs.
+
+Copyright (C) 2010, The University of Texas at Austin. All rights reserved.
+UNIVERSITY EXPRESSLY DISCLAIMS ANY AND ALL WARRANTIES CONCERNING THIS SOFTWARE
+AND DOCUMENTATION, INCLUDING ANY WARRANTIES OF MERCHANTABILITY, FITNESS FOR ANY
+PARTICULAR PURPOSE, NON-INFRINGEMENT AND WARRANTIES OF PERFORMANCE, AND ANY
+WARRANTY THAT MIGHT OTHERWISE ARISE FROM COURSE OF DEALING OR USAGE OF TRADE.
+NO WARRANTY IS EITHER EXPRESS OR IMPLIED WITH RESPECT TO THE USE OF THE
+SOFTWARE OR DOCUMENTATION. Under no circumstances shall University be liable
+for incidental, special, indirect, direct or consequential damages or loss of
+profits, interruption of business, or related expenses which may arise from use
+of Software or Documentation, including but not limited to those resulting from
+defects in Software and/or Documentation, or loss or inaccuracy of data of any
+kind.
+
+File: LineCursor.java
+
+ */
+
+package galois.objects;
+
+/**
+ * Read-only view of a line of text held in a byte buffer. The integers of the
+ * line can be parsed directly from the bytes, without creating a
+ * {@link String}. Any character that is not a digit or a minus sign preceding a
+ * digit is treated as a separator.
+ *
+ * <p>
+ * Cursors are reused between lines. Therefore, it is an error to keep a
+ * reference to a cursor once the function it was passed to returns.
+ *
+ * @see Mappables#fromStream(java.io.InputStream)
+ */
+public final class LineCursor {
+  private byte[] data;
+  private int blockEnd;
+  // first character of the current line
+  private int lineStart;
+  // end of the current line, excluding line terminators
+  private int lineEnd;
+  // beginning of the next line
+  private int next;
+  private int pos;
+
+  LineCursor() {
+  }
+
+  /**
+   * Positions this cursor before the first line of the given block.
+   */
+  void reset(byte[] data, int length) {
+    this.data = data;
+    blockEnd = length;
+    next = 0;
+  }
+
+  /**
+   * Moves to the next line of the block.
+   *
+   * @return false if there are no lines left
+   */
+  boolean nextLine() {
+    if (next >= blockEnd) {
+      return false;
+    }
+    lineStart = next;
+    int end = lineStart;
+    while (end < blockEnd && data[end] != '\n') {
+      end++;
+    }
+    next = end + 1;
+    if (end > lineStart && data[end - 1] == '\r') {
+      end--;
+    }
+    lineEnd = end;
+    pos = lineStart;
+    return true;
+  }
+
+  /**
+   * @return true if the line has no characters
+   */
+  public boolean isEmpty() {
+    return lineStart == lineEnd;
+  }
+
+  /**
+   * @param c  a character
+   * @return   true if the line begins with the given character
+   */
+  public boolean startsWith(char c) {
+    return lineStart < lineEnd && data[lineStart] == c;
+  }
+
+  /**
+   * Tests whether there are integers left in the line, moving past the
+   * separators that precede the next one.
+   *
+   * @return true if there is another integer in the line
+   */
+  public boolean hasNextInt() {
+    return skipTo((char) 0);
+  }
+
+  /**
+   * Tests whether the next integer in the line comes before the given
+   * delimiter. The cursor moves past the separators, but not past the
+   * delimiter.
+   *
+   * @param delimiter  character that marks the end of the integers of interest
+   * @return           true if an integer precedes the next occurrence of
+   *                   <code>delimiter</code>
+   */
+  public boolean hasNextIntBefore(char delimiter) {
+    return skipTo(delimiter);
+  }
+
+  /**
+   * Parses the next integer in the line.
+   *
+   * @return the integer
+   * @throws NumberFormatException if there are no integers left in the line
+   */
+  public int nextInt() {
+    if (!skipTo((char) 0)) {
+      throw new NumberFormatException("No integers left in line: " + toString());
+    }
+    boolean negative = data[pos] == '-';
+    if (negative) {
+      pos++;
+    }
+    int ret = 0;
+    while (pos < lineEnd && isDigit(data[pos])) {
+      ret = ret * 10 + (data[pos] - '0');
+      pos++;
+    }
+    return negative ? -ret : ret;
+  }
+
+  /**
+   * Moves past the next occurrence of the given character in the line.
+   *
+   * @param c  a character
+   * @return   false if the character does not occur in the rest of the line
+   */
+  public boolean skipPast(char c) {
+    while (pos < lineEnd) {
+      if (data[pos++] == c) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean skipTo(char delimiter) {
+    while (pos < lineEnd) {
+      byte b = data[pos];
+      if (isDigit(b) || (b == '-' && pos + 1 < lineEnd && isDigit(data[pos + 1]))) {
+        return true;
+      }
+      if (b == delimiter) {
+        return false;
+      }
+      pos++;
+    }
+    return false;
+  }
+
+  private static boolean isDigit(byte b) {
+    return b >= '0' && b <= '9';
+  }
+
+  /**
+   * @return the whole line, regardless of the current position
+   */
+  @Override
+  public String toString() {
+    char[] chars = new char[lineEnd - lineStart];
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = (char) (data[lineStart + i] & 0xff);
+    }
+    return new String(chars);
+  }
+}
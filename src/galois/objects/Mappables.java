@@ -24,6 +24,7 @@ package galois.objects;
 import galois.runtime.GaloisRuntime;
 
 import java.io.BufferedReader;
+import java.io.InputStream;
 import java.util.List;
 
 import util.Pair;
@@ -68,6 +69,19 @@ public class Mappables {
     return new LineMapper(reader);
   }
 
+  /**
+   * Creates a mappable over lines of a stream. Unlike {@link #fromReader(BufferedReader)},
+   * concurrent iteration reads the stream ahead on a separate thread and hands out whole
+   * blocks of lines to the workers, which parse them in place. Once iteration is complete, the
+   * stream is closed and further use of the mappable will be invalid.
+   *
+   * @param in  the stream
+   * @return    a mappable instance over lines of a stream
+   */
+  public static StreamLineMapper fromStream(InputStream in) {
+    return new StreamLineMapper(in);
+  }
+
   /**
    * Creates a mappable over integers in a range. 
    * 
@@ -0,0 +1,327 @@
+/*
+Galois, a framework to exploit amorphous data-parallelism in irregular
+programs.
+
+Copyright (C) 2010, The University of Texas at Austin. All rights reserved.
+UNIVERSITY EXPRESSLY DISCLAIMS ANY AND ALL WARRANTIES CONCERNING THIS SOFTWARE
+AND DOCUMENTATION, INCLUDING ANY WARRANTIES OF MERCHANTABILITY, FITNESS FOR ANY
+PARTICULAR PURPOSE, NON-INFRINGEMENT AND WARRANTIES OF PERFORMANCE, AND ANY
+WARRANTY THAT MIGHT OTHERWISE ARISE FROM COURSE OF DEALING OR USAGE OF TRADE.
+NO WARRANTY IS EITHER EXPRESS OR IMPLIED WITH RESPECT TO THE USE OF THE
+SOFTWARE OR DOCUMENTATION. Under no circumstances shall University be liable
+for incidental, special, indirect, direct or consequential damages or loss of
+profits, interruption of business, or related expenses which may arise from use
+of Software or Documentation, including but not limited to those resulting from
+defects in Software and/or Documentation, or loss or inaccuracy of data of any
+kind.
+
+File: StreamLineMapper.java
+
+ */
+
+package galois.objects;
+
+import galois.runtime.GaloisRuntime;
+import galois.runtime.PmapContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import util.fn.Lambda2Void;
+import util.fn.Lambda3Void;
+import util.fn.LambdaVoid;
+
+/**
+ * Mappable interface to streams, iterating over all the lines in the stream.
+ *
+ * <p>
+ * The stream is split into blocks of whole lines. During concurrent
+ * iteration, a dedicated thread reads (and decompresses, if the stream does
+ * so) the blocks ahead into a fixed ring of buffers, while the workers
+ * process entire blocks. Lines are presented as {@link LineCursor}s over the
+ * buffers, so no strings are built unless the application asks for them.
+ *
+ * <p>
+ * The first lines of the stream can be read with {@link #readLine()} before
+ * iterating over the rest. Once iteration is complete, the stream is closed
+ * and further use of the mappable will be invalid.
+ */
+public final class StreamLineMapper implements Mappable<LineCursor> {
+  private static final int BLOCK_SIZE = 1 << 18;
+  private static final Block END = new Block(0);
+
+  private final InputStream in;
+  // bytes read from the stream that are not part of any block yet
+  private byte[] tail;
+  private int tailLength;
+  private boolean eof;
+
+  private BlockingQueue<Block> free;
+  private BlockingQueue<Block> full;
+  private Thread reader;
+  private volatile IOException error;
+
+  StreamLineMapper(InputStream in) {
+    this.in = in;
+    tail = new byte[BLOCK_SIZE];
+  }
+
+  /**
+   * Reads a line serially. Only valid before iterating over the stream.
+   *
+   * @return the next line, or null if the end of the stream has been reached
+   */
+  public String readLine() {
+    try {
+      int end = 0;
+      while (true) {
+        while (end < tailLength && tail[end] != '\n') {
+          end++;
+        }
+        if (end < tailLength || eof) {
+          break;
+        }
+        readMore();
+      }
+      if (end == tailLength && tailLength == 0) {
+        return null;
+      }
+      int next = Math.min(end + 1, tailLength);
+      if (end > 0 && tail[end - 1] == '\r') {
+        end--;
+      }
+      char[] chars = new char[end];
+      for (int i = 0; i < end; i++) {
+        chars[i] = (char) (tail[i] & 0xff);
+      }
+      System.arraycopy(tail, next, tail, 0, tailLength - next);
+      tailLength -= next;
+      return new String(chars);
+    } catch (IOException e) {
+      throw new Error(e);
+    }
+  }
+
+  private void readMore() throws IOException {
+    if (tailLength == tail.length) {
+      tail = Arrays.copyOf(tail, tail.length << 1);
+    }
+    int n = in.read(tail, tailLength, tail.length - tailLength);
+    if (n < 0) {
+      eof = true;
+    } else {
+      tailLength += n;
+    }
+  }
+
+  /**
+   * Fills the block with the next lines of the stream.
+   *
+   * @return false if the stream has no lines left
+   */
+  private boolean fill(Block block) throws IOException {
+    // move the incomplete line at the end of the previous block to the front
+    byte[] data = block.data;
+    if (data.length < tailLength) {
+      data = new byte[tail.length];
+    }
+    System.arraycopy(tail, 0, data, 0, tailLength);
+    int length = tailLength;
+    int lastNewline = length - 1;
+    while (lastNewline >= 0 && data[lastNewline] != '\n') {
+      lastNewline--;
+    }
+    while (!eof) {
+      int n = in.read(data, length, data.length - length);
+      if (n < 0) {
+        eof = true;
+        break;
+      }
+      for (int i = length + n - 1; i >= length && lastNewline < length; i--) {
+        if (data[i] == '\n') {
+          lastNewline = i;
+        }
+      }
+      length += n;
+      if (length == data.length) {
+        if (lastNewline >= 0) {
+          break;
+        }
+        // a single line does not fit in the block
+        data = Arrays.copyOf(data, data.length << 1);
+      }
+    }
+    block.data = data;
+    if (eof) {
+      block.length = length;
+      tailLength = 0;
+    } else {
+      block.length = lastNewline + 1;
+      tailLength = length - block.length;
+      if (tail.length < tailLength) {
+        tail = new byte[data.length];
+      }
+      System.arraycopy(data, block.length, tail, 0, tailLength);
+    }
+    return block.length > 0;
+  }
+
+  private void close() {
+    try {
+      in.close();
+    } catch (IOException e) {
+      throw new Error(e);
+    }
+  }
+
+  @Override
+  public final void map(LambdaVoid<LineCursor> body) {
+    map(body, MethodFlag.ALL);
+  }
+
+  @Override
+  public void map(LambdaVoid<LineCursor> body, byte flags) {
+    Block block = new Block(BLOCK_SIZE);
+    LineCursor cursor = new LineCursor();
+    try {
+      while (fill(block)) {
+        cursor.reset(block.data, block.length);
+        while (cursor.nextLine()) {
+          body.call(cursor);
+        }
+      }
+    } catch (IOException e) {
+      throw new Error(e);
+    }
+    close();
+  }
+
+  @Override
+  public final <A1> void map(Lambda2Void<LineCursor, A1> body, A1 arg1) {
+    map(body, arg1, MethodFlag.ALL);
+  }
+
+  @Override
+  public <A1> void map(Lambda2Void<LineCursor, A1> body, A1 arg1, byte flags) {
+    Block block = new Block(BLOCK_SIZE);
+    LineCursor cursor = new LineCursor();
+    try {
+      while (fill(block)) {
+        cursor.reset(block.data, block.length);
+        while (cursor.nextLine()) {
+          body.call(cursor, arg1);
+        }
+      }
+    } catch (IOException e) {
+      throw new Error(e);
+    }
+    close();
+  }
+
+  @Override
+  public final <A1, A2> void map(Lambda3Void<LineCursor, A1, A2> body, A1 arg1, A2 arg2) {
+    map(body, arg1, arg2, MethodFlag.ALL);
+  }
+
+  @Override
+  public <A1, A2> void map(Lambda3Void<LineCursor, A1, A2> body, A1 arg1, A2 arg2, byte flags) {
+    Block block = new Block(BLOCK_SIZE);
+    LineCursor cursor = new LineCursor();
+    try {
+      while (fill(block)) {
+        cursor.reset(block.data, block.length);
+        while (cursor.nextLine()) {
+          body.call(cursor, arg1, arg2);
+        }
+      }
+    } catch (IOException e) {
+      throw new Error(e);
+    }
+    close();
+  }
+
+  @Override
+  public void beforePmap(PmapContext ctx) {
+    int numBlocks = 2 * GaloisRuntime.getRuntime().getMaxThreads() + 2;
+    free = new ArrayBlockingQueue<Block>(numBlocks);
+    // one extra slot for the END marker
+    full = new ArrayBlockingQueue<Block>(numBlocks + 1);
+    for (int i = 0; i < numBlocks; i++) {
+      free.add(new Block(BLOCK_SIZE));
+    }
+    reader = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        readAhead();
+      }
+    }, "StreamLineMapper");
+    reader.setDaemon(true);
+    reader.start();
+  }
+
+  private void readAhead() {
+    try {
+      while (true) {
+        Block block = free.take();
+        if (!fill(block)) {
+          break;
+        }
+        full.put(block);
+      }
+    } catch (IOException e) {
+      error = e;
+    } catch (InterruptedException e) {
+      // the iteration was abandoned
+    } finally {
+      full.add(END);
+    }
+  }
+
+  @Override
+  public void pmap(LambdaVoid<LineCursor> body, PmapContext ctx) {
+    LineCursor cursor = new LineCursor();
+    try {
+      for (Block block = full.take(); block != END; block = full.take()) {
+        cursor.reset(block.data, block.length);
+        while (cursor.nextLine()) {
+          body.call(cursor);
+        }
+        free.add(block);
+      }
+      // let the other workers see the marker
+      full.add(END);
+    } catch (InterruptedException e) {
+      throw new Error(e);
+    }
+  }
+
+  @Override
+  public void afterPmap(PmapContext ctx) {
+    // the reader is still running only if some worker failed
+    reader.interrupt();
+    try {
+      reader.join();
+    } catch (InterruptedException e) {
+      throw new Error(e);
+    }
+    reader = null;
+    free = null;
+    full = null;
+    close();
+    if (error != null) {
+      throw new Error(error);
+    }
+  }
+
+  private static class Block {
+    byte[] data;
+    int length;
+
+    Block(int size) {
+      data = new byte[size];
+    }
+  }
+}
@@ -162,7 +162,7 @@ abstract class AbstractParameterExecutor<T, S> implements Executor, ForeachConte
     int notUsefulSize = stepRec.getNumNotUsefull();
     int parallelWork = stepRec.executed.size() - notUsefulSize;
     int worklistSize = stepRec.worklistSize - notUsefulSize;
-    stats.putStats(Thread.currentThread(), parallelWork, worklistSize, notUsefulSize, stepRec.neighborhoodSizes);
+    stats.putStats(0, parallelWork, worklistSize, notUsefulSize, stepRec.neighborhoodSizes);
   }
 
   /**
@@ -148,6 +148,31 @@ public final class GaloisRuntime {
     getRuntime().runForeach(initial, body, priority);
   }
 
+  /**
+   * Creates an unordered Galois iterator like
+   * {@link #foreach(Iterable, Lambda2Void, galois.runtime.wl.Priority.Rule)}
+   * for a function that never conflicts with other iterations, e.g., because
+   * it only accesses shared data with {@link galois.objects.MethodFlag#NONE}.
+   * The function runs without conflict detection, commit or undo actions, so
+   * it must not abort.
+   * 
+   * @param <T>
+   *          type of elements to iterate over
+   * @param initial
+   *          initial elements to iterate over
+   * @param body
+   *          function to apply
+   * @param priority
+   *          specification of the order elements are processed
+   * @throws ExecutionException
+   *           if there is an uncaught exception during execution
+   */
+  public static <T> void foreachNoConflict(Iterable<T> initial, Lambda2Void<T, ForeachContext<T>> body, Rule priority)
+      throws ExecutionException {
+    getRuntime().checkValidity();
+    getRuntime().runForeachNoConflict(initial, body, priority);
+  }
+
   /**
    * Creates an ordered Galois iterator that concurrently applies a function
    * over all elements in some initial collection. Additional elements may be
@@ -260,7 +285,13 @@ public final class GaloisRuntime {
 
   public int getThreadId() {
     // XXX(ddn): make less of a hack
-    return current.mask == MethodFlag.NONE ? 0 : Iteration.getCurrentIteration().getId();
+    if (current.mask != MethodFlag.NONE) {
+      return Iteration.getCurrentIteration().getId();
+    }
+    // the serial executors have no iterations, but they might still run on
+    // several threads
+    ProcessGroup.Process process = ProcessGroup.Process.getCurrent();
+    return process == null ? 0 : process.getThreadId();
   }
 
   /**
@@ -382,6 +413,24 @@ public final class GaloisRuntime {
     return new ExecutorFrame(next, callable);
   }
 
+  private <T> ExecutorFrame makeForeachNoConflictFrame(Iterable<T> initial,
+      final Lambda2Void<T, ForeachContext<T>> body, Rule priority) throws ExecutionException {
+    if (useSerial || useParameter) {
+      return makeForeachFrame(initial, body, priority);
+    }
+
+    final UnorderedWorklist<T> wl = Priority.makeUnordered(priority, false, null);
+    final NoConflictExecutor<T> ex = new NoConflictExecutor<T>();
+    Worklists.initialWorkDistribution(wl, initial, maxThreads);
+    Callable<IterationStatistics> callable = new Callable<IterationStatistics>() {
+      @Override
+      public IterationStatistics call() throws Exception {
+        return ex.call(body, wl);
+      }
+    };
+    return new ExecutorFrame(ex, callable);
+  }
+
   private <T> ExecutorFrame makeForeachOrderedFrame(Iterable<T> initial, final Lambda2Void<T, ForeachContext<T>> body,
       Rule order, Rule priority) throws ExecutionException {
     return USE_ORDERED_V2 ? makeForeachOrderedFrame2(initial, body, order, priority) : makeForeachOrderedFrame1(
@@ -513,7 +562,7 @@ public final class GaloisRuntime {
     if (!current.executor.isSerial())
       throw new Error("nesting support disabled");
 
-    if (current.executor instanceof PmapExecutor)
+    if (current.executor instanceof PmapExecutor || current.executor instanceof NoConflictExecutor)
       throw new Error("Not yet supported");
 
     // current.executor.suspend(pool);
@@ -523,12 +572,24 @@ public final class GaloisRuntime {
 
   }
 
+  private <T> void runForeachNoConflict(Iterable<T> initial, final Lambda2Void<T, ForeachContext<T>> body,
+      Rule priority) throws ExecutionException {
+    if (!current.executor.isSerial())
+      throw new Error("nesting support disabled");
+
+    if (current.executor instanceof PmapExecutor || current.executor instanceof NoConflictExecutor)
+      throw new Error("Not yet supported");
+
+    IterationStatistics stats = pushContextAndCall(makeForeachNoConflictFrame(initial, body, priority));
+    Launcher.getLauncher().addStats(stats);
+  }
+
   private <T> void runForeachOrdered(Iterable<T> initial, final Lambda2Void<T, ForeachContext<T>> body, Rule order,
       Rule priority) throws ExecutionException {
     if (!current.executor.isSerial())
       throw new Error("nesting support disabled");
 
-    if (current.executor instanceof PmapExecutor)
+    if (current.executor instanceof PmapExecutor || current.executor instanceof NoConflictExecutor)
       throw new Error("Not yet supported");
 
     // current.executor.suspend(pool);
@@ -546,7 +607,7 @@ public final class GaloisRuntime {
     // NB(ddn): Can lead to deadlock (infinite livelock) when using mappable
     // iterators because one thread sleeps holding its locks and the other
     // threads keep executing but they can never suspend their executor
-    if (current.executor instanceof PmapExecutor)
+    if (current.executor instanceof PmapExecutor || current.executor instanceof NoConflictExecutor)
       throw new Error("Not yet supported");
     // current.executor.suspend(pool);
 
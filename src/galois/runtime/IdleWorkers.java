@@ -0,0 +1,198 @@
+/*
+Galois, a framework to exploit amorphous data-parallelism in irregular
+programs.
+
+Copyright (C) 2010, The University of Texas at Austin. All rights reserved.
+UNIVERSITY EXPRESSLY DISCLAIMS ANY AND ALL WARRANTIES CONCERNING THIS SOFTWARE
+AND DOCUMENTATION, INCLUDING ANY WARRANTIES OF MERCHANTABILITY, FITNESS FOR ANY
+PARTICULAR PURPOSE, NON-INFRINGEMENT AND WARRANTIES OF PERFORMANCE, AND ANY
+WARRANTY THAT MIGHT OTHERWISE ARISE FROM COURSE OF DEALING OR USAGE OF TRADE.
+NO WARRANTY IS EITHER EXPRESS OR IMPLIED WITH RESPECT TO THE USE OF THE
+SOFTWARE OR DOCUMENTATION. Under no circumstances shall University be liable
+for incidental, special, indirect, direct or consequential damages or loss of
+profits, interruption of business, or related expenses which may arise from use
+of Software or Documentation, including but not limited to those resulting from
+defects in Software and/or Documentation, or loss or inaccuracy of data of any
+kind.
+ */
+
+package galois.runtime;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Termination detection and parking of the idle threads of an executor.
+ * 
+ * <p>
+ * A counter keeps the number of idle threads. An idle thread becomes active
+ * again (decrements the counter) before polling the worklist, so when the
+ * counter reaches the number of threads, no thread is working or polling and
+ * no work can be added anymore. One of the threads then checks the whole
+ * worklist with {@link Poller#polls()}, while the other threads cannot become
+ * active, and either terminates the execution or resumes working.
+ * 
+ * <p>
+ * Idle threads keep polling for a while, then yield the processor and finally
+ * park until some work is added ({@link #wakeupOne()}) or the execution
+ * terminates ({@link #terminate()}). Termination does not depend on wakeups,
+ * since the last thread to become idle is running when it detects it.
+ */
+final class IdleWorkers {
+  // failed polls before yielding the processor
+  private static final int SPINS = 32;
+  // failed polls before parking
+  private static final int YIELDS = SPINS + 16;
+
+  private final int numThreads;
+  // value of numIdle while the last idle thread checks the worklist
+  private final int checking;
+  // value of numIdle after termination. Idle threads may still increment it
+  private final int terminated;
+
+  private final AtomicInteger numIdle;
+  private final AtomicInteger numParked;
+  // threads parked waiting for work, by thread id
+  private final AtomicReferenceArray<Thread> parked;
+  // threads that have waited at some point, to wake them up at termination
+  private final AtomicReferenceArray<Thread> threads;
+
+  /**
+   * Polls the worklist of an executor on behalf of one of its threads.
+   */
+  interface Poller<T> {
+    /**
+     * Thread-safe poll.
+     */
+    T poll();
+
+    /**
+     * Poll that may assume that no other thread uses the worklist.
+     */
+    T polls();
+  }
+
+  IdleWorkers(int numThreads) {
+    this.numThreads = numThreads;
+    checking = numThreads + 1;
+    terminated = Integer.MAX_VALUE / 2;
+    numIdle = new AtomicInteger();
+    numParked = new AtomicInteger();
+    parked = new AtomicReferenceArray<Thread>(numThreads);
+    threads = new AtomicReferenceArray<Thread>(numThreads);
+  }
+
+  void reset() {
+    numIdle.set(0);
+  }
+
+  /**
+   * @return true if some thread is parked waiting for work
+   */
+  boolean hasParked() {
+    return numParked.get() > 0;
+  }
+
+  /**
+   * Wakes up a thread parked waiting for work, if any.
+   */
+  void wakeupOne() {
+    for (int i = 0; i < numThreads; i++) {
+      Thread t = parked.get(i);
+      if (t != null && parked.compareAndSet(i, t, null)) {
+        numParked.decrementAndGet();
+        LockSupport.unpark(t);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Ends the execution: the idle threads return from
+   * {@link #awaitWork(int, Poller)}, the active ones will when they run out of
+   * work, and the sleeping ones wake up.
+   */
+  void terminate() {
+    numIdle.set(terminated);
+    for (int i = 0; i < numThreads; i++) {
+      Thread t = threads.get(i);
+      if (t != null) {
+        LockSupport.unpark(t);
+      }
+    }
+  }
+
+  /**
+   * Called by a thread that ran out of work.
+   * 
+   * @return an item to work on, or <code>null</code> if the execution has
+   *         terminated
+   */
+  <T> T awaitWork(int tid, Poller<T> poller) {
+    threads.set(tid, Thread.currentThread());
+    int failures = 0;
+    int done = numIdle.incrementAndGet();
+    try {
+      while (true) {
+        if (done > checking) {
+          return null;
+        } else if (done == numThreads) {
+          if (numIdle.compareAndSet(numThreads, checking)) {
+            // Last man: safe to check global termination property
+            T item = poller.polls();
+            if (item == null) {
+              terminate();
+            } else {
+              numIdle.compareAndSet(checking, numThreads - 1);
+            }
+            return item;
+          }
+        } else if (done < numThreads && numIdle.compareAndSet(done, done - 1)) {
+          T item = poller.poll();
+          if (item != null) {
+            return item;
+          }
+          done = numIdle.incrementAndGet();
+          failures++;
+          if (done == numThreads) {
+            continue;
+          } else if (failures < SPINS) {
+            continue;
+          } else if (failures < YIELDS) {
+            Thread.yield();
+          } else if (parked.get(tid) == null) {
+            // poll once more after announcing it, so that new work is either
+            // seen here or wakes this thread up
+            numParked.incrementAndGet();
+            parked.set(tid, Thread.currentThread());
+            continue;
+          } else {
+            LockSupport.park(this);
+            failures = SPINS;
+          }
+        } else if (done == checking) {
+          Thread.yield();
+        }
+        done = numIdle.get();
+      }
+    } finally {
+      if (parked.get(tid) != null && parked.compareAndSet(tid, Thread.currentThread(), null)) {
+        numParked.decrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Parks the current thread for the given number of milliseconds, or until
+   * the execution terminates.
+   */
+  void sleep(int tid, int millis) {
+    threads.set(tid, Thread.currentThread());
+    long deadline = System.nanoTime() + millis * 1000000L;
+    long left;
+    while (numIdle.get() <= checking && (left = deadline - System.nanoTime()) > 0) {
+      LockSupport.parkNanos(this, left);
+    }
+  }
+}
@@ -29,12 +29,12 @@ import util.CollectionMath;
 import util.Statistics;
 
 class IterationStatistics extends Statistics {
-  private final Map<Thread, Long> committed;
-  private final Map<Thread, Long> aborted;
+  private final Map<Integer, Long> committed;
+  private final Map<Integer, Long> aborted;
 
   public IterationStatistics() {
-    committed = new HashMap<Thread, Long>();
-    aborted = new HashMap<Thread, Long>();
+    committed = new HashMap<Integer, Long>();
+    aborted = new HashMap<Integer, Long>();
   }
 
   @Override
@@ -76,18 +76,32 @@ class IterationStatistics extends Statistics {
         abortRatio);
   }
 
-  public void putStats(Thread thread, long numCommitted, long numAborted) {
-    Long n = committed.get(thread);
+  /**
+   * Adds the iterations of a process. The counts are keyed by the id of the
+   * process, so the serial executors (id 0) and the first process of a
+   * parallel loop add up to the same entry, and no thread is kept alive by the
+   * statistics.
+   *
+   * @param threadId
+   *          id of the process, as returned by
+   *          {@link GaloisRuntime#getThreadId()}
+   * @param numCommitted
+   *          number of committed iterations
+   * @param numAborted
+   *          number of aborted iterations
+   */
+  public void putStats(int threadId, long numCommitted, long numAborted) {
+    Long n = committed.get(threadId);
     if (n == null)
-      committed.put(thread, numCommitted);
+      committed.put(threadId, numCommitted);
     else
-      committed.put(thread, numCommitted + n);
+      committed.put(threadId, numCommitted + n);
 
-    n = aborted.get(thread);
+    n = aborted.get(threadId);
     if (n == null)
-      aborted.put(thread, numAborted);
+      aborted.put(threadId, numAborted);
     else
-      aborted.put(thread, numAborted + n);
+      aborted.put(threadId, numAborted + n);
   }
 
   public long getNumCommitted() {
@@ -0,0 +1,221 @@
+/*
+Galois, a framework to exploit amorphous data-parallelism in irregular
+programs.
+
+Copyright (C) 2010, The University of Texas at Austin. All rights reserved.
+UNIVERSITY EXPRESSLY DISCLAIMS ANY AND ALL WARRANTIES CONCERNING THIS SOFTWARE
+AND DOCUMENTATION, INCLUDING ANY WARRANTIES OF MERCHANTABILITY, FITNESS FOR ANY
+PARTICULAR PURPOSE, NON-INFRINGEMENT AND WARRANTIES OF PERFORMANCE, AND ANY
+WARRANTY THAT MIGHT OTHERWISE ARISE FROM COURSE OF DEALING OR USAGE OF TRADE.
+NO WARRANTY IS EITHER EXPRESS OR IMPLIED WITH RESPECT TO THE USE OF THE
+SOFTWARE OR DOCUMENTATION. Under no circumstances shall University be liable
+for incidental, special, indirect, direct or consequential damages or loss of
+profits, interruption of business, or related expenses which may arise from use
+of Software or Documentation, including but not limited to those resulting from
+defects in Software and/or Documentation, or loss or inaccuracy of data of any
+kind.
+ */
+
+package galois.runtime;
+
+import galois.objects.MethodFlag;
+import galois.runtime.wl.UnorderedWorklist;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+
+import util.fn.Lambda0Void;
+import util.fn.Lambda2Void;
+
+/**
+ * An unordered Galois executor for bodies that never conflict, and thus never
+ * abort. There are no {@link Iteration} objects: the body runs in a loop over
+ * the items of the worklist, with no commit or undo actions, and the number
+ * of committed items is counted locally and added once per thread.
+ * 
+ * <p>
+ * Like {@link PmapExecutor}, it is serial for the purpose of method flags, so
+ * the shared objects do not detect conflicts or save undo actions.
+ * 
+ * @param <T>
+ *          type of elements being iterated over
+ */
+class NoConflictExecutor<T> implements Executor {
+  private boolean finish;
+  private final IdleWorkers idle;
+  private final Deque<Lambda0Void> suspendThunks;
+  private volatile boolean yield;
+
+  private final int numThreads;
+  private ProcessGroup<MyProcess> processes;
+
+  public NoConflictExecutor() {
+    numThreads = GaloisRuntime.getRuntime().getMaxThreads();
+    idle = new IdleWorkers(numThreads);
+    suspendThunks = new ArrayDeque<Lambda0Void>();
+  }
+
+  private synchronized void addSuspendThunk(Lambda0Void callback) {
+    suspendThunks.add(callback);
+  }
+
+  public final IterationStatistics call(final Lambda2Void<T, ForeachContext<T>> body,
+      final UnorderedWorklist<T> worklist) throws ExecutionException {
+    processes = new ProcessGroup<MyProcess>(numThreads) {
+      @Override
+      protected MyProcess newInstance(int id) {
+        return new MyProcess(id, body, worklist);
+      }
+    };
+
+    try {
+      while (true) {
+        reset();
+
+        processes.run();
+
+        if (!suspendThunks.isEmpty()) {
+          GaloisRuntime.getRuntime().replaceWithRootContextAndCall(new Lambda0Void() {
+            public void call() {
+              for (Lambda0Void thunk : suspendThunks) {
+                thunk.call();
+              }
+            }
+          });
+        }
+
+        if (finish || !yield) {
+          break;
+        }
+      }
+
+      return processes.finish();
+    } finally {
+      processes = null;
+    }
+  }
+
+  @Override
+  public boolean isSerial() {
+    // NB: For the purpose of flags, this is serial
+    return true;
+  }
+
+  @Override
+  public void arbitrate(Iteration current, Iteration conflicter) throws IterationAbortException {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void onCommit(Iteration it, Lambda0Void action) {
+    // every item commits
+    action.call();
+  }
+
+  @Override
+  public void onRelease(Iteration it, ReleaseCallback action) {
+  }
+
+  @Override
+  public void onUndo(Iteration it, Lambda0Void action) {
+  }
+
+  private void reset() {
+    yield = false;
+    finish = false;
+    suspendThunks.clear();
+    idle.reset();
+  }
+
+  private class MyProcess extends ProcessGroup.Process implements ForeachContext<T> {
+    private final UnorderedWorklist<T> worklist;
+    private final Lambda2Void<T, ForeachContext<T>> body;
+    private final IdleWorkers.Poller<T> poller;
+
+    public MyProcess(int id, Lambda2Void<T, ForeachContext<T>> body, final UnorderedWorklist<T> worklist) {
+      super(id);
+      this.body = body;
+      this.worklist = worklist;
+      final ForeachContext<T> ctx = this;
+      poller = new IdleWorkers.Poller<T>() {
+        @Override
+        public T poll() {
+          return worklist.poll(ctx);
+        }
+
+        @Override
+        public T polls() {
+          return worklist.polls();
+        }
+      };
+    }
+
+    @Override
+    public final void add(final T t) {
+      add(t, MethodFlag.NONE);
+    }
+
+    @Override
+    public void add(final T t, byte flags) {
+      worklist.add(t, this);
+      if (idle.hasParked()) {
+        idle.wakeupOne();
+      }
+    }
+
+    @Override
+    protected void run() throws Exception {
+      Iteration prevIteration = Iteration.getCurrentIteration();
+      Iteration.setCurrentIteration(null);
+      // without iterations, the per-thread objects (e.g., the accumulators)
+      // tell the threads apart by their process
+      assert GaloisRuntime.getRuntime().getThreadId() == getThreadId();
+      long committed = 0;
+      try {
+        while (true) {
+          T item = worklist.poll(this);
+          if (item == null && (yield || (item = isDone()) == null))
+            break;
+
+          beginIteration();
+          try {
+            body.call(item, this);
+          } catch (WorkNotUsefulException e) {
+          } catch (Throwable e) {
+            throw new ExecutionException(e);
+          }
+          committed++;
+
+          if (yield)
+            break;
+        }
+      } finally {
+        addCommitted(committed);
+        idle.terminate();
+        Iteration.setCurrentIteration(prevIteration);
+      }
+    }
+
+    private T isDone() {
+      startWaiting();
+      try {
+        return idle.awaitWork(getThreadId(), poller);
+      } finally {
+        stopWaiting();
+      }
+    }
+
+    @Override
+    public void finish() {
+      finish = true;
+      yield = true;
+    }
+
+    @Override
+    public void suspendWith(final Lambda0Void call) {
+      addSuspendThunk(call);
+      yield = true;
+    }
+  }
+}
@@ -31,7 +31,6 @@ import java.util.Iterator;
 import java.util.PriorityQueue;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -53,9 +52,7 @@ class OrderedExecutor<T> implements Executor {
 
   private ArrayBlockingQueue<OrderedIteration<T>> freeList;
   private int maxIterations;
-  private final Condition moreWork;
-  private final ReentrantLock moreWorkLock;
-  private final AtomicInteger numDone;
+  private final IdleWorkers idle;
   private final int numThreads;
 
   // current is the currently running iteration and can be in SCHEDULED or
@@ -104,9 +101,7 @@ class OrderedExecutor<T> implements Executor {
 
   public OrderedExecutor(OrderedWorklist<T> worklist) {
     numThreads = GaloisRuntime.getRuntime().getMaxThreads();
-    numDone = new AtomicInteger();
-    moreWorkLock = new ReentrantLock();
-    moreWork = moreWorkLock.newCondition();
+    idle = new IdleWorkers(numThreads);
     suspendThunks = new ArrayDeque<Lambda0Void>();
 
     comp = worklist.getComparator();
@@ -278,19 +273,6 @@ class OrderedExecutor<T> implements Executor {
       }
     };
 
-    // Start interrupter
-    Interrupter interrupter = new Interrupter(new Lambda0Void() {
-      @Override
-      public void call() {
-        if (processes != null) {
-          for (MyProcess p : processes) {
-            p.wakeupTick();
-          }
-        }
-      }
-    });
-
-    interrupter.start();
     try {
       while (true) {
         reset();
@@ -318,7 +300,6 @@ class OrderedExecutor<T> implements Executor {
 
       return processes.finish();
     } finally {
-      interrupter.stop();
       processes = null;
     }
   }
@@ -357,16 +338,6 @@ class OrderedExecutor<T> implements Executor {
     return false;
   }
 
-  private void makeAllDone() {
-    // Can't use set() because there is a rare possibility
-    // that it would happen between an increment decrement
-    // pair in isDone and prevent some threads from leaving
-    int n;
-    do {
-      n = numDone.get();
-    } while (!numDone.compareAndSet(n, numThreads));
-  }
-
   @Override
   public void onCommit(Iteration it, Lambda0Void action) {
     it.addCommitAction(action);
@@ -409,33 +380,7 @@ class OrderedExecutor<T> implements Executor {
     yield = false;
     finish = false;
     suspendThunks.clear();
-    numDone.set(0);
-  }
-
-  private boolean someDone() {
-    return numDone.get() > 0;
-  }
-
-  private void wakeupAll() {
-    moreWorkLock.lock();
-    try {
-      moreWork.signalAll();
-    } finally {
-      moreWorkLock.unlock();
-    }
-
-    for (MyProcess p : processes) {
-      p.wakeup();
-    }
-  }
-
-  private void wakeupOne() {
-    moreWorkLock.lock();
-    try {
-      moreWork.signal();
-    } finally {
-      moreWorkLock.unlock();
-    }
+    idle.reset();
   }
 
   private class MyProcess extends ProcessGroup.Process implements ForeachContext<T> {
@@ -444,17 +389,25 @@ class OrderedExecutor<T> implements Executor {
     private OrderedIteration<T> currentIteration;
     private int iterationId = -1;
     private long lastAbort;
-    private final Condition wakeup;
-    private final ReentrantLock wakeupLock;
-    private int wakeupRound;
     private final OrderedWorklist<T> worklist;
+    private final IdleWorkers.Poller<T> poller;
 
-    private MyProcess(int id, Lambda2Void<T, ForeachContext<T>> body, OrderedWorklist<T> worklist) {
+    private MyProcess(int id, Lambda2Void<T, ForeachContext<T>> body, final OrderedWorklist<T> worklist) {
       super(id);
       this.body = body;
       this.worklist = worklist;
-      wakeupLock = new ReentrantLock();
-      wakeup = wakeupLock.newCondition();
+      final ForeachContext<T> ctx = this;
+      poller = new IdleWorkers.Poller<T>() {
+        @Override
+        public T poll() {
+          return worklist.poll(ctx);
+        }
+
+        @Override
+        public T polls() {
+          return worklist.polls();
+        }
+      };
     }
 
     private void abortAndAdd(OrderedIteration<T> it) {
@@ -486,8 +439,8 @@ class OrderedExecutor<T> implements Executor {
           public void call() {
             worklist.add(t, ctx);
             if (useControl) {
-              if (someDone()) {
-                wakeupOne();
+              if (idle.hasParked()) {
+                idle.wakeupOne();
               }
             }
           }
@@ -495,8 +448,8 @@ class OrderedExecutor<T> implements Executor {
       } else {
         worklist.add(t, ctx);
         if (useControl) {
-          if (someDone()) {
-            wakeupOne();
+          if (idle.hasParked()) {
+            idle.wakeupOne();
           }
         }
       }
@@ -680,49 +633,14 @@ class OrderedExecutor<T> implements Executor {
       });
     }
 
-    private T isDone() throws InterruptedException {
+    private T isDone() {
       if (!useControl)
         return null;
 
       startWaiting();
-      moreWorkLock.lock();
       try {
-        int done = numDone.incrementAndGet();
-
-        if (done > numThreads) {
-          // Error by another thread
-          return null;
-        }
-
-        T item = null;
-        while (true) {
-          done = numDone.get();
-          if (done > numThreads) {
-            // Error by another thread
-            return null;
-          } else if (done < numThreads) {
-            if ((item = worklist.poll(this)) != null) {
-              break;
-            }
-          } else {
-            // Last man: safe to check global termination property
-            item = worklist.polls();
-            break;
-          }
-
-          moreWork.await();
-        }
-
-        if (item == null) {
-          assert done == numThreads;
-          wakeupAll();
-          return null;
-        } else {
-          numDone.decrementAndGet();
-          return item;
-        }
+        return idle.awaitWork(getThreadId(), poller);
       } finally {
-        moreWorkLock.unlock();
         stopWaiting();
       }
     }
@@ -885,8 +803,7 @@ class OrderedExecutor<T> implements Executor {
           }
         } while ((item = isDone()) != null);
       } finally {
-        makeAllDone();
-        wakeupAll();
+        idle.terminate();
         currentIteration = null;
         Iteration.setCurrentIteration(prevIteration);
       }
@@ -913,16 +830,9 @@ class OrderedExecutor<T> implements Executor {
      */
     private void sleep(int millis) {
       startWaiting();
-      wakeupLock.lock();
-      wakeupRound = millis;
       try {
-        while (wakeupRound > 0) {
-          wakeup.await();
-        }
-      } catch (InterruptedException e) {
-        throw new Error(e);
+        idle.sleep(getThreadId(), millis);
       } finally {
-        wakeupLock.unlock();
         stopWaiting();
       }
     }
@@ -937,36 +847,6 @@ class OrderedExecutor<T> implements Executor {
         }
       });
     }
-
-    /**
-     * Unconditionally wake up this process (if possible).
-     */
-    private void wakeup() {
-      wakeupLock.lock();
-      try {
-        wakeupRound = 0;
-        wakeup.signal();
-      } finally {
-        wakeupLock.unlock();
-      }
-    }
-
-    /**
-     * Called by interrupter thread to advance sleeping processes.
-     */
-    private void wakeupTick() {
-      wakeupLock.lock();
-      try {
-        if (wakeupRound > 0) {
-          if (--wakeupRound <= 0) {
-            wakeup.signal();
-          }
-        }
-      } finally {
-        wakeupLock.unlock();
-      }
-    }
-
   }
 
   private static class ROBComparator<U> implements Comparator<OrderedIteration<U>> {
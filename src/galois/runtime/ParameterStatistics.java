@@ -49,8 +49,8 @@ class ParameterStatistics extends IterationStatistics {
     neighMins = new TIntArrayList();
   }
 
-  public void putStats(Thread thread, int parallelWork, int worklistSize, int notUsefulSize, List<Integer> ns) {
-    super.putStats(thread, parallelWork, 0);
+  public void putStats(int threadId, int parallelWork, int worklistSize, int notUsefulSize, List<Integer> ns) {
+    super.putStats(threadId, parallelWork, 0);
     this.parallelWork.add(parallelWork);
     this.worklistSize.add(worklistSize);
     this.notUsefulSize.add(notUsefulSize);
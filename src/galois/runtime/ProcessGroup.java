@@ -44,7 +44,7 @@ public abstract class ProcessGroup<T extends ProcessGroup.Process> implements It
 
     IterationStatistics stats = new IterationStatistics();
     for (T p : processes) {
-      stats.putStats(p.thread, p.numCommitted, p.numAborted);
+      stats.putStats(p.id, p.numCommitted, p.numAborted);
     }
 
     return stats;
@@ -70,13 +70,14 @@ public abstract class ProcessGroup<T extends ProcessGroup.Process> implements It
   }
 
   public static abstract class Process implements Callable<Object>, Idleable {
+    // the process run by every thread, which identifies it when there is no iteration
+    private static final ThreadLocal<Process> current = new ThreadLocal<Process>();
     private final int id;
     private long accumWait;
     private long numCommitted;
     private long numAborted;
     private long startTime;
     private long stopTime;
-    private Thread thread;
     private long waitStart;
     private PapiStatistics papiStats;
     private CpuStatistics cpuStats;
@@ -94,15 +95,17 @@ public abstract class ProcessGroup<T extends ProcessGroup.Process> implements It
 
     @Override
     public final Object call() throws Exception {
-      thread = Thread.currentThread();
       accumWait = 0;
       stopTime = 0;
       startTime = System.nanoTime();
       if (papiStats != null)
         papiStats.startThread(id);
+      Process prevProcess = current.get();
+      current.set(this);
       try {
         run();
       } finally {
+        current.set(prevProcess);
         if (papiStats != null)
           papiStats.finishThread(id);
         stopTime = System.nanoTime();
@@ -130,9 +133,21 @@ public abstract class ProcessGroup<T extends ProcessGroup.Process> implements It
       return id;
     }
 
+    /**
+     * @return the process run by the calling thread, or null if it is not
+     *         running one
+     */
+    static Process getCurrent() {
+      return current.get();
+    }
+
     protected final void incrementCommitted() {
       numCommitted++;
     }
+
+    protected final void addCommitted(long n) {
+      numCommitted += n;
+    }
     
     protected final long getCommitted() {
       return numCommitted;
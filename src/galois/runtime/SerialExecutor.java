@@ -92,7 +92,7 @@ class SerialExecutor<T> implements Executor, ForeachContext<T> {
     }
 
     IterationStatistics stats = new IterationStatistics();
-    stats.putStats(Thread.currentThread(), numCommitted, 0);
+    stats.putStats(0, numCommitted, 0);
     return stats;
   }
 
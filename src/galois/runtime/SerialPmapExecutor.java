@@ -52,7 +52,7 @@ class SerialPmapExecutor<T> implements Executor, PmapContext {
     }
     
     IterationStatistics stats = new IterationStatistics();
-    stats.putStats(Thread.currentThread(), numCommitted, 0);
+    stats.putStats(0, numCommitted, 0);
     return stats;
   }
 
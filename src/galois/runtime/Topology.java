@@ -0,0 +1,187 @@
+/*
+Galois, a framework to exploit amorphous data-parallelism in irregular
+programs.
+
+Copyright (C) 2010, The University of Texas at Austin. All rights reserved.
+UNIVERSITY EXPRESSLY DISCLAIMS ANY AND ALL WARRANTIES CONCERNING THIS SOFTWARE
+AND DOCUMENTATION, INCLUDING ANY WARRANTIES OF MERCHANTABILITY, FITNESS FOR ANY
+PARTICULAR PURPOSE, NON-INFRINGEMENT AND WARRANTIES OF PERFORMANCE, AND ANY
+WARRANTY THAT MIGHT OTHERWISE ARISE FROM COURSE OF DEALING OR USAGE OF TRADE.
+NO WARRANTY IS EITHER EXPRESS OR IMPLIED WITH RESPECT TO THE USE OF THE
+SOFTWARE OR DOCUMENTATION. Under no circumstances shall University be liable
+for incidental, special, indirect, direct or consequential damages or loss of
+profits, interruption of business, or related expenses which may arise from use
+of Software or Documentation, including but not limited to those resulting from
+defects in Software and/or Documentation, or loss or inaccuracy of data of any
+kind.
+
+
+*/
+
+package galois.runtime;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import util.SystemProperties;
+
+/**
+ * Assignment of threads to packages (sockets). The packages are the NUMA nodes
+ * with processors in <code>/sys/devices/system/node</code>, numbered from 0 in
+ * the order of the nodes. Thread <i>i</i> of a {@link ThreadPool} is
+ * pinned to processor <i>i</i> when the native library is loaded (see
+ * {@link util.CPUFunctions#setThreadAffinity(int)}), so thread <i>i</i> belongs
+ * to the node whose <code>cpulist</code> contains processor <i>i</i>. Threads
+ * without a processor of that id wrap around the processors. If the nodes
+ * cannot be read, every <code>packageSize</code> (system property) consecutive
+ * threads form a package, and if that is not set either, all the threads are
+ * in the same package.
+ * 
+ * <p>
+ * Threads that are not pinned (no native library, or a pool of tasks) get the
+ * same assignment, which then relies on the operating system keeping threads
+ * close to where they allocate.
+ */
+public final class Topology {
+  private static final String NODE_DIR = "/sys/devices/system/node";
+  private static final int PACKAGE_SIZE = SystemProperties.getIntProperty("packageSize", 0);
+
+  // package of every processor id, -1 for ids that are not online
+  private static int[] packageOfProcessor;
+  // ids of the online processors, in increasing order
+  private static int[] processors;
+
+  private Topology() {
+  }
+
+  /**
+   * @param numThreads
+   *          number of threads
+   * @return the package of every thread, numbered from 0
+   */
+  public static int[] getPackages(int numThreads) {
+    int[] retval = new int[numThreads];
+    if (!readNodes()) {
+      int size = PACKAGE_SIZE > 0 ? PACKAGE_SIZE : numThreads;
+      for (int tid = 0; tid < numThreads; tid++) {
+        retval[tid] = tid / size;
+      }
+      return retval;
+    }
+
+    for (int tid = 0; tid < numThreads; tid++) {
+      int cpu = tid;
+      if (cpu >= packageOfProcessor.length || packageOfProcessor[cpu] < 0) {
+        // more threads than processors start over from the first processor
+        cpu = processors[tid % processors.length];
+      }
+      retval[tid] = packageOfProcessor[cpu];
+    }
+    return retval;
+  }
+
+  /**
+   * @return whether the processors of the NUMA nodes could be read
+   */
+  private static synchronized boolean readNodes() {
+    if (processors == null) {
+      if (!doReadNodes()) {
+        packageOfProcessor = new int[0];
+        processors = new int[0];
+      }
+    }
+    return processors.length != 0;
+  }
+
+  private static boolean doReadNodes() {
+    File[] files = new File(NODE_DIR).listFiles();
+    if (files == null)
+      return false;
+
+    List<Integer> ids = new ArrayList<Integer>();
+    for (File f : files) {
+      String name = f.getName();
+      if (name.matches("node\\d+"))
+        ids.add(Integer.parseInt(name.substring(4)));
+    }
+    Collections.sort(ids);
+
+    List<List<Integer>> packages = new ArrayList<List<Integer>>();
+    int maxProcessor = -1;
+    int numProcessors = 0;
+    for (int id : ids) {
+      try {
+        List<Integer> cpus = readProcessors(new File(NODE_DIR, "node" + id + "/cpulist"));
+        // nodes with memory but no processors do not run threads
+        if (!cpus.isEmpty()) {
+          packages.add(cpus);
+          maxProcessor = Math.max(maxProcessor, Collections.max(cpus));
+          numProcessors += cpus.size();
+        }
+      } catch (IOException e) {
+        return false;
+      } catch (NumberFormatException e) {
+        return false;
+      }
+    }
+    if (numProcessors == 0)
+      return false;
+
+    int[] pkgs = new int[maxProcessor + 1];
+    Arrays.fill(pkgs, -1);
+    for (int pkg = 0; pkg < packages.size(); pkg++) {
+      for (int cpu : packages.get(pkg)) {
+        pkgs[cpu] = pkg;
+      }
+    }
+    int[] cpus = new int[numProcessors];
+    int i = 0;
+    for (int cpu = 0; cpu < pkgs.length; cpu++) {
+      if (pkgs[cpu] >= 0)
+        cpus[i++] = cpu;
+    }
+
+    packageOfProcessor = pkgs;
+    processors = Arrays.copyOf(cpus, i);
+    return true;
+  }
+
+  /**
+   * Parses the processor ids in a list like "0-7,16-23" or "0,2,4,6".
+   */
+  private static List<Integer> readProcessors(File cpulist) throws IOException {
+    BufferedReader reader = new BufferedReader(new FileReader(cpulist));
+    String line;
+    try {
+      line = reader.readLine();
+    } finally {
+      reader.close();
+    }
+
+    List<Integer> retval = new ArrayList<Integer>();
+    if (line == null)
+      return retval;
+    line = line.trim();
+    if (line.length() == 0)
+      return retval;
+
+    for (String range : line.split(",")) {
+      int dash = range.indexOf('-');
+      if (dash < 0) {
+        retval.add(Integer.parseInt(range));
+      } else {
+        int last = Integer.parseInt(range.substring(dash + 1));
+        for (int cpu = Integer.parseInt(range.substring(0, dash)); cpu <= last; cpu++) {
+          retval.add(cpu);
+        }
+      }
+    }
+    return retval;
+  }
+}
@@ -25,9 +25,6 @@ import galois.runtime.wl.UnorderedWorklist;
 import java.util.ArrayDeque;
 import java.util.Deque;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
 
 import util.SystemProperties;
 import util.fn.Lambda0Void;
@@ -43,20 +40,16 @@ class UnorderedExecutor<T> implements Executor {
   private static final boolean useControl = SystemProperties.getBooleanProperty("usecontrol", true);
 
   private boolean finish;
-  private final Condition moreWork;
-  private final ReentrantLock moreWorkLock;
-  private final AtomicInteger numDone;
+  private final IdleWorkers idle;
   private final Deque<Lambda0Void> suspendThunks;
-  private boolean yield;
+  private volatile boolean yield;
 
   private final int numThreads;
   private ProcessGroup<MyProcess> processes;
 
   public UnorderedExecutor() {
     numThreads = GaloisRuntime.getRuntime().getMaxThreads();
-    numDone = new AtomicInteger();
-    moreWorkLock = new ReentrantLock();
-    moreWork = moreWorkLock.newCondition();
+    idle = new IdleWorkers(numThreads);
     suspendThunks = new ArrayDeque<Lambda0Void>();
   }
 
@@ -78,19 +71,6 @@ class UnorderedExecutor<T> implements Executor {
       }
     };
 
-    // Start interrupter
-    Interrupter interrupter = new Interrupter(new Lambda0Void() {
-      @Override
-      public void call() {
-        if (processes != null) {
-          for (MyProcess p : processes) {
-            p.wakeupTick();
-          }
-        }
-      }
-    });
-
-    interrupter.start();
     try {
       while (true) {
         reset();
@@ -114,7 +94,6 @@ class UnorderedExecutor<T> implements Executor {
 
       return processes.finish();
     } finally {
-      interrupter.stop();
       processes = null;
     }
   }
@@ -124,16 +103,6 @@ class UnorderedExecutor<T> implements Executor {
     return false;
   }
 
-  private void makeAllDone() {
-    // Can't use set() because there is a rare possibility
-    // that it would happen between an increment decrement
-    // pair in isDone and prevent some threads from leaving
-    int n;
-    do {
-      n = numDone.get();
-    } while (!numDone.compareAndSet(n, numThreads));
-  }
-
   @Override
   public void onCommit(Iteration it, Lambda0Void action) {
     it.addCommitAction(action);
@@ -153,33 +122,7 @@ class UnorderedExecutor<T> implements Executor {
     yield = false;
     finish = false;
     suspendThunks.clear();
-    numDone.set(0);
-  }
-
-  private boolean someDone() {
-    return numDone.get() > 0;
-  }
-
-  private void wakeupAll() {
-    moreWorkLock.lock();
-    try {
-      moreWork.signalAll();
-    } finally {
-      moreWorkLock.unlock();
-    }
-
-    for (MyProcess p : processes) {
-      p.wakeup();
-    }
-  }
-
-  private void wakeupOne() {
-    moreWorkLock.lock();
-    try {
-      moreWork.signal();
-    } finally {
-      moreWorkLock.unlock();
-    }
+    idle.reset();
   }
 
   private class MyProcess extends ProcessGroup.Process implements ForeachContext<T> {
@@ -188,18 +131,24 @@ class UnorderedExecutor<T> implements Executor {
     private int consecAborts;
     private Iteration currentIteration;
     private long lastAbort;
+    private final IdleWorkers.Poller<T> poller;
 
-    private final Condition wakeup;
-    private final ReentrantLock wakeupLock;
-
-    private int wakeupRound;
-
-    public MyProcess(int id, Lambda2Void<T, ForeachContext<T>> body, UnorderedWorklist<T> worklist) {
+    public MyProcess(int id, Lambda2Void<T, ForeachContext<T>> body, final UnorderedWorklist<T> worklist) {
       super(id);
       this.body = body;
       this.worklist = worklist;
-      wakeupLock = new ReentrantLock();
-      wakeup = wakeupLock.newCondition();
+      final ForeachContext<T> ctx = this;
+      poller = new IdleWorkers.Poller<T>() {
+        @Override
+        public T poll() {
+          return worklist.poll(ctx);
+        }
+
+        @Override
+        public T polls() {
+          return worklist.polls();
+        }
+      };
     }
 
     @Override
@@ -216,8 +165,8 @@ class UnorderedExecutor<T> implements Executor {
           public void call() {
             worklist.add(t, ctx);
             if (useControl) {
-              if (someDone()) {
-                wakeupOne();
+              if (idle.hasParked()) {
+                idle.wakeupOne();
               }
             }
           }
@@ -225,8 +174,8 @@ class UnorderedExecutor<T> implements Executor {
       } else {
         worklist.add(t, ctx);
         if (useControl) {
-          if (someDone()) {
-            wakeupOne();
+          if (idle.hasParked()) {
+            idle.wakeupOne();
           }
         }
       }
@@ -275,8 +224,7 @@ class UnorderedExecutor<T> implements Executor {
         } while ((item = isDone()) != null);
 
       } finally {
-        makeAllDone();
-        wakeupAll();
+        idle.terminate();
         currentIteration = null;
         Iteration.setCurrentIteration(prevIteration);
       }
@@ -330,49 +278,14 @@ class UnorderedExecutor<T> implements Executor {
       });
     }
 
-    private T isDone() throws InterruptedException {
+    private T isDone() {
       if (!useControl)
         return null;
 
       startWaiting();
-      moreWorkLock.lock();
       try {
-        int done = numDone.incrementAndGet();
-
-        if (done > numThreads) {
-          // Error by another thread
-          return null;
-        }
-
-        T item = null;
-        while (true) {
-          done = numDone.get();
-          if (done > numThreads) {
-            // Error by another thread
-            return null;
-          } else if (done < numThreads) {
-            if ((item = worklist.poll(this)) != null) {
-              break;
-            }
-          } else {
-            // Last man: safe to check global termination property
-            item = worklist.polls();
-            break;
-          }
-
-          moreWork.await();
-        }
-
-        if (item == null) {
-          assert done == numThreads;
-          wakeupAll();
-          return null;
-        } else {
-          numDone.decrementAndGet();
-          return item;
-        }
+        return idle.awaitWork(getThreadId(), poller);
       } finally {
-        moreWorkLock.unlock();
         stopWaiting();
       }
     }
@@ -429,16 +342,9 @@ class UnorderedExecutor<T> implements Executor {
      */
     private void sleep(int millis) {
       startWaiting();
-      wakeupLock.lock();
-      wakeupRound = millis;
       try {
-        while (wakeupRound > 0) {
-          wakeup.await();
-        }
-      } catch (InterruptedException e) {
-        throw new Error(e);
+        idle.sleep(getThreadId(), millis);
       } finally {
-        wakeupLock.unlock();
         stopWaiting();
       }
     }
@@ -453,34 +359,5 @@ class UnorderedExecutor<T> implements Executor {
         }
       });
     }
-
-    /**
-     * Unconditionally wake up this process (if possible).
-     */
-    private void wakeup() {
-      wakeupLock.lock();
-      try {
-        wakeupRound = 0;
-        wakeup.signal();
-      } finally {
-        wakeupLock.unlock();
-      }
-    }
-
-    /**
-     * Called by interrupter thread to advance sleeping processes.
-     */
-    private void wakeupTick() {
-      wakeupLock.lock();
-      try {
-        if (wakeupRound > 0) {
-          if (--wakeupRound <= 0) {
-            wakeup.signal();
-          }
-        }
-      } finally {
-        wakeupLock.unlock();
-      }
-    }
   }
 }
@@ -0,0 +1,128 @@
+/*
+Galois, a framework to exploit amorphous data-parallelism in irregular
+programs.
+
+Copyright (C) 2010, The University of Texas at Austin. All rights reserved.
+UNIVERSITY EXPRESSLY DISCLAIMS ANY AND ALL WARRANTIES CONCERNING THIS SOFTWARE
+AND DOCUMENTATION, INCLUDING ANY WARRANTIES OF MERCHANTABILITY, FITNESS FOR ANY
+PARTICULAR PURPOSE, NON-INFRINGEMENT AND WARRANTIES OF PERFORMANCE, AND ANY
+WARRANTY THAT MIGHT OTHERWISE ARISE FROM COURSE OF DEALING OR USAGE OF TRADE.
+NO WARRANTY IS EITHER EXPRESS OR IMPLIED WITH RESPECT TO THE USE OF THE
+SOFTWARE OR DOCUMENTATION. Under no circumstances shall University be liable
+for incidental, special, indirect, direct or consequential damages or loss of
+profits, interruption of business, or related expenses which may arise from use
+of Software or Documentation, including but not limited to those resulting from
+defects in Software and/or Documentation, or loss or inaccuracy of data of any
+kind.
+
+
+*/
+
+package galois.runtime.wl;
+
+import galois.runtime.ThreadContext;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import util.fn.Lambda;
+import util.fn.Lambda0;
+
+/**
+ * Order elements approximately according to a function mapping elements to
+ * integers (their rank), in ascending order. Elements are grouped in buckets of
+ * 2<sup><i>shift</i></sup> consecutive ranks, and elements in the same bucket
+ * are unordered with respect to each other and are eligible to be ordered by
+ * subsequent rules.
+ * 
+ * <p>
+ * Unlike {@link OrderedByIntegerMetric}, the ranks are not bounded, so they can
+ * be timestamps or other values that keep growing during the execution. The
+ * rank of an element is computed once, when it is added, so it may drift from
+ * the value the function would return when the element is polled. The
+ * concurrent version keeps the buckets of every thread separately and only
+ * approximates the global order: a thread polls from its own buckets, and takes
+ * elements from the lowest bucket of another thread when it runs out of them
+ * or when its own lowest bucket falls behind.
+ * 
+ * <pre>
+ *       Lambda&lt;T, Integer&gt; lastVisit = ...
+ *       Priority.first(ApproxOrderedByIntegerMetric.class, 4, lastVisit).then(FIFO.class);
+ * </pre>
+ * 
+ * @param <T>
+ *          the type of elements of the worklist
+ */
+@MatchingConcurrentVersion(ConcurrentApproxOrderedByIntegerMetric.class)
+@MatchingLeafVersion(ApproxOrderedByIntegerMetricLeaf.class)
+@FunctionParameter(FunctionParameterType.LAMBDA_T_INT_1)
+public class ApproxOrderedByIntegerMetric<T> implements Worklist<T> {
+  private final int shift;
+  private final Lambda<T, Integer> indexer;
+  private final Worklist<T> prototype;
+  private final TreeMap<Integer, Worklist<T>> bucket;
+  private int size;
+
+  /**
+   * Creates an approximate ascending order
+   * 
+   * @param shift
+   *          elements whose ranks only differ in the lowest <i>shift</i> bits
+   *          are unordered
+   * @param indexer
+   *          function mapping elements to their ranks
+   */
+  public ApproxOrderedByIntegerMetric(int shift, Lambda<T, Integer> indexer, Lambda0<Worklist<T>> maker,
+      boolean needSize) {
+    this(shift, indexer, maker.call());
+  }
+
+  private ApproxOrderedByIntegerMetric(int shift, Lambda<T, Integer> indexer, Worklist<T> prototype) {
+    this.shift = shift;
+    this.indexer = indexer;
+    this.prototype = prototype;
+    bucket = new TreeMap<Integer, Worklist<T>>();
+    size = 0;
+  }
+
+  @Override
+  public Worklist<T> newInstance() {
+    return new ApproxOrderedByIntegerMetric<T>(shift, indexer, prototype.newInstance());
+  }
+
+  @Override
+  public void add(T item, ThreadContext ctx) {
+    Integer key = indexer.call(item) >> shift;
+    Worklist<T> b = bucket.get(key);
+    if (b == null) {
+      b = prototype.newInstance();
+      bucket.put(key, b);
+    }
+    b.add(item, ctx);
+    size++;
+  }
+
+  @Override
+  public T poll(ThreadContext ctx) {
+    Map.Entry<Integer, Worklist<T>> first;
+    while ((first = bucket.firstEntry()) != null) {
+      T retval = first.getValue().poll(ctx);
+      if (retval != null) {
+        size--;
+        return retval;
+      }
+      bucket.pollFirstEntry();
+    }
+    return null;
+  }
+
+  @Override
+  public T polls() {
+    return poll(null);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+}
@@ -0,0 +1,237 @@
+/*
+Galois, a framework to exploit amorphous data-parallelism in irregular
+programs.
+
+Copyright (C) 2010, The University of Texas at Austin. All rights reserved.
+UNIVERSITY EXPRESSLY DISCLAIMS ANY AND ALL WARRANTIES CONCERNING THIS SOFTWARE
+AND DOCUMENTATION, INCLUDING ANY WARRANTIES OF MERCHANTABILITY, FITNESS FOR ANY
+PARTICULAR PURPOSE, NON-INFRINGEMENT AND WARRANTIES OF PERFORMANCE, AND ANY
+WARRANTY THAT MIGHT OTHERWISE ARISE FROM COURSE OF DEALING OR USAGE OF TRADE.
+NO WARRANTY IS EITHER EXPRESS OR IMPLIED WITH RESPECT TO THE USE OF THE
+SOFTWARE OR DOCUMENTATION. Under no circumstances shall University be liable
+for incidental, special, indirect, direct or consequential damages or loss of
+profits, interruption of business, or related expenses which may arise from use
+of Software or Documentation, including but not limited to those resulting from
+defects in Software and/or Documentation, or loss or inaccuracy of data of any
+kind.
+
+
+*/
+
+package galois.runtime.wl;
+
+import galois.runtime.GaloisRuntime;
+import galois.runtime.ThreadContext;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import util.fn.Lambda;
+import util.fn.Lambda0;
+
+@NestedAreSerial
+@MatchingConcurrentVersion(ConcurrentApproxOrderedByIntegerMetric.class)
+@MatchingLeafVersion(ConcurrentApproxOrderedByIntegerMetricLeaf.class)
+class ConcurrentApproxOrderedByIntegerMetric<T> implements Worklist<T> {
+  // number of elements taken at once from the lowest bucket of another thread
+  private static final int STEAL_SIZE = 32;
+  // polls between two comparisons of the lowest bucket of this thread against the others
+  private static final int CHECK_INTERVAL = 64;
+  private static final int EMPTY = Integer.MAX_VALUE;
+
+  private final int shift;
+  private final Lambda<T, Integer> indexer;
+  private final Worklist<T> prototype;
+  private final Local<T>[] local;
+  private AtomicInteger size;
+
+  public ConcurrentApproxOrderedByIntegerMetric(int shift, Lambda<T, Integer> indexer, Lambda0<Worklist<T>> maker,
+      boolean needSize) {
+    this(shift, indexer, maker.call(), needSize);
+  }
+
+  @SuppressWarnings("unchecked")
+  private ConcurrentApproxOrderedByIntegerMetric(int shift, Lambda<T, Integer> indexer, Worklist<T> prototype,
+      boolean needSize) {
+    this.shift = shift;
+    this.indexer = indexer;
+    this.prototype = prototype;
+
+    int numThreads = GaloisRuntime.getRuntime().getMaxThreads();
+    local = (Local<T>[]) new Local<?>[numThreads];
+    for (int i = 0; i < numThreads; i++) {
+      local[i] = new Local<T>();
+    }
+
+    if (needSize)
+      size = new AtomicInteger();
+  }
+
+  @Override
+  public Worklist<T> newInstance() {
+    return new ConcurrentApproxOrderedByIntegerMetric<T>(shift, indexer, prototype.newInstance(), size != null);
+  }
+
+  @Override
+  public void add(T item, ThreadContext ctx) {
+    int key = indexer.call(item) >> shift;
+    Local<T> l = local[ctx.getThreadId()];
+
+    if (size != null)
+      size.incrementAndGet();
+
+    synchronized (l) {
+      addLocal(l, key, item, ctx);
+    }
+  }
+
+  @Override
+  public T poll(ThreadContext ctx) {
+    int tid = ctx.getThreadId();
+    Local<T> l = local[tid];
+    T retval;
+
+    if (++l.polls == CHECK_INTERVAL) {
+      l.polls = 0;
+      steal(tid, l.minKey, ctx);
+    }
+    synchronized (l) {
+      retval = pollLocal(l, ctx);
+    }
+    if (retval == null && steal(tid, EMPTY, ctx)) {
+      synchronized (l) {
+        retval = pollLocal(l, ctx);
+      }
+    }
+
+    if (retval != null && size != null)
+      size.decrementAndGet();
+
+    return retval;
+  }
+
+  @Override
+  public T polls() {
+    while (true) {
+      Local<T> lowest = null;
+      for (Local<T> l : local) {
+        if (lowest == null || l.minKey < lowest.minKey)
+          lowest = l;
+      }
+      if (lowest == null || lowest.minKey == EMPTY)
+        return null;
+
+      T item = pollLocal(lowest, null);
+      if (item != null) {
+        if (size != null)
+          size.decrementAndGet();
+        return item;
+      }
+    }
+  }
+
+  @Override
+  public int size() {
+    if (size != null)
+      return size.get();
+    else
+      throw new UnsupportedOperationException();
+  }
+
+  private void addLocal(Local<T> l, int key, T item, ThreadContext ctx) {
+    Worklist<T> b = l.last;
+    if (b == null || l.lastKey != key) {
+      b = l.bucket.get(key);
+      if (b == null) {
+        b = prototype.newInstance();
+        l.bucket.put(key, b);
+      }
+      l.last = b;
+      l.lastKey = key;
+    }
+    b.add(item, ctx);
+    if (key < l.minKey)
+      l.minKey = key;
+  }
+
+  private T pollLocal(Local<T> l, ThreadContext ctx) {
+    Map.Entry<Integer, Worklist<T>> first;
+    while ((first = l.bucket.firstEntry()) != null) {
+      T retval = first.getValue().poll(ctx);
+      if (retval != null)
+        return retval;
+      removeFirst(l);
+    }
+    return null;
+  }
+
+  private void removeFirst(Local<T> l) {
+    if (l.bucket.pollFirstEntry().getValue() == l.last)
+      l.last = null;
+    l.minKey = l.bucket.isEmpty() ? EMPTY : l.bucket.firstKey();
+  }
+
+  /**
+   * Moves some elements from the lowest bucket among the other threads to
+   * this thread, if that bucket is lower than <code>limit</code>.
+   * 
+   * @return true if some elements were moved
+   */
+  private boolean steal(int tid, int limit, ThreadContext ctx) {
+    Local<T> victim = null;
+    int victimKey = limit;
+    for (int i = 1; i < local.length; i++) {
+      Local<T> l = local[(tid + i) % local.length];
+      int key = l.minKey;
+      if (key < victimKey) {
+        victim = l;
+        victimKey = key;
+      }
+    }
+    if (victim == null)
+      return false;
+
+    // never hold two locks at the same time
+    ArrayList<T> stolen = local[tid].stolen;
+    int key;
+    synchronized (victim) {
+      Map.Entry<Integer, Worklist<T>> first = victim.bucket.firstEntry();
+      if (first == null)
+        return false;
+      key = first.getKey();
+      Worklist<T> b = first.getValue();
+      T item;
+      while (stolen.size() < STEAL_SIZE && (item = b.poll(ctx)) != null) {
+        stolen.add(item);
+      }
+      if (stolen.size() < STEAL_SIZE)
+        removeFirst(victim);
+    }
+    if (stolen.isEmpty())
+      return false;
+
+    Local<T> l = local[tid];
+    synchronized (l) {
+      for (int i = 0; i < stolen.size(); i++) {
+        addLocal(l, key, stolen.get(i), ctx);
+      }
+    }
+    stolen.clear();
+    return true;
+  }
+
+  private static class Local<T> {
+    // buckets by rank >> shift
+    final TreeMap<Integer, Worklist<T>> bucket = new TreeMap<Integer, Worklist<T>>();
+    // key of the lowest bucket (EMPTY if there is none), read without the lock by the other threads
+    volatile int minKey = EMPTY;
+    // bucket of the last addition, to skip the lookup when consecutive elements fall in the same bucket
+    Worklist<T> last;
+    int lastKey;
+    // the fields below are only accessed by the owner thread
+    int polls;
+    final ArrayList<T> stolen = new ArrayList<T>(STEAL_SIZE);
+  }
+}
@@ -0,0 +1,192 @@
+/*
+Galois, a framework to exploit amorphous data-parallelism in irregular
+programs.
+
+Copyright (C) 2010, The University of Texas at Austin. All rights reserved.
+UNIVERSITY EXPRESSLY DISCLAIMS ANY AND ALL WARRANTIES CONCERNING THIS SOFTWARE
+AND DOCUMENTATION, INCLUDING ANY WARRANTIES OF MERCHANTABILITY, FITNESS FOR ANY
+PARTICULAR PURPOSE, NON-INFRINGEMENT AND WARRANTIES OF PERFORMANCE, AND ANY
+WARRANTY THAT MIGHT OTHERWISE ARISE FROM COURSE OF DEALING OR USAGE OF TRADE.
+NO WARRANTY IS EITHER EXPRESS OR IMPLIED WITH RESPECT TO THE USE OF THE
+SOFTWARE OR DOCUMENTATION. Under no circumstances shall University be liable
+for incidental, special, indirect, direct or consequential damages or loss of
+profits, interruption of business, or related expenses which may arise from use
+of Software or Documentation, including but not limited to those resulting from
+defects in Software and/or Documentation, or loss or inaccuracy of data of any
+kind.
+
+
+*/
+
+package galois.runtime.wl;
+
+import galois.runtime.GaloisRuntime;
+import galois.runtime.ThreadContext;
+import galois.runtime.Topology;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import util.fn.Lambda0;
+
+@NestedAreSerial
+@MatchingConcurrentVersion(ConcurrentHierarchicalChunkedFIFO.class)
+@MatchingLeafVersion(ConcurrentHierarchicalChunkedFIFOLeaf.class)
+class ConcurrentHierarchicalChunkedFIFO<T> implements Worklist<T> {
+  private static final int CACHE_MULTIPLE = 16;
+
+  private final int chunkSize;
+  private Worklist<T>[] current;
+  private Worklist<T>[] next;
+  // package of every thread
+  private final int[] packages;
+  // full chunks of every package
+  private final ConcurrentLinkedQueue<Worklist<T>>[] pool;
+  private AtomicInteger size;
+
+  public ConcurrentHierarchicalChunkedFIFO(Lambda0<Worklist<T>> maker, boolean needSize) {
+    this(ChunkedFIFO.DEFAULT_CHUNK_SIZE, maker, needSize);
+  }
+
+  @SuppressWarnings("unchecked")
+  public ConcurrentHierarchicalChunkedFIFO(int chunkSize, Lambda0<Worklist<T>> maker, boolean needSize) {
+    this(chunkSize, null, null, needSize);
+
+    int numThreads = packages.length;
+    current = (Worklist<T>[]) new Worklist<?>[numThreads * CACHE_MULTIPLE];
+    next = (Worklist<T>[]) new Worklist<?>[numThreads * CACHE_MULTIPLE];
+    for (int i = 0; i < numThreads; i++) {
+      current[getIndex(i)] = null;
+      next[getIndex(i)] = maker.call();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private ConcurrentHierarchicalChunkedFIFO(int chunkSize, Worklist<T>[] current, Worklist<T>[] next,
+      boolean needSize) {
+    this.chunkSize = chunkSize;
+    this.current = current;
+    this.next = next;
+
+    packages = Topology.getPackages(GaloisRuntime.getRuntime().getMaxThreads());
+    int numPackages = 0;
+    for (int pkg : packages) {
+      numPackages = Math.max(numPackages, pkg + 1);
+    }
+    pool = (ConcurrentLinkedQueue<Worklist<T>>[]) new ConcurrentLinkedQueue<?>[numPackages];
+    for (int i = 0; i < numPackages; i++) {
+      pool[i] = new ConcurrentLinkedQueue<Worklist<T>>();
+    }
+
+    if (needSize)
+      size = new AtomicInteger();
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public Worklist<T> newInstance() {
+    int numThreads = next.length / CACHE_MULTIPLE;
+    Worklist<T>[] c = (Worklist<T>[]) new Worklist<?>[numThreads * CACHE_MULTIPLE];
+    Worklist<T>[] n = (Worklist<T>[]) new Worklist<?>[numThreads * CACHE_MULTIPLE];
+    for (int i = 0; i < numThreads; i++) {
+      n[getIndex(i)] = next[getIndex(i)].newInstance();
+    }
+    return new ConcurrentHierarchicalChunkedFIFO<T>(chunkSize, c, n, size != null);
+  }
+
+  private static int getIndex(int tid) {
+    return tid * CACHE_MULTIPLE;
+  }
+
+  @Override
+  public void add(T item, ThreadContext ctx) {
+    int tid = ctx.getThreadId();
+    int idx = getIndex(tid);
+
+    if (size != null)
+      size.incrementAndGet();
+
+    Worklist<T> n = next[idx];
+
+    if (n.size() >= chunkSize) {
+      pool[packages[tid]].add(n);
+      next[idx] = n.newInstance();
+    }
+
+    next[idx].add(item, ctx);
+  }
+
+  /**
+   * Takes a full chunk from the package of the thread, or from the other
+   * packages if it has none.
+   */
+  private Worklist<T> pollChunk(int tid) {
+    int pkg = packages[tid];
+    Worklist<T> chunk = pool[pkg].poll();
+    for (int i = 1; chunk == null && i < pool.length; i++) {
+      chunk = pool[(pkg + i) % pool.length].poll();
+    }
+    return chunk;
+  }
+
+  @Override
+  public T poll(final ThreadContext ctx) {
+    int tid = ctx.getThreadId();
+    int idx = getIndex(tid);
+
+    if (current[idx] == null)
+      current[idx] = pollChunk(tid);
+
+    T retval = null;
+    while (current[idx] != null) {
+      retval = current[idx].poll(ctx);
+
+      if (retval == null) {
+        current[idx] = pollChunk(tid);
+      } else {
+        break;
+      }
+    }
+
+    // Current and pools are empty, try our next queue
+    if (current[idx] == null) {
+      retval = next[idx].poll(ctx);
+    }
+
+    if (size != null && retval != null)
+      size.decrementAndGet();
+
+    return retval;
+  }
+
+  @Override
+  public T polls() {
+    T item = null;
+    for (int tid = 0; tid < packages.length; tid++) {
+      int i = getIndex(tid);
+      if (current[i] == null)
+        current[i] = pollChunk(tid);
+
+      while (current[i] != null && (item = current[i].polls()) == null)
+        current[i] = pollChunk(tid);
+
+      if (item == null)
+        item = next[i].polls();
+
+      if (item != null) {
+        if (size != null)
+          size.decrementAndGet();
+        return item;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public int size() {
+    if (size != null)
+      return size.get();
+    else
+      throw new UnsupportedOperationException();
+  }
+}
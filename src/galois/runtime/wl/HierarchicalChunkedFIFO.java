@@ -0,0 +1,55 @@
+/*
+Galois, a framework to exploit amorphous data-parallelism in irregular
+programs.
+
+Copyright (C) 2010, The University of Texas at Austin. All rights reserved.
+UNIVERSITY EXPRESSLY DISCLAIMS ANY AND ALL WARRANTIES CONCERNING THIS SOFTWARE
+AND DOCUMENTATION, INCLUDING ANY WARRANTIES OF MERCHANTABILITY, FITNESS FOR ANY
+PARTICULAR PURPOSE, NON-INFRINGEMENT AND WARRANTIES OF PERFORMANCE, AND ANY
+WARRANTY THAT MIGHT OTHERWISE ARISE FROM COURSE OF DEALING OR USAGE OF TRADE.
+NO WARRANTY IS EITHER EXPRESS OR IMPLIED WITH RESPECT TO THE USE OF THE
+SOFTWARE OR DOCUMENTATION. Under no circumstances shall University be liable
+for incidental, special, indirect, direct or consequential damages or loss of
+profits, interruption of business, or related expenses which may arise from use
+of Software or Documentation, including but not limited to those resulting from
+defects in Software and/or Documentation, or loss or inaccuracy of data of any
+kind.
+
+
+*/
+
+package galois.runtime.wl;
+
+import util.fn.Lambda0;
+
+/**
+ * Order elements in chunks of size <i>N</i>, like {@link ChunkedFIFO}. In
+ * parallel executions, full chunks are shared first among the threads of the
+ * same package (socket), and only taken by the threads of other packages when
+ * their own package runs out of them, which reduces the traffic between
+ * packages. Serial executions behave like {@link ChunkedFIFO}.
+ * 
+ * @param <T>
+ *          the type of elements of the worklist
+ * @see galois.runtime.Topology
+ */
+@NestedAreSerial
+@MatchingConcurrentVersion(ConcurrentHierarchicalChunkedFIFO.class)
+@MatchingLeafVersion(HierarchicalChunkedFIFOLeaf.class)
+public class HierarchicalChunkedFIFO<T> extends ChunkedFIFO<T> {
+  /**
+   * Creates a chunked FIFO order with the default chunk size ({@value ChunkedFIFO#DEFAULT_CHUNK_SIZE})
+   */
+  public HierarchicalChunkedFIFO(Lambda0<Worklist<T>> maker, boolean needSize) {
+    this(DEFAULT_CHUNK_SIZE, maker, needSize);
+  }
+
+  /**
+   * Creates a chunked FIFO order with the given chunk size
+   * 
+   * @param chunkSize        chunk size to use
+   */
+  public HierarchicalChunkedFIFO(int chunkSize, Lambda0<Worklist<T>> maker, boolean needSize) {
+    super(chunkSize, maker, needSize);
+  }
+}
@@ -353,7 +353,7 @@ public class Priority {
       for (int i = 1; i < rules.size(); i++) {
         Rule prev = rules.get(i - 1);
         Rule rule = rules.get(i);
-        if (prev.clz == ChunkedFIFO.class || prev.clz == ChunkedLIFO.class) {
+        if (prev.clz == ChunkedFIFO.class || prev.clz == HierarchicalChunkedFIFO.class || prev.clz == ChunkedLIFO.class) {
           if (rule.clz == FIFO.class || rule.clz == BoundedFIFO.class) {
             rule.clz = BoundedFIFO.class;
             rule.args = prev.args;
@@ -23,10 +23,12 @@ package util.concurrent;
 
 import gnu.trove.list.array.TIntArrayList;
 import util.MutableBoolean;
+import util.fn.IntLambdaVoid;
 import util.fn.Lambda2Void;
 import util.fn.Lambda3Void;
 import util.fn.Lambda4Void;
 import util.fn.LambdaVoid;
+import util.ints.DiffIntSet;
 import util.ints.IntSet;
 import util.ints.IntSetIterator;
 
@@ -34,7 +36,7 @@ import java.util.Iterator;
 import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
-public final class ConcurrentIntSparseBitVector implements IntSet, Iterable<Integer> {
+public final class ConcurrentIntSparseBitVector implements DiffIntSet, Iterable<Integer> {
 
     private static final AtomicReferenceFieldUpdater<ConcurrentIntSparseBitVector, Element> headUpdater
             = AtomicReferenceFieldUpdater.newUpdater(ConcurrentIntSparseBitVector.class, Element.class, "head");
@@ -89,6 +91,7 @@ public final class ConcurrentIntSparseBitVector implements IntSet, Iterable<Inte
         }
     }
 
+    @Override
     public boolean unionTo(final IntSet intSet) {
         ConcurrentIntSparseBitVector other = (ConcurrentIntSparseBitVector) intSet;
         boolean ret = false;
@@ -275,7 +278,7 @@ public final class ConcurrentIntSparseBitVector implements IntSet, Iterable<Inte
             if (thisHead.index < otherHead.index) {
                 prevHead = thisHead;
                 thisHead = thisHead.next;
-            } else if (thisHead.index < otherHead.index) {
+            } else if (thisHead.index > otherHead.index) {
                 otherHead = otherHead.next;
             } else {
                 // same index
@@ -294,6 +297,14 @@ public final class ConcurrentIntSparseBitVector implements IntSet, Iterable<Inte
                 otherHead = otherHead.next;
             }
         }
+        // the cursor might point to a removed element
+        setCursor(head);
+    }
+
+    @NotThreadSafe
+    @Override
+    public void serialDiffTo(IntSet other) {
+        serialDiffTo((ConcurrentIntSparseBitVector) other);
     }
 
     @Override
@@ -317,6 +328,17 @@ public final class ConcurrentIntSparseBitVector implements IntSet, Iterable<Inte
         }
     }
 
+    @Override
+    public void mapInt(IntLambdaVoid fn) {
+        if (isEmpty()) {
+            return;
+        }
+        SimpleIterator iterator = new SimpleIterator(head);
+        while (iterator.hasNext()) {
+            fn.call(iterator.nextInt());
+        }
+    }
+
     @Override
     public <T1> void map(Lambda2Void<Integer, T1> fn, T1 arg1) {
         if (isEmpty()) {
@@ -407,8 +429,15 @@ public final class ConcurrentIntSparseBitVector implements IntSet, Iterable<Inte
 
         @Override
         public Element clone() {
-            Element nextClone = next == null ? null : next.clone();
-            return new Element(bits, index, nextClone);
+            // iterative: the lists of large sets are too long for a recursive copy
+            Element ret = new Element(bits, index, null);
+            Element last = ret;
+            for (Element curr = next; curr != null; curr = curr.next) {
+                Element copy = new Element(curr.bits, curr.index, null);
+                last.next = copy;
+                last = copy;
+            }
+            return ret;
         }
 
         boolean equals(Element other) {
@@ -24,6 +24,7 @@ import util.fn.Lambda2Void;
 import util.fn.Lambda3Void;
 import util.fn.Lambda4Void;
 import util.fn.LambdaVoid;
+import util.fn.LongLambdaVoid;
 import util.ints.LongSet;
 import util.ints.LongSetIterator;
 
@@ -277,6 +278,17 @@ public final class ConcurrentLongSparseBitVector implements LongSet, Iterable<Lo
         }
     }
 
+    @Override
+    public void mapLong(LongLambdaVoid fn) {
+        if (isEmpty()) {
+            return;
+        }
+        SimpleIterator iterator = new SimpleIterator(head);
+        while (iterator.hasNext()) {
+            fn.call(iterator.nextLong());
+        }
+    }
+
     @Override
     public <T1> void map(Lambda2Void<Long, T1> fn, T1 arg1) {
         if (isEmpty()) {
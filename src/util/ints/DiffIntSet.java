@@ -0,0 +1,45 @@
+/*
+ Galois, a framework to exploit amorphous data-parallelism in irregular
+ programs.
+
+ Copyright (C) 2010, The University of Texas at Austin. All rights reserved.
+ UNIVERSITY EXPRESSLY DISCLAIMS ANY AND ALL WARRANTIES CONCERNING THIS SOFTWARE
+ AND DOCUMENTATION, INCLUDING ANY WARRANTIES OF MERCHANTABILITY, FITNESS FOR ANY
+ PARTICULAR PURPOSE, NON-INFRINGEMENT AND WARRANTIES OF PERFORMANCE, AND ANY
+ WARRANTY THAT MIGHT OTHERWISE ARISE FROM COURSE OF DEALING OR USAGE OF TRADE.
+ NO WARRANTY IS EITHER EXPRESS OR IMPLIED WITH RESPECT TO THE USE OF THE
+ SOFTWARE OR DOCUMENTATION. Under no circumstances shall University be liable
+ for incidental, special, indirect, direct or consequential damages or loss of
+ profits, interruption of business, or related expenses which may arise from use
+ of Software or Documentation, including but not limited to those resulting from
+ defects in Software and/or Documentation, or loss or inaccuracy of data of any
+ kind.
+
+ File: DiffIntSet.java
+ */
+
+package util.ints;
+
+import util.concurrent.NotThreadSafe;
+
+/**
+ * Set of integers that supports the whole-set operations needed by difference propagation.
+ * The sets passed as arguments must be of the same class as the receiver.
+ */
+public interface DiffIntSet extends IntSet {
+
+    /**
+     * Adds all the elements of <code>intSet</code> to this set. Safe to invoke concurrently.
+     *
+     * @return true if this set changed
+     */
+    public boolean unionTo(IntSet intSet);
+
+    /**
+     * Removes all the elements of <code>intSet</code> from this set.
+     */
+    @NotThreadSafe
+    public void serialDiffTo(IntSet intSet);
+
+    public DiffIntSet clone();
+}
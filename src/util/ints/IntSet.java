@@ -21,6 +21,7 @@
 
 package util.ints;
 
+import util.fn.IntLambdaVoid;
 import util.fn.Lambda2Void;
 import util.fn.Lambda3Void;
 import util.fn.Lambda4Void;
@@ -49,6 +50,13 @@ public interface IntSet {
      */
     public void map(LambdaVoid<Integer> body);
 
+    /**
+     * Applies a function to each element of this mappable instance serially, without boxing the elements.
+     *
+     * @param body function to apply to each element
+     */
+    public void mapInt(IntLambdaVoid body);
+
     /**
      * Applies a function to each element of this mappable instance serially.
      *
@@ -22,6 +22,7 @@
 package util.ints;
 
 import util.MutableBoolean;
+import util.fn.IntLambdaVoid;
 import util.fn.Lambda2Void;
 import util.fn.Lambda3Void;
 import util.fn.Lambda4Void;
@@ -235,6 +236,22 @@ public final class IntSparseBitVector implements IntSet {
         return (int) (ret);
     }
 
+    /**
+     * 64-bit hash of the contents of the set. Unlike {@link #hashCode()}, every word contributes to all the bits of the
+     * result, so equal fingerprints are a strong hint (but not a proof) of equal sets.
+     */
+    public long fingerprint() {
+        long ret = size();
+        Element elem = head;
+        while (elem != null) {
+            ret = (ret ^ elem.index) * 0x9E3779B97F4A7C15L;
+            ret = (ret ^ elem.bits) * 0xC2B2AE3D27D4EB4FL;
+            ret ^= ret >>> 29;
+            elem = elem.next;
+        }
+        return ret;
+    }
+
 
     private static Element find(final Element curr, final Element first, final int index) {
         if (curr == null) {
@@ -270,6 +287,17 @@ public final class IntSparseBitVector implements IntSet {
         }
     }
 
+    @Override
+    public void mapInt(IntLambdaVoid fn) {
+        if (isEmpty()) {
+            return;
+        }
+        SimpleIterator iterator = new SimpleIterator(head);
+        while (iterator.hasNext()) {
+            fn.call(iterator.nextInt());
+        }
+    }
+
     @Override
     public <T1> void map(Lambda2Void<Integer, T1> fn, T1 arg1) {
         if (isEmpty()) {
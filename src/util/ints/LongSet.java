@@ -23,6 +23,7 @@ import util.fn.Lambda2Void;
 import util.fn.Lambda3Void;
 import util.fn.Lambda4Void;
 import util.fn.LambdaVoid;
+import util.fn.LongLambdaVoid;
 
 public interface LongSet {
 
@@ -47,6 +48,13 @@ public interface LongSet {
    */
   public void map(LambdaVoid<Long> body);
 
+  /**
+   * Applies a function to each element of this mappable instance serially, without boxing the elements.
+   *
+   * @param body function to apply to each element
+   */
+  public void mapLong(LongLambdaVoid body);
+
   /**
    * Applies a function to each element of this mappable instance serially.
    *
@@ -24,6 +24,7 @@ import util.fn.Lambda2Void;
 import util.fn.Lambda3Void;
 import util.fn.Lambda4Void;
 import util.fn.LambdaVoid;
+import util.fn.LongLambdaVoid;
 
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
@@ -264,6 +265,17 @@ public final class LongSparseBitVector implements LongSet {
     }
   }
 
+  @Override
+  public void mapLong(LongLambdaVoid fn) {
+    if (isEmpty()) {
+      return;
+    }
+    SimpleIterator iterator = new SimpleIterator(head);
+    while (iterator.hasNext()) {
+      fn.call(iterator.nextLong());
+    }
+  }
+
   @Override
   public <T1> void map(Lambda2Void<Long, T1> fn, T1 arg1) {
     if (isEmpty()) {
@@ -0,0 +1,184 @@
+/*
+ Galois, a framework to exploit amorphous data-parallelism in irregular
+ programs.
+
+ Copyright (C) 2010, The University of Texas at Austin. All rights reserved.
+ UNIVERSITY EXPRESSLY DISCLAIMS ANY AND ALL WARRANTIES CONCERNING THIS SOFTWARE
+ AND DOCUMENTATION, INCLUDING ANY WARRANTIES OF MERCHANTABILITY, FITNESS FOR ANY
+ PARTICULAR PURPOSE, NON-INFRINGEMENT AND WARRANTIES OF PERFORMANCE, AND ANY
+ WARRANTY THAT MIGHT OTHERWISE ARISE FROM COURSE OF DEALING OR USAGE OF TRADE.
+ NO WARRANTY IS EITHER EXPRESS OR IMPLIED WITH RESPECT TO THE USE OF THE
+ SOFTWARE OR DOCUMENTATION. Under no circumstances shall University be liable
+ for incidental, special, indirect, direct or consequential damages or loss of
+ profits, interruption of business, or related expenses which may arise from use
+ of Software or Documentation, including but not limited to those resulting from
+ defects in Software and/or Documentation, or loss or inaccuracy of data of any
+ kind.
+
+ File: SharedIntSet.java
+ */
+
+package util.ints;
+
+import util.MutableBoolean;
+import util.concurrent.NotThreadSafe;
+import util.fn.IntLambdaVoid;
+import util.fn.Lambda2Void;
+import util.fn.Lambda3Void;
+import util.fn.Lambda4Void;
+import util.fn.LambdaVoid;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Mutable set whose contents are a {@link SharedSparseBitVector}. Updates replace the vector with a CAS,
+ * so sets with the same elements share their storage, and a clone is just another reference to the vector.
+ */
+public final class SharedIntSet implements DiffIntSet {
+    private static final AtomicReferenceFieldUpdater<SharedIntSet, SharedSparseBitVector> vectorUpdater
+            = AtomicReferenceFieldUpdater.newUpdater(SharedIntSet.class, SharedSparseBitVector.class, "vector");
+
+    private volatile SharedSparseBitVector vector;
+
+    public SharedIntSet() {
+        vector = SharedSparseBitVector.EMPTY;
+    }
+
+    private SharedIntSet(SharedSparseBitVector vector) {
+        this.vector = vector;
+    }
+
+    @Override
+    public boolean unionTo(final IntSet intSet) {
+        return unionTo(((SharedIntSet) intSet).vector);
+    }
+
+    private boolean unionTo(final SharedSparseBitVector other) {
+        SharedSparseBitVector currVector, newVector;
+        do {
+            currVector = vector;
+            newVector = SharedSparseBitVector.union(currVector, other);
+            if (newVector == currVector) {
+                return false;
+            }
+        } while (!vectorUpdater.compareAndSet(this, currVector, newVector));
+        return true;
+    }
+
+    @Override
+    public boolean add(int x) {
+        if (contains(x)) {
+            return false;
+        }
+        return unionTo(SharedSparseBitVector.singleton(x));
+    }
+
+    @Override
+    public boolean addAll(IntSet intSet) {
+        final MutableBoolean ret = new MutableBoolean(false);
+        intSet.map(new LambdaVoid<Integer>() {
+            @Override
+            public void call(Integer next) {
+                boolean curr = ret.get();
+                ret.set(add(next) || curr);
+            }
+        });
+        return ret.get();
+    }
+
+    @Override
+    public boolean remove(int x) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        vector = SharedSparseBitVector.EMPTY;
+    }
+
+    @Override
+    public boolean contains(int n) {
+        return vector.contains(n);
+    }
+
+    @NotThreadSafe
+    @Override
+    public void serialDiffTo(IntSet intSet) {
+        vector = SharedSparseBitVector.diff(vector, ((SharedIntSet) intSet).vector);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return vector.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return vector.size();
+    }
+
+    @Override
+    public void map(LambdaVoid<Integer> body) {
+        IntSetIterator iterator = vector.intIterator();
+        while (iterator.hasNext()) {
+            body.call(iterator.nextInt());
+        }
+    }
+
+    @Override
+    public void mapInt(IntLambdaVoid body) {
+        IntSetIterator iterator = vector.intIterator();
+        while (iterator.hasNext()) {
+            body.call(iterator.nextInt());
+        }
+    }
+
+    @Override
+    public <A1> void map(Lambda2Void<Integer, A1> body, A1 arg1) {
+        IntSetIterator iterator = vector.intIterator();
+        while (iterator.hasNext()) {
+            body.call(iterator.nextInt(), arg1);
+        }
+    }
+
+    @Override
+    public <A1, A2> void map(Lambda3Void<Integer, A1, A2> body, A1 arg1, A2 arg2) {
+        IntSetIterator iterator = vector.intIterator();
+        while (iterator.hasNext()) {
+            body.call(iterator.nextInt(), arg1, arg2);
+        }
+    }
+
+    @Override
+    public <A1, A2, A3> void map(Lambda4Void<Integer, A1, A2, A3> body, A1 arg1, A2 arg2, A3 arg3) {
+        IntSetIterator iterator = vector.intIterator();
+        while (iterator.hasNext()) {
+            body.call(iterator.nextInt(), arg1, arg2, arg3);
+        }
+    }
+
+    @Override
+    public IntSetIterator intIterator() {
+        return vector.intIterator();
+    }
+
+    @Override
+    public SharedIntSet clone() {
+        return new SharedIntSet(vector);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return vector.equals(((SharedIntSet) o).vector);
+    }
+
+    @Override
+    public int hashCode() {
+        return vector.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return vector.toString();
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ Galois, a framework to exploit amorphous data-parallelism in irregular
+ programs.
+
+ Copyright (C) 2010, The University of Texas at Austin. All rights reserved.
+ UNIVERSITY EXPRESSLY DISCLAIMS ANY AND ALL WARRANTIES CONCERNING THIS SOFTWARE
+ AND DOCUMENTATION, INCLUDING ANY WARRANTIES OF MERCHANTABILITY, FITNESS FOR ANY
+ PARTICULAR PURPOSE, NON-INFRINGEMENT AND WARRANTIES OF PERFORMANCE, AND ANY
+ WARRANTY THAT MIGHT OTHERWISE ARISE FROM COURSE OF DEALING OR USAGE OF TRADE.
+ NO WARRANTY IS EITHER EXPRESS OR IMPLIED WITH RESPECT TO THE USE OF THE
+ SOFTWARE OR DOCUMENTATION. Under no circumstances shall University be liable
+ for incidental, special, indirect, direct or consequential damages or loss of
+ profits, interruption of business, or related expenses which may arise from use
+ of Software or Documentation, including but not limited to those resulting from
+ defects in Software and/or Documentation, or loss or inaccuracy of data of any
+ kind.
+
+ File: SharedSparseBitVector.java
+ */
+
+package util.ints;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Immutable, hash-consed counterpart of {@link IntSparseBitVector}. Vectors are created through
+ * {@link #union} and {@link #diff}, which intern their results, so sets with the same elements usually
+ * share a single instance. The results of both operations are memoized on the ids of their arguments.
+ * <p/>
+ * Both the intern table and the memo are lossy, direct-mapped caches: they never hold more than a fixed
+ * number of vectors (so the vectors that the application drops can be collected), at the price of
+ * occasionally having two instances with the same elements. {@link #equals(Object)} compares the
+ * contents when the instances differ.
+ */
+public final class SharedSparseBitVector {
+    private static final byte LOG_BITS_PER_ELEMENT = 6;
+    private static final int MASK = (1 << LOG_BITS_PER_ELEMENT) - 1;
+    private static final int DEFAULT_BUCKETS = 1 << 16;
+    private static final byte UNION = 0;
+    private static final byte DIFF = 1;
+
+    private static final AtomicLong nextId = new AtomicLong();
+    private static volatile AtomicReferenceArray<SharedSparseBitVector> internTable
+            = new AtomicReferenceArray<SharedSparseBitVector>(DEFAULT_BUCKETS);
+    private static volatile AtomicReferenceArray<MemoEntry> memo = new AtomicReferenceArray<MemoEntry>(DEFAULT_BUCKETS);
+
+    public static final SharedSparseBitVector EMPTY = new SharedSparseBitVector(new int[0], new long[0], 0);
+
+    private final long id;
+    // index of every word with some bit set, in increasing order
+    private final int[] indices;
+    private final long[] bits;
+    private final int size;
+    private final int hash;
+
+    private SharedSparseBitVector(int[] indices, long[] bits, int length) {
+        id = nextId.getAndIncrement();
+        this.indices = indices.length == length ? indices : Arrays.copyOf(indices, length);
+        this.bits = bits.length == length ? bits : Arrays.copyOf(bits, length);
+        int size = 0;
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            size += Long.bitCount(bits[i]);
+            hash = 31 * hash + indices[i];
+            hash = 31 * hash + (int) (bits[i] ^ (bits[i] >>> 32));
+        }
+        this.size = size;
+        this.hash = hash;
+    }
+
+    /**
+     * Resizes the intern table and the memo, discarding their contents.
+     *
+     * @param numBuckets number of entries of each table. Has to be a power of 2
+     */
+    public static void setup(int numBuckets) {
+        internTable = new AtomicReferenceArray<SharedSparseBitVector>(numBuckets);
+        memo = new AtomicReferenceArray<MemoEntry>(numBuckets);
+    }
+
+    /**
+     * @return the interned vector that contains only <code>n</code>
+     */
+    public static SharedSparseBitVector singleton(int n) {
+        return intern(new SharedSparseBitVector(new int[]{n >> LOG_BITS_PER_ELEMENT},
+                new long[]{1L << (n & MASK)}, 1));
+    }
+
+    /**
+     * @return the union of both vectors. The result is <code>v1</code> itself if <code>v2</code> is
+     *         contained in it.
+     */
+    public static SharedSparseBitVector union(SharedSparseBitVector v1, SharedSparseBitVector v2) {
+        if (v1 == v2 || v2.size == 0) {
+            return v1;
+        }
+        if (v1.size == 0) {
+            return v2;
+        }
+        SharedSparseBitVector ret = getMemo(UNION, v1, v2);
+        if (ret != null) {
+            return ret;
+        }
+        int[] indices = new int[v1.indices.length + v2.indices.length];
+        long[] bits = new long[indices.length];
+        int i = 0, j = 0, k = 0;
+        boolean changed = false;
+        while (i < v1.indices.length || j < v2.indices.length) {
+            int index1 = i < v1.indices.length ? v1.indices[i] : Integer.MAX_VALUE;
+            int index2 = j < v2.indices.length ? v2.indices[j] : Integer.MAX_VALUE;
+            if (index1 < index2) {
+                indices[k] = index1;
+                bits[k] = v1.bits[i++];
+            } else if (index1 > index2) {
+                indices[k] = index2;
+                bits[k] = v2.bits[j++];
+                changed = true;
+            } else {
+                indices[k] = index1;
+                bits[k] = v1.bits[i] | v2.bits[j];
+                changed |= bits[k] != v1.bits[i];
+                i++;
+                j++;
+            }
+            k++;
+        }
+        ret = changed ? intern(new SharedSparseBitVector(indices, bits, k)) : v1;
+        putMemo(UNION, v1, v2, ret);
+        return ret;
+    }
+
+    /**
+     * @return the elements of <code>v1</code> that are not in <code>v2</code>. The result is <code>v1</code>
+     *         itself if both vectors are disjoint.
+     */
+    public static SharedSparseBitVector diff(SharedSparseBitVector v1, SharedSparseBitVector v2) {
+        if (v1 == v2) {
+            return EMPTY;
+        }
+        if (v1.size == 0 || v2.size == 0) {
+            return v1;
+        }
+        SharedSparseBitVector ret = getMemo(DIFF, v1, v2);
+        if (ret != null) {
+            return ret;
+        }
+        int[] indices = new int[v1.indices.length];
+        long[] bits = new long[indices.length];
+        int j = 0, k = 0;
+        boolean changed = false;
+        for (int i = 0; i < v1.indices.length; i++) {
+            int index = v1.indices[i];
+            while (j < v2.indices.length && v2.indices[j] < index) {
+                j++;
+            }
+            long word = v1.bits[i];
+            if (j < v2.indices.length && v2.indices[j] == index) {
+                word &= ~v2.bits[j];
+                changed |= word != v1.bits[i];
+            }
+            if (word != 0) {
+                indices[k] = index;
+                bits[k] = word;
+                k++;
+            }
+        }
+        if (!changed) {
+            ret = v1;
+        } else if (k == 0) {
+            ret = EMPTY;
+        } else {
+            ret = intern(new SharedSparseBitVector(indices, bits, k));
+        }
+        putMemo(DIFF, v1, v2, ret);
+        return ret;
+    }
+
+    private static SharedSparseBitVector intern(SharedSparseBitVector vector) {
+        AtomicReferenceArray<SharedSparseBitVector> table = internTable;
+        int bucket = vector.hash & (table.length() - 1);
+        SharedSparseBitVector existing = table.get(bucket);
+        if (existing != null && existing.sameElements(vector)) {
+            return existing;
+        }
+        table.set(bucket, vector);
+        return vector;
+    }
+
+    private static int memoBucket(byte operation, SharedSparseBitVector v1, SharedSparseBitVector v2,
+                                  AtomicReferenceArray<MemoEntry> table) {
+        long h = (v1.id * 31 + v2.id) * 31 + operation;
+        int hash = (int) (h ^ (h >>> 32));
+        hash ^= (hash >>> 20) ^ (hash >>> 12);
+        hash ^= (hash >>> 7) ^ (hash >>> 4);
+        return hash & (table.length() - 1);
+    }
+
+    private static SharedSparseBitVector getMemo(byte operation, SharedSparseBitVector v1, SharedSparseBitVector v2) {
+        AtomicReferenceArray<MemoEntry> table = memo;
+        MemoEntry entry = table.get(memoBucket(operation, v1, v2, table));
+        if (entry != null && entry.operation == operation && entry.id1 == v1.id && entry.id2 == v2.id) {
+            return entry.result;
+        }
+        return null;
+    }
+
+    private static void putMemo(byte operation, SharedSparseBitVector v1, SharedSparseBitVector v2,
+                                SharedSparseBitVector result) {
+        AtomicReferenceArray<MemoEntry> table = memo;
+        table.set(memoBucket(operation, v1, v2, table), new MemoEntry(operation, v1.id, v2.id, result));
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int n) {
+        int i = Arrays.binarySearch(indices, n >> LOG_BITS_PER_ELEMENT);
+        return i >= 0 && (bits[i] & (1L << (n & MASK))) != 0;
+    }
+
+    public IntSetIterator intIterator() {
+        return new SimpleIterator();
+    }
+
+    private boolean sameElements(SharedSparseBitVector other) {
+        return hash == other.hash && size == other.size && Arrays.equals(indices, other.indices)
+                && Arrays.equals(bits, other.bits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || sameElements((SharedSparseBitVector) o);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder stringBuilder = new StringBuilder("[");
+        IntSetIterator iterator = intIterator();
+        while (iterator.hasNext()) {
+            stringBuilder.append(iterator.nextInt());
+            if (iterator.hasNext()) {
+                stringBuilder.append(", ");
+            }
+        }
+        return stringBuilder.append("]").toString();
+    }
+
+    private static final class MemoEntry {
+        final byte operation;
+        final long id1;
+        final long id2;
+        final SharedSparseBitVector result;
+
+        MemoEntry(byte operation, long id1, long id2, SharedSparseBitVector result) {
+            this.operation = operation;
+            this.id1 = id1;
+            this.id2 = id2;
+            this.result = result;
+        }
+    }
+
+    private final class SimpleIterator implements IntSetIterator {
+        private int word;
+        private long remaining;
+
+        SimpleIterator() {
+            word = 0;
+            remaining = bits.length > 0 ? bits[0] : 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return word < bits.length;
+        }
+
+        @Override
+        public Integer next() {
+            return nextInt();
+        }
+
+        @Override
+        public int nextInt() {
+            if (word == bits.length) {
+                throw new NoSuchElementException();
+            }
+            int ret = (indices[word] << LOG_BITS_PER_ELEMENT) + Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            if (remaining == 0) {
+                word++;
+                if (word < bits.length) {
+                    remaining = bits[word];
+                }
+            }
+            return ret;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
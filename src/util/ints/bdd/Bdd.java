@@ -21,6 +21,13 @@
 
 package util.ints.bdd;
 
+import util.concurrent.NotThreadSafe;
+import util.fn.Lambda;
+import util.fn.Lambda0Void;
+import util.fn.LambdaVoid;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 
 public class Bdd {
 
@@ -30,14 +37,25 @@ public class Bdd {
 
     private static BddNodeTable nodeTable;
     private static OperationCache opCache;
+    private static int gcMinThreshold = Integer.MAX_VALUE;
+    private static int reorderMinThreshold = Integer.MAX_VALUE;
 
     private static int numberOfVariables;
     private static BddNode[] varList, nvarList;
+    /* current level of every variable, and variable at every level. Modified by reorder() */
+    private static int[] var2level, level2var;
     public static BddNode[] numbers;
 
     public static final BddNode ZERO = new BddNode((byte) -1, null, null, 0);
     public static final BddNode ONE = new BddNode((byte) -1, null, null, 1);
 
+    private static final LambdaVoid<BddNode> MARKER = new LambdaVoid<BddNode>() {
+        @Override
+        public void call(BddNode node) {
+            mark(node);
+        }
+    };
+
     /* Operator results - entry = left<<1 | right  (left,right in {0,1}) */
     public static final BddNode[][] OPR_RES = {{ZERO, ZERO, ZERO, ONE}, // and                       ( & )
             {ZERO, ONE, ONE, ZERO}, // xor                       ( ^ )
@@ -53,15 +71,30 @@ public class Bdd {
 
     public Bdd(int numVars, int initialCapacity, int initialNumSegments) {
         numberOfVariables = numVars;
+        gcMinThreshold = Integer.MAX_VALUE;
+        reorderMinThreshold = Integer.MAX_VALUE;
         ZERO.level = (byte) numVars;
         ONE.level = (byte) numVars;
         varList = new BddNode[numberOfVariables];
         nvarList = new BddNode[numberOfVariables];
+        var2level = new int[numberOfVariables];
+        level2var = new int[numberOfVariables];
+        for (int i = 0; i < numberOfVariables; i++) {
+            var2level[i] = i;
+            level2var[i] = i;
+        }
         nodeTable = new BddNodeTable(initialCapacity, 0.75f, initialNumSegments);
         nodeTable.putIfAbsent(ZERO);
         nodeTable.putIfAbsent(ONE);
         int opCacheInitialCapacity = initialCapacity / NODE_TO_CACHE_ENTRY_RATIO;
-        opCache = new OperationCache(opCacheInitialCapacity);
+        opCache = new OperationCache(Math.max(opCacheInitialCapacity, 1));
+        // keep the ratio between nodes and cache entries as the node table grows
+        nodeTable.setGrowthListener(new Lambda0Void() {
+            @Override
+            public void call() {
+                opCache.ensureCapacity(nodeTable.size() / NODE_TO_CACHE_ENTRY_RATIO);
+            }
+        });
         for (byte i = 0; i < numberOfVariables; i++) {
             createVar(i);
         }
@@ -76,14 +109,17 @@ public class Bdd {
         }
         varList = null;
         nvarList = null;
+        var2level = null;
+        level2var = null;
     }
 
     /**
      * create a new BDD variable
      */
     public static void createVar(byte v) {
-        varList[v] = nodeTable.putBddNodeIfAbsentReturnKey(v, ZERO, ONE);
-        nvarList[v] = nodeTable.putBddNodeIfAbsentReturnKey(v, ONE, ZERO);
+        byte level = (byte) var2level[v];
+        varList[v] = nodeTable.putBddNodeIfAbsentReturnKey(level, ZERO, ONE);
+        nvarList[v] = nodeTable.putBddNodeIfAbsentReturnKey(level, ONE, ZERO);
     }
 
     /**
@@ -99,6 +135,177 @@ public class Bdd {
         return nodeTable.putBddNodeIfAbsentReturnKey(v, l, h);
     }
 
+    /**
+     * @return number of nodes currently stored in the node table
+     */
+    public static int getNodeTableSize() {
+        return nodeTable.size();
+    }
+
+    /**
+     * @return the cache of operation results, which also keeps the hit/miss/eviction counters
+     */
+    public static OperationCache getOperationCache() {
+        return opCache;
+    }
+
+    /**
+     * Enables garbage collection of the node table: once the table holds more than
+     * <code>threshold</code> nodes, {@link #isGcRequested()} starts returning true.
+     *
+     * @param threshold minimum size of the node table before a collection is requested
+     */
+    public static void setGcThreshold(int threshold) {
+        gcMinThreshold = threshold;
+        nodeTable.setGcThreshold(threshold);
+    }
+
+    /**
+     * @return true if the node table grew past the garbage collection threshold. The application
+     *         should call {@link #gc(LambdaVoid)} at its next safe point.
+     */
+    public static boolean isGcRequested() {
+        return nodeTable.isGcRequested();
+    }
+
+    /**
+     * Mark-and-sweep collection of the node table. The variables, the domains and every node passed to the
+     * marker by <code>roots</code> survive; the rest of the nodes are removed from the table, and the operation
+     * and iterator caches are invalidated. No other BDD operation can be running during the collection.
+     *
+     * @param roots function that passes every root of the application to its argument (the marker)
+     * @return number of nodes in the table after the collection
+     */
+    @NotThreadSafe
+    public static int gc(LambdaVoid<LambdaVoid<BddNode>> roots) {
+        mark(ZERO);
+        mark(ONE);
+        for (int i = 0; i < numberOfVariables; i++) {
+            mark(varList[i]);
+            mark(nvarList[i]);
+        }
+        BddDomain.markRoots();
+        roots.call(MARKER);
+        int live = nodeTable.sweep();
+        opCache.clear();
+        BddDomain.clearCaches();
+        // leave room for the live nodes to double before collecting again
+        nodeTable.setGcThreshold((int) Math.min(Integer.MAX_VALUE, Math.max(gcMinThreshold, 2L * live)));
+        return live;
+    }
+
+    /**
+     * Enables dynamic reordering of the variables: once the node table holds more than <code>threshold</code>
+     * nodes, {@link #isReorderRequested()} starts returning true.
+     *
+     * @param threshold minimum size of the node table before a reordering is requested
+     */
+    public static void setReorderThreshold(int threshold) {
+        reorderMinThreshold = threshold;
+        nodeTable.setReorderThreshold(threshold);
+    }
+
+    /**
+     * @return true if the node table grew past the reordering threshold. The application
+     *         should call {@link #reorder(LambdaVoid)} at its next safe point.
+     */
+    public static boolean isReorderRequested() {
+        return nodeTable.isReorderRequested();
+    }
+
+    /**
+     * Changes the order of the variables, using sifting to minimize the number of nodes reachable from the
+     * roots. The roots are translated to the new order, so the sets they represent do not change, and the
+     * nodes of the old order are collected afterwards (see {@link #gc(LambdaVoid)}). No other BDD operation
+     * can be running during the reordering.
+     *
+     * @param roots function that passes every root of the application to its argument, and replaces the root
+     *              by the value returned. It is invoked twice: first to find the order (and the argument returns
+     *              the root unchanged), and then to translate the roots to that order.
+     * @return number of nodes in the table after the reordering
+     */
+    @NotThreadSafe
+    public static int reorder(LambdaVoid<Lambda<BddNode, BddNode>> roots) {
+        final ArrayList<BddNode> oldRoots = new ArrayList<BddNode>();
+        roots.call(new Lambda<BddNode, BddNode>() {
+            @Override
+            public BddNode call(BddNode root) {
+                oldRoots.add(root);
+                return root;
+            }
+        });
+        final int[] newLevel = new BddReorder(numberOfVariables, oldRoots).sift();
+        boolean changed = false;
+        for (int i = 0; i < numberOfVariables; i++) {
+            changed |= newLevel[i] != i;
+        }
+        final ArrayList<BddNode> newRoots = new ArrayList<BddNode>();
+        if (changed) {
+            final IdentityHashMap<BddNode, BddNode> translated = new IdentityHashMap<BddNode, BddNode>();
+            roots.call(new Lambda<BddNode, BddNode>() {
+                @Override
+                public BddNode call(BddNode root) {
+                    BddNode ret = permute(root, newLevel, translated);
+                    newRoots.add(ret);
+                    return ret;
+                }
+            });
+            for (int v = 0; v < numberOfVariables; v++) {
+                var2level[v] = newLevel[var2level[v]];
+                level2var[var2level[v]] = v;
+            }
+            for (byte v = 0; v < numberOfVariables; v++) {
+                createVar(v);
+            }
+            BddDomain.updateLevels();
+        } else {
+            newRoots.addAll(oldRoots);
+        }
+        int live = gc(new LambdaVoid<LambdaVoid<BddNode>>() {
+            @Override
+            public void call(LambdaVoid<BddNode> marker) {
+                for (BddNode root : newRoots) {
+                    marker.call(root);
+                }
+            }
+        });
+        nodeTable.setReorderThreshold((int) Math.min(Integer.MAX_VALUE, Math.max(reorderMinThreshold, 2L * live)));
+        return live;
+    }
+
+    /**
+     * @return the BDD that results from moving every level <code>l</code> of <code>node</code> to
+     *         <code>newLevel[l]</code>
+     */
+    private static BddNode permute(BddNode node, int[] newLevel, IdentityHashMap<BddNode, BddNode> translated) {
+        if (isTerminal(node)) {
+            return node;
+        }
+        BddNode ret = translated.get(node);
+        if (ret != null) {
+            return ret;
+        }
+        BddNode l = permute(node.low, newLevel, translated);
+        BddNode h = permute(node.high, newLevel, translated);
+        byte level = (byte) newLevel[node.level];
+        BddNode var = nodeTable.putBddNodeIfAbsentReturnKey(level, ZERO, ONE);
+        BddNode nvar = nodeTable.putBddNodeIfAbsentReturnKey(level, ONE, ZERO);
+        ret = or(and(var, h), and(nvar, l));
+        translated.put(node, ret);
+        return ret;
+    }
+
+    static void mark(BddNode node) {
+        while (!node.marked) {
+            node.marked = true;
+            if (isTerminal(node)) {
+                return;
+            }
+            mark(node.low);
+            node = node.high;
+        }
+    }
+
     public static boolean isEmpty(final BddNode bddNode) {
         return bddNode == ZERO;
     }
@@ -792,11 +999,11 @@ public class Bdd {
     }
 
     public static int level2Var(int n) {
-        return n;
+        return level2var[n];
     }
 
     public static int var2Level(int n) {
-        return n;
+        return var2level[n];
     }
 
     /**
@@ -25,6 +25,8 @@ import gnu.trove.list.array.TIntArrayList;
 import util.ints.IntSetIterator;
 
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
 
 import static util.ints.bdd.Bdd.ONE;
 import static util.ints.bdd.Bdd.ZERO;
@@ -44,8 +46,16 @@ public final class BddDomain {
     protected BddNode var;
     /* correspondence between number and Bdd, for this domain */
     private final BddNode[] numAsBdd;
+    /* rank of every level among the levels of the domain, or binSize if the level does not belong to the
+       domain. The last entry corresponds to the level of the terminals. Constructed in updateLevels() */
+    private int[] levelToIndex;
+    /* position in ivar (bit of the number) of the variable with the given rank */
+    private int[] indexToBit;
+    /* memo of satCount_rec, per node */
+    private IteratorCache<BddNode, Double> satCountCache;
 
     private static IteratorCache<BddNode, TIntArrayList> iteratorCache;
+    private static int satCountCacheCapacity;
     private static int initialNodeTableCapacity;
     private static int initialNodeTableSegments;
 
@@ -53,6 +63,7 @@ public final class BddDomain {
         initialNodeTableCapacity = initNodeTableCapacity;
         initialNodeTableSegments = initNodeTableSegments;
         iteratorCache = new IteratorCache<BddNode, TIntArrayList>(initIteratorCacheCapacity);
+        satCountCacheCapacity = initIteratorCacheCapacity;
     }
 
 
@@ -138,11 +149,25 @@ public final class BddDomain {
         return new BddSetIterator(getElements(root));
     }
 
+    /**
+     * Iterates over the elements of the set without materializing them. Unlike {@link #iterator(BddNode)},
+     * the elements are not sorted: they are returned in the order of the paths of the BDD (low branch first).
+     *
+     * @param root the BDD
+     * @return a cursor over the elements of the set represented by <code>root</code>
+     */
+    public BddSetCursor cursor(final BddNode root) {
+        return new BddSetCursor(root);
+    }
+
     public TIntArrayList getElements(final BddNode root) {
         TIntArrayList elems = iteratorCache.get(root);
         if (elems == null) {
-            BddAllSet bddAllSet = new BddAllSet(binSize());
-            elems = bddAllSet.getAllSolutions(root);
+            elems = new TIntArrayList();
+            BddSetCursor cursor = cursor(root);
+            while (cursor.hasNext()) {
+                elems.add(cursor.nextInt());
+            }
             elems.sort();
             iteratorCache.put(root, elems);
         }
@@ -160,27 +185,87 @@ public final class BddDomain {
         if (node == ZERO) {
             return 0;
         }
-        // TODO: add cache, if the app frequently invokes the method
+        Double cached = satCountCache.get(node);
+        if (cached != null) {
+            return cached;
+        }
         BddNode low = node.low;
         BddNode high = node.high;
         int index = index(node.level) + 1;
-        return satCount_rec(low) * Math.pow(2, index(low.level) - index) + satCount_rec(high)
+        double ret = satCount_rec(low) * Math.pow(2, index(low.level) - index) + satCount_rec(high)
                 * Math.pow(2, index(high.level) - index);
+        satCountCache.put(node, ret);
+        return ret;
     }
 
-    // TODO: inneficient, can be replaced by array
-
     private int index(final int var) {
-        int numVars = ivar.length;
-        if (var == ONE.level || var == ZERO.level) {
-            return numVars;
+        return levelToIndex[var];
+    }
+
+    /**
+     * Marks the variable sets and the cached numbers of all the domains, so they survive a garbage collection.
+     */
+    static void markRoots() {
+        if (domain == null) {
+            return;
         }
-        for (int i = 0; i < numVars; i++) {
-            if (ivar[i] == var) {
-                return i;
+        for (BddDomain d : domain) {
+            if (d.var != null) {
+                Bdd.mark(d.var);
+            }
+            for (BddNode number : d.numAsBdd) {
+                if (number != null) {
+                    Bdd.mark(number);
+                }
+            }
+        }
+    }
+
+    /**
+     * Recomputes the information that depends on the level of the variables, after they have been
+     * created or reordered.
+     */
+    static void updateLevels() {
+        int numVars = Bdd.getNumVars();
+        for (BddDomain d : domain) {
+            final int[] levels = new int[d.ivar.length];
+            Integer[] bits = new Integer[d.ivar.length];
+            for (int i = 0; i < d.ivar.length; i++) {
+                levels[i] = Bdd.var2Level(d.ivar[i]);
+                bits[i] = i;
+            }
+            Arrays.sort(bits, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer bit1, Integer bit2) {
+                    return levels[bit1] - levels[bit2];
+                }
+            });
+            // the terminals are one level below the last variable
+            d.levelToIndex = new int[numVars + 1];
+            Arrays.fill(d.levelToIndex, d.binSize());
+            d.indexToBit = new int[d.ivar.length];
+            for (int i = 0; i < bits.length; i++) {
+                d.levelToIndex[levels[bits[i]]] = i;
+                d.indexToBit[i] = bits[i];
+            }
+            d.var = Bdd.makeSet(d.ivar);
+            Arrays.fill(d.numAsBdd, null);
+        }
+        clearCaches();
+    }
+
+    /**
+     * Invalidates the caches keyed by BDD nodes.
+     */
+    static void clearCaches() {
+        if (iteratorCache != null) {
+            iteratorCache.clear();
+        }
+        if (domain != null) {
+            for (BddDomain d : domain) {
+                d.satCountCache.clear();
             }
         }
-        throw new RuntimeException();
     }
 
     public static String toString(BddNode node) {
@@ -258,8 +343,9 @@ public final class BddDomain {
         }
         for (int n = 0; n < numDomains; n++) {
             BddDomain dom = domain[n];
-            dom.var = Bdd.makeSet(dom.ivar);
+            dom.satCountCache = new IteratorCache<BddNode, Double>(Math.max(satCountCacheCapacity, 1));
         }
+        updateLevels();
         fdvarnum = numDomains;
         return domain;
     }
@@ -277,134 +363,90 @@ public final class BddDomain {
         Bdd.reset();
     }
 
-    // A possible alternative would be to return a int[]
-    // But it implies computing the number of solutions beforehand => slower in practice.
-
-    private TIntArrayList getAllSolutions(BddNode root) {
-        TIntArrayList ret = new TIntArrayList();
-        while (root != ZERO) {
-            int res = satOne(root);
-            BddNode solution = getNodeVar(res);
-            root = Bdd.diff(root, solution);
-            ret.add(res);
+    /**
+     * Depth-first walk over the solutions of a BDD, one solution at a time. Only the path to the
+     * current solution is kept: <code>path[i]</code> is the node that decides bit <code>i</code>, or
+     * the node below it if the bit is a don't care.
+     */
+    public final class BddSetCursor implements IntSetIterator {
+        private final BddNode[] path;
+        private int solution;
+        private boolean hasNext;
+
+        BddSetCursor(BddNode root) {
+            path = new BddNode[ivar.length];
+            hasNext = root != ZERO;
+            if (hasNext) {
+                descend(root, 0);
+            }
         }
-        return ret;
-    }
 
-    // ASSUMPTION: the Bdd is only defined for the current domain.
-
-    private int satOne(BddNode root) {
-        BddNode node = root;
-        int solution = 0;
-        int satBit = 0;
-        int satLevel = ivar[0];
-        while (node != ZERO && node != ONE) {
-            while (node.level > satLevel) {
-                satBit++;
-                satLevel = ivar[satBit];
-            }
-            if (node.low == ZERO) {
-                // include the current bit in the result
-                solution |= (1 << satBit);
-                node = node.high;
-            } else {
-                node = node.low;
+        // take the leftmost path below node, starting at bit i
+        private void descend(BddNode node, int i) {
+            int binSize = path.length;
+            for (; i < binSize; i++) {
+                path[i] = node;
+                int bit = 1 << indexToBit[i];
+                if (levelToIndex[node.level] == i) {
+                    if (node.low != ZERO) {
+                        solution &= ~bit;
+                        node = node.low;
+                    } else {
+                        solution |= bit;
+                        node = node.high;
+                    }
+                } else {
+                    solution &= ~bit;
+                }
             }
         }
-        return solution;
-    }
-
-    private static class BddAllSet {
-        final TIntArrayList solutions;
-        final byte[] compressedSolution;
 
-        BddAllSet(int binSize) {
-            solutions = new TIntArrayList();
-            compressedSolution = new byte[binSize];
-            Arrays.fill(compressedSolution, (byte) -1);
+        // move to the solution that follows the current one
+        private void advance() {
+            for (int i = path.length - 1; i >= 0; i--) {
+                int bit = 1 << indexToBit[i];
+                if ((solution & bit) != 0) {
+                    continue;
+                }
+                BddNode node = path[i];
+                if (levelToIndex[node.level] != i) {
+                    // don't care bit
+                    solution |= bit;
+                    descend(node, i + 1);
+                    return;
+                }
+                if (node.high != ZERO) {
+                    solution |= bit;
+                    descend(node.high, i + 1);
+                    return;
+                }
+            }
+            hasNext = false;
         }
 
-        private TIntArrayList getAllSolutions(BddNode root) {
-            allSat(root);
-            return solutions;
+        @Override
+        public boolean hasNext() {
+            return hasNext;
         }
 
-        private void allSat(BddNode node) {
-            if (node == Bdd.ONE) {
-                decode(compressedSolution);
-                return;
-            }
-            if (node == Bdd.ZERO) {
-                return;
-            }
-            int varNumber = level2var(node.level);
-            BddNode low = node.low;
-            if (low != Bdd.ZERO) {
-                compressedSolution[varNumber] = 0;
-                //TODO: watch out: there is an assumption about the order here!
-                int lowVarNumber = level2var(low.level);
-                for (int i = varNumber + 1; i < lowVarNumber; i++) {
-                    compressedSolution[i] = -1;
-                }
-                allSat(low);
-            }
-            BddNode high = node.high;
-            if (high != Bdd.ZERO) {
-                compressedSolution[varNumber] = 1;
-                //TODO: watch out: there is an assumption about the order here!
-                int highVarNumber = level2var(high.level);
-                for (int i = varNumber + 1; i < highVarNumber; i++) {
-                    compressedSolution[i] = -1;
-                }
-                allSat(high);
-            }
+        @Override
+        public Integer next() {
+            return nextInt();
         }
 
-        private void decode(byte[] compressedSolution) {
-            int dontCareSolution = 0;
-            int binSize = compressedSolution.length;
-            int[] dontCarePositions = new int[binSize];
-            int numberOfDontCare = 0;
-            for (int i = 0; i < binSize; i++) {
-                int valPosition = compressedSolution[i];
-                int twoToTheI = (1 << i);
-                if (valPosition == -1) {
-                    dontCarePositions[numberOfDontCare] = twoToTheI;
-                    numberOfDontCare++;
-                } else if (valPosition == 1) {
-                    dontCareSolution |= twoToTheI;
-                }
-            }
-            if (numberOfDontCare == 0) {
-                solutions.add(dontCareSolution);
-            } else if (numberOfDontCare == 1) {
-                solutions.add(dontCareSolution);
-                solutions.add(dontCareSolution | dontCarePositions[0]);
-            } else if (numberOfDontCare == 2) {
-                solutions.add(dontCareSolution);
-                int lowerBitTrue = dontCareSolution | dontCarePositions[0];
-                solutions.add(lowerBitTrue);
-                int upperBitTrue = dontCareSolution | dontCarePositions[1];
-                solutions.add(upperBitTrue);
-                solutions.add(upperBitTrue | lowerBitTrue);
-            } else {
-                int numSols = 1 << numberOfDontCare;
-                for (int i = 0; i < numSols; i++) {
-                    int solution = dontCareSolution;
-                    for (int j = 0; j < numberOfDontCare; j++) {
-                        int m = 1 << j;
-                        if ((i & m) != 0) {
-                            solution |= dontCarePositions[j];
-                        }
-                    }
-                    solutions.add(solution);
-                }
+        @Override
+        public int nextInt() {
+            if (!hasNext) {
+                throw new NoSuchElementException();
             }
+            int ret = solution;
+            advance();
+            return ret;
         }
 
-        // TODO: kludge, assumes homogeneous interleaving of two domains
-        int level2var(int var) {
-            return var >> (domain.length - 1);
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
         }
     }
 
@@ -27,6 +27,8 @@ public final class BddNode {
   final BddNode high;
   final int hash;
   BddNode next;
+  // reachability flag used by the mark-and-sweep collector of the node table
+  boolean marked;
 
   public BddNode(byte level, BddNode low, BddNode high, int hash) {
     this(level, low, high, hash, null);
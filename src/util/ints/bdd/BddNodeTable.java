@@ -21,6 +21,7 @@
 package util.ints.bdd;
 
 import util.concurrent.NotThreadSafe;
+import util.fn.Lambda0Void;
 
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
@@ -66,6 +67,12 @@ public class BddNodeTable {
    */
   static final int MAX_SEGMENTS = 2 << 10; // slightly conservative
 
+  /**
+   * Once a segment holds more than its share of the garbage collection threshold, it compares the
+   * size of the whole table against the threshold every (GC_CHECK_MASK + 1) insertions.
+   */
+  static final int GC_CHECK_MASK = (1 << 6) - 1;
+
   /* ---------------- Fields -------------- */
 
   /**
@@ -84,6 +91,37 @@ public class BddNodeTable {
    */
   final Segment[] segments;
 
+  /**
+   * Once the number of nodes in the table exceeds this value, a garbage collection is requested.
+   */
+  private volatile int gcThreshold;
+
+  /**
+   * Once the number of nodes in the table exceeds this value, a reordering of the variables is requested.
+   */
+  private volatile int reorderThreshold;
+
+  /**
+   * Share of the lowest of {@link #gcThreshold} and {@link #reorderThreshold} that corresponds to each
+   * segment. Segments below their share do not bother computing the size of the whole table.
+   */
+  private volatile int segmentGcThreshold;
+
+  /**
+   * Set when the table has grown past {@link #gcThreshold}. Cleared by {@link #sweep()}
+   */
+  private volatile boolean gcRequested;
+
+  /**
+   * Set when the table has grown past {@link #reorderThreshold}. Cleared by {@link #setReorderThreshold(int)}
+   */
+  private volatile boolean reorderRequested;
+
+  /**
+   * Invoked every time a segment is resized.
+   */
+  private volatile Lambda0Void growthListener;
+
 
   /**
    * Returns the segment that should be used for key with given hash
@@ -106,6 +144,13 @@ public class BddNodeTable {
      */
     private int resizeCountDown;
 
+    /**
+     * Number of nodes in this segment. Only modified while holding the segment lock.
+     */
+    private int count;
+
+    private final BddNodeTable owner;
+
     private static final AtomicIntegerFieldUpdater<Segment> flagUpdater
         = AtomicIntegerFieldUpdater.newUpdater(Segment.class, "flag");
 
@@ -117,7 +162,8 @@ public class BddNodeTable {
     transient volatile BddNode[] table;
 
 
-    Segment(int initialCapacity) {
+    Segment(int initialCapacity, BddNodeTable owner) {
+      this.owner = owner;
       BddNode[] newTable = new BddNode[initialCapacity];
       resizeCountDown = (int) (newTable.length * DEFAULT_LOAD_FACTOR);
       table = newTable;
@@ -138,6 +184,9 @@ public class BddNodeTable {
       } else {
         key.next = first;
         tab[index] = key;
+        if (++count > owner.segmentGcThreshold && (count & GC_CHECK_MASK) == 0) {
+          owner.checkGcThreshold();
+        }
         if (--resizeCountDown == 0) {
           rehash();
         }
@@ -162,6 +211,9 @@ public class BddNodeTable {
         }
         BddNode key = new BddNode(var, low, high, hash, first);
         tab[index] = key;
+        if (++count > owner.segmentGcThreshold && (count & GC_CHECK_MASK) == 0) {
+          owner.checkGcThreshold();
+        }
         if (--resizeCountDown == 0) {
           rehash();
         }
@@ -193,6 +245,42 @@ public class BddNodeTable {
         }
       }
       table = newTable;
+      Lambda0Void listener = owner.growthListener;
+      if (listener != null) {
+        listener.call();
+      }
+    }
+
+    /**
+     * Unlinks the nodes that were not marked, and clears the mark of the survivors.
+     *
+     * @return the number of nodes left in the segment
+     */
+    @NotThreadSafe
+    int sweep() {
+      BddNode[] tab = table;
+      int live = 0;
+      for (int i = 0; i < tab.length; i++) {
+        BddNode e = tab[i];
+        BddNode survivors = null;
+        while (e != null) {
+          BddNode nextCurr = e.next;
+          if (e.marked) {
+            e.marked = false;
+            e.next = survivors;
+            survivors = e;
+            live++;
+          } else {
+            e.next = null;
+          }
+          e = nextCurr;
+        }
+        tab[i] = survivors;
+      }
+      // the freed entries can be reused before the segment needs to grow again
+      resizeCountDown += count - live;
+      count = live;
+      return live;
     }
 
     @NotThreadSafe
@@ -202,6 +290,7 @@ public class BddNodeTable {
         tab[i] = null;
       }
       resizeCountDown = (int) (tab.length * DEFAULT_LOAD_FACTOR);
+      count = 0;
     }
   }
 
@@ -260,8 +349,10 @@ public class BddNodeTable {
       cap <<= 1;
     }
     for (int i = 0; i < this.segments.length; ++i) {
-      this.segments[i] = new Segment(cap);
+      this.segments[i] = new Segment(cap, this);
     }
+    reorderThreshold = Integer.MAX_VALUE;
+    setGcThreshold(Integer.MAX_VALUE);
   }
 
   public BddNodeTable() {
@@ -291,5 +382,84 @@ public class BddNodeTable {
     for (int i = 0; i < segments.length; ++i) {
       segments[i].clear();
     }
+    gcRequested = false;
+    reorderRequested = false;
+  }
+
+  /**
+   * @return the number of nodes in the table. The result is approximate if there are
+   *         concurrent insertions.
+   */
+  public int size() {
+    int ret = 0;
+    for (int i = 0; i < segments.length; ++i) {
+      ret += segments[i].count;
+    }
+    return ret;
+  }
+
+  /**
+   * @param growthListener function invoked (by the inserting thread, while it holds the lock of a segment)
+   *                       every time a segment of the table is resized
+   */
+  public void setGrowthListener(Lambda0Void growthListener) {
+    this.growthListener = growthListener;
+  }
+
+  public void setGcThreshold(int gcThreshold) {
+    this.gcThreshold = gcThreshold;
+    updateSegmentThreshold();
+  }
+
+  public void setReorderThreshold(int reorderThreshold) {
+    this.reorderThreshold = reorderThreshold;
+    reorderRequested = false;
+    updateSegmentThreshold();
+  }
+
+  private void updateSegmentThreshold() {
+    segmentGcThreshold = Math.max(1, Math.min(gcThreshold, reorderThreshold) / segments.length);
+  }
+
+  public int getGcThreshold() {
+    return gcThreshold;
+  }
+
+  public boolean isGcRequested() {
+    return gcRequested;
+  }
+
+  public boolean isReorderRequested() {
+    return reorderRequested;
+  }
+
+  private void checkGcThreshold() {
+    if (gcRequested && reorderRequested) {
+      return;
+    }
+    int size = size();
+    if (!gcRequested && size > gcThreshold) {
+      gcRequested = true;
+    }
+    if (!reorderRequested && size > reorderThreshold) {
+      reorderRequested = true;
+    }
+  }
+
+  /**
+   * Removes every node that has not been marked since the last sweep. The caller is responsible
+   * for marking all the live nodes beforehand, and for ensuring that no other thread accesses the
+   * table during the sweep.
+   *
+   * @return number of nodes that survived the collection
+   */
+  @NotThreadSafe
+  public int sweep() {
+    int live = 0;
+    for (int i = 0; i < segments.length; ++i) {
+      live += segments[i].sweep();
+    }
+    gcRequested = false;
+    return live;
   }
 }
@@ -55,7 +55,7 @@ public final class BddPair {
 
   private void setpair(int oldvar, int newvar) {
     int oldLevel = Bdd.var2Level(oldvar);
-    result[oldLevel] = Bdd.ithVar(Bdd.level2Var(newvar));
+    result[oldLevel] = Bdd.ithVar(newvar);
     last = Math.max(oldLevel, last);
   }
 
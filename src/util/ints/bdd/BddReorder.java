@@ -0,0 +1,265 @@
+/*
+ Galois, a framework to exploit amorphous data-parallelism in irregular
+ programs.
+
+ Copyright (C) 2010, The University of Texas at Austin. All rights reserved.
+ UNIVERSITY EXPRESSLY DISCLAIMS ANY AND ALL WARRANTIES CONCERNING THIS SOFTWARE
+ AND DOCUMENTATION, INCLUDING ANY WARRANTIES OF MERCHANTABILITY, FITNESS FOR ANY
+ PARTICULAR PURPOSE, NON-INFRINGEMENT AND WARRANTIES OF PERFORMANCE, AND ANY
+ WARRANTY THAT MIGHT OTHERWISE ARISE FROM COURSE OF DEALING OR USAGE OF TRADE.
+ NO WARRANTY IS EITHER EXPRESS OR IMPLIED WITH RESPECT TO THE USE OF THE
+ SOFTWARE OR DOCUMENTATION. Under no circumstances shall University be liable
+ for incidental, special, indirect, direct or consequential damages or loss of
+ profits, interruption of business, or related expenses which may arise from use
+ of Software or Documentation, including but not limited to those resulting from
+ defects in Software and/or Documentation, or loss or inaccuracy of data of any
+ kind.
+
+ File: BddReorder.java
+ */
+
+package util.ints.bdd;
+
+import gnu.trove.map.hash.TLongIntHashMap;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+
+/**
+ * Rudell's sifting over a private copy of the live nodes of the {@link Bdd} node table. The copy
+ * supports in-place swaps of adjacent levels, so every variable is moved through all the levels to
+ * find the position that minimizes the number of nodes. The node table itself is not modified: the
+ * caller translates the roots to the order returned by {@link #sift()}.
+ * <p/>
+ * In the copy, the variable of a node is the level it had in the node table. Node 0 is ZERO and node 1 is ONE.
+ */
+final class BddReorder {
+    // stop moving a variable in one direction once the copy grows past this factor of the best size
+    private static final double MAX_GROWTH = 1.2;
+    private static final int NOT_FOUND = -1;
+
+    private final int numVars;
+    private final int[] varToLevel;
+    private final int[] levelToVar;
+    // nodes of every variable, indexed by (low, high)
+    private final TLongIntHashMap[] unique;
+
+    private int[] var;
+    private int[] low;
+    private int[] high;
+    private int[] ref;
+    private int nextId;
+    private int freeList;
+    private int size;
+
+    BddReorder(int numVars, Collection<BddNode> roots) {
+        this.numVars = numVars;
+        varToLevel = new int[numVars];
+        levelToVar = new int[numVars];
+        unique = new TLongIntHashMap[numVars];
+        for (int i = 0; i < numVars; i++) {
+            varToLevel[i] = i;
+            levelToVar[i] = i;
+            unique[i] = new TLongIntHashMap();
+        }
+        int capacity = 1024;
+        var = new int[capacity];
+        low = new int[capacity];
+        high = new int[capacity];
+        ref = new int[capacity];
+        var[0] = var[1] = numVars;
+        nextId = 2;
+        freeList = NOT_FOUND;
+        IdentityHashMap<BddNode, Integer> copies = new IdentityHashMap<BddNode, Integer>();
+        for (BddNode root : roots) {
+            int copy = copy(root, copies);
+            if (copy > 1) {
+                // external reference
+                ref[copy]++;
+            }
+        }
+    }
+
+    private int copy(BddNode node, IdentityHashMap<BddNode, Integer> copies) {
+        if (node == Bdd.ZERO) {
+            return 0;
+        }
+        if (node == Bdd.ONE) {
+            return 1;
+        }
+        Integer ret = copies.get(node);
+        if (ret != null) {
+            return ret;
+        }
+        int l = copy(node.low, copies);
+        int h = copy(node.high, copies);
+        int id = mk(node.level, l, h);
+        // the reference of mk belongs to the parents, which add their own
+        ref[id]--;
+        copies.put(node, id);
+        return id;
+    }
+
+    /**
+     * @return number of live nodes in the copy, not counting the terminals
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Sifts every variable, starting with the ones that have the most nodes.
+     *
+     * @return the new level of every level of the node table
+     */
+    int[] sift() {
+        Integer[] vars = new Integer[numVars];
+        final int[] count = new int[numVars];
+        for (int i = 0; i < numVars; i++) {
+            vars[i] = i;
+            count[i] = unique[i].size();
+        }
+        Arrays.sort(vars, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer v1, Integer v2) {
+                return count[v2] - count[v1];
+            }
+        });
+        for (int v : vars) {
+            siftVar(v);
+        }
+        return varToLevel.clone();
+    }
+
+    private void siftVar(int v) {
+        int best = size;
+        int bestLevel = varToLevel[v];
+        // visit the closest end first
+        boolean down = varToLevel[v] >= numVars / 2;
+        for (int pass = 0; pass < 2; pass++, down = !down) {
+            if (down) {
+                while (varToLevel[v] < numVars - 1) {
+                    swap(varToLevel[v]);
+                    if (size < best) {
+                        best = size;
+                        bestLevel = varToLevel[v];
+                    } else if (size > MAX_GROWTH * best) {
+                        break;
+                    }
+                }
+            } else {
+                while (varToLevel[v] > 0) {
+                    swap(varToLevel[v] - 1);
+                    if (size < best) {
+                        best = size;
+                        bestLevel = varToLevel[v];
+                    } else if (size > MAX_GROWTH * best) {
+                        break;
+                    }
+                }
+            }
+        }
+        while (varToLevel[v] < bestLevel) {
+            swap(varToLevel[v]);
+        }
+        while (varToLevel[v] > bestLevel) {
+            swap(varToLevel[v] - 1);
+        }
+    }
+
+    /**
+     * Exchanges the variables at levels <code>level</code> and <code>level + 1</code>. The nodes of the upper
+     * variable that depend on the lower one are rewritten in place, so their parents are not affected.
+     */
+    private void swap(int level) {
+        int x = levelToVar[level];
+        int y = levelToVar[level + 1];
+        for (int f : unique[x].values()) {
+            int f0 = low[f];
+            int f1 = high[f];
+            if (var[f0] != y && var[f1] != y) {
+                // does not depend on y: moves down with x
+                continue;
+            }
+            unique[x].remove(key(f0, f1));
+            int f00 = var[f0] == y ? low[f0] : f0;
+            int f01 = var[f0] == y ? high[f0] : f0;
+            int f10 = var[f1] == y ? low[f1] : f1;
+            int f11 = var[f1] == y ? high[f1] : f1;
+            int newLow = mk(x, f00, f10);
+            int newHigh = mk(x, f01, f11);
+            var[f] = y;
+            low[f] = newLow;
+            high[f] = newHigh;
+            unique[y].put(key(newLow, newHigh), f);
+            deref(f0);
+            deref(f1);
+        }
+        levelToVar[level] = y;
+        levelToVar[level + 1] = x;
+        varToLevel[x] = level + 1;
+        varToLevel[y] = level;
+    }
+
+    /**
+     * @return a node with one more reference
+     */
+    private int mk(int v, int l, int h) {
+        if (l == h) {
+            ref[l]++;
+            return l;
+        }
+        long key = key(l, h);
+        TLongIntHashMap nodes = unique[v];
+        if (nodes.containsKey(key)) {
+            int id = nodes.get(key);
+            ref[id]++;
+            return id;
+        }
+        int id = allocate();
+        var[id] = v;
+        low[id] = l;
+        high[id] = h;
+        ref[id] = 1;
+        ref[l]++;
+        ref[h]++;
+        nodes.put(key, id);
+        size++;
+        return id;
+    }
+
+    private void deref(int node) {
+        while (node > 1 && --ref[node] == 0) {
+            unique[var[node]].remove(key(low[node], high[node]));
+            size--;
+            deref(low[node]);
+            int next = high[node];
+            // freed nodes are chained through their low field
+            low[node] = freeList;
+            freeList = node;
+            node = next;
+        }
+    }
+
+    private int allocate() {
+        if (freeList != NOT_FOUND) {
+            int id = freeList;
+            freeList = low[id];
+            return id;
+        }
+        if (nextId == var.length) {
+            int capacity = var.length << 1;
+            var = Arrays.copyOf(var, capacity);
+            low = Arrays.copyOf(low, capacity);
+            high = Arrays.copyOf(high, capacity);
+            ref = Arrays.copyOf(ref, capacity);
+        }
+        return nextId++;
+    }
+
+    private static long key(int l, int h) {
+        return ((long) l << 32) | (h & 0xFFFFFFFFL);
+    }
+}
@@ -24,10 +24,12 @@ package util.ints.bdd;
 import gnu.trove.list.array.TIntArrayList;
 import util.MutableBoolean;
 import util.concurrent.NotThreadSafe;
+import util.fn.IntLambdaVoid;
 import util.fn.Lambda2Void;
 import util.fn.Lambda3Void;
 import util.fn.Lambda4Void;
 import util.fn.LambdaVoid;
+import util.ints.DiffIntSet;
 import util.ints.IntSet;
 import util.ints.IntSetIterator;
 
@@ -36,7 +38,7 @@ import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 /**
  * BDD representation of a set.
  */
-final public class BddSet implements IntSet {
+final public class BddSet implements DiffIntSet {
     private static AtomicReferenceFieldUpdater<BddSet, BddNode> rootUpdater
             = AtomicReferenceFieldUpdater.newUpdater(BddSet.class, BddNode.class, "root");
 
@@ -55,6 +57,7 @@ final public class BddSet implements IntSet {
         BddSet.domain = domain;
     }
 
+    @Override
     public boolean unionTo(final IntSet intSet) {
         // sorry, only bdd sets are allowed here.
         BddSet s = (BddSet) intSet;
@@ -137,6 +140,11 @@ final public class BddSet implements IntSet {
         return previousRoot != root;
     }
 
+    @NotThreadSafe
+    public void serialSetRoot(final BddNode root) {
+        this.root = root;
+    }
+
     @NotThreadSafe
     public boolean serialAdd(int number) {
         BddNode otherRoot = domain.getNodeVar(number);
@@ -167,26 +175,43 @@ final public class BddSet implements IntSet {
         root = Bdd.diff(root, s.root);
     }
 
+    @NotThreadSafe
+    @Override
+    public void serialDiffTo(final IntSet s) {
+        serialDiffTo((BddSet) s);
+    }
+
     @Override
     public void map(LambdaVoid<Integer> fn) {
         if (isEmpty()) {
             return;
         }
-        TIntArrayList elements = elements();
-        for (int i = 0; i < elements.size(); i++) {
-            int index = elements.getQuick(i);
+        IntSetIterator cursor = domain.cursor(getRoot());
+        while (cursor.hasNext()) {
+            int index = cursor.nextInt();
             fn.call(index);
         }
     }
 
+    @Override
+    public void mapInt(IntLambdaVoid fn) {
+        if (isEmpty()) {
+            return;
+        }
+        IntSetIterator cursor = domain.cursor(getRoot());
+        while (cursor.hasNext()) {
+            fn.call(cursor.nextInt());
+        }
+    }
+
     @Override
     public <A1> void map(Lambda2Void<Integer, A1> body, A1 arg1) {
         if (isEmpty()) {
             return;
         }
-        TIntArrayList elements = elements();
-        for (int i = 0; i < elements.size(); i++) {
-            int index = elements.getQuick(i);
+        IntSetIterator cursor = domain.cursor(getRoot());
+        while (cursor.hasNext()) {
+            int index = cursor.nextInt();
             body.call(index, arg1);
         }
     }
@@ -196,9 +221,9 @@ final public class BddSet implements IntSet {
         if (isEmpty()) {
             return;
         }
-        TIntArrayList elements = elements();
-        for (int i = 0; i < elements.size(); i++) {
-            int index = elements.getQuick(i);
+        IntSetIterator cursor = domain.cursor(getRoot());
+        while (cursor.hasNext()) {
+            int index = cursor.nextInt();
             body.call(index, arg1, arg2);
         }
     }
@@ -208,19 +233,22 @@ final public class BddSet implements IntSet {
         if (isEmpty()) {
             return;
         }
-        TIntArrayList elements = elements();
-        for (int i = 0; i < elements.size(); i++) {
-            int index = elements.getQuick(i);
+        IntSetIterator cursor = domain.cursor(getRoot());
+        while (cursor.hasNext()) {
+            int index = cursor.nextInt();
             body.call(index, arg1, arg2, arg3);
         }
     }
 
     @Override
     public IntSetIterator intIterator() {
-        throw new UnsupportedOperationException();
+        return domain.cursor(getRoot());
     }
 
 
+    /**
+     * @return the sorted elements of the set. The list is cached, so it should not be modified.
+     */
     public TIntArrayList elements() {
         return domain.getElements(getRoot());
     }
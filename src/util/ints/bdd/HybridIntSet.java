@@ -0,0 +1,379 @@
+/*
+ Galois, a framework to exploit amorphous data-parallelism in irregular
+ programs.
+
+ Copyright (C) 2010, The University of Texas at Austin. All rights reserved.
+ UNIVERSITY EXPRESSLY DISCLAIMS ANY AND ALL WARRANTIES CONCERNING THIS SOFTWARE
+ AND DOCUMENTATION, INCLUDING ANY WARRANTIES OF MERCHANTABILITY, FITNESS FOR ANY
+ PARTICULAR PURPOSE, NON-INFRINGEMENT AND WARRANTIES OF PERFORMANCE, AND ANY
+ WARRANTY THAT MIGHT OTHERWISE ARISE FROM COURSE OF DEALING OR USAGE OF TRADE.
+ NO WARRANTY IS EITHER EXPRESS OR IMPLIED WITH RESPECT TO THE USE OF THE
+ SOFTWARE OR DOCUMENTATION. Under no circumstances shall University be liable
+ for incidental, special, indirect, direct or consequential damages or loss of
+ profits, interruption of business, or related expenses which may arise from use
+ of Software or Documentation, including but not limited to those resulting from
+ defects in Software and/or Documentation, or loss or inaccuracy of data of any
+ kind.
+
+ File: HybridIntSet.java
+ */
+
+package util.ints.bdd;
+
+import gnu.trove.list.array.TIntArrayList;
+import util.MutableBoolean;
+import util.concurrent.NotThreadSafe;
+import util.fn.IntLambdaVoid;
+import util.fn.Lambda2Void;
+import util.fn.Lambda3Void;
+import util.fn.Lambda4Void;
+import util.fn.LambdaVoid;
+import util.ints.DiffIntSet;
+import util.ints.IntSet;
+import util.ints.IntSetIterator;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Set that is stored as a sorted array while it has at most {@link #setThreshold(int) threshold} elements,
+ * and as a BDD (see {@link BddSet}) once it grows past that size. Small sets avoid the overhead of the BDD
+ * operations, while large sets share structure through the node table.
+ * <p/>
+ * The state of the set is immutable, and replaced with a CAS on every update. The representation is
+ * canonical: a set is an array if and only if its size is below the threshold.
+ */
+public final class HybridIntSet implements DiffIntSet {
+    private static final AtomicReferenceFieldUpdater<HybridIntSet, Object> stateUpdater
+            = AtomicReferenceFieldUpdater.newUpdater(HybridIntSet.class, Object.class, "state");
+    private static final int[] EMPTY = new int[0];
+
+    private static int threshold = 64;
+    private static BddDomain domain;
+
+    // either a sorted int[], or the BddNode of a set with more than threshold elements
+    private volatile Object state;
+
+    public HybridIntSet() {
+        state = EMPTY;
+    }
+
+    private HybridIntSet(Object state) {
+        this.state = state;
+    }
+
+    public static void setDomain(BddDomain domain) {
+        HybridIntSet.domain = domain;
+    }
+
+    /**
+     * @param threshold maximum number of elements of the sets that are stored as arrays
+     */
+    public static void setThreshold(int threshold) {
+        HybridIntSet.threshold = threshold;
+    }
+
+    @Override
+    public boolean unionTo(final IntSet intSet) {
+        return unionTo(((HybridIntSet) intSet).state);
+    }
+
+    private boolean unionTo(final Object other) {
+        Object currState, newState;
+        do {
+            currState = state;
+            newState = union(currState, other);
+            if (newState == currState) {
+                return false;
+            }
+        } while (!stateUpdater.compareAndSet(this, currState, newState));
+        return true;
+    }
+
+    @Override
+    public boolean add(int number) {
+        return unionTo(new int[]{number});
+    }
+
+    @Override
+    public boolean addAll(IntSet intSet) {
+        final MutableBoolean ret = new MutableBoolean(false);
+        intSet.map(new LambdaVoid<Integer>() {
+            @Override
+            public void call(Integer next) {
+                boolean curr = ret.get();
+                ret.set(add(next) || curr);
+            }
+        });
+        return ret.get();
+    }
+
+    @Override
+    public boolean remove(int n) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        state = EMPTY;
+    }
+
+    @Override
+    public boolean contains(int n) {
+        return contains(state, n);
+    }
+
+    @NotThreadSafe
+    @Override
+    public void serialDiffTo(final IntSet s) {
+        state = diff(state, ((HybridIntSet) s).state);
+    }
+
+    /**
+     * @return the root of the BDD of the set, or null if the set is stored as an array
+     */
+    public BddNode getRoot() {
+        Object currState = state;
+        return currState instanceof BddNode ? (BddNode) currState : null;
+    }
+
+    /**
+     * Replaces the root of a set stored as a BDD by an equivalent one (for instance, after a reordering).
+     */
+    @NotThreadSafe
+    public void serialSetRoot(final BddNode root) {
+        assert state instanceof BddNode;
+        state = root;
+    }
+
+    @Override
+    public void map(LambdaVoid<Integer> fn) {
+        IntSetIterator iterator = intIterator();
+        while (iterator.hasNext()) {
+            fn.call(iterator.nextInt());
+        }
+    }
+
+    @Override
+    public void mapInt(IntLambdaVoid fn) {
+        IntSetIterator iterator = intIterator();
+        while (iterator.hasNext()) {
+            fn.call(iterator.nextInt());
+        }
+    }
+
+    @Override
+    public <A1> void map(Lambda2Void<Integer, A1> body, A1 arg1) {
+        IntSetIterator iterator = intIterator();
+        while (iterator.hasNext()) {
+            body.call(iterator.nextInt(), arg1);
+        }
+    }
+
+    @Override
+    public <A1, A2> void map(Lambda3Void<Integer, A1, A2> body, A1 arg1, A2 arg2) {
+        IntSetIterator iterator = intIterator();
+        while (iterator.hasNext()) {
+            body.call(iterator.nextInt(), arg1, arg2);
+        }
+    }
+
+    @Override
+    public <A1, A2, A3> void map(Lambda4Void<Integer, A1, A2, A3> body, A1 arg1, A2 arg2, A3 arg3) {
+        IntSetIterator iterator = intIterator();
+        while (iterator.hasNext()) {
+            body.call(iterator.nextInt(), arg1, arg2, arg3);
+        }
+    }
+
+    @Override
+    public IntSetIterator intIterator() {
+        Object currState = state;
+        if (currState instanceof BddNode) {
+            return domain.cursor((BddNode) currState);
+        }
+        return new ArrayIterator((int[]) currState);
+    }
+
+    @Override
+    public int size() {
+        Object currState = state;
+        if (currState instanceof BddNode) {
+            return domain.satCount((BddNode) currState);
+        }
+        return ((int[]) currState).length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return state == EMPTY;
+    }
+
+    @Override
+    public boolean equals(Object s) {
+        Object currState = state;
+        Object otherState = ((HybridIntSet) s).state;
+        if (currState instanceof BddNode || otherState instanceof BddNode) {
+            return currState == otherState;
+        }
+        return Arrays.equals((int[]) currState, (int[]) otherState);
+    }
+
+    @Override
+    public HybridIntSet clone() {
+        // the state is immutable
+        return new HybridIntSet(state);
+    }
+
+    @Override
+    public int hashCode() {
+        Object currState = state;
+        if (currState instanceof BddNode) {
+            return currState.hashCode();
+        }
+        return Arrays.hashCode((int[]) currState);
+    }
+
+    @Override
+    public String toString() {
+        Object currState = state;
+        if (currState instanceof BddNode) {
+            return BddDomain.toString(domain, (BddNode) currState);
+        }
+        return Arrays.toString((int[]) currState);
+    }
+
+    // returns s1 itself if the union does not add any element to it
+    private static Object union(final Object s1, final Object s2) {
+        if (s1 instanceof BddNode) {
+            BddNode root = (BddNode) s1;
+            return Bdd.or(root, toBdd(s2));
+        }
+        if (s2 instanceof BddNode) {
+            // s2 has more elements than s1, so the union is a BDD
+            return Bdd.or(toBdd(s1), (BddNode) s2);
+        }
+        int[] elems1 = (int[]) s1;
+        int[] elems2 = (int[]) s2;
+        int[] ret = new int[elems1.length + elems2.length];
+        int i = 0, j = 0, k = 0;
+        while (i < elems1.length && j < elems2.length) {
+            int elem1 = elems1[i];
+            int elem2 = elems2[j];
+            if (elem1 <= elem2) {
+                ret[k++] = elem1;
+                i++;
+                if (elem1 == elem2) {
+                    j++;
+                }
+            } else {
+                ret[k++] = elem2;
+                j++;
+            }
+        }
+        if (j == elems2.length) {
+            // nothing new
+            if (k == i) {
+                return s1;
+            }
+            System.arraycopy(elems1, i, ret, k, elems1.length - i);
+            k += elems1.length - i;
+        } else {
+            System.arraycopy(elems2, j, ret, k, elems2.length - j);
+            k += elems2.length - j;
+        }
+        if (k > threshold) {
+            return toBdd(ret, k);
+        }
+        return k == ret.length ? ret : Arrays.copyOf(ret, k);
+    }
+
+    private static Object diff(final Object s1, final Object s2) {
+        if (s1 instanceof BddNode) {
+            BddNode root = Bdd.diff((BddNode) s1, toBdd(s2));
+            return domain.satCount(root) > threshold ? root : toArray(root);
+        }
+        int[] elems1 = (int[]) s1;
+        int[] ret = new int[elems1.length];
+        int k = 0;
+        for (int elem : elems1) {
+            if (!contains(s2, elem)) {
+                ret[k++] = elem;
+            }
+        }
+        if (k == 0) {
+            return EMPTY;
+        }
+        return k == ret.length ? ret : Arrays.copyOf(ret, k);
+    }
+
+    private static boolean contains(final Object s, int n) {
+        if (s instanceof BddNode) {
+            BddNode root = (BddNode) s;
+            return Bdd.or(root, domain.getNodeVar(n)) == root;
+        }
+        return Arrays.binarySearch((int[]) s, n) >= 0;
+    }
+
+    private static BddNode toBdd(final Object s) {
+        if (s instanceof BddNode) {
+            return (BddNode) s;
+        }
+        int[] elems = (int[]) s;
+        return toBdd(elems, elems.length);
+    }
+
+    private static BddNode toBdd(final int[] elems, int length) {
+        BddNode ret = Bdd.ZERO;
+        for (int i = 0; i < length; i++) {
+            ret = Bdd.or(ret, domain.getNodeVar(elems[i]));
+        }
+        return ret;
+    }
+
+    private static int[] toArray(final BddNode root) {
+        if (root == Bdd.ZERO) {
+            return EMPTY;
+        }
+        TIntArrayList elems = new TIntArrayList();
+        IntSetIterator cursor = domain.cursor(root);
+        while (cursor.hasNext()) {
+            elems.add(cursor.nextInt());
+        }
+        elems.sort();
+        return elems.toArray();
+    }
+
+    private static final class ArrayIterator implements IntSetIterator {
+        private final int[] elems;
+        private int index;
+
+        ArrayIterator(int[] elems) {
+            this.elems = elems;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < elems.length;
+        }
+
+        @Override
+        public Integer next() {
+            return nextInt();
+        }
+
+        @Override
+        public int nextInt() {
+            if (index == elems.length) {
+                throw new NoSuchElementException();
+            }
+            return elems[index++];
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,382 @@
+/*
+ Galois, a framework to exploit amorphous data-parallelism in irregular
+ programs.
+
+ Copyright (C) 2010, The University of Texas at Austin. All rights reserved.
+ UNIVERSITY EXPRESSLY DISCLAIMS ANY AND ALL WARRANTIES CONCERNING THIS SOFTWARE
+ AND DOCUMENTATION, INCLUDING ANY WARRANTIES OF MERCHANTABILITY, FITNESS FOR ANY
+ PARTICULAR PURPOSE, NON-INFRINGEMENT AND WARRANTIES OF PERFORMANCE, AND ANY
+ WARRANTY THAT MIGHT OTHERWISE ARISE FROM COURSE OF DEALING OR USAGE OF TRADE.
+ NO WARRANTY IS EITHER EXPRESS OR IMPLIED WITH RESPECT TO THE USE OF THE
+ SOFTWARE OR DOCUMENTATION. Under no circumstances shall University be liable
+ for incidental, special, indirect, direct or consequential damages or loss of
+ profits, interruption of business, or related expenses which may arise from use
+ of Software or Documentation, including but not limited to those resulting from
+ defects in Software and/or Documentation, or loss or inaccuracy of data of any
+ kind.
+
+ File: IntBdd.java
+ */
+
+package util.ints.bdd;
+
+import gnu.trove.map.hash.TIntIntHashMap;
+
+/**
+ * Alternative to {@link Bdd} where nodes are ids into an {@link IntBddNodeTable} instead of
+ * {@link BddNode} objects, so the node graph is invisible to the garbage collector of the JVM.
+ * The operations mirror those of {@link Bdd}.
+ */
+public final class IntBdd {
+
+    // reserve one entry in the cache table for every #number of entries in the initial node table
+    // has to be a power of 2
+    private static final int NODE_TO_CACHE_ENTRY_RATIO = 128;
+
+    public static final int ZERO = 0;
+    public static final int ONE = 1;
+
+    private static IntBddNodeTable nodeTable;
+    private static IntOperationCache opCache;
+
+    private static int numberOfVariables;
+    private static int[] varList, nvarList;
+
+    private IntBdd() {
+    }
+
+    public static void init(int numVars, int initialCapacity, int initialNumSegments) {
+        numberOfVariables = numVars;
+        nodeTable = new IntBddNodeTable(numVars, initialCapacity, initialNumSegments);
+        opCache = new IntOperationCache(Math.max(initialCapacity / NODE_TO_CACHE_ENTRY_RATIO, 1));
+        varList = new int[numVars];
+        nvarList = new int[numVars];
+        for (int i = 0; i < numVars; i++) {
+            varList[i] = mk(i, ZERO, ONE);
+            nvarList[i] = mk(i, ONE, ZERO);
+        }
+    }
+
+    public static void reset() {
+        nodeTable = null;
+        opCache = null;
+        varList = null;
+        nvarList = null;
+    }
+
+    private static int mk(int v, int l, int h) {
+        if (l == h) {
+            return l;
+        }
+        return nodeTable.findOrCreate(v, l, h);
+    }
+
+    public static int level(int node) {
+        return nodeTable.level(node);
+    }
+
+    public static int low(int node) {
+        return nodeTable.low(node);
+    }
+
+    public static int high(int node) {
+        return nodeTable.high(node);
+    }
+
+    /**
+     * @return number of nodes allocated so far
+     */
+    public static int getNodeTableSize() {
+        return nodeTable.size();
+    }
+
+    public static boolean isEmpty(int node) {
+        return node == ZERO;
+    }
+
+    private static boolean isTerminal(int node) {
+        return node == ZERO || node == ONE;
+    }
+
+    /**
+     * @see Bdd#and(BddNode, BddNode)
+     */
+    public static int and(int l, int r) {
+        if (l == r || r == ONE) {
+            return l;
+        }
+        if (l == ZERO || r == ZERO) {
+            return ZERO;
+        }
+        if (l == ONE) {
+            return r;
+        }
+        int levelL = level(l);
+        int levelR = level(r);
+        if (levelL > levelR) {
+            int tmp = l;
+            l = r;
+            r = tmp;
+            levelR = levelL;
+            levelL = level(l);
+        }
+        int cached = opCache.get(Operation.AND, l, r);
+        if (cached != IntOperationCache.MISS) {
+            return cached;
+        }
+        int x, y;
+        if (levelL == levelR) {
+            x = and(low(l), low(r));
+            y = and(high(l), high(r));
+        } else {
+            x = and(low(l), r);
+            y = and(high(l), r);
+        }
+        int ret = mk(levelL, x, y);
+        opCache.put(Operation.AND, l, r, ret);
+        return ret;
+    }
+
+    /**
+     * @see Bdd#or(BddNode, BddNode)
+     */
+    public static int or(int l, int r) {
+        if (l == ONE || r == ONE) {
+            return ONE;
+        }
+        if (l == ZERO || l == r) {
+            return r;
+        }
+        if (r == ZERO) {
+            return l;
+        }
+        int levelL = level(l);
+        int levelR = level(r);
+        if (levelL > levelR) {
+            int tmp = l;
+            l = r;
+            r = tmp;
+            levelR = levelL;
+            levelL = level(l);
+        }
+        int cached = opCache.get(Operation.OR, l, r);
+        if (cached != IntOperationCache.MISS) {
+            return cached;
+        }
+        int x, y;
+        if (levelL == levelR) {
+            x = or(low(l), low(r));
+            y = or(high(l), high(r));
+        } else {
+            x = or(low(l), r);
+            y = or(high(l), r);
+        }
+        int ret = mk(levelL, x, y);
+        opCache.put(Operation.OR, l, r, ret);
+        return ret;
+    }
+
+    /**
+     * @see Bdd#diff(BddNode, BddNode)
+     */
+    public static int diff(int l, int r) {
+        if (r == ONE || l == ZERO || l == r) {
+            return ZERO;
+        }
+        if (r == ZERO) {
+            return l;
+        }
+        if (l == ONE) {
+            return not(r);
+        }
+        int cached = opCache.get(Operation.DIFF, l, r);
+        if (cached != IntOperationCache.MISS) {
+            return cached;
+        }
+        int levelL = level(l);
+        int levelR = level(r);
+        int v, x, y;
+        if (levelL == levelR) {
+            v = levelL;
+            x = diff(low(l), low(r));
+            y = diff(high(l), high(r));
+        } else if (levelL < levelR) {
+            v = levelL;
+            x = diff(low(l), r);
+            y = diff(high(l), r);
+        } else {
+            v = levelR;
+            x = diff(l, low(r));
+            y = diff(l, high(r));
+        }
+        int ret = mk(v, x, y);
+        opCache.put(Operation.DIFF, l, r, ret);
+        return ret;
+    }
+
+    /**
+     * @see Bdd#not(BddNode)
+     */
+    public static int not(int u) {
+        if (u == ONE) {
+            return ZERO;
+        }
+        if (u == ZERO) {
+            return ONE;
+        }
+        int cached = opCache.get(Operation.NOT, u, ZERO);
+        if (cached != IntOperationCache.MISS) {
+            return cached;
+        }
+        int ret = mk(level(u), not(low(u)), not(high(u)));
+        opCache.put(Operation.NOT, u, ZERO, ret);
+        return ret;
+    }
+
+    /**
+     * Replaces the variables of a BDD.
+     *
+     * @param node     the BDD
+     * @param newLevel new level of each level
+     * @param last     highest level that is replaced
+     * @return the result of applying the replacement
+     * @see Bdd#replace(BddNode, BddPair)
+     */
+    public static int replace(int node, int[] newLevel, int last) {
+        if (isTerminal(node) || level(node) > last) {
+            return node;
+        }
+        // as in Bdd, the cache assumes that there is a single replacement
+        int cached = opCache.get(Operation.REPLACE, node, ZERO);
+        if (cached != IntOperationCache.MISS) {
+            return cached;
+        }
+        int l = replace(low(node), newLevel, last);
+        int h = replace(high(node), newLevel, last);
+        int res = correctify(newLevel[level(node)], l, h);
+        opCache.put(Operation.REPLACE, node, ZERO, res);
+        return res;
+    }
+
+    private static int correctify(int level, int l, int r) {
+        int levelL = level(l);
+        int levelR = level(r);
+        if (level < levelL && level < levelR) {
+            return mk(level, l, r);
+        }
+        if (level == levelL || level == levelR) {
+            throw new BddException();
+        }
+        if (levelL == levelR) {
+            return mk(levelL, correctify(level, low(l), low(r)), correctify(level, high(l), high(r)));
+        } else if (levelL < levelR) {
+            return mk(levelL, correctify(level, low(l), r), correctify(level, high(l), r));
+        } else {
+            return mk(levelR, correctify(level, l, low(r)), correctify(level, l, high(r)));
+        }
+    }
+
+    /**
+     * Relational product: (l AND r), existentially quantified over the variables in var.
+     *
+     * @see Bdd#relProd(BddNode, BddNode, BddNode)
+     */
+    public static int relProd(int l, int r, int var) {
+        if (isTerminal(var)) {
+            return and(l, r);
+        }
+        boolean[] varset = new boolean[numberOfVariables];
+        int last = -1;
+        while (!isTerminal(var)) {
+            last = level(var);
+            varset[last] = true;
+            var = high(var);
+        }
+        // memo of the quantifications over this variable set, keyed by node
+        TIntIntHashMap existCache = new TIntIntHashMap(16, 0.5f, ZERO, IntOperationCache.MISS);
+        return relProd_rec(l, r, varset, last, existCache);
+    }
+
+    private static int relProd_rec(int l, int r, boolean[] varset, int last, TIntIntHashMap existCache) {
+        if (l == ZERO || r == ZERO) {
+            return ZERO;
+        }
+        if (l == r || r == ONE) {
+            return exist_rec(l, varset, last, existCache);
+        }
+        if (l == ONE) {
+            return exist_rec(r, varset, last, existCache);
+        }
+        int levelL = level(l);
+        int levelR = level(r);
+        if (levelL > last && levelR > last) {
+            return and(l, r);
+        }
+        int cached = opCache.get(Operation.RELPROD, l, r);
+        if (cached != IntOperationCache.MISS) {
+            return cached;
+        }
+        int level, x, y;
+        if (levelL == levelR) {
+            level = levelL;
+            x = relProd_rec(low(l), low(r), varset, last, existCache);
+            y = relProd_rec(high(l), high(r), varset, last, existCache);
+        } else if (levelL < levelR) {
+            level = levelL;
+            x = relProd_rec(low(l), r, varset, last, existCache);
+            y = relProd_rec(high(l), r, varset, last, existCache);
+        } else {
+            level = levelR;
+            x = relProd_rec(l, low(r), varset, last, existCache);
+            y = relProd_rec(l, high(r), varset, last, existCache);
+        }
+        int res = varset[level] ? or(x, y) : mk(level, x, y);
+        opCache.put(Operation.RELPROD, l, r, res);
+        return res;
+    }
+
+    private static int exist_rec(int r, boolean[] varset, int last, TIntIntHashMap existCache) {
+        if (isTerminal(r) || level(r) > last) {
+            return r;
+        }
+        // unlike Bdd.quant_rec, not in the operation cache: the result depends on the variable set
+        int cached = existCache.get(r);
+        if (cached != IntOperationCache.MISS) {
+            return cached;
+        }
+        int x = exist_rec(low(r), varset, last, existCache);
+        int y = exist_rec(high(r), varset, last, existCache);
+        int level = level(r);
+        int res = varset[level] ? or(x, y) : mk(level, x, y);
+        existCache.put(r, res);
+        return res;
+    }
+
+    /**
+     * encodes the set of variables as a BDD
+     *
+     * @see Bdd#makeSet(int[])
+     */
+    public static int makeSet(int[] varset) {
+        int res = ONE;
+        for (int v : varset) {
+            res = and(res, ithVar(v));
+        }
+        return res;
+    }
+
+    public static int ithVar(int n) {
+        return varList[n];
+    }
+
+    public static int nithVar(int n) {
+        return nvarList[n];
+    }
+
+    /**
+     * @return the number of variables in the BDD
+     */
+    public static int getNumVars() {
+        return numberOfVariables;
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ Galois, a framework to exploit amorphous data-parallelism in irregular
+ programs.
+
+ Copyright (C) 2010, The University of Texas at Austin. All rights reserved.
+ UNIVERSITY EXPRESSLY DISCLAIMS ANY AND ALL WARRANTIES CONCERNING THIS SOFTWARE
+ AND DOCUMENTATION, INCLUDING ANY WARRANTIES OF MERCHANTABILITY, FITNESS FOR ANY
+ PARTICULAR PURPOSE, NON-INFRINGEMENT AND WARRANTIES OF PERFORMANCE, AND ANY
+ WARRANTY THAT MIGHT OTHERWISE ARISE FROM COURSE OF DEALING OR USAGE OF TRADE.
+ NO WARRANTY IS EITHER EXPRESS OR IMPLIED WITH RESPECT TO THE USE OF THE
+ SOFTWARE OR DOCUMENTATION. Under no circumstances shall University be liable
+ for incidental, special, indirect, direct or consequential damages or loss of
+ profits, interruption of business, or related expenses which may arise from use
+ of Software or Documentation, including but not limited to those resulting from
+ defects in Software and/or Documentation, or loss or inaccuracy of data of any
+ kind.
+
+ File: IntBddDomain.java
+ */
+
+package util.ints.bdd;
+
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static util.ints.bdd.IntBdd.ONE;
+import static util.ints.bdd.IntBdd.ZERO;
+
+/**
+ * Finite domain over {@link IntBdd}. Counterpart of {@link BddDomain}.
+ */
+public final class IntBddDomain {
+
+    private static IntBddDomain[] domain;
+    private static int initialNodeTableCapacity;
+    private static int initialNodeTableSegments;
+
+    /* Variable indices for the variable set */
+    private final int[] ivar;
+    /* position in ivar of every level, or binSize if the level does not belong to the domain */
+    private int[] levelToIndex;
+    /* The BDD variable set.  Constructed in extDomain() */
+    private int var;
+    /* correspondence between number and Bdd, for this domain. 0 (ZERO) means not computed yet.
+       Node ids are not objects, so they have to be published through volatile accesses */
+    private final AtomicIntegerArray numAsBdd;
+
+    public static void setup(int initNodeTableCapacity, int initNodeTableSegments) {
+        initialNodeTableCapacity = initNodeTableCapacity;
+        initialNodeTableSegments = initNodeTableSegments;
+    }
+
+    private IntBddDomain(long range) {
+        if (range <= 0) {
+            throw new BddException();
+        }
+        long calcsize = 2L;
+        int binsize = 1;
+        while (calcsize < range) {
+            binsize++;
+            calcsize <<= 1;
+        }
+        ivar = new int[binsize];
+        numAsBdd = new AtomicIntegerArray((int) range);
+    }
+
+    public int binSize() {
+        return ivar.length;
+    }
+
+    public int getNodeVar(int n) {
+        int res = numAsBdd.get(n);
+        if (res == ZERO) {
+            res = ithVar(n);
+            numAsBdd.set(n, res);
+        }
+        return res;
+    }
+
+    /**
+     * converts a number to a BDD
+     *
+     * @see BddDomain#ithVar(int)
+     */
+    public int ithVar(int val) {
+        int res = ONE;
+        for (int i = 0; i < ivar.length; i++) {
+            if ((val & 1) == 1) {
+                res = IntBdd.and(res, IntBdd.ithVar(ivar[i]));
+            } else {
+                res = IntBdd.and(res, IntBdd.nithVar(ivar[i]));
+            }
+            val >>= 1;
+        }
+        return res;
+    }
+
+    public int set() {
+        return var;
+    }
+
+    public int[] vars() {
+        return ivar;
+    }
+
+    /**
+     * @return the sorted elements of the set represented by the BDD
+     */
+    public TIntArrayList getElements(int root) {
+        TIntArrayList elems = new TIntArrayList();
+        allSat(root, 0, 0, elems);
+        elems.sort();
+        return elems;
+    }
+
+    private void allSat(int node, int index, int solution, TIntArrayList solutions) {
+        if (node == ZERO) {
+            return;
+        }
+        int nodeIndex = node == ONE ? ivar.length : levelToIndex[IntBdd.level(node)];
+        if (index < nodeIndex) {
+            // don't care bit
+            allSat(node, index + 1, solution, solutions);
+            allSat(node, index + 1, solution | (1 << index), solutions);
+            return;
+        }
+        if (node == ONE) {
+            solutions.add(solution);
+            return;
+        }
+        allSat(IntBdd.low(node), index + 1, solution, solutions);
+        allSat(IntBdd.high(node), index + 1, solution | (1 << index), solutions);
+    }
+
+    public int satCount(int node) {
+        return (int) (Math.pow(2, index(node)) * satCount_rec(node));
+    }
+
+    private double satCount_rec(int node) {
+        if (node == ONE) {
+            return 1;
+        }
+        if (node == ZERO) {
+            return 0;
+        }
+        int low = IntBdd.low(node);
+        int high = IntBdd.high(node);
+        int index = index(node) + 1;
+        return satCount_rec(low) * Math.pow(2, index(low) - index) + satCount_rec(high)
+                * Math.pow(2, index(high) - index);
+    }
+
+    private int index(int node) {
+        if (node == ONE || node == ZERO) {
+            return ivar.length;
+        }
+        return levelToIndex[IntBdd.level(node)];
+    }
+
+    public String toString(int root) {
+        StringBuilder stringBuilder = new StringBuilder("[");
+        TIntArrayList elements = getElements(root);
+        for (int i = 0; i < elements.size(); i++) {
+            if (i > 0) {
+                stringBuilder.append(", ");
+            }
+            stringBuilder.append(elements.getQuick(i));
+        }
+        return stringBuilder.append("]").toString();
+    }
+
+    public static IntBddDomain getDomain(int num) {
+        return domain[num];
+    }
+
+    /**
+     * Adds another set of finite domain blocks, with interleaved variables.
+     *
+     * @see BddDomain#extDomain(long[])
+     */
+    public static IntBddDomain[] extDomain(long[] domainSizes) {
+        int numDomains = domainSizes.length;
+        domain = new IntBddDomain[numDomains];
+        int extravars = 0;
+        for (int n = 0; n < numDomains; n++) {
+            domain[n] = new IntBddDomain(domainSizes[n]);
+            extravars += domain[n].binSize();
+        }
+        IntBdd.init(extravars, initialNodeTableCapacity, initialNodeTableSegments);
+        int binoffset = 0;
+        boolean more = true;
+        for (int bn = 0; more; bn++) {
+            more = false;
+            for (int n = 0; n < numDomains; n++) {
+                IntBddDomain dom = domain[n];
+                if (bn < dom.binSize()) {
+                    more = true;
+                    dom.ivar[bn] = binoffset;
+                    binoffset++;
+                }
+            }
+        }
+        for (int n = 0; n < numDomains; n++) {
+            IntBddDomain dom = domain[n];
+            dom.var = IntBdd.makeSet(dom.ivar);
+            dom.levelToIndex = new int[extravars];
+            Arrays.fill(dom.levelToIndex, dom.binSize());
+            for (int i = 0; i < dom.ivar.length; i++) {
+                dom.levelToIndex[dom.ivar[i]] = i;
+            }
+        }
+        return domain;
+    }
+
+    public static void reset() {
+        domain = null;
+        IntBdd.reset();
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ Galois, a framework to exploit amorphous data-parallelism in irregular
+ programs.
+
+ Copyright (C) 2010, The University of Texas at Austin. All rights reserved.
+ UNIVERSITY EXPRESSLY DISCLAIMS ANY AND ALL WARRANTIES CONCERNING THIS SOFTWARE
+ AND DOCUMENTATION, INCLUDING ANY WARRANTIES OF MERCHANTABILITY, FITNESS FOR ANY
+ PARTICULAR PURPOSE, NON-INFRINGEMENT AND WARRANTIES OF PERFORMANCE, AND ANY
+ WARRANTY THAT MIGHT OTHERWISE ARISE FROM COURSE OF DEALING OR USAGE OF TRADE.
+ NO WARRANTY IS EITHER EXPRESS OR IMPLIED WITH RESPECT TO THE USE OF THE
+ SOFTWARE OR DOCUMENTATION. Under no circumstances shall University be liable
+ for incidental, special, indirect, direct or consequential damages or loss of
+ profits, interruption of business, or related expenses which may arise from use
+ of Software or Documentation, including but not limited to those resulting from
+ defects in Software and/or Documentation, or loss or inaccuracy of data of any
+ kind.
+
+ File: IntBddNodeTable.java
+ */
+
+package util.ints.bdd;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Node table of {@link IntBdd}. Every node is a record of four ints (level, low, high and the next
+ * node in its hash chain) stored in large pages of primitive arrays, and is identified by its index.
+ * Nodes 0 and 1 are the terminals. Pages are never moved, so a node can be read without holding
+ * any lock once its id has been safely published (for example, through the root of a set).
+ * <p/>
+ * Like {@link BddNodeTable}, the unique table is divided in segments, each of them protected by a spin lock.
+ */
+final class IntBddNodeTable {
+
+    static final int PAGE_BITS = 16;
+    static final int PAGE_SIZE = 1 << PAGE_BITS;
+    static final int PAGE_MASK = PAGE_SIZE - 1;
+    static final int NODE_STRIDE = 4;
+    // offsets inside a node record
+    static final int LEVEL = 0;
+    static final int LOW = 1;
+    static final int HIGH = 2;
+    static final int NEXT = 3;
+    // ids are positive ints
+    static final int MAX_PAGES = 1 << (31 - PAGE_BITS);
+    static final int MAX_SEGMENTS = 2 << 10;
+    static final int MAXIMUM_SEGMENT_CAPACITY = 1 << 28;
+    static final float LOAD_FACTOR = 0.75f;
+
+    private final int[][] pages;
+    // written after the page it refers to, so reading it publishes the page
+    private volatile int allocatedPages;
+    private final AtomicInteger nextId;
+    private final int segmentShift;
+    private final int segmentMask;
+    private final Segment[] segments;
+
+    IntBddNodeTable(int terminalLevel, int initialCapacity, int concurrencyLevel) {
+        if (initialCapacity < 0 || concurrencyLevel <= 0) {
+            throw new IllegalArgumentException();
+        }
+        concurrencyLevel = Math.min(concurrencyLevel, MAX_SEGMENTS);
+        int sshift = 0;
+        int ssize = 1;
+        while (ssize < concurrencyLevel) {
+            ++sshift;
+            ssize <<= 1;
+        }
+        segmentShift = 32 - sshift;
+        segmentMask = ssize - 1;
+        segments = new Segment[ssize];
+        int c = Math.min(initialCapacity, MAXIMUM_SEGMENT_CAPACITY) / ssize;
+        int cap = 1;
+        while (cap < c) {
+            cap <<= 1;
+        }
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment(cap);
+        }
+        pages = new int[MAX_PAGES][];
+        nextId = new AtomicInteger(0);
+        // terminals: they are never inserted in the unique table
+        allocate(terminalLevel, IntBdd.ZERO, IntBdd.ZERO, 0);
+        allocate(terminalLevel, IntBdd.ONE, IntBdd.ONE, 0);
+    }
+
+    int level(int node) {
+        return pages[node >>> PAGE_BITS][(node & PAGE_MASK) * NODE_STRIDE + LEVEL];
+    }
+
+    int low(int node) {
+        return pages[node >>> PAGE_BITS][(node & PAGE_MASK) * NODE_STRIDE + LOW];
+    }
+
+    int high(int node) {
+        return pages[node >>> PAGE_BITS][(node & PAGE_MASK) * NODE_STRIDE + HIGH];
+    }
+
+    private int next(int node) {
+        return pages[node >>> PAGE_BITS][(node & PAGE_MASK) * NODE_STRIDE + NEXT];
+    }
+
+    private void setNext(int node, int next) {
+        pages[node >>> PAGE_BITS][(node & PAGE_MASK) * NODE_STRIDE + NEXT] = next;
+    }
+
+    /**
+     * @return number of nodes allocated so far, including the terminals
+     */
+    int size() {
+        return nextId.get();
+    }
+
+    /**
+     * @return the id of the node (level, low, high), which is created if it does not exist yet
+     */
+    int findOrCreate(int level, int low, int high) {
+        int hash = computeHash(level, low, high);
+        return segments[(hash >>> segmentShift) & segmentMask].findOrCreate(this, hash, level, low, high);
+    }
+
+    private int allocate(int level, int low, int high, int next) {
+        int id = nextId.getAndIncrement();
+        if (id < 0) {
+            throw new BddException();
+        }
+        int[] page = pageForNewNode(id >>> PAGE_BITS);
+        int offset = (id & PAGE_MASK) * NODE_STRIDE;
+        page[offset + LEVEL] = level;
+        page[offset + LOW] = low;
+        page[offset + HIGH] = high;
+        page[offset + NEXT] = next;
+        return id;
+    }
+
+    private int[] pageForNewNode(int page) {
+        if (page < allocatedPages) {
+            return pages[page];
+        }
+        synchronized (this) {
+            while (allocatedPages <= page) {
+                pages[allocatedPages] = new int[PAGE_SIZE * NODE_STRIDE];
+                allocatedPages++;
+            }
+            return pages[page];
+        }
+    }
+
+    static int computeHash(int level, int low, int high) {
+        int result = level * 31;
+        result = result * 31 ^ low;
+        return HashUtil.hash(result * 31 ^ high);
+    }
+
+    private static final class Segment {
+        private static final AtomicIntegerFieldUpdater<Segment> flagUpdater
+                = AtomicIntegerFieldUpdater.newUpdater(Segment.class, "flag");
+
+        private volatile int flag;
+        // head of each hash chain; 0 (the ZERO terminal) marks the end of a chain
+        private int[] buckets;
+        private int resizeCountDown;
+
+        Segment(int initialCapacity) {
+            buckets = new int[initialCapacity];
+            resizeCountDown = (int) (initialCapacity * LOAD_FACTOR);
+        }
+
+        int findOrCreate(IntBddNodeTable table, int hash, int level, int low, int high) {
+            while (!flagUpdater.compareAndSet(this, 0, 1)) ;
+            try {
+                int[] tab = buckets;
+                int index = hash & (tab.length - 1);
+                int first = tab[index];
+                for (int e = first; e != IntBdd.ZERO; e = table.next(e)) {
+                    if (table.low(e) == low && table.high(e) == high && table.level(e) == level) {
+                        return e;
+                    }
+                }
+                int id = table.allocate(level, low, high, first);
+                tab[index] = id;
+                if (--resizeCountDown == 0) {
+                    rehash(table);
+                }
+                return id;
+            } finally {
+                flagUpdater.set(this, 0);
+            }
+        }
+
+        private void rehash(IntBddNodeTable table) {
+            int[] oldTable = buckets;
+            int oldCapacity = oldTable.length;
+            if (oldCapacity >= MAXIMUM_SEGMENT_CAPACITY) {
+                return;
+            }
+            int[] newTable = new int[oldCapacity << 1];
+            int sizeMask = newTable.length - 1;
+            for (int i = 0; i < oldCapacity; i++) {
+                int e = oldTable[i];
+                while (e != IntBdd.ZERO) {
+                    int nextCurr = table.next(e);
+                    int k = computeHash(table.level(e), table.low(e), table.high(e)) & sizeMask;
+                    table.setNext(e, newTable[k]);
+                    newTable[k] = e;
+                    e = nextCurr;
+                }
+            }
+            resizeCountDown = (int) (newTable.length * LOAD_FACTOR);
+            buckets = newTable;
+        }
+    }
+}
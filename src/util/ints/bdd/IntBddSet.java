@@ -0,0 +1,258 @@
+/*
+ Galois, a framework to exploit amorphous data-parallelism in irregular
+ programs.
+
+ Copyright (C) 2010, The University of Texas at Austin. All rights reserved.
+ UNIVERSITY EXPRESSLY DISCLAIMS ANY AND ALL WARRANTIES CONCERNING THIS SOFTWARE
+ AND DOCUMENTATION, INCLUDING ANY WARRANTIES OF MERCHANTABILITY, FITNESS FOR ANY
+ PARTICULAR PURPOSE, NON-INFRINGEMENT AND WARRANTIES OF PERFORMANCE, AND ANY
+ WARRANTY THAT MIGHT OTHERWISE ARISE FROM COURSE OF DEALING OR USAGE OF TRADE.
+ NO WARRANTY IS EITHER EXPRESS OR IMPLIED WITH RESPECT TO THE USE OF THE
+ SOFTWARE OR DOCUMENTATION. Under no circumstances shall University be liable
+ for incidental, special, indirect, direct or consequential damages or loss of
+ profits, interruption of business, or related expenses which may arise from use
+ of Software or Documentation, including but not limited to those resulting from
+ defects in Software and/or Documentation, or loss or inaccuracy of data of any
+ kind.
+
+ File: IntBddSet.java
+ */
+
+package util.ints.bdd;
+
+import gnu.trove.list.array.TIntArrayList;
+import util.MutableBoolean;
+import util.concurrent.NotThreadSafe;
+import util.fn.IntLambdaVoid;
+import util.fn.Lambda2Void;
+import util.fn.Lambda3Void;
+import util.fn.Lambda4Void;
+import util.fn.LambdaVoid;
+import util.ints.DiffIntSet;
+import util.ints.IntSet;
+import util.ints.IntSetIterator;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * BDD representation of a set, where the root is a node of {@link IntBdd}. Counterpart of {@link BddSet}.
+ */
+public final class IntBddSet implements DiffIntSet {
+    private static final AtomicIntegerFieldUpdater<IntBddSet> rootUpdater
+            = AtomicIntegerFieldUpdater.newUpdater(IntBddSet.class, "root");
+
+    private volatile int root;
+    private static IntBddDomain domain;
+
+    public IntBddSet() {
+        root = IntBdd.ZERO;
+    }
+
+    public IntBddSet(int root) {
+        this.root = root;
+    }
+
+    public static void setDomain(IntBddDomain domain) {
+        IntBddSet.domain = domain;
+    }
+
+    @Override
+    public boolean unionTo(final IntSet intSet) {
+        // sorry, only bdd sets are allowed here.
+        return unionTo(((IntBddSet) intSet).getRoot());
+    }
+
+    private boolean unionTo(final int s) {
+        int currRoot, newRoot;
+        do {
+            currRoot = root;
+            newRoot = IntBdd.or(currRoot, s);
+            if (currRoot == newRoot) {
+                return false;
+            }
+        } while (!rootUpdater.compareAndSet(this, currRoot, newRoot));
+        return true;
+    }
+
+    @Override
+    public boolean add(int number) {
+        return unionTo(domain.getNodeVar(number));
+    }
+
+    @Override
+    public boolean addAll(IntSet intSet) {
+        final MutableBoolean ret = new MutableBoolean(false);
+        intSet.map(new LambdaVoid<Integer>() {
+            @Override
+            public void call(Integer next) {
+                boolean curr = ret.get();
+                ret.set(add(next) || curr);
+            }
+        });
+        return ret.get();
+    }
+
+    @Override
+    public boolean remove(int n) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        root = IntBdd.ZERO;
+    }
+
+    @Override
+    public boolean contains(int n) {
+        int currRoot = root;
+        return IntBdd.or(currRoot, domain.getNodeVar(n)) == currRoot;
+    }
+
+    @NotThreadSafe
+    @Override
+    public void serialDiffTo(final IntSet s) {
+        root = IntBdd.diff(root, ((IntBddSet) s).root);
+    }
+
+    @Override
+    public void map(LambdaVoid<Integer> fn) {
+        if (isEmpty()) {
+            return;
+        }
+        TIntArrayList elements = elements();
+        for (int i = 0; i < elements.size(); i++) {
+            fn.call(elements.getQuick(i));
+        }
+    }
+
+    @Override
+    public void mapInt(IntLambdaVoid fn) {
+        if (isEmpty()) {
+            return;
+        }
+        TIntArrayList elements = elements();
+        for (int i = 0; i < elements.size(); i++) {
+            fn.call(elements.getQuick(i));
+        }
+    }
+
+    @Override
+    public <A1> void map(Lambda2Void<Integer, A1> body, A1 arg1) {
+        if (isEmpty()) {
+            return;
+        }
+        TIntArrayList elements = elements();
+        for (int i = 0; i < elements.size(); i++) {
+            body.call(elements.getQuick(i), arg1);
+        }
+    }
+
+    @Override
+    public <A1, A2> void map(Lambda3Void<Integer, A1, A2> body, A1 arg1, A2 arg2) {
+        if (isEmpty()) {
+            return;
+        }
+        TIntArrayList elements = elements();
+        for (int i = 0; i < elements.size(); i++) {
+            body.call(elements.getQuick(i), arg1, arg2);
+        }
+    }
+
+    @Override
+    public <A1, A2, A3> void map(Lambda4Void<Integer, A1, A2, A3> body, A1 arg1, A2 arg2, A3 arg3) {
+        if (isEmpty()) {
+            return;
+        }
+        TIntArrayList elements = elements();
+        for (int i = 0; i < elements.size(); i++) {
+            body.call(elements.getQuick(i), arg1, arg2, arg3);
+        }
+    }
+
+    @Override
+    public IntSetIterator intIterator() {
+        if (isEmpty()) {
+            return new ElementIterator(new TIntArrayList(0));
+        }
+        return new ElementIterator(elements());
+    }
+
+    public TIntArrayList elements() {
+        return domain.getElements(root);
+    }
+
+    @Override
+    public int size() {
+        // avoid non-initialized domains
+        if (isEmpty()) {
+            return 0;
+        }
+        return domain.satCount(root);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root == IntBdd.ZERO;
+    }
+
+    public int getRoot() {
+        return root;
+    }
+
+    @Override
+    public boolean equals(Object s) {
+        return root == ((IntBddSet) s).root;
+    }
+
+    @Override
+    public IntBddSet clone() {
+        return new IntBddSet(root);
+    }
+
+    @Override
+    public int hashCode() {
+        return root;
+    }
+
+    @Override
+    public String toString() {
+        // avoid non-initialized domains
+        if (isEmpty()) {
+            return "[]";
+        }
+        return domain.toString(root);
+    }
+
+    private static final class ElementIterator implements IntSetIterator {
+        private final TIntArrayList elements;
+        private int index;
+
+        ElementIterator(TIntArrayList elements) {
+            this.elements = elements;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < elements.size();
+        }
+
+        @Override
+        public Integer next() {
+            return nextInt();
+        }
+
+        @Override
+        public int nextInt() {
+            if (index == elements.size()) {
+                throw new NoSuchElementException();
+            }
+            return elements.getQuick(index++);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
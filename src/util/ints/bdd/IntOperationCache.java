@@ -0,0 +1,97 @@
+/*
+ Galois, a framework to exploit amorphous data-parallelism in irregular
+ programs.
+
+ Copyright (C) 2010, The University of Texas at Austin. All rights reserved.
+ UNIVERSITY EXPRESSLY DISCLAIMS ANY AND ALL WARRANTIES CONCERNING THIS SOFTWARE
+ AND DOCUMENTATION, INCLUDING ANY WARRANTIES OF MERCHANTABILITY, FITNESS FOR ANY
+ PARTICULAR PURPOSE, NON-INFRINGEMENT AND WARRANTIES OF PERFORMANCE, AND ANY
+ WARRANTY THAT MIGHT OTHERWISE ARISE FROM COURSE OF DEALING OR USAGE OF TRADE.
+ NO WARRANTY IS EITHER EXPRESS OR IMPLIED WITH RESPECT TO THE USE OF THE
+ SOFTWARE OR DOCUMENTATION. Under no circumstances shall University be liable
+ for incidental, special, indirect, direct or consequential damages or loss of
+ profits, interruption of business, or related expenses which may arise from use
+ of Software or Documentation, including but not limited to those resulting from
+ defects in Software and/or Documentation, or loss or inaccuracy of data of any
+ kind.
+
+ File: IntOperationCache.java
+ */
+
+package util.ints.bdd;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Lossy, direct-mapped cache of {@link IntBdd} operations. The entries live in a flat int array, so
+ * a put does not allocate. Every entry is guarded by a sequence number: writers make it odd while
+ * they update the entry, and readers discard entries whose sequence number is odd or changed
+ * during the read.
+ */
+final class IntOperationCache {
+    private static final int DEFAULT_BUCKETS = 2 << 12;
+    private static final int ENTRY_STRIDE = 5;
+    private static final int SEQ = 0;
+    private static final int OP = 1;
+    private static final int LEFT = 2;
+    private static final int RIGHT = 3;
+    private static final int RESULT = 4;
+    // returned by get on a miss
+    static final int MISS = -1;
+
+    private final int MASK;
+    private final AtomicIntegerArray entries;
+
+    IntOperationCache() {
+        this(DEFAULT_BUCKETS);
+    }
+
+    IntOperationCache(int numBuckets) {
+        // numBuckets has to be a power of 2
+        entries = new AtomicIntegerArray(numBuckets * ENTRY_STRIDE);
+        MASK = numBuckets - 1;
+        clear();
+    }
+
+    int get(byte operation, int op1, int op2) {
+        int base = getIndex(operation, op1, op2) * ENTRY_STRIDE;
+        int seq = entries.get(base + SEQ);
+        if ((seq & 1) != 0) {
+            return MISS;
+        }
+        if (entries.get(base + OP) != operation || entries.get(base + LEFT) != op1 || entries.get(base + RIGHT) != op2) {
+            return MISS;
+        }
+        int result = entries.get(base + RESULT);
+        return entries.get(base + SEQ) == seq ? result : MISS;
+    }
+
+    void put(byte operation, int op1, int op2, int result) {
+        int base = getIndex(operation, op1, op2) * ENTRY_STRIDE;
+        int seq = entries.get(base + SEQ);
+        if ((seq & 1) != 0 || !entries.compareAndSet(base + SEQ, seq, seq + 1)) {
+            // somebody else is writing this entry: the cache is lossy, so just give up
+            return;
+        }
+        entries.set(base + OP, operation);
+        entries.set(base + LEFT, op1);
+        entries.set(base + RIGHT, op2);
+        entries.set(base + RESULT, result);
+        entries.set(base + SEQ, seq + 2);
+    }
+
+    private int getIndex(byte operation, int op1, int op2) {
+        int result = operation * 31;
+        result = (result * 31) ^ op1;
+        result = (result * 31) ^ op2;
+        return HashUtil.hash(result) & MASK;
+    }
+
+    void clear() {
+        int length = entries.length();
+        for (int i = 0; i < length; i += ENTRY_STRIDE) {
+            // no operation has a negative code
+            entries.set(i + OP, -1);
+        }
+    }
+}
@@ -22,6 +22,7 @@ package util.ints.bdd;
 import util.Pair;
 
 import java.lang.reflect.Array;
+import java.util.Arrays;
 
 final class IteratorCache<K, V> {
     private static final int DEFAULT_BUCKETS = 2 << 12;
@@ -54,6 +55,10 @@ final class IteratorCache<K, V> {
         return null;
     }
 
+    public void clear() {
+        Arrays.fill(buckets, null);
+    }
+
     private int getIndex(K key) {
         int hash = key.hashCode();
         return hash & MASK;
@@ -19,14 +19,37 @@
  */
 package util.ints.bdd;
 
-import java.lang.reflect.Array;
-import java.util.Arrays;
-
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+/**
+ * Lossy, direct-mapped cache of BDD operations.
+ * <p/>
+ * The entries are stored in flat arrays, so a put does not allocate. Every entry is guarded by a
+ * sequence number: a writer makes it odd while it updates the entry, and readers ignore entries whose
+ * sequence number is odd or changes during the read. A writer that finds an entry being updated by
+ * somebody else just drops its own update.
+ * <p/>
+ * The cache can grow (see {@link #ensureCapacity(int)}); growing drops all the cached results.
+ * Hits, misses and evictions are counted per operation. The counters are striped by thread and
+ * updated without synchronization, so they are approximate.
+ */
 public final class OperationCache {
     private static final int DEFAULT_BUCKETS = 2 << 12;
-    private final int MASK;
-    private final Element[] buckets;
+    private static final int MAXIMUM_BUCKETS = 1 << 26;
+
+    // counters
+    public static final int HITS = 0;
+    public static final int MISSES = 1;
+    public static final int EVICTIONS = 2;
+    private static final int NUM_COUNTERS = 3;
+    private static final int NUM_OPERATIONS = Operation.RELPROD + 1;
+    private static final int STRIPES = 64;
+    // counters of a stripe, rounded up so that stripes do not share cache lines
+    private static final int STRIPE_SIZE = ((NUM_OPERATIONS * NUM_COUNTERS + 7) & ~7) + 8;
+
+    private volatile Table table;
+    private final long[] counters;
 
     public OperationCache() {
         this(DEFAULT_BUCKETS);
@@ -34,41 +57,130 @@ public final class OperationCache {
 
     public OperationCache(int numBuckets) {
         // numBuckets has to be a power of 2
-        buckets = (Element[]) Array.newInstance(Element.class, numBuckets);
-        MASK = numBuckets - 1;
+        table = new Table(numBuckets);
+        counters = new long[STRIPES * STRIPE_SIZE];
     }
 
     public void put(byte operation, BddNode op1, BddNode op2, BddNode value) {
-        int index = getIndex(operation, op1, op2);
-        buckets[index] = new Element(operation, op1, op2, value);
+        Table t = table;
+        int index = getIndex(operation, op1, op2, t.mask);
+        int seqIndex = index << 1;
+        int seq = t.seqAndOp.get(seqIndex);
+        if ((seq & 1) != 0 || !t.seqAndOp.compareAndSet(seqIndex, seq, seq + 1)) {
+            // another thread is writing this entry
+            return;
+        }
+        int refIndex = index * 3;
+        if (t.refs.get(refIndex) != null) {
+            count(operation, EVICTIONS);
+        }
+        t.seqAndOp.set(seqIndex + 1, operation);
+        t.refs.set(refIndex, op1);
+        t.refs.set(refIndex + 1, op2);
+        t.refs.set(refIndex + 2, value);
+        t.seqAndOp.set(seqIndex, seq + 2);
     }
 
     public BddNode get(byte operation, BddNode op1, BddNode op2) {
-        int index = getIndex(operation, op1, op2);
-        Element element = buckets[index];
-        if (Operation.equals(operation, op1, op2, element)) {
-            return element.value;
+        Table t = table;
+        int index = getIndex(operation, op1, op2, t.mask);
+        int seqIndex = index << 1;
+        int seq = t.seqAndOp.get(seqIndex);
+        if ((seq & 1) == 0 && t.seqAndOp.get(seqIndex + 1) == operation) {
+            int refIndex = index * 3;
+            if (t.refs.get(refIndex) == op1 && t.refs.get(refIndex + 1) == op2) {
+                BddNode value = t.refs.get(refIndex + 2);
+                if (t.seqAndOp.get(seqIndex) == seq) {
+                    count(operation, HITS);
+                    return value;
+                }
+            }
         }
+        count(operation, MISSES);
         return null;
     }
 
-    private int getIndex(byte operation, BddNode op1, BddNode op2) {
+    private static int getIndex(byte operation, BddNode op1, BddNode op2, int mask) {
         int hash = Operation.computeHash(operation, op1, op2);
-        return hash & MASK;
+        return hash & mask;
     }
 
-    public void clear() {
-        // assist GC
-        Arrays.fill(buckets, null);
+    private void count(byte operation, int counter) {
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        counters[stripe * STRIPE_SIZE + operation * NUM_COUNTERS + counter]++;
+    }
+
+    /**
+     * @param operation one of the codes in {@link Operation}
+     * @param counter   {@link #HITS}, {@link #MISSES} or {@link #EVICTIONS}
+     * @return approximate value of the counter
+     */
+    public long getCount(byte operation, int counter) {
+        long ret = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            ret += counters[i * STRIPE_SIZE + operation * NUM_COUNTERS + counter];
+        }
+        return ret;
+    }
+
+    /**
+     * @return number of entries in the cache
+     */
+    public int capacity() {
+        return table.mask + 1;
     }
 
-    private final class Element extends Operation {
-        private final BddNode value;
+    /**
+     * Replaces the table by an empty one with room for (at least) the given number of entries, unless
+     * the current one is big enough. Can be invoked concurrently with gets and puts.
+     *
+     * @param numEntries the requested number of entries
+     * @return true if the cache grew
+     */
+    public boolean ensureCapacity(int numEntries) {
+        Table t = table;
+        int capacity = t.mask + 1;
+        if (capacity >= numEntries || capacity >= MAXIMUM_BUCKETS) {
+            return false;
+        }
+        while (capacity < numEntries && capacity < MAXIMUM_BUCKETS) {
+            capacity <<= 1;
+        }
+        synchronized (this) {
+            if (table != t) {
+                // somebody else grew the table in between
+                return false;
+            }
+            table = new Table(capacity);
+        }
+        return true;
+    }
 
-        Element(byte operation, BddNode op1, BddNode op2, BddNode value) {
-            super(operation, op1, op2);
-            this.value = value;
+    public void clear() {
+        table = new Table(table.mask + 1);
+    }
+
+    public void resetCounters() {
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = 0;
         }
     }
 
+    private static final class Table {
+        final int mask;
+        // per entry: sequence number and operation
+        final AtomicIntegerArray seqAndOp;
+        // per entry: first operand, second operand and result
+        final AtomicReferenceArray<BddNode> refs;
+
+        Table(int numBuckets) {
+            mask = numBuckets - 1;
+            seqAndOp = new AtomicIntegerArray(numBuckets << 1);
+            refs = new AtomicReferenceArray<BddNode>(numBuckets * 3);
+            for (int i = 0; i < numBuckets; i++) {
+                // no operation has a negative code
+                seqAndOp.set((i << 1) + 1, -1);
+            }
+        }
+    }
 }